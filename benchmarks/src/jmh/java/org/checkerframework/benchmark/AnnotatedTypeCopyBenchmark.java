@@ -0,0 +1,70 @@
+package org.checkerframework.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.checkerframework.benchmark.FixtureCompilation.FixtureMethod;
+import org.checkerframework.framework.type.AnnotatedTypeMirror;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks of copying {@link AnnotatedTypeMirror}s, which the type factory does whenever it
+ * returns a type from one of its caches. The types are those of the fields and methods of the
+ * fixtures, under the Nullness Checker.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AnnotatedTypeCopyBenchmark {
+
+  /** The types of the fields and methods of the fixtures. */
+  private List<AnnotatedTypeMirror> types;
+
+  /** Compiles the fixtures and computes the types to copy. */
+  @Setup
+  public void setup() {
+    NullnessFixture nullness = new NullnessFixture();
+    nullness.setRoot(nullness.fixtures.roots.get(0));
+    types = new ArrayList<>(nullness.getFieldTypes());
+    for (FixtureMethod m : nullness.fixtures.methods) {
+      types.add(nullness.atypeFactory.getAnnotatedType(m.getElement()));
+    }
+  }
+
+  /**
+   * Makes a deep copy of every type.
+   *
+   * @param bh consumes the results
+   */
+  @Benchmark
+  public void deepCopy(Blackhole bh) {
+    for (AnnotatedTypeMirror type : types) {
+      bh.consume(type.deepCopy());
+    }
+  }
+
+  /**
+   * Makes a shallow copy of every type.
+   *
+   * @param bh consumes the results
+   */
+  @Benchmark
+  public void shallowCopy(Blackhole bh) {
+    for (AnnotatedTypeMirror type : types) {
+      bh.consume(type.shallowCopy());
+    }
+  }
+}
@@ -0,0 +1,99 @@
+package org.checkerframework.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.checkerframework.benchmark.FixtureCompilation.FixtureMethod;
+import org.checkerframework.dataflow.analysis.BackwardAnalysisImpl;
+import org.checkerframework.dataflow.analysis.ForwardAnalysisImpl;
+import org.checkerframework.dataflow.cfg.ControlFlowGraph;
+import org.checkerframework.dataflow.cfg.builder.CFGBuilder;
+import org.checkerframework.dataflow.constantpropagation.Constant;
+import org.checkerframework.dataflow.constantpropagation.ConstantPropagationStore;
+import org.checkerframework.dataflow.constantpropagation.ConstantPropagationTransfer;
+import org.checkerframework.dataflow.livevariable.LiveVarStore;
+import org.checkerframework.dataflow.livevariable.LiveVarTransfer;
+import org.checkerframework.dataflow.livevariable.LiveVarValue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks of the dataflow framework that do not involve a checker: control flow graph
+ * construction ({@link CFGBuilder}), a forward analysis (constant propagation), and a backward
+ * analysis (live variables), each applied to every method of the fixtures.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CFGBenchmark {
+
+  /** The fixtures. */
+  private FixtureCompilation fixtures;
+
+  /** The control flow graph of each method of the fixtures. */
+  private List<ControlFlowGraph> cfgs;
+
+  /** Compiles the fixtures and builds the control flow graphs that the analyses use. */
+  @Setup
+  public void setup() {
+    fixtures = new FixtureCompilation(null);
+    cfgs = new ArrayList<>();
+    for (FixtureMethod m : fixtures.methods) {
+      cfgs.add(CFGBuilder.build(m.root, m.methodTree, m.classTree, fixtures.processingEnv));
+    }
+  }
+
+  /**
+   * Builds the control flow graph of every method of the fixtures.
+   *
+   * @param bh consumes the results
+   */
+  @Benchmark
+  public void buildCfg(Blackhole bh) {
+    for (FixtureMethod m : fixtures.methods) {
+      bh.consume(CFGBuilder.build(m.root, m.methodTree, m.classTree, fixtures.processingEnv));
+    }
+  }
+
+  /**
+   * Runs constant propagation, a forward analysis, on every control flow graph.
+   *
+   * @param bh consumes the results
+   */
+  @Benchmark
+  public void constantPropagation(Blackhole bh) {
+    for (ControlFlowGraph cfg : cfgs) {
+      ForwardAnalysisImpl<Constant, ConstantPropagationStore, ConstantPropagationTransfer>
+          analysis = new ForwardAnalysisImpl<>(new ConstantPropagationTransfer());
+      analysis.performAnalysis(cfg);
+      bh.consume(analysis.getRegularExitStore());
+    }
+  }
+
+  /**
+   * Runs live variable analysis, a backward analysis, on every control flow graph.
+   *
+   * @param bh consumes the results
+   */
+  @Benchmark
+  public void liveVariables(Blackhole bh) {
+    for (ControlFlowGraph cfg : cfgs) {
+      BackwardAnalysisImpl<LiveVarValue, LiveVarStore, LiveVarTransfer> analysis =
+          new BackwardAnalysisImpl<>(new LiveVarTransfer());
+      analysis.performAnalysis(cfg);
+      bh.consume(analysis.getEntryStore());
+    }
+  }
+}
@@ -0,0 +1,244 @@
+package org.checkerframework.benchmark;
+
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.tree.VariableTree;
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.TaskEvent;
+import com.sun.source.util.TaskListener;
+import com.sun.tools.javac.api.BasicJavacTask;
+import com.sun.tools.javac.processing.JavacProcessingEnvironment;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.Processor;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.VariableElement;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.checkerframework.javacutil.BugInCF;
+import org.checkerframework.javacutil.TreeUtils;
+
+/**
+ * The attributed ASTs of the benchmark fixtures, which are the Java files in the {@code fixtures}
+ * resource directory. A benchmark state creates a fixture compilation in its setup method and then
+ * measures work on the ASTs, such as building control flow graphs or querying a type factory.
+ *
+ * <p>If a checker is given, it processes the fixtures as in a normal compilation. Afterward, its
+ * type factory is still usable, so a benchmark can call it directly.
+ */
+public class FixtureCompilation {
+
+  /** The names of the fixture files, in the {@code fixtures} resource directory. */
+  public static final List<String> FIXTURE_FILES =
+      Collections.unmodifiableList(Arrays.asList("Arithmetic.java", "Inventory.java"));
+
+  /** The processing environment of the compilation. */
+  public final ProcessingEnvironment processingEnv;
+
+  /** The compilation units of the fixtures. */
+  public final List<CompilationUnitTree> roots;
+
+  /** Every method declared in a fixture, in the order in which they appear. */
+  public final List<FixtureMethod> methods;
+
+  /** Every field declared in a fixture, in the order in which they appear. */
+  public final List<VariableElement> fields;
+
+  /**
+   * Parses and attributes the fixtures, running {@code checker} on them if it is non-null.
+   *
+   * @param checker the checker to run, or null to only parse and attribute the fixtures
+   * @param checkerOptions command-line options for the checker, such as "-AsubtypeCacheSize=0"
+   */
+  public FixtureCompilation(@Nullable Processor checker, String... checkerOptions) {
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    List<JavaFileObject> sources = new ArrayList<>();
+    for (String file : FIXTURE_FILES) {
+      sources.add(new FixtureFileObject(file, readFixture(file)));
+    }
+    List<String> options = new ArrayList<>();
+    options.add("-classpath");
+    options.add(System.getProperty("java.class.path"));
+    if (checker == null) {
+      options.add("-proc:none");
+    } else {
+      options.addAll(Arrays.asList(checkerOptions));
+    }
+    DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+    JavacTask task = (JavacTask) compiler.getTask(null, null, diagnostics, options, null, sources);
+    if (checker != null) {
+      task.setProcessors(Collections.singletonList(checker));
+    }
+
+    // Annotation processing may replace the trees that JavacTask#parse returns, so obtain the
+    // trees that are actually analyzed.
+    List<CompilationUnitTree> roots = new ArrayList<>();
+    task.addTaskListener(
+        new TaskListener() {
+          @Override
+          public void started(TaskEvent e) {}
+
+          @Override
+          public void finished(TaskEvent e) {
+            if (e.getKind() == TaskEvent.Kind.ANALYZE
+                && roots.stream().noneMatch(root -> root == e.getCompilationUnit())) {
+              roots.add(e.getCompilationUnit());
+            }
+          }
+        });
+    try {
+      task.analyze();
+    } catch (IOException e) {
+      throw new BugInCF("Could not compile the benchmark fixtures", e);
+    }
+    for (Diagnostic<? extends JavaFileObject> d : diagnostics.getDiagnostics()) {
+      if (d.getKind() == Diagnostic.Kind.ERROR) {
+        throw new BugInCF("The benchmark fixtures do not compile: " + d);
+      }
+    }
+
+    this.processingEnv = JavacProcessingEnvironment.instance(((BasicJavacTask) task).getContext());
+    this.roots = Collections.unmodifiableList(roots);
+    List<FixtureMethod> methods = new ArrayList<>();
+    List<VariableElement> fields = new ArrayList<>();
+    for (CompilationUnitTree root : roots) {
+      for (Tree decl : root.getTypeDecls()) {
+        if (decl instanceof ClassTree) {
+          collectMembers(root, (ClassTree) decl, methods, fields);
+        }
+      }
+    }
+    this.methods = Collections.unmodifiableList(methods);
+    this.fields = Collections.unmodifiableList(fields);
+  }
+
+  /**
+   * Adds the methods and fields declared in {@code classTree} and its nested classes to the given
+   * lists.
+   *
+   * @param root the compilation unit that contains {@code classTree}
+   * @param classTree a class
+   * @param methods the list of methods; is side-effected by this method
+   * @param fields the list of fields; is side-effected by this method
+   */
+  private static void collectMembers(
+      CompilationUnitTree root,
+      ClassTree classTree,
+      List<FixtureMethod> methods,
+      List<VariableElement> fields) {
+    for (Tree member : classTree.getMembers()) {
+      switch (member.getKind()) {
+        case METHOD:
+          MethodTree methodTree = (MethodTree) member;
+          if (methodTree.getBody() != null) {
+            methods.add(new FixtureMethod(root, classTree, methodTree));
+          }
+          break;
+        case VARIABLE:
+          fields.add(TreeUtils.elementFromDeclaration((VariableTree) member));
+          break;
+        case CLASS:
+          collectMembers(root, (ClassTree) member, methods, fields);
+          break;
+        default:
+          break;
+      }
+    }
+  }
+
+  /**
+   * Returns the contents of a fixture file.
+   *
+   * @param file the name of a file in the {@code fixtures} resource directory
+   * @return the contents of the file
+   */
+  public static String readFixture(String file) {
+    try (InputStream in = FixtureCompilation.class.getResourceAsStream("fixtures/" + file)) {
+      if (in == null) {
+        throw new BugInCF("Missing benchmark fixture " + file);
+      }
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int n;
+      while ((n = in.read(buffer)) != -1) {
+        out.write(buffer, 0, n);
+      }
+      return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new BugInCF("Could not read benchmark fixture " + file, e);
+    }
+  }
+
+  /** A method declared in a fixture, together with the trees that enclose it. */
+  public static class FixtureMethod {
+
+    /** The compilation unit that contains the method. */
+    public final CompilationUnitTree root;
+
+    /** The class that declares the method. */
+    public final ClassTree classTree;
+
+    /** The method. */
+    public final MethodTree methodTree;
+
+    /**
+     * Creates a FixtureMethod.
+     *
+     * @param root the compilation unit that contains the method
+     * @param classTree the class that declares the method
+     * @param methodTree the method
+     */
+    FixtureMethod(CompilationUnitTree root, ClassTree classTree, MethodTree methodTree) {
+      this.root = root;
+      this.classTree = classTree;
+      this.methodTree = methodTree;
+    }
+
+    /**
+     * Returns the element of the method.
+     *
+     * @return the element of the method
+     */
+    public ExecutableElement getElement() {
+      return TreeUtils.elementFromDeclaration(methodTree);
+    }
+  }
+
+  /** An in-memory source file whose contents are those of a fixture. */
+  private static class FixtureFileObject extends SimpleJavaFileObject {
+
+    /** The contents of the file. */
+    private final String contents;
+
+    /**
+     * Creates a FixtureFileObject.
+     *
+     * @param file the name of the fixture file
+     * @param contents the contents of the file
+     */
+    FixtureFileObject(String file, String contents) {
+      super(URI.create("string:///fixtures/" + file), JavaFileObject.Kind.SOURCE);
+      this.contents = contents;
+    }
+
+    @Override
+    public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+      return contents;
+    }
+  }
+}
@@ -0,0 +1,68 @@
+package org.checkerframework.benchmark;
+
+import com.sun.source.tree.CompilationUnitTree;
+import java.util.ArrayList;
+import java.util.List;
+import javax.lang.model.element.VariableElement;
+import org.checkerframework.checker.nullness.NullnessAnnotatedTypeFactory;
+import org.checkerframework.checker.nullness.NullnessChecker;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.checkerframework.framework.type.AnnotatedTypeMirror;
+
+/**
+ * The fixtures, compiled with the Nullness Checker, and the checker's type factory. The benchmarks
+ * that measure framework code use this type factory, because the Nullness Checker has several
+ * qualifier hierarchies, subcheckers, and a nontrivial dataflow analysis.
+ */
+public class NullnessFixture {
+
+  /** The fixtures. */
+  public final FixtureCompilation fixtures;
+
+  /** The checker that processed the fixtures. */
+  public final NullnessChecker checker;
+
+  /** The type factory of {@link #checker}. */
+  public final NullnessAnnotatedTypeFactory atypeFactory;
+
+  /** The compilation unit that was last passed to {@link #setRoot}. */
+  private @Nullable CompilationUnitTree root = null;
+
+  /**
+   * Compiles the fixtures with the Nullness Checker.
+   *
+   * @param checkerOptions command-line options for the checker
+   */
+  public NullnessFixture(String... checkerOptions) {
+    this.checker = new NullnessChecker();
+    this.fixtures = new FixtureCompilation(checker, checkerOptions);
+    this.atypeFactory = (NullnessAnnotatedTypeFactory) checker.getTypeFactory();
+  }
+
+  /**
+   * Sets the root of the type factory to {@code root}, unless it already is {@code root}. Setting
+   * the root clears the type factory's caches, so a benchmark should set it only when it moves on
+   * to another compilation unit, as the checker does.
+   *
+   * @param root a compilation unit of the fixtures
+   */
+  public void setRoot(CompilationUnitTree root) {
+    if (this.root != root) {
+      atypeFactory.setRoot(root);
+      this.root = root;
+    }
+  }
+
+  /**
+   * Returns the annotated type of every field of the fixtures.
+   *
+   * @return the annotated type of every field of the fixtures
+   */
+  public List<AnnotatedTypeMirror> getFieldTypes() {
+    List<AnnotatedTypeMirror> result = new ArrayList<>();
+    for (VariableElement field : fixtures.fields) {
+      result.add(atypeFactory.getAnnotatedType(field));
+    }
+    return result;
+  }
+}
@@ -0,0 +1,130 @@
+package org.checkerframework.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.VariableElement;
+import org.checkerframework.benchmark.FixtureCompilation.FixtureMethod;
+import org.checkerframework.checker.nullness.NullnessAnalysis;
+import org.checkerframework.checker.nullness.NullnessStore;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.checkerframework.dataflow.cfg.ControlFlowGraph;
+import org.checkerframework.dataflow.cfg.UnderlyingAST.CFGMethod;
+import org.checkerframework.dataflow.expression.FieldAccess;
+import org.checkerframework.dataflow.expression.JavaExpression;
+import org.checkerframework.dataflow.expression.LocalVariable;
+import org.checkerframework.dataflow.expression.ThisReference;
+import org.checkerframework.framework.flow.CFCFGBuilder;
+import org.checkerframework.javacutil.AnnotationBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks of the Nullness Checker's dataflow analysis: the analysis of every method of the
+ * fixtures, and the least upper bound of two stores ({@code CFAbstractStore#leastUpperBound}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NullnessFlowBenchmark {
+
+  /** The fixtures and the Nullness Checker. */
+  private NullnessFixture nullness;
+
+  /** The control flow graph of each method of the fixtures, built for the Nullness Checker. */
+  private List<ControlFlowGraph> cfgs;
+
+  /** A store in which every variable and field of the fixtures is non-null or nullable. */
+  private NullnessStore store1;
+
+  /** A store that differs from {@link #store1} for half of the variables and fields. */
+  private NullnessStore store2;
+
+  /** Compiles the fixtures and builds the control flow graphs and stores. */
+  @Setup
+  public void setup() {
+    nullness = new NullnessFixture();
+    cfgs = new ArrayList<>();
+    for (FixtureMethod m : nullness.fixtures.methods) {
+      nullness.setRoot(m.root);
+      cfgs.add(
+          CFCFGBuilder.build(
+              m.root,
+              new CFGMethod(m.methodTree, m.classTree),
+              nullness.checker,
+              nullness.atypeFactory,
+              nullness.fixtures.processingEnv));
+    }
+
+    List<JavaExpression> expressions = new ArrayList<>();
+    for (FixtureMethod m : nullness.fixtures.methods) {
+      for (VariableElement param : m.getElement().getParameters()) {
+        if (!param.asType().getKind().isPrimitive()) {
+          expressions.add(new LocalVariable(param));
+        }
+      }
+    }
+    for (VariableElement field : nullness.fixtures.fields) {
+      if (!field.asType().getKind().isPrimitive()) {
+        ThisReference receiver = new ThisReference(field.getEnclosingElement().asType());
+        expressions.add(new FieldAccess(receiver, field));
+      }
+    }
+
+    AnnotationMirror nonNull =
+        AnnotationBuilder.fromClass(nullness.atypeFactory.getElementUtils(), NonNull.class);
+    AnnotationMirror nullable =
+        AnnotationBuilder.fromClass(nullness.atypeFactory.getElementUtils(), Nullable.class);
+    NullnessAnalysis analysis =
+        new NullnessAnalysis(nullness.checker, nullness.atypeFactory, Collections.emptyList());
+    store1 = analysis.createEmptyStore(true);
+    store2 = analysis.createEmptyStore(true);
+    for (int i = 0; i < expressions.size(); i++) {
+      JavaExpression expr = expressions.get(i);
+      store1.insertValue(expr, i % 2 == 0 ? nonNull : nullable);
+      store2.insertValue(expr, i % 4 < 2 ? nonNull : nullable);
+    }
+  }
+
+  /**
+   * Runs the Nullness Checker's dataflow analysis on every method of the fixtures.
+   *
+   * @param bh consumes the results
+   */
+  @Benchmark
+  public void analyzeMethods(Blackhole bh) {
+    for (int i = 0; i < cfgs.size(); i++) {
+      nullness.setRoot(nullness.fixtures.methods.get(i).root);
+      NullnessAnalysis analysis =
+          new NullnessAnalysis(nullness.checker, nullness.atypeFactory, Collections.emptyList());
+      analysis.performAnalysis(cfgs.get(i));
+      bh.consume(analysis.getRegularExitStore());
+    }
+  }
+
+  /**
+   * Computes the least upper bound of two stores that contain every variable and field of the
+   * fixtures.
+   *
+   * @return the least upper bound
+   */
+  @Benchmark
+  public NullnessStore storeLeastUpperBound() {
+    return store1.leastUpperBound(store2);
+  }
+}
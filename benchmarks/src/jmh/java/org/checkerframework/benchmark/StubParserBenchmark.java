@@ -0,0 +1,79 @@
+package org.checkerframework.benchmark;
+
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.StubUnit;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.checkerframework.framework.stub.AnnotationFileParser;
+import org.checkerframework.framework.stub.AnnotationFileParser.AnnotationFileAnnotations;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of reading a stub file: parsing it into a JavaParser AST, and processing the AST with
+ * {@link AnnotationFileParser} for the Nullness Checker. The stub file is the {@code
+ * Inventory.astub} fixture, which annotates JDK classes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StubParserBenchmark {
+
+  /** The name of the stub file fixture. */
+  private static final String STUB_FILE = "Inventory.astub";
+
+  /** The fixtures and the Nullness Checker. */
+  private NullnessFixture nullness;
+
+  /** The contents of the stub file. */
+  private byte[] stubContents;
+
+  /** Compiles the fixtures and reads the stub file. */
+  @Setup
+  public void setup() {
+    nullness = new NullnessFixture();
+    nullness.setRoot(nullness.fixtures.roots.get(0));
+    stubContents = FixtureCompilation.readFixture(STUB_FILE).getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Parses the stub file into a JavaParser AST.
+   *
+   * @return the AST
+   */
+  @Benchmark
+  public StubUnit parseStubSyntax() {
+    return StaticJavaParser.parseStubUnit(new ByteArrayInputStream(stubContents));
+  }
+
+  /**
+   * Reads the annotations in the stub file, as the Nullness Checker's type factory does. The AST
+   * is parsed in the first invocation and then taken from the checker's cache of parsed annotation
+   * files, so this measures the work that each checker and subchecker does for a stub file.
+   *
+   * @return the annotations in the stub file
+   */
+  @Benchmark
+  public AnnotationFileAnnotations processStubFile() {
+    AnnotationFileAnnotations annos = new AnnotationFileAnnotations();
+    AnnotationFileParser.parseStubFile(
+        STUB_FILE,
+        new ByteArrayInputStream(stubContents),
+        nullness.atypeFactory,
+        nullness.fixtures.processingEnv,
+        annos);
+    return annos;
+  }
+}
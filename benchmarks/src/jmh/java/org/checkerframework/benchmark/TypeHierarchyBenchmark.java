@@ -0,0 +1,138 @@
+package org.checkerframework.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.util.Types;
+import org.checkerframework.framework.type.AnnotatedTypeMirror;
+import org.checkerframework.framework.type.QualifierHierarchy;
+import org.checkerframework.framework.type.TypeHierarchy;
+import org.checkerframework.framework.util.AnnotatedTypes;
+import org.checkerframework.javacutil.AnnotationUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks of subtype and least upper bound queries on the types of the fields of the fixtures,
+ * under the Nullness Checker. Each benchmark answers the query for every pair of field types whose
+ * underlying Java types are subtypes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TypeHierarchyBenchmark {
+
+  /** The value of the {@code -AsubtypeCacheSize} command-line option; "0" means no memo table. */
+  @Param({"0", "10000"})
+  public String subtypeCacheSize;
+
+  /** The fixtures and the Nullness Checker. */
+  private NullnessFixture nullness;
+
+  /** The subtypes of the pairs of field types. */
+  private List<AnnotatedTypeMirror> subtypes;
+
+  /** The supertypes of the pairs of field types, at the same indices as {@link #subtypes}. */
+  private List<AnnotatedTypeMirror> supertypes;
+
+  /** The primary annotations of all the field types, with duplicates. */
+  private List<AnnotationMirror> annotations;
+
+  /** Compiles the fixtures and pairs up the field types. */
+  @Setup
+  public void setup() {
+    nullness =
+        "0".equals(subtypeCacheSize)
+            ? new NullnessFixture()
+            : new NullnessFixture("-AsubtypeCacheSize=" + subtypeCacheSize);
+    nullness.setRoot(nullness.fixtures.roots.get(0));
+    List<AnnotatedTypeMirror> fieldTypes = nullness.getFieldTypes();
+    Types types = nullness.fixtures.processingEnv.getTypeUtils();
+    subtypes = new ArrayList<>();
+    supertypes = new ArrayList<>();
+    annotations = new ArrayList<>();
+    for (AnnotatedTypeMirror sub : fieldTypes) {
+      annotations.addAll(sub.getAnnotations());
+      for (AnnotatedTypeMirror sup : fieldTypes) {
+        if (types.isSubtype(sub.getUnderlyingType(), sup.getUnderlyingType())) {
+          subtypes.add(sub);
+          supertypes.add(sup);
+        }
+      }
+    }
+  }
+
+  /**
+   * Tests whether each subtype is a subtype of its supertype ({@code
+   * DefaultTypeHierarchy#isSubtype}).
+   *
+   * @param bh consumes the results
+   */
+  @Benchmark
+  public void isSubtype(Blackhole bh) {
+    TypeHierarchy hierarchy = nullness.atypeFactory.getTypeHierarchy();
+    for (int i = 0; i < subtypes.size(); i++) {
+      bh.consume(hierarchy.isSubtype(subtypes.get(i), supertypes.get(i)));
+    }
+  }
+
+  /**
+   * Computes the least upper bound of each pair of types, whose underlying type is that of the
+   * supertype.
+   *
+   * @param bh consumes the results
+   */
+  @Benchmark
+  public void typeLeastUpperBound(Blackhole bh) {
+    for (int i = 0; i < subtypes.size(); i++) {
+      AnnotatedTypeMirror sup = supertypes.get(i);
+      bh.consume(
+          AnnotatedTypes.leastUpperBound(
+              nullness.atypeFactory, subtypes.get(i), sup, sup.getUnderlyingType()));
+    }
+  }
+
+  /**
+   * Computes the least upper bound of the primary annotations of each pair of types.
+   *
+   * @param bh consumes the results
+   */
+  @Benchmark
+  public void qualifierLeastUpperBounds(Blackhole bh) {
+    QualifierHierarchy hierarchy = nullness.atypeFactory.getQualifierHierarchy();
+    for (int i = 0; i < subtypes.size(); i++) {
+      bh.consume(
+          hierarchy.leastUpperBounds(
+              subtypes.get(i).getAnnotations(), supertypes.get(i).getAnnotations()));
+    }
+  }
+
+  /**
+   * Compares every pair of primary annotations of the field types with {@link
+   * AnnotationUtils#areSame(AnnotationMirror, AnnotationMirror)}.
+   *
+   * @param bh consumes the results
+   */
+  @Benchmark
+  public void areSame(Blackhole bh) {
+    for (AnnotationMirror a1 : annotations) {
+      for (AnnotationMirror a2 : annotations) {
+        bh.consume(AnnotationUtils.areSame(a1, a2));
+      }
+    }
+  }
+}
@@ -0,0 +1,138 @@
+package fixtures;
+
+/** Integer code with many branches and loops, for the control-flow and dataflow benchmarks. */
+public class Arithmetic {
+
+  private int total = 0;
+
+  public int gcd(int a, int b) {
+    while (b != 0) {
+      int t = b;
+      b = a % b;
+      a = t;
+    }
+    return a;
+  }
+
+  public int collatzSteps(int start) {
+    int n = start;
+    int steps = 0;
+    while (n > 1) {
+      if (n % 2 == 0) {
+        n = n / 2;
+      } else {
+        n = 3 * n + 1;
+      }
+      steps++;
+    }
+    return steps;
+  }
+
+  public int constants(boolean flag) {
+    int a = 1;
+    int b = 2;
+    int c = a + b;
+    if (flag) {
+      a = c * 2;
+    } else {
+      a = c + 3;
+    }
+    int d = a;
+    for (int i = 0; i < 10; i++) {
+      d = d + b;
+      if (d > 100) {
+        break;
+      }
+    }
+    return a + b + c + d;
+  }
+
+  public int classify(int code) {
+    int result;
+    switch (code) {
+      case 0:
+        result = 10;
+        break;
+      case 1:
+      case 2:
+        result = 20;
+        break;
+      case 3:
+        result = 30;
+        // fall through
+      case 4:
+        result = 40;
+        break;
+      default:
+        result = -1;
+    }
+    return result;
+  }
+
+  public int sumMatrix(int[][] matrix) {
+    int sum = 0;
+    for (int[] row : matrix) {
+      for (int cell : row) {
+        if (cell < 0) {
+          continue;
+        }
+        sum += cell;
+      }
+    }
+    return sum;
+  }
+
+  public int parse(String text) {
+    int value = 0;
+    try {
+      value = Integer.parseInt(text);
+    } catch (NumberFormatException e) {
+      value = -1;
+    } finally {
+      total++;
+    }
+    return value;
+  }
+
+  public int nested(int x, int y) {
+    int r = 0;
+    if (x > 0) {
+      if (y > 0) {
+        r = x + y;
+      } else if (y < 0) {
+        r = x - y;
+      } else {
+        r = x;
+      }
+    } else {
+      r = x > -10 && y < 10 ? x * y : x / (y == 0 ? 1 : y);
+    }
+    do {
+      r = r >> 1;
+    } while (r > 1000);
+    return r;
+  }
+
+  public long power(long base, int exponent) {
+    long result = 1;
+    long b = base;
+    int e = exponent;
+    while (e > 0) {
+      if ((e & 1) == 1) {
+        result *= b;
+      }
+      b *= b;
+      e >>= 1;
+    }
+    return result;
+  }
+
+  public int unusedVariables(int p) {
+    int dead = p * 2;
+    int live = p + 1;
+    dead = live;
+    int alsoDead = dead + 1;
+    live = live * 3;
+    return live;
+  }
+}
@@ -0,0 +1,128 @@
+package fixtures;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Generic and nullable types, for the Nullness Checker and the type hierarchy benchmarks. This code
+ * type-checks without warnings under the Nullness Checker.
+ */
+public class Inventory {
+
+  /** An item in the inventory. */
+  public static class Item {
+    public final String name;
+    public @Nullable String description;
+    public int count;
+
+    public Item(String name, int count) {
+      this.name = name;
+      this.count = count;
+    }
+  }
+
+  private final Map<String, List<@Nullable Item>> itemsByCategory = new HashMap<>();
+  private final List<Item> allItems = new ArrayList<>();
+  private final Collection<? extends @Nullable Object> everything = new ArrayList<>();
+  private final List<? super Item> sink = new ArrayList<Object>();
+  private @Nullable Item lastAdded;
+  private Item[] itemArray = new Item[0];
+  private @Nullable Item[][] itemGrid = new Item[0][0];
+  private String label = "inventory";
+  private @Nullable String note;
+  private Object anything = "";
+  private @Nullable Object maybeAnything;
+  private CharSequence sequence = "";
+  private Comparable<String> comparable = "";
+  private Map<String, List<Item>> exactMap = new HashMap<>();
+  private HashMap<String, List<@Nullable Item>> hashMap = new HashMap<>();
+  private Iterable<? extends Object> iterable = new ArrayList<Item>();
+  private Integer boxed = 0;
+  private @Nullable Number number;
+
+  public void add(String category, Item item) {
+    List<@Nullable Item> items = itemsByCategory.get(category);
+    if (items == null) {
+      items = new ArrayList<>();
+      itemsByCategory.put(category, items);
+    }
+    items.add(item);
+    allItems.add(item);
+    lastAdded = item;
+  }
+
+  public int countCategory(String category) {
+    List<@Nullable Item> items = itemsByCategory.get(category);
+    if (items == null) {
+      return 0;
+    }
+    int count = 0;
+    for (Item item : items) {
+      if (item != null) {
+        count += item.count;
+      }
+    }
+    return count;
+  }
+
+  public String describeLast() {
+    Item last = lastAdded;
+    if (last == null) {
+      return "nothing";
+    }
+    String description = last.description;
+    if (description != null && !description.isEmpty()) {
+      return last.name + ": " + description;
+    }
+    return last.name;
+  }
+
+  public @Nullable Item find(String name) {
+    for (Item item : allItems) {
+      if (item.name.equals(name)) {
+        return item;
+      }
+    }
+    return null;
+  }
+
+  public int totalLength() {
+    int length = label.length();
+    String n = note;
+    if (n != null) {
+      length += n.length();
+    }
+    @Nullable Item[][] grid = itemGrid;
+    for (@Nullable Item[] row : grid) {
+      for (Item cell : row) {
+        length += cell == null ? 0 : cell.name.length();
+      }
+    }
+    return length;
+  }
+
+  public String summarize(@Nullable String prefix, boolean verbose) {
+    StringBuilder sb = new StringBuilder();
+    if (prefix != null) {
+      sb.append(prefix);
+    }
+    Item found = find(label);
+    if (found == null) {
+      found = lastAdded;
+    }
+    if (found != null && verbose) {
+      sb.append(found.name);
+      String d = found.description;
+      sb.append(d == null ? "" : d);
+    }
+    Object o = maybeAnything;
+    if (o instanceof String) {
+      sb.append((String) o);
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,470 @@
+package org.checkerframework.benchmark;
+
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.TaskEvent;
+import com.sun.source.util.TaskListener;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.annotation.processing.Processor;
+import javax.tools.DiagnosticListener;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.checkerframework.javacutil.BugInCF;
+import org.checkerframework.javacutil.UserError;
+
+/**
+ * Runs checkers over a corpus of Java source files and reports the cost of each run: wall-clock
+ * time, CPU time, and allocated bytes per compilation phase, and peak heap use. Optionally compares
+ * the costs with a baseline and fails if any cost exceeds its baseline by more than a threshold.
+ *
+ * <p>Unlike the JMH benchmarks, which measure individual parts of the framework, this suite
+ * measures whole compilations, so it detects regressions in any part of a checker.
+ *
+ * <p>Each checker runs in this JVM, in a separate {@link JavacTask} that stops before generating
+ * class files. The phases are those of javac ({@code parse}, {@code enter}, {@code
+ * annotationProcessing}, {@code analyze}), measured by a {@link TaskListener}, and {@code checker},
+ * which is all the remaining time of the compilation. javac runs a checker after it analyzes each
+ * class, outside of any javac phase, so {@code checker} is the cost of type-checking; the checker's
+ * initialization is part of {@code annotationProcessing}. Each checker runs several times; the
+ * reported cost is the median.
+ *
+ * <p>Results are written as a properties file whose keys have the form {@code
+ * checker.phase.metric} or {@code checker.metric}, for example {@code Nullness.checker.cpuMillis}
+ * or {@code Nullness.peakHeapBytes}.
+ *
+ * <p>Usage:
+ *
+ * <pre>
+ * java CheckerPerformanceSuite --corpus DIR [--corpus DIR]... [--output FILE] [--baseline FILE]
+ *     [--threshold PERCENT] [--checkers NAME,...] [--iterations N] [--warmup N]
+ *     [--metrics METRIC,...]
+ * </pre>
+ *
+ * The default checkers are those in {@link #CHECKERS}; the default metrics for comparison are
+ * those in {@link #METRICS}.
+ */
+public class CheckerPerformanceSuite {
+
+  /** The checkers that are run by default, by short name. */
+  public static final Map<String, String> CHECKERS;
+
+  static {
+    Map<String, String> checkers = new LinkedHashMap<>();
+    checkers.put("Nullness", "org.checkerframework.checker.nullness.NullnessChecker");
+    checkers.put("Index", "org.checkerframework.checker.index.IndexChecker");
+    checkers.put("Lock", "org.checkerframework.checker.lock.LockChecker");
+    checkers.put("Formatter", "org.checkerframework.checker.formatter.FormatterChecker");
+    checkers.put("Regex", "org.checkerframework.checker.regex.RegexChecker");
+    checkers.put("Value", "org.checkerframework.common.value.ValueChecker");
+    checkers.put(
+        "CalledMethods", "org.checkerframework.checker.calledmethods.CalledMethodsChecker");
+    CHECKERS = Collections.unmodifiableMap(checkers);
+  }
+
+  /** The metrics that are compared with the baseline by default. */
+  public static final List<String> METRICS =
+      Collections.unmodifiableList(
+          Arrays.asList("wallMillis", "cpuMillis", "allocatedBytes", "peakHeapBytes"));
+
+  /** The phases of a compilation, in the order in which they are reported. */
+  enum Phase {
+    /** Parsing of the source files. */
+    parse,
+    /** Entering symbols. */
+    enter,
+    /** Annotation processing, including the initialization of the checker but not type-checking. */
+    annotationProcessing,
+    /** Attribution and flow analysis by javac. */
+    analyze,
+    /** Everything else, which is mostly the work of the checker. */
+    checker;
+
+    /**
+     * Returns the phase of the given javac task event, or null if it does not start a phase.
+     *
+     * @param kind the kind of a task event
+     * @return the phase of the event, or null
+     */
+    static @Nullable Phase of(TaskEvent.Kind kind) {
+      switch (kind) {
+        case PARSE:
+          return parse;
+        case ENTER:
+          return enter;
+        case ANNOTATION_PROCESSING:
+          return annotationProcessing;
+        case ANALYZE:
+          return analyze;
+        default:
+          return null;
+      }
+    }
+  }
+
+  /** The directories that contain the corpus. */
+  private final List<File> corpusDirs = new ArrayList<>();
+
+  /** The file to which to write the results, or null. */
+  private @Nullable File output = null;
+
+  /** The file that contains the baseline results, or null. */
+  private @Nullable File baseline = null;
+
+  /** The percentage by which a cost may exceed its baseline. */
+  private double threshold = 10;
+
+  /** The short names of the checkers to run. */
+  private List<String> checkers = new ArrayList<>(CHECKERS.keySet());
+
+  /** The metrics to compare with the baseline. */
+  private List<String> metrics = METRICS;
+
+  /** The number of measured runs of each checker. */
+  private int iterations = 3;
+
+  /** The number of unmeasured runs of each checker before the measured runs. */
+  private int warmup = 1;
+
+  /** Used to measure the CPU time and allocated bytes of the current thread. */
+  private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+
+  /**
+   * Runs the suite.
+   *
+   * @param args the command-line arguments; see the class documentation
+   */
+  public static void main(String[] args) {
+    CheckerPerformanceSuite suite = new CheckerPerformanceSuite();
+    suite.parseArgs(args);
+    List<String> regressions = suite.run();
+    if (!regressions.isEmpty()) {
+      System.out.printf(
+          "%d costs exceed the baseline by more than %s%%:%n", regressions.size(), suite.threshold);
+      regressions.forEach(System.out::println);
+      System.exit(1);
+    }
+  }
+
+  /**
+   * Sets the fields of this from the command-line arguments.
+   *
+   * @param args the command-line arguments
+   */
+  private void parseArgs(String[] args) {
+    for (int i = 0; i < args.length; i++) {
+      String arg = args[i];
+      if (i + 1 == args.length) {
+        throw new UserError("Missing value for " + arg);
+      }
+      String value = args[++i];
+      switch (arg) {
+        case "--corpus":
+          corpusDirs.add(new File(value));
+          break;
+        case "--output":
+          output = new File(value);
+          break;
+        case "--baseline":
+          baseline = new File(value);
+          break;
+        case "--threshold":
+          threshold = Double.parseDouble(value);
+          break;
+        case "--checkers":
+          checkers = Arrays.asList(value.split(","));
+          for (String checker : checkers) {
+            if (!CHECKERS.containsKey(checker)) {
+              throw new UserError("Unknown checker " + checker + "; known: " + CHECKERS.keySet());
+            }
+          }
+          break;
+        case "--iterations":
+          iterations = Integer.parseInt(value);
+          break;
+        case "--warmup":
+          warmup = Integer.parseInt(value);
+          break;
+        case "--metrics":
+          metrics = Arrays.asList(value.split(","));
+          break;
+        default:
+          throw new UserError("Unknown argument " + arg);
+      }
+    }
+    if (corpusDirs.isEmpty()) {
+      throw new UserError("No --corpus directory given");
+    }
+    if (iterations < 1) {
+      throw new UserError("--iterations must be positive");
+    }
+  }
+
+  /**
+   * Runs every checker over the corpus, writes the results, and compares them with the baseline.
+   *
+   * @return a description of each cost that exceeds its baseline by more than the threshold
+   */
+  private List<String> run() {
+    List<File> sources = new ArrayList<>();
+    for (File dir : corpusDirs) {
+      try (Stream<Path> paths = Files.walk(dir.toPath())) {
+        paths
+            .map(Path::toFile)
+            .filter(f -> f.getName().endsWith(".java") && !f.getName().equals("module-info.java"))
+            .sorted()
+            .forEach(sources::add);
+      } catch (IOException e) {
+        throw new UserError("Could not read corpus directory " + dir + ": " + e.getMessage());
+      }
+    }
+    System.out.printf("Corpus: %d source files%n", sources.size());
+
+    Map<String, Long> results = new TreeMap<>();
+    for (String checker : checkers) {
+      for (int i = 0; i < warmup; i++) {
+        runChecker(checker, sources);
+      }
+      List<Map<String, Long>> runs = new ArrayList<>();
+      for (int i = 0; i < iterations; i++) {
+        runs.add(runChecker(checker, sources));
+      }
+      for (String key : runs.get(0).keySet()) {
+        long[] values = runs.stream().mapToLong(run -> run.get(key)).sorted().toArray();
+        results.put(checker + "." + key, values[values.length / 2]);
+      }
+      for (Phase phase : Phase.values()) {
+        String prefix = checker + "." + phase + ".";
+        System.out.printf(
+            "%-14s %-21s %8d ms wall %8d ms cpu %,16d bytes allocated%n",
+            checker,
+            phase,
+            results.get(prefix + "wallMillis"),
+            results.get(prefix + "cpuMillis"),
+            results.get(prefix + "allocatedBytes"));
+      }
+      System.out.printf(
+          "%-14s %,d bytes peak heap, %d diagnostics%n",
+          checker, results.get(checker + ".peakHeapBytes"), results.get(checker + ".diagnostics"));
+    }
+
+    if (output != null) {
+      Properties props = new Properties();
+      results.forEach((key, value) -> props.setProperty(key, value.toString()));
+      output.getAbsoluteFile().getParentFile().mkdirs();
+      try (OutputStream out = new FileOutputStream(output)) {
+        props.store(out, "Checker performance; see CheckerPerformanceSuite");
+      } catch (IOException e) {
+        throw new UserError("Could not write " + output + ": " + e.getMessage());
+      }
+    }
+    return baseline == null ? Collections.emptyList() : compare(results, baseline);
+  }
+
+  /**
+   * Runs a checker over the given source files, once.
+   *
+   * @param checker the short name of the checker
+   * @param sources the source files
+   * @return the costs of the run, keyed by "phase.metric" or "metric"
+   */
+  private Map<String, Long> runChecker(String checker, List<File> sources) {
+    Processor processor;
+    try {
+      processor = (Processor) Class.forName(CHECKERS.get(checker)).getConstructor().newInstance();
+    } catch (ReflectiveOperationException e) {
+      throw new BugInCF("Could not instantiate " + CHECKERS.get(checker), e);
+    }
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null);
+    Iterable<? extends JavaFileObject> units = fileManager.getJavaFileObjectsFromFiles(sources);
+    // Not -proc:only, which stops javac before it runs the checker.
+    List<String> options =
+        Arrays.asList(
+            "-Awarns", "-Xmaxwarns", "10000", "-classpath", System.getProperty("java.class.path"));
+    long[] diagnostics = {0};
+    DiagnosticListener<JavaFileObject> counter = d -> diagnostics[0]++;
+    JavacTask task = (JavacTask) compiler.getTask(null, fileManager, counter, options, null, units);
+    task.setProcessors(Collections.singletonList(processor));
+    PhaseListener listener = new PhaseListener();
+    task.addTaskListener(listener);
+
+    System.gc();
+    List<MemoryPoolMXBean> heapPools =
+        ManagementFactory.getMemoryPoolMXBeans().stream()
+            .filter(pool -> pool.getType() == MemoryType.HEAP)
+            .collect(Collectors.toList());
+    heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+    long[] start = sample();
+    try {
+      // Unlike call(), analyze() does not generate class files.
+      task.analyze();
+    } catch (IOException e) {
+      throw new UserError("Could not read the corpus: " + e.getMessage());
+    }
+    long[] end = sample();
+    long peakHeap = heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+    try {
+      fileManager.close();
+    } catch (IOException e) {
+      throw new BugInCF("Could not close the file manager", e);
+    }
+
+    // The checker phase is everything that is not in another phase.
+    long[] checkerCost = new long[3];
+    for (int m = 0; m < 3; m++) {
+      checkerCost[m] = end[m] - start[m];
+      for (long[] cost : listener.costs.values()) {
+        checkerCost[m] -= cost[m];
+      }
+    }
+    listener.costs.put(Phase.checker, checkerCost);
+
+    Map<String, Long> result = new LinkedHashMap<>();
+    for (Phase phase : Phase.values()) {
+      long[] cost = listener.costs.getOrDefault(phase, new long[3]);
+      result.put(phase + ".wallMillis", cost[0] / 1_000_000);
+      result.put(phase + ".cpuMillis", cost[1] / 1_000_000);
+      result.put(phase + ".allocatedBytes", cost[2]);
+    }
+    result.put("peakHeapBytes", peakHeap);
+    result.put("diagnostics", diagnostics[0]);
+    return result;
+  }
+
+  /**
+   * Returns the current wall-clock time, the CPU time of the current thread, and the number of
+   * bytes allocated by the current thread. A cost that the JVM cannot measure is always 0.
+   *
+   * @return the wall-clock time in nanoseconds, the CPU time in nanoseconds, and the allocated
+   *     bytes
+   */
+  private long[] sample() {
+    long cpu =
+        threadBean.isCurrentThreadCpuTimeSupported() ? threadBean.getCurrentThreadCpuTime() : 0;
+    long allocated = 0;
+    if (threadBean instanceof com.sun.management.ThreadMXBean) {
+      com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) threadBean;
+      if (sunBean.isThreadAllocatedMemorySupported()) {
+        allocated = sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+      }
+    }
+    return new long[] {System.nanoTime(), cpu, allocated};
+  }
+
+  /**
+   * Compares results with a baseline.
+   *
+   * @param results the results of this run
+   * @param baselineFile a results file written by an earlier run
+   * @return a description of each cost that exceeds its baseline by more than the threshold
+   */
+  private List<String> compare(Map<String, Long> results, File baselineFile) {
+    Properties base = new Properties();
+    try (InputStream in = new FileInputStream(baselineFile)) {
+      base.load(in);
+    } catch (IOException e) {
+      throw new UserError("Could not read baseline " + baselineFile + ": " + e.getMessage());
+    }
+    List<String> regressions = new ArrayList<>();
+    for (Map.Entry<String, Long> entry : results.entrySet()) {
+      String key = entry.getKey();
+      String metric = key.substring(key.lastIndexOf('.') + 1);
+      String baseValue = base.getProperty(key);
+      if (!metrics.contains(metric) || baseValue == null) {
+        continue;
+      }
+      long before = Long.parseLong(baseValue);
+      long after = entry.getValue();
+      if (after > before * (1 + threshold / 100)) {
+        regressions.add(
+            String.format(
+                Locale.ROOT,
+                "%s: %d -> %d (%+.1f%%)",
+                key,
+                before,
+                after,
+                before == 0 ? 100.0 : (after - before) * 100.0 / before));
+      }
+    }
+    return regressions;
+  }
+
+  /**
+   * Accumulates the cost of each phase of a compilation. When events nest, each phase is charged
+   * only for the time outside of its nested events; for example, javac reports that annotation
+   * processing starts before parsing and finishes after entering, but parsing and entering are
+   * charged to their own phases.
+   */
+  private class PhaseListener implements TaskListener {
+
+    /** The wall-clock time, CPU time, and allocated bytes of each phase so far. */
+    final Map<Phase, long[]> costs = new EnumMap<>(Phase.class);
+
+    /** The phases of the events that have started but not finished, innermost first. */
+    private final Deque<Phase> started = new ArrayDeque<>();
+
+    /** The sample taken when the innermost started event started or was resumed. */
+    private long[] lastSample = new long[3];
+
+    @Override
+    public void started(TaskEvent e) {
+      Phase phase = Phase.of(e.getKind());
+      if (phase == null) {
+        return;
+      }
+      charge(started.peek());
+      started.push(phase);
+    }
+
+    @Override
+    public void finished(TaskEvent e) {
+      if (Phase.of(e.getKind()) == null || started.isEmpty()) {
+        return;
+      }
+      charge(started.pop());
+    }
+
+    /**
+     * Charges the costs since the last sample to the given phase, and takes a new sample.
+     *
+     * @param phase the phase to charge, or null to charge nothing
+     */
+    private void charge(@Nullable Phase phase) {
+      long[] now = sample();
+      if (phase != null) {
+        long[] cost = costs.computeIfAbsent(phase, p -> new long[3]);
+        for (int m = 0; m < 3; m++) {
+          cost[m] += now[m] - lastSample[m];
+        }
+      }
+      lastSample = now;
+    }
+  }
+}
@@ -112,14 +112,14 @@ public class GuiEffectTypeFactory extends BaseAnnotatedTypeFactory {
   public boolean isPolymorphicType(TypeElement cls) {
     assert (cls != null);
     return getDeclAnnotation(cls, PolyUIType.class) != null
-        || fromElement(cls).hasAnnotation(PolyUI.class);
+        || fromElementUnmodifiable(cls).hasAnnotation(PolyUI.class);
   }
 
   public boolean isUIType(TypeElement cls) {
     if (debugSpew) {
       System.err.println(" isUIType(" + cls + ")");
     }
-    boolean targetClassUIP = fromElement(cls).hasAnnotation(UI.class);
+    boolean targetClassUIP = fromElementUnmodifiable(cls).hasAnnotation(UI.class);
     AnnotationMirror targetClassUITypeP = getDeclAnnotation(cls, UIType.class);
     AnnotationMirror targetClassSafeTypeP = getDeclAnnotation(cls, SafeType.class);
 
@@ -148,7 +148,7 @@ public class GuiEffectTypeFactory extends BaseAnnotatedTypeFactory {
     // an @UIType polymorphic explicitly
     // AnnotationMirror targetClassPolyP = getDeclAnnotation(cls, PolyUI.class);
     // AnnotationMirror targetClassPolyTypeP = getDeclAnnotation(cls, PolyUIType.class);
-    boolean targetClassSafeP = fromElement(cls).hasAnnotation(AlwaysSafe.class);
+    boolean targetClassSafeP = fromElementUnmodifiable(cls).hasAnnotation(AlwaysSafe.class);
     if (targetClassSafeP) {
       return false; // explicitly annotated otherwise
     }
@@ -494,7 +494,7 @@ public class GuiEffectTypeFactory extends BaseAnnotatedTypeFactory {
           // @UI on an anon class decl extending Runnable
           boolean isAnonInstantiation =
               isAnonymousType(declaringType)
-                  && (fromElement(declaringType).hasAnnotation(UI.class)
+                  && (fromElementUnmodifiable(declaringType).hasAnnotation(UI.class)
                       || uiAnonClasses.contains(declaringType));
           if (!isAnonInstantiation && !overriddenType.hasAnnotation(UI.class)) {
             checker.reportError(
@@ -643,7 +643,9 @@ public class GuiEffectTypeFactory extends BaseAnnotatedTypeFactory {
         receiverType.addAnnotation(
             isPolymorphicType(cls)
                 ? PolyUI.class
-                : fromElement(cls).hasAnnotation(UI.class) ? UI.class : AlwaysSafe.class);
+                : fromElementUnmodifiable(cls).hasAnnotation(UI.class)
+                    ? UI.class
+                    : AlwaysSafe.class);
       }
       return super.visitMethod(node, type);
     }
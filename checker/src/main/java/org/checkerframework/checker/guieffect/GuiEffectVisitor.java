@@ -297,8 +297,10 @@ public class GuiEffectVisitor extends BaseTypeVisitor<GuiEffectTypeFactory> {
           // Skip if already inferred @UI
           && !effStack.peek().isUI()
           // Ignore if explicitly annotated
-          && !atypeFactory.fromElement(callerReceiverElt).hasAnnotation(AlwaysSafe.class)
-          && !atypeFactory.fromElement(callerReceiverElt).hasAnnotation(UI.class)) {
+          && !atypeFactory
+              .fromElementUnmodifiable(callerReceiverElt)
+              .hasAnnotation(AlwaysSafe.class)
+          && !atypeFactory.fromElementUnmodifiable(callerReceiverElt).hasAnnotation(UI.class)) {
         boolean overridesPolymorphic = false;
         Map<AnnotatedTypeMirror.AnnotatedDeclaredType, ExecutableElement> overriddenMethods =
             AnnotatedTypes.overriddenMethods(elements, atypeFactory, callerElt);
@@ -0,0 +1,1045 @@
+package org.checkerframework.checker.wpi;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.checkerframework.javacutil.UserError;
+
+/**
+ * Runs whole-program inference on many projects in parallel, and summarizes the results. This is a
+ * replacement for {@code wpi-many.sh} and {@code wpi-summary.sh} for experiments on a large corpus.
+ *
+ * <p>The input is a list of local project directories; nothing is downloaded. Each project is
+ * built and inferred as by {@code wpi.sh}: the runner finds the project's Gradle, Maven, or Ant
+ * build file, cleans the project, and runs do-like-javac's {@code wpi} tool on the build command.
+ * As in {@code wpi.sh}, the project is built with the JDK in {@code JAVA11_HOME}, or with the JDK
+ * in {@code JAVA8_HOME} if that fails; if neither is set, {@code JAVA_HOME} is used. Gradle is run
+ * without its daemon, so that no process outlives the project's run.
+ *
+ * <p>Projects run in a bounded pool of workers. Each run is limited in time, by the {@code timeout}
+ * command, which kills the whole process group of the run; and optionally in memory, by a maximum
+ * heap size that is passed to every JVM of the run through {@code JAVA_TOOL_OPTIONS}.
+ *
+ * <p>The results directory contains, for each project NAME (the name of the project's directory,
+ * made unique by a suffix if necessary):
+ *
+ * <ul>
+ *   <li>{@code NAME.log}, the output of the run;
+ *   <li>{@code NAME-typecheck.out}, the output of the last run of the checker, if the run
+ *       succeeded; and
+ *   <li>{@code NAME.properties}, the result of the run, which is written when the run finishes.
+ * </ul>
+ *
+ * A project that has a result is not run again, so an interrupted experiment resumes where it
+ * stopped; {@code --retry-failed} also runs again the projects whose run did not succeed. When all
+ * projects are done, the results of all projects are written to {@code summary.json}: for each
+ * project its status, time, number of inferred annotations, and number of warnings and errors in
+ * the last run of the checker.
+ *
+ * <p>Usage:
+ *
+ * <pre>
+ * java -cp checker.jar org.checkerframework.checker.wpi.WholeProgramInferenceRunner
+ *     --results DIR (--projects FILE | --project DIR)... [--workers N] [--timeout SECONDS]
+ *     [--max-heap SIZE] [--dljc FILE] [--gradle-cache DIR] [--build-args ARGS] [--retry-failed]
+ *     -- DLJC-ARGS
+ * </pre>
+ *
+ * A {@code --projects} file lists one project directory per line; blank lines and lines that
+ * start with {@code #} are ignored, and relative directories are resolved against the file's
+ * directory. DLJC-ARGS are passed to do-like-javac, as for {@code wpi.sh}; for example, {@code
+ * --checker nullness}. The {@code CHECKERFRAMEWORK} environment variable must be set, as for {@code
+ * wpi.sh}. By default, do-like-javac is the copy that {@code wpi.sh} clones into {@code
+ * checker/bin/.do-like-javac}.
+ */
+public class WholeProgramInferenceRunner {
+
+  /** The exit status of the {@code timeout} command when the command times out. */
+  private static final int TIMEOUT_EXIT_STATUS = 124;
+
+  /**
+   * How long the {@code timeout} command waits after asking a run to stop before killing it, and
+   * how long this waits for the {@code timeout} command after that, in seconds.
+   */
+  private static final int KILL_GRACE_SECONDS = 30;
+
+  /** The outcome of the run of a project. */
+  public enum Status {
+    /** Inference ran to completion. The checker may have reported warnings or errors. */
+    SUCCESS,
+    /** The project has no Gradle, Maven, or Ant build file. */
+    NO_BUILD_FILE,
+    /** do-like-javac could not build the project with any of the JDKs. */
+    BUILD_FAILED,
+    /** The run did not finish within the timeout. */
+    TIMEOUT,
+    /** The runner could not run the project, for example because a process could not start. */
+    ERROR
+  }
+
+  /** The environment variables of the runner, such as {@code CHECKERFRAMEWORK}. */
+  private final Map<String, String> env;
+
+  /** The directory into which results are written. */
+  private @Nullable File resultsDir = null;
+
+  /** The project directories, in the order given. */
+  private final List<File> projectDirs = new ArrayList<>();
+
+  /** The number of projects that run at the same time. */
+  private int workers = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+  /** The timeout for the run of each project, in seconds, or 0 for no timeout. */
+  private long timeoutSeconds = 0;
+
+  /** The maximum heap size of each JVM of a run, such as {@code 4g}, or null for no maximum. */
+  private @Nullable String maxHeap = null;
+
+  /** The do-like-javac executable. */
+  private @Nullable File dljc = null;
+
+  /** The Gradle user home directory, relative to each project; the same as for {@code wpi.sh}. */
+  private String gradleCache = ".gradle";
+
+  /** Extra arguments to the build command. */
+  private List<String> buildArgs = Collections.emptyList();
+
+  /** If true, run again the projects whose previous run did not succeed. */
+  private boolean retryFailed = false;
+
+  /** The arguments to pass to do-like-javac. */
+  private List<String> dljcArgs = Collections.emptyList();
+
+  /**
+   * Creates a runner.
+   *
+   * @param env the environment variables of the runner, such as {@code CHECKERFRAMEWORK}
+   */
+  WholeProgramInferenceRunner(Map<String, String> env) {
+    this.env = env;
+  }
+
+  /**
+   * Runs whole-program inference on the projects given on the command line.
+   *
+   * @param args the command-line arguments; see the class documentation
+   */
+  public static void main(String[] args) {
+    WholeProgramInferenceRunner runner = new WholeProgramInferenceRunner(System.getenv());
+    runner.parseArgs(args);
+    List<ProjectResult> results = runner.run();
+    Map<Status, Integer> counts = new TreeMap<>();
+    for (ProjectResult result : results) {
+      counts.merge(result.status, 1, Integer::sum);
+    }
+    System.out.printf("%d projects: %s%n", results.size(), counts);
+    System.out.printf("Results are in %s%n", new File(runner.resultsDir, "summary.json"));
+  }
+
+  /**
+   * Sets the fields of this from the command-line arguments.
+   *
+   * @param args the command-line arguments
+   */
+  void parseArgs(String[] args) {
+    int i = 0;
+    for (; i < args.length && !args[i].equals("--"); i++) {
+      String arg = args[i];
+      if (arg.equals("--retry-failed")) {
+        retryFailed = true;
+        continue;
+      }
+      if (i + 1 == args.length) {
+        throw new UserError("Missing value for " + arg);
+      }
+      String value = args[++i];
+      switch (arg) {
+        case "--results":
+          resultsDir = new File(value);
+          break;
+        case "--projects":
+          projectDirs.addAll(readProjectList(new File(value)));
+          break;
+        case "--project":
+          projectDirs.add(new File(value));
+          break;
+        case "--workers":
+          workers = Integer.parseInt(value);
+          break;
+        case "--timeout":
+          timeoutSeconds = Long.parseLong(value);
+          break;
+        case "--max-heap":
+          maxHeap = value;
+          break;
+        case "--dljc":
+          dljc = new File(value);
+          break;
+        case "--gradle-cache":
+          gradleCache = value;
+          break;
+        case "--build-args":
+          buildArgs = Arrays.asList(value.trim().split("\\s+"));
+          break;
+        default:
+          throw new UserError("Unknown argument " + arg);
+      }
+    }
+    if (i < args.length) {
+      dljcArgs = Arrays.asList(args).subList(i + 1, args.length);
+    }
+
+    if (resultsDir == null) {
+      throw new UserError("No --results directory given");
+    }
+    if (projectDirs.isEmpty()) {
+      throw new UserError("No --projects file or --project directory given");
+    }
+    if (workers < 1) {
+      throw new UserError("--workers must be positive");
+    }
+    if (timeoutSeconds < 0) {
+      throw new UserError("--timeout must not be negative");
+    }
+    if (env.get("CHECKERFRAMEWORK") == null) {
+      throw new UserError(
+          "CHECKERFRAMEWORK is not set; it must be set to a locally-built Checker Framework");
+    }
+    if (dljc == null) {
+      dljc =
+          Paths.get(env.get("CHECKERFRAMEWORK"), "checker", "bin", ".do-like-javac", "dljc")
+              .toFile();
+    }
+    if (!dljc.canExecute()) {
+      throw new UserError(
+          "%s is not executable. Run wpi.sh once to clone do-like-javac, or pass --dljc.", dljc);
+    }
+    if (getJdks().isEmpty()) {
+      throw new UserError(
+          "No JDK found. At least one of JAVA_HOME, JAVA8_HOME, or JAVA11_HOME must be set.");
+    }
+  }
+
+  /**
+   * Reads a list of project directories.
+   *
+   * @param listFile a file that lists one project directory per line
+   * @return the project directories in {@code listFile}
+   */
+  private static List<File> readProjectList(File listFile) {
+    List<String> lines;
+    try {
+      lines = Files.readAllLines(listFile.toPath(), StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new UserError("Could not read " + listFile + ": " + e.getMessage());
+    }
+    File base = listFile.getAbsoluteFile().getParentFile();
+    List<File> result = new ArrayList<>();
+    for (String line : lines) {
+      line = line.trim();
+      if (line.isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+      File dir = new File(line);
+      result.add(dir.isAbsolute() ? dir : new File(base, line));
+    }
+    return result;
+  }
+
+  /**
+   * Returns the JDKs with which to try to build a project, in order, as in {@code wpi.sh}.
+   *
+   * @return the home directories of the JDKs with which to build a project
+   */
+  private List<File> getJdks() {
+    List<File> result = new ArrayList<>();
+    for (String variable : new String[] {"JAVA11_HOME", "JAVA8_HOME"}) {
+      String home = env.get(variable);
+      if (home != null && !home.isEmpty()) {
+        result.add(new File(home));
+      }
+    }
+    String javaHome = env.get("JAVA_HOME");
+    if (result.isEmpty() && javaHome != null && !javaHome.isEmpty()) {
+      result.add(new File(javaHome));
+    }
+    return result;
+  }
+
+  /**
+   * Runs every project that has no result yet, then writes the summary of all projects.
+   *
+   * @return the results of all projects, in the order given
+   */
+  List<ProjectResult> run() {
+    File results = resultsDir;
+    if (!results.isDirectory() && !results.mkdirs()) {
+      throw new UserError("Could not create " + results);
+    }
+
+    // Each project's name is the name of its directory, made unique.
+    Map<String, Integer> nameCounts = new HashMap<>();
+    List<String> names = new ArrayList<>();
+    for (File dir : projectDirs) {
+      String name = dir.getAbsoluteFile().toPath().normalize().getFileName().toString();
+      int count = nameCounts.merge(name, 1, Integer::sum);
+      names.add(count == 1 ? name : name + "-" + count);
+    }
+
+    ExecutorService pool = Executors.newFixedThreadPool(workers);
+    List<Future<ProjectResult>> futures = new ArrayList<>();
+    for (int i = 0; i < projectDirs.size(); i++) {
+      File dir = projectDirs.get(i);
+      String name = names.get(i);
+      ProjectResult previous = ProjectResult.read(name, results);
+      if (previous != null && (previous.status == Status.SUCCESS || !retryFailed)) {
+        futures.add(CompletableFuture.completedFuture(previous));
+      } else {
+        futures.add(pool.submit(() -> runProject(name, dir)));
+      }
+    }
+    pool.shutdown();
+
+    List<ProjectResult> result = new ArrayList<>();
+    for (Future<ProjectResult> future : futures) {
+      try {
+        result.add(future.get());
+      } catch (InterruptedException e) {
+        pool.shutdownNow();
+        Thread.currentThread().interrupt();
+        throw new UserError("Interrupted");
+      } catch (ExecutionException e) {
+        // runProject catches all exceptions, so this does not happen.
+        throw new UserError("Failed to run a project: " + e.getCause());
+      }
+    }
+    writeSummary(result, new File(results, "summary.json"));
+    return result;
+  }
+
+  /**
+   * Runs whole-program inference on a project, and writes its result.
+   *
+   * @param name the name of the project
+   * @param dir the project directory
+   * @return the result of the project
+   */
+  private ProjectResult runProject(String name, File dir) {
+    File log = new File(resultsDir, name + ".log");
+    long start = System.nanoTime();
+    ProjectResult result = new ProjectResult(name, dir.getAbsolutePath());
+    try {
+      // Start a new log, rather than appending to that of an earlier run.
+      Files.deleteIfExists(log.toPath());
+      appendToLog(log, "Running whole-program inference on " + dir);
+      runInference(dir, log, result);
+    } catch (IOException | RuntimeException e) {
+      result.status = Status.ERROR;
+      StringWriter trace = new StringWriter();
+      e.printStackTrace(new PrintWriter(trace));
+      appendToLog(log, trace.toString());
+    }
+    result.millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    if (result.status == Status.SUCCESS) {
+      countResults(dir, name, result);
+    }
+    result.write(resultsDir);
+    System.out.printf(
+        "%s: %s in %d s%n", name, result.status, TimeUnit.MILLISECONDS.toSeconds(result.millis));
+    return result;
+  }
+
+  /**
+   * Builds a project with do-like-javac's {@code wpi} tool, trying each JDK in turn until one
+   * succeeds. Sets the status, exit status, and JDK of {@code result}.
+   *
+   * @param dir the project directory
+   * @param log the log file of the project, to which the output of the run is appended
+   * @param result the result of the project
+   * @throws IOException if a process cannot be run
+   */
+  private void runInference(File dir, File log, ProjectResult result) throws IOException {
+    if (!dir.isDirectory()) {
+      appendToLog(log, dir + " is not a directory");
+      result.status = Status.ERROR;
+      return;
+    }
+    for (File jdk : getJdks()) {
+      int jdkVersion = getJdkVersion(jdk);
+      BuildCommands build = getBuildCommands(dir, jdk);
+      if (build == null) {
+        appendToLog(log, "no build file found for " + dir + "; not calling DLJC");
+        result.status = Status.NO_BUILD_FILE;
+        return;
+      }
+      File dljcOut = new File(dir, "dljc-out");
+      deleteRecursively(dljcOut.toPath());
+      // Ensure the project is clean before invoking DLJC.
+      runProcess(build.clean, dir, jdk, log);
+
+      List<String> command = new ArrayList<>();
+      command.add(dljc.getPath());
+      command.add("-t");
+      command.add("wpi");
+      command.add("--jdkVersion");
+      command.add(Integer.toString(jdkVersion <= 8 ? 8 : 11));
+      command.addAll(dljcArgs);
+      command.add("--");
+      command.addAll(build.build);
+      appendToLog(log, "JAVA_HOME: " + jdk + System.lineSeparator() + "DLJC_CMD: " + command);
+      int exitStatus = runProcess(command, dir, jdk, log);
+      result.exitStatus = exitStatus;
+      result.jdkVersion = jdkVersion;
+      if (exitStatus == TIMEOUT_EXIT_STATUS) {
+        appendToLog(log, "dljc timed out for " + dir);
+        result.status = Status.TIMEOUT;
+        return;
+      }
+      if (new File(dljcOut, "wpi.log").exists()) {
+        result.status = Status.SUCCESS;
+        return;
+      }
+      appendToLog(log, "dljc could not run the build successfully with " + jdk);
+    }
+    result.status = Status.BUILD_FAILED;
+  }
+
+  /** The commands to clean and to build a project. */
+  private static class BuildCommands {
+    /** The command that cleans the project. */
+    final List<String> clean;
+
+    /** The command that cleans and compiles the project. */
+    final List<String> build;
+
+    /**
+     * Creates the commands to clean and build a project.
+     *
+     * @param clean the command that cleans the project
+     * @param build the command that cleans and compiles the project
+     */
+    BuildCommands(List<String> clean, List<String> build) {
+      this.clean = clean;
+      this.build = build;
+    }
+  }
+
+  /**
+   * Returns the commands that clean and build a project, as in {@code wpi.sh}.
+   *
+   * @param dir the project directory
+   * @param jdk the home directory of the JDK with which to build the project
+   * @return the commands that clean and build the project, or null if it has no build file
+   */
+  private @Nullable BuildCommands getBuildCommands(File dir, File jdk) {
+    List<String> tool;
+    List<String> cleanArgs;
+    List<String> buildTargets;
+    if (new File(dir, "build.gradle").exists()) {
+      tool = Collections.singletonList(getWrapper(dir, "gradlew", "gradle"));
+      cleanArgs =
+          Arrays.asList("--no-daemon", "-g", gradleCache, "-Dorg.gradle.java.home=" + jdk, "clean");
+      buildTargets = Collections.singletonList("compileJava");
+    } else if (new File(dir, "pom.xml").exists()) {
+      tool = Collections.singletonList(getWrapper(dir, "mvnw", "mvn"));
+      File javaHome = getJdkVersion(jdk) <= 8 ? new File(jdk, "jre") : jdk;
+      cleanArgs = Arrays.asList("-Djava.home=" + javaHome, "clean");
+      buildTargets = Collections.singletonList("compile");
+    } else if (new File(dir, "build.xml").exists()) {
+      tool = Collections.singletonList("ant");
+      cleanArgs = Collections.singletonList("clean");
+      buildTargets = Collections.singletonList("compile");
+    } else {
+      return null;
+    }
+    List<String> clean = new ArrayList<>(tool);
+    clean.addAll(cleanArgs);
+    clean.addAll(buildArgs);
+    List<String> build = new ArrayList<>(tool);
+    build.addAll(cleanArgs);
+    build.addAll(buildTargets);
+    build.addAll(buildArgs);
+    return new BuildCommands(clean, build);
+  }
+
+  /**
+   * Returns the build tool wrapper script of a project if it has one, or else the build tool.
+   *
+   * @param dir the project directory
+   * @param wrapper the name of the wrapper script, such as {@code gradlew}
+   * @param tool the name of the build tool, such as {@code gradle}
+   * @return the command that runs the build tool for the project
+   */
+  private static String getWrapper(File dir, String wrapper, String tool) {
+    File wrapperFile = new File(dir, wrapper);
+    if (!wrapperFile.exists()) {
+      return tool;
+    }
+    wrapperFile.setExecutable(true);
+    return "./" + wrapper;
+  }
+
+  /**
+   * Returns the major version of a JDK, from its {@code release} file.
+   *
+   * @param jdk the home directory of a JDK
+   * @return the major version of {@code jdk}, such as 8 or 11, or 11 if it cannot be determined
+   */
+  private static int getJdkVersion(File jdk) {
+    Properties release = new Properties();
+    try (InputStream in = new FileInputStream(new File(jdk, "release"))) {
+      release.load(in);
+    } catch (IOException e) {
+      return 11;
+    }
+    String version = release.getProperty("JAVA_VERSION", "").replace("\"", "");
+    if (version.startsWith("1.")) {
+      version = version.substring(2);
+    }
+    int end = 0;
+    while (end < version.length() && Character.isDigit(version.charAt(end))) {
+      end++;
+    }
+    return end == 0 ? 11 : Integer.parseInt(version.substring(0, end));
+  }
+
+  /**
+   * Runs a process in a project directory, with the timeout and resource limits of this runner.
+   *
+   * @param command the command to run
+   * @param dir the project directory, in which the command runs
+   * @param jdk the home directory of the JDK with which to run the command
+   * @param log the file to which to append the output of the command
+   * @return the exit status of the command, or {@link #TIMEOUT_EXIT_STATUS} if it timed out
+   * @throws IOException if the command cannot be run
+   */
+  private int runProcess(List<String> command, File dir, File jdk, File log) throws IOException {
+    List<String> fullCommand = new ArrayList<>();
+    if (timeoutSeconds > 0) {
+      // timeout runs the command in a new process group and signals the whole group, so that
+      // the processes that the command starts do not outlive it.
+      fullCommand.add("timeout");
+      fullCommand.add("--kill-after=" + KILL_GRACE_SECONDS);
+      fullCommand.add(Long.toString(timeoutSeconds));
+    }
+    fullCommand.addAll(command);
+    ProcessBuilder pb =
+        new ProcessBuilder(fullCommand)
+            .directory(dir)
+            .redirectErrorStream(true)
+            .redirectOutput(ProcessBuilder.Redirect.appendTo(log));
+    Map<String, String> env = pb.environment();
+    env.put("JAVA_HOME", jdk.getPath());
+    env.put("PATH", new File(jdk, "bin") + File.pathSeparator + env.getOrDefault("PATH", ""));
+    if (maxHeap != null) {
+      String toolOptions = env.getOrDefault("JAVA_TOOL_OPTIONS", "");
+      env.put("JAVA_TOOL_OPTIONS", (toolOptions + " -Xmx" + maxHeap).trim());
+    }
+
+    Process process = pb.start();
+    // The command reads no input.
+    process.getOutputStream().close();
+    try {
+      if (timeoutSeconds == 0) {
+        return process.waitFor();
+      }
+      if (process.waitFor(timeoutSeconds + 2 * KILL_GRACE_SECONDS, TimeUnit.SECONDS)) {
+        return process.exitValue();
+      }
+      process.destroyForcibly();
+      return TIMEOUT_EXIT_STATUS;
+    } catch (InterruptedException e) {
+      process.destroyForcibly();
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while running " + command, e);
+    }
+  }
+
+  /**
+   * Appends a message to the log file of a project.
+   *
+   * @param log the log file
+   * @param message the message to append
+   */
+  private static void appendToLog(File log, String message) {
+    try {
+      Files.write(
+          log.toPath(),
+          (message + System.lineSeparator()).getBytes(StandardCharsets.UTF_8),
+          StandardOpenOption.CREATE,
+          StandardOpenOption.APPEND);
+    } catch (IOException e) {
+      System.err.printf("Could not write %s: %s%n", log, e.getMessage());
+    }
+  }
+
+  /**
+   * Deletes a file or directory and everything in it, if it exists.
+   *
+   * @param path the file or directory to delete
+   * @throws IOException if the file or directory cannot be deleted
+   */
+  private static void deleteRecursively(Path path) throws IOException {
+    if (!Files.exists(path)) {
+      return;
+    }
+    try (Stream<Path> paths = Files.walk(path)) {
+      for (Path p : paths.sorted(Collections.reverseOrder()).collect(Collectors.toList())) {
+        Files.delete(p);
+      }
+    }
+  }
+
+  ///
+  /// Counting the results of a project
+  ///
+
+  /**
+   * Counts the inferred annotations of a project whose run succeeded, and the warnings and errors
+   * of the last run of the checker, which is also copied to the results directory.
+   *
+   * @param dir the project directory
+   * @param name the name of the project
+   * @param result the result of the project, whose counts are set
+   */
+  private void countResults(File dir, String name, ProjectResult result) {
+    try {
+      // Everything from the last "Running ..." line of wpi.log onward, as in wpi.sh.
+      Path wpiLogFile = Paths.get(dir.getPath(), "dljc-out", "wpi.log");
+      List<String> wpiLog = Files.readAllLines(wpiLogFile, StandardCharsets.UTF_8);
+      int lastRun = 0;
+      for (int i = 0; i < wpiLog.size(); i++) {
+        if (wpiLog.get(i).startsWith("Running")) {
+          lastRun = i;
+        }
+      }
+      List<String> typecheck = wpiLog.subList(lastRun, wpiLog.size());
+      Files.write(new File(resultsDir, name + "-typecheck.out").toPath(), typecheck);
+      for (String line : typecheck) {
+        if (line.contains(": warning:")) {
+          result.warnings++;
+        } else if (line.contains(": error:")) {
+          result.errors++;
+        }
+      }
+
+      List<Path> files;
+      try (Stream<Path> paths = Files.walk(dir.toPath())) {
+        files = paths.filter(Files::isRegularFile).collect(Collectors.toList());
+      }
+      for (Path p : files) {
+        if (!isInferenceOutput(p)) {
+          continue;
+        }
+        String contents = new String(Files.readAllBytes(p), StandardCharsets.UTF_8);
+        result.inferredFiles++;
+        if (p.toString().endsWith(".jaif")) {
+          result.inferredAnnotations += countJaifAnnotations(contents);
+        } else {
+          // An ajava file is a copy of a source file, with the inferred annotations added.
+          Path source = p.toString().endsWith(".ajava") ? findSourceFile(p, files) : null;
+          String sourceContents =
+              source == null ? "" : new String(Files.readAllBytes(source), StandardCharsets.UTF_8);
+          result.inferredAnnotations += countJavaAnnotations(contents, sourceContents);
+        }
+      }
+    } catch (IOException e) {
+      appendToLog(new File(resultsDir, name + ".log"), "Could not count the results: " + e);
+    }
+  }
+
+  /**
+   * Returns true if a file is an output file of whole-program inference: an ajava, stub, or jaif
+   * file in a directory named {@code whole-program-inference}.
+   *
+   * @param p a file in a project
+   * @return true if {@code p} is an output file of whole-program inference
+   */
+  private static boolean isInferenceOutput(Path p) {
+    String fileName = p.getFileName().toString();
+    if (!(fileName.endsWith(".ajava") || fileName.endsWith(".astub") || fileName.endsWith(".jaif"))
+        || !Files.isRegularFile(p)) {
+      return false;
+    }
+    return inferenceOutputDirectory(p) != -1;
+  }
+
+  /**
+   * Returns the index of the {@code whole-program-inference} directory among the elements of a
+   * path, or -1 if there is none.
+   *
+   * @param p a file in a project
+   * @return the index of the {@code whole-program-inference} element of {@code p}, or -1
+   */
+  private static int inferenceOutputDirectory(Path p) {
+    for (int i = 0; i < p.getNameCount(); i++) {
+      if (p.getName(i).toString().equals("whole-program-inference")) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the source file of which an ajava file is an annotated copy, or null if it cannot be
+   * found. The ajava file for {@code pkg/Foo.java} is {@code
+   * whole-program-inference/pkg/Foo-CHECKER.ajava}, so the source file is a file whose path ends
+   * with {@code pkg/Foo.java}, outside the {@code whole-program-inference} directory. If several
+   * files match, as in a project with several modules, the first one is returned.
+   *
+   * @param ajavaFile an ajava file written by whole-program inference
+   * @param files the files of the project
+   * @return the source file of {@code ajavaFile}, or null
+   */
+  private static @Nullable Path findSourceFile(Path ajavaFile, List<Path> files) {
+    String ajavaName = ajavaFile.getFileName().toString();
+    int dash = ajavaName.indexOf('-');
+    if (dash == -1) {
+      return null;
+    }
+    Path sourcePath = Paths.get(ajavaName.substring(0, dash) + ".java");
+    int packageStart = inferenceOutputDirectory(ajavaFile) + 1;
+    int packageEnd = ajavaFile.getNameCount() - 1;
+    if (packageStart < packageEnd) {
+      sourcePath = ajavaFile.subpath(packageStart, packageEnd).resolve(sourcePath);
+    }
+    for (Path p : files) {
+      if (p.endsWith(sourcePath) && inferenceOutputDirectory(p) == -1) {
+        return p;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Counts the annotations in an ajava or stub file that are not in the source file of which it is
+   * an annotated copy. An annotation is identified by its simple name, so that an annotation that
+   * whole-program inference writes with its fully-qualified name matches the same annotation in
+   * the source file.
+   *
+   * @param contents the contents of an ajava or stub file
+   * @param sourceContents the contents of the source file, or the empty string if there is none
+   * @return the number of annotations in {@code contents} that are not in {@code sourceContents}
+   */
+  static int countJavaAnnotations(String contents, String sourceContents) {
+    Map<String, Integer> sourceAnnotations = javaAnnotations(sourceContents);
+    int count = 0;
+    for (Map.Entry<String, Integer> entry : javaAnnotations(contents).entrySet()) {
+      count += Math.max(0, entry.getValue() - sourceAnnotations.getOrDefault(entry.getKey(), 0));
+    }
+    return count;
+  }
+
+  /**
+   * Counts the annotations in Java code, by simple name, ignoring comments and literals,
+   * annotation declarations, and the {@code @AnnotatedFor} annotations that are written with every
+   * class.
+   *
+   * @param contents Java code, such as the contents of an ajava or stub file
+   * @return a map from the simple name of each annotation in {@code contents} to its number of
+   *     occurrences
+   */
+  private static Map<String, Integer> javaAnnotations(String contents) {
+    Map<String, Integer> annotations = new HashMap<>();
+    int length = contents.length();
+    int i = 0;
+    while (i < length) {
+      char c = contents.charAt(i);
+      if (c == '/' && i + 1 < length && contents.charAt(i + 1) == '/') {
+        i = contents.indexOf('\n', i);
+        if (i == -1) {
+          break;
+        }
+      } else if (c == '/' && i + 1 < length && contents.charAt(i + 1) == '*') {
+        i = contents.indexOf("*/", i + 2);
+        if (i == -1) {
+          break;
+        }
+        i += 2;
+        continue;
+      } else if (c == '"' || c == '\'') {
+        // Skip to the closing quote, which is not escaped.
+        i++;
+        while (i < length && contents.charAt(i) != c) {
+          i += contents.charAt(i) == '\\' ? 2 : 1;
+        }
+      } else if (c == '@'
+          && i + 1 < length
+          && Character.isJavaIdentifierStart(contents.charAt(i + 1))
+          && !contents.startsWith("interface", i + 1)) {
+        int end = i + 1;
+        while (end < length
+            && (Character.isJavaIdentifierPart(contents.charAt(end))
+                || contents.charAt(end) == '.')) {
+          end++;
+        }
+        String name = contents.substring(i + 1, end);
+        name = name.substring(name.lastIndexOf('.') + 1);
+        if (!name.equals("AnnotatedFor")) {
+          annotations.merge(name, 1, Integer::sum);
+        }
+        i = end;
+        continue;
+      }
+      i++;
+    }
+    return annotations;
+  }
+
+  /**
+   * Counts the annotations in a jaif file, ignoring the annotation definitions.
+   *
+   * @param contents the contents of a jaif file
+   * @return the number of annotations in {@code contents}
+   */
+  static int countJaifAnnotations(String contents) {
+    int count = 0;
+    for (String line : contents.split("\n", -1)) {
+      if (line.trim().startsWith("annotation ")) {
+        continue;
+      }
+      for (int i = 0; i + 1 < line.length(); i++) {
+        if (line.charAt(i) == '@' && Character.isJavaIdentifierStart(line.charAt(i + 1))) {
+          count++;
+        }
+      }
+    }
+    return count;
+  }
+
+  ///
+  /// Results
+  ///
+
+  /** The result of the run of a project. */
+  private static class ProjectResult {
+    /** The name of the project. */
+    final String name;
+
+    /** The absolute path of the project directory. */
+    final String directory;
+
+    /** The outcome of the run. */
+    Status status = Status.ERROR;
+
+    /** The exit status of do-like-javac, or -1 if it did not run. */
+    int exitStatus = -1;
+
+    /** The major version of the JDK of the last build, or -1 if the project was not built. */
+    int jdkVersion = -1;
+
+    /** The wall-clock time of the run, in milliseconds. */
+    long millis = 0;
+
+    /** The number of output files of whole-program inference. */
+    int inferredFiles = 0;
+
+    /** The number of inferred annotations in the output files of whole-program inference. */
+    int inferredAnnotations = 0;
+
+    /** The number of warnings in the last run of the checker. */
+    int warnings = 0;
+
+    /** The number of errors in the last run of the checker. */
+    int errors = 0;
+
+    /**
+     * Creates the result of a project that has not run.
+     *
+     * @param name the name of the project
+     * @param directory the absolute path of the project directory
+     */
+    ProjectResult(String name, String directory) {
+      this.name = name;
+      this.directory = directory;
+    }
+
+    /**
+     * Reads the result of a project from the results directory.
+     *
+     * @param name the name of the project
+     * @param resultsDir the results directory
+     * @return the result of the project, or null if it has none
+     */
+    static @Nullable ProjectResult read(String name, File resultsDir) {
+      File file = new File(resultsDir, name + ".properties");
+      if (!file.exists()) {
+        return null;
+      }
+      Properties props = new Properties();
+      try (InputStream in = new FileInputStream(file)) {
+        props.load(in);
+        ProjectResult result = new ProjectResult(name, props.getProperty("directory"));
+        result.status = Status.valueOf(props.getProperty("status"));
+        result.exitStatus = Integer.parseInt(props.getProperty("exitStatus"));
+        result.jdkVersion = Integer.parseInt(props.getProperty("jdkVersion"));
+        result.millis = Long.parseLong(props.getProperty("millis"));
+        result.inferredFiles = Integer.parseInt(props.getProperty("inferredFiles"));
+        result.inferredAnnotations = Integer.parseInt(props.getProperty("inferredAnnotations"));
+        result.warnings = Integer.parseInt(props.getProperty("warnings"));
+        result.errors = Integer.parseInt(props.getProperty("errors"));
+        return result;
+      } catch (IOException | RuntimeException e) {
+        // An unreadable result, for example one of an older version, is ignored, so the project
+        // runs again.
+        return null;
+      }
+    }
+
+    /**
+     * Writes this result to the results directory. The file is written to a temporary file that is
+     * then renamed, so that an interrupted write leaves no result and the project runs again.
+     *
+     * @param resultsDir the results directory
+     */
+    void write(File resultsDir) {
+      Properties props = new Properties();
+      props.setProperty("directory", directory);
+      props.setProperty("status", status.name());
+      props.setProperty("exitStatus", Integer.toString(exitStatus));
+      props.setProperty("jdkVersion", Integer.toString(jdkVersion));
+      props.setProperty("millis", Long.toString(millis));
+      props.setProperty("inferredFiles", Integer.toString(inferredFiles));
+      props.setProperty("inferredAnnotations", Integer.toString(inferredAnnotations));
+      props.setProperty("warnings", Integer.toString(warnings));
+      props.setProperty("errors", Integer.toString(errors));
+      Path target = new File(resultsDir, name + ".properties").toPath();
+      try {
+        Path tmp = Files.createTempFile(resultsDir.toPath(), name + "-", ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+          props.store(out, "Whole-program inference result; see WholeProgramInferenceRunner");
+        }
+        Files.move(
+            tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } catch (IOException e) {
+        throw new UserError("Could not write " + target + ": " + e.getMessage());
+      }
+    }
+
+    /**
+     * Returns this result as a JSON object.
+     *
+     * @return this result as a JSON object
+     */
+    String toJson() {
+      return String.format(
+          Locale.ROOT,
+          "{\"name\": %s, \"directory\": %s, \"status\": %s, \"exitStatus\": %d,"
+              + " \"jdkVersion\": %d, \"seconds\": %.3f, \"inferredFiles\": %d,"
+              + " \"inferredAnnotations\": %d, \"warnings\": %d, \"errors\": %d}",
+          jsonString(name),
+          jsonString(directory),
+          jsonString(status.name()),
+          exitStatus,
+          jdkVersion,
+          millis / 1000.0,
+          inferredFiles,
+          inferredAnnotations,
+          warnings,
+          errors);
+    }
+  }
+
+  /**
+   * Writes the results of all projects, and their totals, as JSON.
+   *
+   * @param results the results of all projects
+   * @param file the file to write
+   */
+  private static void writeSummary(List<ProjectResult> results, File file) {
+    Map<Status, Integer> counts = new TreeMap<>();
+    for (Status status : Status.values()) {
+      counts.put(status, 0);
+    }
+    long millis = 0;
+    long inferredAnnotations = 0;
+    for (ProjectResult result : results) {
+      counts.merge(result.status, 1, Integer::sum);
+      millis += result.millis;
+      inferredAnnotations += result.inferredAnnotations;
+    }
+
+    StringBuilder sb = new StringBuilder();
+    sb.append("{\n  \"projects\": [");
+    for (int i = 0; i < results.size(); i++) {
+      sb.append(i == 0 ? "\n    " : ",\n    ").append(results.get(i).toJson());
+    }
+    sb.append("\n  ],\n  \"totals\": {\"projects\": ").append(results.size());
+    for (Map.Entry<Status, Integer> entry : counts.entrySet()) {
+      sb.append(", ").append(jsonString(entry.getKey().name())).append(": ");
+      sb.append(entry.getValue());
+    }
+    sb.append(String.format(Locale.ROOT, ", \"seconds\": %.3f", millis / 1000.0));
+    sb.append(", \"inferredAnnotations\": ").append(inferredAnnotations).append("}\n}\n");
+    try {
+      Files.write(file.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+    } catch (IOException e) {
+      throw new UserError("Could not write " + file + ": " + e.getMessage());
+    }
+  }
+
+  /**
+   * Returns a string as a JSON string literal.
+   *
+   * @param s a string
+   * @return {@code s} as a JSON string literal
+   */
+  private static String jsonString(String s) {
+    StringBuilder sb = new StringBuilder("\"");
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      switch (c) {
+        case '"':
+          sb.append("\\\"");
+          break;
+        case '\\':
+          sb.append("\\\\");
+          break;
+        case '\n':
+          sb.append("\\n");
+          break;
+        case '\r':
+          sb.append("\\r");
+          break;
+        case '\t':
+          sb.append("\\t");
+          break;
+        default:
+          if (c < 0x20) {
+            sb.append(String.format("\\u%04x", (int) c));
+          } else {
+            sb.append(c);
+          }
+      }
+    }
+    return sb.append('"').toString();
+  }
+}
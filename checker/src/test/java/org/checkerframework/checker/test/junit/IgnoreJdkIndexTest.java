@@ -0,0 +1,37 @@
+package org.checkerframework.checker.test.junit;
+
+import java.io.File;
+import java.util.List;
+import java.util.Set;
+import org.checkerframework.checker.nullness.NullnessChecker;
+import org.checkerframework.framework.test.CheckerFrameworkPerDirectoryTest;
+import org.junit.Assert;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Tests that the annotated JDK index does not change the diagnostics: they are the same as with
+ * the {@code -AignoreJdkIndex} command-line option, which parses every annotated JDK file that
+ * might be relevant.
+ */
+public class IgnoreJdkIndexTest extends CheckerFrameworkPerDirectoryTest {
+
+  /**
+   * Create an IgnoreJdkIndexTest.
+   *
+   * @param testFiles the files containing test code, which will be type-checked
+   */
+  public IgnoreJdkIndexTest(List<File> testFiles) {
+    super(testFiles, NullnessChecker.class, "all-systems", "-Anomsgtext");
+  }
+
+  @Parameters
+  public static String[] getTestDirs() {
+    return new String[] {"all-systems"};
+  }
+
+  @Override
+  public void run() {
+    Set<String> expected = compileWithOptions(new NullnessChecker());
+    Assert.assertEquals(expected, compileWithOptions(new NullnessChecker(), "-AignoreJdkIndex"));
+  }
+}
@@ -0,0 +1,44 @@
+package org.checkerframework.checker.test.junit;
+
+import java.io.File;
+import java.util.List;
+import java.util.Set;
+import org.checkerframework.checker.nullness.NullnessChecker;
+import org.checkerframework.framework.stub.AnnotationFileElementTypes;
+import org.checkerframework.framework.test.CheckerFrameworkPerDirectoryTest;
+import org.junit.Assert;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Tests that processing the members of annotated JDK files on demand does not change the
+ * diagnostics: they are the same as with the {@code -AparseAllJdk} command-line option, which
+ * processes every member eagerly. Also tests that members are in fact processed on demand.
+ */
+public class LazyJdkMembersTest extends CheckerFrameworkPerDirectoryTest {
+
+  /**
+   * Create a LazyJdkMembersTest.
+   *
+   * @param testFiles the files containing test code, which will be type-checked
+   */
+  public LazyJdkMembersTest(List<File> testFiles) {
+    super(testFiles, NullnessChecker.class, "all-systems", "-Anomsgtext");
+  }
+
+  @Parameters
+  public static String[] getTestDirs() {
+    return new String[] {"all-systems"};
+  }
+
+  @Override
+  public void run() {
+    NullnessChecker checker = new NullnessChecker();
+    Set<String> expected = compileWithOptions(checker);
+    AnnotationFileElementTypes stubTypes = checker.getTypeFactory().stubTypes;
+    Assert.assertTrue(stubTypes.getDeferredJdkMemberCount() > 0);
+    Assert.assertTrue(
+        stubTypes.getProcessedJdkMemberCount() < stubTypes.getDeferredJdkMemberCount());
+
+    Assert.assertEquals(expected, compileWithOptions(new NullnessChecker(), "-AparseAllJdk"));
+  }
+}
@@ -0,0 +1,41 @@
+package org.checkerframework.checker.test.junit;
+
+import java.io.File;
+import java.util.List;
+import org.checkerframework.checker.nullness.NullnessChecker;
+import org.checkerframework.framework.stub.ParsedAnnotationFileCache;
+import org.checkerframework.framework.test.CheckerFrameworkPerDirectoryTest;
+import org.junit.Assert;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Tests that the subcheckers of a compound checker share the ASTs of the annotation files that
+ * they all read: the Nullness Checker and its KeyFor subchecker both read the annotated JDK, so
+ * some of the requests to the parent's {@link ParsedAnnotationFileCache} are satisfied without
+ * parsing.
+ */
+public class SharedAnnotationFileParsesTest extends CheckerFrameworkPerDirectoryTest {
+
+  /**
+   * Create a SharedAnnotationFileParsesTest.
+   *
+   * @param testFiles the files containing test code, which will be type-checked
+   */
+  public SharedAnnotationFileParsesTest(List<File> testFiles) {
+    super(testFiles, NullnessChecker.class, "all-systems", "-Anomsgtext");
+  }
+
+  @Parameters
+  public static String[] getTestDirs() {
+    return new String[] {"all-systems"};
+  }
+
+  @Override
+  public void run() {
+    NullnessChecker checker = new NullnessChecker();
+    compileWithOptions(checker);
+    ParsedAnnotationFileCache cache = checker.getParsedAnnotationFileCache();
+    Assert.assertTrue(cache.getMissCount() > 0);
+    Assert.assertTrue(cache.getHitCount() > 0);
+  }
+}
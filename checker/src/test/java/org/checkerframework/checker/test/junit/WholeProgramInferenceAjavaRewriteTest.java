@@ -0,0 +1,75 @@
+package org.checkerframework.checker.test.junit;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import org.checkerframework.checker.testchecker.wholeprograminference.WholeProgramInferenceTestChecker;
+import org.checkerframework.common.wholeprograminference.WholeProgramInferenceJavaParserStorage;
+import org.checkerframework.framework.test.CheckerFrameworkPerDirectoryTest;
+import org.junit.Assert;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Tests that whole-program inference leaves an ajava file in place when a later run infers the same
+ * annotations, and rewrites it when its contents differ from what the run infers.
+ */
+public class WholeProgramInferenceAjavaRewriteTest extends CheckerFrameworkPerDirectoryTest {
+
+  /** The ajava file of the only class in the test directory in which an annotation is inferred. */
+  private static final Path AJAVA_FILE =
+      Paths.get(
+          WholeProgramInferenceJavaParserStorage.AJAVA_FILES_PATH,
+          "WpiDependenciesField-" + WholeProgramInferenceTestChecker.class.getName() + ".ajava");
+
+  /**
+   * Create a WholeProgramInferenceAjavaRewriteTest.
+   *
+   * @param testFiles the files containing test code, which will be type-checked
+   */
+  public WholeProgramInferenceAjavaRewriteTest(List<File> testFiles) {
+    super(
+        testFiles,
+        WholeProgramInferenceTestChecker.class,
+        "wpi-dependencies",
+        "-Anomsgtext",
+        "-Ainfer=ajava",
+        "-Awarns");
+  }
+
+  @Parameters
+  public static String[] getTestDirs() {
+    return new String[] {"wpi-dependencies"};
+  }
+
+  @Override
+  public void run() {
+    try {
+      Files.deleteIfExists(AJAVA_FILE);
+      compileWithOptions(new WholeProgramInferenceTestChecker());
+      String contents = new String(Files.readAllBytes(AJAVA_FILE), StandardCharsets.UTF_8);
+      Assert.assertTrue(contents, contents.contains(".Sibling1 "));
+
+      // The same annotations are inferred again, so the file is not rewritten.
+      FileTime old = FileTime.fromMillis(0);
+      Files.setLastModifiedTime(AJAVA_FILE, old);
+      compileWithOptions(new WholeProgramInferenceTestChecker());
+      Assert.assertEquals(old, Files.getLastModifiedTime(AJAVA_FILE));
+
+      // A file that differs from the inferred annotations is rewritten.
+      Files.write(AJAVA_FILE, "stale".getBytes(StandardCharsets.UTF_8));
+      compileWithOptions(new WholeProgramInferenceTestChecker());
+      Assert.assertEquals(
+          contents, new String(Files.readAllBytes(AJAVA_FILE), StandardCharsets.UTF_8));
+
+      Files.delete(AJAVA_FILE);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
@@ -0,0 +1,72 @@
+package org.checkerframework.checker.test.junit;
+
+import java.io.File;
+import java.util.List;
+import java.util.Set;
+import org.checkerframework.checker.testchecker.wholeprograminference.WholeProgramInferenceTestChecker;
+import org.checkerframework.common.wholeprograminference.WholeProgramInferenceDependencies;
+import org.checkerframework.common.wholeprograminference.WholeProgramInferenceScenesStorage;
+import org.checkerframework.framework.test.CheckerFrameworkPerDirectoryTest;
+import org.junit.Assert;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Tests that {@link WholeProgramInferenceDependencies} finds the classes affected by a change to an
+ * inferred field type: the class that declares the field and the class that reads it, but not a
+ * class that does neither.
+ */
+public class WholeProgramInferenceDependenciesTest extends CheckerFrameworkPerDirectoryTest {
+
+  /** The classes in the test directory, whose .jaif files this test writes. */
+  private static final String[] CLASSES = {
+    "WpiDependenciesField", "WpiDependenciesReader", "WpiDependenciesUnrelated"
+  };
+
+  /**
+   * Create a WholeProgramInferenceDependenciesTest.
+   *
+   * @param testFiles the files containing test code, which will be type-checked
+   */
+  public WholeProgramInferenceDependenciesTest(List<File> testFiles) {
+    super(
+        testFiles,
+        WholeProgramInferenceTestChecker.class,
+        "wpi-dependencies",
+        "-Anomsgtext",
+        "-Ainfer=jaifs",
+        "-Awarns");
+  }
+
+  @Parameters
+  public static String[] getTestDirs() {
+    return new String[] {"wpi-dependencies"};
+  }
+
+  @Override
+  public void run() {
+    // Inference starts from the .jaif files of an earlier run, if they exist.
+    deleteJaifFiles();
+    try {
+      WholeProgramInferenceTestChecker checker = new WholeProgramInferenceTestChecker();
+      compileWithOptions(checker);
+      WholeProgramInferenceDependencies dependencies =
+          checker.getWholeProgramInferenceDependencies();
+      Assert.assertNotNull(dependencies);
+      Assert.assertEquals(1, dependencies.getChangedLocationsPerRound().size());
+      Assert.assertTrue(dependencies.getChangedLocationsPerRound().get(0) > 0);
+      Set<String> affected = dependencies.getAffectedClassesPerRound().get(0);
+      Assert.assertTrue(affected.toString(), affected.contains("WpiDependenciesField"));
+      Assert.assertTrue(affected.toString(), affected.contains("WpiDependenciesReader"));
+      Assert.assertFalse(affected.toString(), affected.contains("WpiDependenciesUnrelated"));
+    } finally {
+      deleteJaifFiles();
+    }
+  }
+
+  /** Deletes the .jaif files of the classes in the test directory. */
+  private static void deleteJaifFiles() {
+    for (String className : CLASSES) {
+      new File(WholeProgramInferenceScenesStorage.JAIF_FILES_PATH + className + ".jaif").delete();
+    }
+  }
+}
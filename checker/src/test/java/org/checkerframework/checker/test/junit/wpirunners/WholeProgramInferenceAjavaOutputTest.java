@@ -0,0 +1,150 @@
+package org.checkerframework.checker.test.junit.wpirunners;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.checkerframework.checker.testchecker.wholeprograminference.WholeProgramInferenceTestChecker;
+import org.checkerframework.common.wholeprograminference.WholeProgramInferenceFixpoint;
+import org.checkerframework.common.wholeprograminference.WholeProgramInferenceJavaParserStorage;
+import org.checkerframework.framework.test.TestConfiguration;
+import org.checkerframework.framework.test.TestConfigurationBuilder;
+import org.checkerframework.framework.test.TestUtilities;
+import org.checkerframework.framework.test.TypecheckExecutor;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Tests that the ways of running whole-program inference into ajava files produce the same ajava
+ * files over the wpi-testchecker test sources. The reference for {@code -AinferFixpoint} is the
+ * iteration that scripts such as {@code wpi.sh} perform: javac is run again, reading the ajava
+ * files of the previous run with {@code -Aajava}, until the ajava files no longer change. The
+ * reference for {@code -AinferMaxResidentFiles} is the same compilation without a limit.
+ *
+ * <p>Every compilation writes its ajava files to {@link
+ * WholeProgramInferenceJavaParserStorage#AJAVA_FILES_PATH}, which other whole-program inference
+ * tests also use, so this test runs only in task {@code wholeProgramInferenceTests}.
+ */
+@Category(WholeProgramInferenceAjavaOutputTest.class)
+public class WholeProgramInferenceAjavaOutputTest {
+
+  /** The directory that contains the test sources, relative to the checker directory. */
+  private static final String SOURCE_DIR = "tests/wpi-testchecker/non-annotated";
+
+  @Test
+  public void fixpointMatchesRepeatedRuns() throws IOException {
+    Assert.assertEquals(inferByRepeatedRuns(), infer("-AinferFixpoint"));
+  }
+
+  @Test
+  public void maxResidentFilesDoesNotChangeOutput() throws IOException {
+    // With a limit of one file, nearly every update of the inferences of a file parses it again.
+    Assert.assertEquals(infer(), infer("-AinferMaxResidentFiles=1"));
+    Assert.assertEquals(
+        infer("-AinferFixpoint"), infer("-AinferFixpoint", "-AinferMaxResidentFiles=1"));
+  }
+
+  /**
+   * Runs whole-program inference repeatedly, each run reading the ajava files of the previous run,
+   * until the ajava files no longer change.
+   *
+   * @return the contents of each ajava file of the last run, keyed by its relative path
+   */
+  private static Map<String, String> inferByRepeatedRuns() throws IOException {
+    Map<String, String> previous = infer();
+    for (int run = 1; run < WholeProgramInferenceFixpoint.DEFAULT_MAX_ROUNDS; run++) {
+      Path ajavaDir = Files.createTempDirectory("wpiAjava");
+      for (Map.Entry<String, String> entry : previous.entrySet()) {
+        Path file = ajavaDir.resolve(entry.getKey());
+        Files.createDirectories(file.getParent());
+        Files.write(file, entry.getValue().getBytes(StandardCharsets.UTF_8));
+      }
+      Map<String, String> current = infer("-Aajava=" + ajavaDir);
+      if (current.equals(previous)) {
+        return current;
+      }
+      previous = current;
+    }
+    throw new AssertionError(
+        "Whole-program inference did not converge in "
+            + WholeProgramInferenceFixpoint.DEFAULT_MAX_ROUNDS
+            + " runs");
+  }
+
+  /**
+   * Compiles the test sources with the whole-program inference test checker and {@code
+   * -Ainfer=ajava}, and reads the ajava files that the compilation writes.
+   *
+   * @param extraOptions options to pass to the checker, in addition to {@code -Ainfer=ajava}
+   * @return the contents of each ajava file, keyed by its path relative to {@link
+   *     WholeProgramInferenceJavaParserStorage#AJAVA_FILES_PATH}
+   */
+  private static Map<String, String> infer(String... extraOptions) throws IOException {
+    Path ajavaDir = Paths.get(WholeProgramInferenceJavaParserStorage.AJAVA_FILES_PATH);
+    deleteRecursively(ajavaDir);
+
+    List<File> files;
+    try (Stream<Path> paths = Files.list(Paths.get(SOURCE_DIR))) {
+      files =
+          paths
+              .filter(p -> p.toString().endsWith(".java"))
+              .map(Path::toFile)
+              .sorted()
+              .collect(Collectors.toList());
+    }
+    Path outputDir = Files.createTempDirectory("wpiClasses");
+    List<String> options =
+        new ArrayList<>(
+            Arrays.asList(
+                "-Anomsgtext", "-Awarns", "-Ainfer=ajava", "-d", outputDir.toString()));
+    options.addAll(Arrays.asList(extraOptions));
+    TestConfiguration config =
+        TestConfigurationBuilder.buildDefaultConfiguration(
+            SOURCE_DIR,
+            files,
+            Collections.emptyList(),
+            Collections.singletonList(WholeProgramInferenceTestChecker.class.getName()),
+            options,
+            TestUtilities.getShouldEmitDebugInfo());
+    new TypecheckExecutor().compile(config);
+
+    Map<String, String> result = new TreeMap<>();
+    try (Stream<Path> paths = Files.walk(ajavaDir)) {
+      for (Path file : paths.filter(Files::isRegularFile).collect(Collectors.toList())) {
+        result.put(
+            ajavaDir.relativize(file).toString(),
+            new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+      }
+    }
+    Assert.assertFalse("no ajava files were written", result.isEmpty());
+    return result;
+  }
+
+  /**
+   * Deletes a directory and its contents, if it exists.
+   *
+   * @param dir the directory to delete
+   */
+  private static void deleteRecursively(Path dir) throws IOException {
+    if (!Files.exists(dir)) {
+      return;
+    }
+    try (Stream<Path> paths = Files.walk(dir)) {
+      for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+        Files.delete(path);
+      }
+    }
+  }
+}
@@ -0,0 +1,155 @@
+package org.checkerframework.checker.wpi;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that {@link WholeProgramInferenceRunner} writes the correct {@code summary.json} for two
+ * local projects, one of which has no build file, and that it does not run a project again once
+ * it has a result. do-like-javac is replaced by a script that writes the output of a run.
+ */
+public class WholeProgramInferenceRunnerTest {
+
+  /** The directory that holds the projects, the fake do-like-javac, and the results. */
+  private Path dir;
+
+  /**
+   * A fake do-like-javac. It records that it ran, and writes a wpi.log in which only the last run
+   * of the checker counts, and an ajava file for {@link #FOO} with three inferred annotations
+   * besides its comments and {@code @AnnotatedFor}.
+   */
+  private static final String DLJC =
+      "#!/bin/sh\n"
+          + "echo run >> runs\n"
+          + "mkdir -p dljc-out build/whole-program-inference\n"
+          + "cat > dljc-out/wpi.log <<'EOF'\n"
+          + "Running round 1\n"
+          + "Foo.java:3: warning: not counted\n"
+          + "Running round 2\n"
+          + "Foo.java:3: warning: [assignment.type.incompatible]\n"
+          + "Foo.java:4: warning: [return.type.incompatible]\n"
+          + "Foo.java:5: error: [argument.type.incompatible]\n"
+          + "EOF\n"
+          + "cat > build/whole-program-inference/Foo-Checker.ajava <<'EOF'\n"
+          + "@AnnotatedFor(\"nullness\")\n"
+          + "class Foo {\n"
+          + "  // @NotCounted\n"
+          + "  @Nullable Object f;\n"
+          + "  @Pure @Nullable Object g(@Nullable Object x) {\n"
+          + "    return \"@NotCounted\";\n"
+          + "  }\n"
+          + "}\n"
+          + "EOF\n";
+
+  /** The source file of which the ajava file written by {@link #DLJC} is an annotated copy. */
+  private static final String FOO =
+      "class Foo {\n"
+          + "  Object f;\n"
+          + "  @org.checkerframework.dataflow.qual.Pure Object g(Object x) {\n"
+          + "    return \"@NotCounted\";\n"
+          + "  }\n"
+          + "}\n";
+
+  @Before
+  public void createDirectory() throws IOException {
+    dir = Files.createTempDirectory("wpiRunner");
+  }
+
+  @Test
+  public void summaryOfTwoProjects() throws IOException {
+    Path alpha = Files.createDirectories(dir.resolve("alpha"));
+    Files.write(alpha.resolve("build.gradle"), new byte[0]);
+    writeExecutable(alpha.resolve("gradlew"), "#!/bin/sh\nexit 0\n");
+    Path alphaSources = Files.createDirectories(alpha.resolve("src"));
+    Files.write(alphaSources.resolve("Foo.java"), FOO.getBytes(StandardCharsets.UTF_8));
+    Path beta = Files.createDirectories(dir.resolve("beta"));
+    Path dljc = writeExecutable(dir.resolve("dljc"), DLJC);
+    Path results = dir.resolve("results");
+
+    String[] args = {
+      "--results", results.toString(),
+      "--project", alpha.toString(),
+      "--project", beta.toString(),
+      "--dljc", dljc.toString(),
+      "--workers", "2"
+    };
+    Map<String, String> env = new HashMap<>();
+    env.put("CHECKERFRAMEWORK", dir.toString());
+    env.put("JAVA_HOME", System.getProperty("java.home"));
+    WholeProgramInferenceRunner runner = new WholeProgramInferenceRunner(env);
+    runner.parseArgs(args);
+    runner.run();
+
+    String summary =
+        new String(Files.readAllBytes(results.resolve("summary.json")), StandardCharsets.UTF_8);
+    String alphaJson = getProjectLine(summary, "alpha");
+    Assert.assertTrue(alphaJson, alphaJson.contains("\"status\": \"SUCCESS\", \"exitStatus\": 0"));
+    Assert.assertTrue(
+        alphaJson,
+        alphaJson.contains(
+            "\"inferredFiles\": 1, \"inferredAnnotations\": 3, \"warnings\": 2, \"errors\": 1}"));
+    String betaJson = getProjectLine(summary, "beta");
+    Assert.assertTrue(betaJson, betaJson.contains("\"status\": \"NO_BUILD_FILE\""));
+    Assert.assertTrue(
+        betaJson,
+        betaJson.contains(
+            "\"inferredFiles\": 0, \"inferredAnnotations\": 0, \"warnings\": 0, \"errors\": 0}"));
+    Assert.assertTrue(
+        summary,
+        summary.contains(
+            "\"totals\": {\"projects\": 2, \"SUCCESS\": 1, \"NO_BUILD_FILE\": 1,"
+                + " \"BUILD_FAILED\": 0, \"TIMEOUT\": 0, \"ERROR\": 0,"));
+    Assert.assertTrue(summary, summary.endsWith("\"inferredAnnotations\": 3}\n}\n"));
+    Assert.assertEquals(1, Files.readAllLines(alpha.resolve("runs")).size());
+
+    // A second experiment reuses the results of the first, without running any project again.
+    runner = new WholeProgramInferenceRunner(env);
+    runner.parseArgs(args);
+    runner.run();
+    Assert.assertEquals(1, Files.readAllLines(alpha.resolve("runs")).size());
+    String resumed =
+        new String(Files.readAllBytes(results.resolve("summary.json")), StandardCharsets.UTF_8);
+    Assert.assertEquals(summary, resumed);
+  }
+
+  /**
+   * Returns the line of a summary that holds the result of a project.
+   *
+   * @param summary the contents of {@code summary.json}
+   * @param name the name of a project
+   * @return the line of {@code summary} that holds the result of the project
+   */
+  private static String getProjectLine(String summary, String name) {
+    String nameJson = "{\"name\": \"" + name + "\"";
+    for (String line : summary.split("\n")) {
+      if (line.trim().startsWith(nameJson)) {
+        return line;
+      }
+    }
+    throw new AssertionError("No result for " + name + " in " + summary);
+  }
+
+  /**
+   * Writes an executable file.
+   *
+   * @param file the file to write
+   * @param contents the contents of the file
+   * @return {@code file}
+   */
+  private static Path writeExecutable(Path file, String contents) throws IOException {
+    Files.write(file, contents.getBytes(StandardCharsets.UTF_8));
+    File asFile = file.toFile();
+    if (!asFile.setExecutable(true)) {
+      throw new IOException("Cannot make " + file + " executable");
+    }
+    return file;
+  }
+}
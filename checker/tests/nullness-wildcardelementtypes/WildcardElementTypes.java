@@ -0,0 +1,20 @@
+// The element types of `List<?>` and `List<? extends Object>` must not be shared: the upper bound
+// of `?` defaults to the bound of the type parameter, which is @Nullable for List, but the written
+// upper bound `Object` defaults to @NonNull.
+
+import java.util.List;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+public class WildcardElementTypes {
+  void unboundedFirst(List<@Nullable String> l) {
+    WildcardElementTypesLib.unbounded = l;
+    // :: error: (assignment.type.incompatible)
+    WildcardElementTypesLib.bounded = l;
+  }
+
+  void boundedFirst(List<@Nullable String> l) {
+    // :: error: (assignment.type.incompatible)
+    WildcardElementTypesLib.bounded = l;
+    WildcardElementTypesLib.unbounded = l;
+  }
+}
@@ -0,0 +1,10 @@
+// Library for WildcardElementTypes.java, which reads these fields from bytecode. Before defaults
+// are applied, the types of the two fields have the same bounds.
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class WildcardElementTypesLib {
+  public static List<?> unbounded = new ArrayList<String>();
+  public static List<? extends Object> bounded = new ArrayList<String>();
+}
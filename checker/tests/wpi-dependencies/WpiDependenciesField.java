@@ -0,0 +1,10 @@
+import org.checkerframework.checker.testchecker.wholeprograminference.qual.Sibling1;
+
+public class WpiDependenciesField {
+
+  static int field;
+
+  static void set() {
+    field = (@Sibling1 int) 0;
+  }
+}
@@ -0,0 +1,6 @@
+public class WpiDependenciesReader {
+
+  void read() {
+    int x = WpiDependenciesField.field;
+  }
+}
@@ -0,0 +1,6 @@
+public class WpiDependenciesUnrelated {
+
+  void unrelated() {
+    int x = 0;
+  }
+}
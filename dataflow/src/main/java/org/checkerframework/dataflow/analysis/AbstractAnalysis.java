@@ -3,13 +3,14 @@ package org.checkerframework.dataflow.analysis;
 import com.sun.source.tree.ClassTree;
 import com.sun.source.tree.MethodTree;
 import com.sun.source.tree.Tree;
+import java.util.BitSet;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
 import java.util.Map;
 import java.util.Objects;
-import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.StringJoiner;
 import javax.lang.model.element.Element;
 import org.checkerframework.checker.interning.qual.FindDistinct;
 import org.checkerframework.checker.interning.qual.InternedDistinct;
@@ -387,16 +388,27 @@ public abstract class AbstractAnalysis<
    * @return true if the node's value changed, or a store was updated
    */
   protected boolean updateNodeValues(Node node, TransferResult<V, S> transferResult) {
-    V newVal = transferResult.getResultValue();
-    boolean nodeValueChanged = false;
-    if (newVal != null) {
-      V oldVal = nodeValues.get(node);
-      nodeValues.put(node, newVal);
-      nodeValueChanged = !Objects.equals(oldVal, newVal);
-    }
+    boolean nodeValueChanged = updateNodeValue(node, transferResult.getResultValue());
     return nodeValueChanged || transferResult.storeChanged();
   }
 
+  /**
+   * Updates the value of node {@code node} to {@code newVal}. Does nothing if {@code newVal} is
+   * null. Returns true if the node's value changed.
+   *
+   * @param node the node to update
+   * @param newVal the new value of the node, or null
+   * @return true if the node's value changed
+   */
+  protected boolean updateNodeValue(Node node, @Nullable V newVal) {
+    if (newVal == null) {
+      return false;
+    }
+    V oldVal = nodeValues.get(node);
+    nodeValues.put(node, newVal);
+    return !Objects.equals(oldVal, newVal);
+  }
+
   /**
    * Read the store for a particular basic block from a map of stores (or {@code null} if none
    * exists yet).
@@ -417,30 +429,27 @@ public abstract class AbstractAnalysis<
    * @param b the block to add to {@link #worklist}
    */
   protected void addToWorklist(Block b) {
-    // TODO: use a more efficient way to check if b is already present
-    if (!worklist.contains(b)) {
-      worklist.add(b);
-    }
+    worklist.add(b);
   }
 
   /**
    * A worklist is a priority queue of blocks in which the order is given by depth-first ordering to
    * place non-loop predecessors ahead of successors.
+   *
+   * <p>The worklist is a bit set over the {@link Block#getIndex indices} of the blocks. Because the
+   * indices are assigned in reverse postorder, the head of the queue is the lowest set bit for a
+   * forward analysis and the highest set bit for a backward analysis.
    */
   protected static class Worklist {
 
-    /** Map all blocks in the CFG to their depth-first order. */
-    protected final IdentityHashMap<Block, Integer> depthFirstOrder;
-
     /**
      * Comparators to allow priority queue to order blocks by their depth-first order, using by
      * forward analysis.
      */
     public class ForwardDFOComparator implements Comparator<Block> {
-      @SuppressWarnings("nullness:unboxing.of.nullable")
       @Override
       public int compare(Block b1, Block b2) {
-        return depthFirstOrder.get(b1) - depthFirstOrder.get(b2);
+        return Integer.compare(b1.getIndex(), b2.getIndex());
       }
     }
 
@@ -449,15 +458,20 @@ public abstract class AbstractAnalysis<
      * backward analysis.
      */
     public class BackwardDFOComparator implements Comparator<Block> {
-      @SuppressWarnings("nullness:unboxing.of.nullable")
       @Override
       public int compare(Block b1, Block b2) {
-        return depthFirstOrder.get(b2) - depthFirstOrder.get(b1);
+        return Integer.compare(b2.getIndex(), b1.getIndex());
       }
     }
 
-    /** The backing priority queue. */
-    protected final PriorityQueue<Block> queue;
+    /** The direction of the analysis that uses this worklist. */
+    protected final Direction direction;
+
+    /** The control flow graph whose blocks are put in this worklist. */
+    protected @MonotonicNonNull ControlFlowGraph cfg = null;
+
+    /** The backing queue: bit i is set iff the block with index i is in the worklist. */
+    protected final BitSet queue;
 
     /**
      * Create a Worklist.
@@ -465,36 +479,27 @@ public abstract class AbstractAnalysis<
      * @param direction the direction (forward or backward)
      */
     public Worklist(Direction direction) {
-      depthFirstOrder = new IdentityHashMap<>();
-
-      if (direction == Direction.FORWARD) {
-        queue = new PriorityQueue<>(new ForwardDFOComparator());
-      } else if (direction == Direction.BACKWARD) {
-        queue = new PriorityQueue<>(new BackwardDFOComparator());
-      } else {
+      if (direction != Direction.FORWARD && direction != Direction.BACKWARD) {
         throw new BugInCF("Unexpected Direction meet: " + direction.name());
       }
+      this.direction = direction;
+      this.queue = new BitSet();
     }
 
     /**
-     * Process the control flow graph, add the blocks to {@link #depthFirstOrder}.
+     * Process the control flow graph: make sure its blocks are numbered and empty the worklist.
      *
      * @param cfg the control flow graph to process
      */
     public void process(ControlFlowGraph cfg) {
-      depthFirstOrder.clear();
-      int count = 1;
-      for (Block b : cfg.getDepthFirstOrderedBlocks()) {
-        depthFirstOrder.put(b, count++);
-      }
-
+      cfg.numberBlocks();
+      this.cfg = cfg;
       queue.clear();
     }
 
     /**
-     * See {@link PriorityQueue#isEmpty}.
+     * Returns true if the worklist is empty.
      *
-     * @see PriorityQueue#isEmpty
      * @return true if {@link #queue} is empty else false
      */
     @Pure
@@ -511,32 +516,49 @@ public abstract class AbstractAnalysis<
      * @return true if {@link #queue} contains the given block
      */
     public boolean contains(Block block) {
-      return queue.contains(block);
+      int index = block.getIndex();
+      return index >= 0 && queue.get(index);
     }
 
     /**
-     * Add the given block to {@link #queue}.
+     * Add the given block to {@link #queue}. Does nothing if the block is already present.
      *
      * @param block the block to add to {@link #queue}
      */
     public void add(Block block) {
-      queue.add(block);
+      int index = block.getIndex();
+      if (index < 0) {
+        throw new BugInCF("Block is not reachable in the control flow graph: " + block);
+      }
+      queue.set(index);
     }
 
     /**
-     * See {@link PriorityQueue#poll}.
+     * Removes and returns the head of {@link #queue}: the block that comes first in depth-first
+     * order for a forward analysis, or last for a backward analysis.
      *
-     * @see PriorityQueue#poll
-     * @return the head of {@link #queue}
+     * @return the head of {@link #queue}, or null if it is empty
      */
     @Pure
     public @Nullable Block poll() {
-      return queue.poll();
+      if (queue.isEmpty()) {
+        return null;
+      }
+      int index = direction == Direction.FORWARD ? queue.nextSetBit(0) : queue.length() - 1;
+      queue.clear(index);
+      assert cfg != null : "@AssumeAssertion(nullness): a non-empty worklist has a CFG";
+      return cfg.getBlockByIndex(index);
     }
 
     @Override
     public String toString() {
-      return "Worklist(" + queue + ")";
+      StringJoiner result = new StringJoiner(", ", "Worklist([", "])");
+      if (cfg != null) {
+        for (int i = queue.nextSetBit(0); i >= 0; i = queue.nextSetBit(i + 1)) {
+          result.add(cfg.getBlockByIndex(i).toString());
+        }
+      }
+      return result.toString();
     }
   }
 }
@@ -57,6 +57,38 @@ public class AnalysisResult<V extends AbstractValue<V>, S extends Store<S>> impl
   protected final Map<TransferInput<V, S>, IdentityHashMap<Node, TransferResult<V, S>>>
       analysisCaches;
 
+  /**
+   * The stores before nodes, if the analysis recorded them. For a node that is not a key, the
+   * store is computed by {@link #runAnalysisFor(Node, Analysis.BeforeOrAfter)}.
+   *
+   * @see ForwardAnalysisImpl#setMaxStoreSnapshots(int)
+   */
+  protected final IdentityHashMap<Node, TransferInput<V, S>> storesBeforeNodes;
+
+  /**
+   * The stores after nodes, if the analysis recorded them. For a node that is not a key, the store
+   * is computed by {@link #runAnalysisFor(Node, Analysis.BeforeOrAfter)}.
+   *
+   * @see ForwardAnalysisImpl#setMaxStoreSnapshots(int)
+   */
+  protected final IdentityHashMap<Node, TransferInput<V, S>> storesAfterNodes;
+
+  /**
+   * The number of distinct stores in {@link #storesAfterNodes}: a store that several nodes share
+   * counts once.
+   */
+  protected int storeSnapshotCount = 0;
+
+  /**
+   * The maximum of {@link #storeSnapshotCount}, which {@link #combine} respects.
+   *
+   * @see #setMaxStoreSnapshots(int)
+   */
+  protected int maxStoreSnapshots = Integer.MAX_VALUE;
+
+  /** The number of stores that were looked up in the recorded stores instead of being computed. */
+  protected long storeSnapshotHits = 0;
+
   /** The unique ID for the next-created object. */
   static final AtomicLong nextUid = new AtomicLong(0);
   /** The unique ID of this object. */
@@ -91,6 +123,8 @@ public class AnalysisResult<V extends AbstractValue<V>, S extends Store<S>> impl
     this.stores = stores;
     this.finalLocalValues = finalLocalValues;
     this.analysisCaches = analysisCaches;
+    this.storesBeforeNodes = new IdentityHashMap<>();
+    this.storesAfterNodes = new IdentityHashMap<>();
   }
 
   /**
@@ -144,6 +178,53 @@ public class AnalysisResult<V extends AbstractValue<V>, S extends Store<S>> impl
     unaryAssignNodeLookup.putAll(other.unaryAssignNodeLookup);
     stores.putAll(other.stores);
     finalLocalValues.putAll(other.finalLocalValues);
+    // The stores of other are dropped, rather than kept in part, if they do not fit: a node
+    // without a recorded store falls back to re-running the transfer functions.
+    if (storeSnapshotCount + other.storeSnapshotCount <= maxStoreSnapshots) {
+      storesBeforeNodes.putAll(other.storesBeforeNodes);
+      storesAfterNodes.putAll(other.storesAfterNodes);
+      storeSnapshotCount += other.storeSnapshotCount;
+    }
+    storeSnapshotHits += other.storeSnapshotHits;
+  }
+
+  /**
+   * Adds recorded stores before and after nodes to this result.
+   *
+   * @param storesBeforeNodes the stores before nodes
+   * @param storesAfterNodes the stores after nodes
+   * @param storeSnapshotCount the number of distinct stores in {@code storesAfterNodes}
+   */
+  protected void addStoreSnapshots(
+      Map<Node, TransferInput<V, S>> storesBeforeNodes,
+      Map<Node, TransferInput<V, S>> storesAfterNodes,
+      int storeSnapshotCount) {
+    this.storesBeforeNodes.putAll(storesBeforeNodes);
+    this.storesAfterNodes.putAll(storesAfterNodes);
+    this.storeSnapshotCount += storeSnapshotCount;
+  }
+
+  /**
+   * Sets the maximum number of recorded stores that this result keeps, including those that {@link
+   * #combine} adds from other results. A result that combines the results of many control flow
+   * graphs, such as those of all the methods of a compilation unit, uses this to bound its memory.
+   * When combining another result would exceed the maximum, the recorded stores of the other
+   * result are dropped.
+   *
+   * @param maxStoreSnapshots the maximum number of distinct recorded stores
+   */
+  public void setMaxStoreSnapshots(int maxStoreSnapshots) {
+    this.maxStoreSnapshots = maxStoreSnapshots;
+  }
+
+  /**
+   * Returns the number of stores that were looked up in the recorded stores of this result, and of
+   * the results combined into it, instead of being computed by re-running transfer functions.
+   *
+   * @return the number of lookups of recorded stores
+   */
+  public long getStoreSnapshotHitCount() {
+    return storeSnapshotHits;
   }
 
   /**
@@ -337,6 +418,13 @@ public class AnalysisResult<V extends AbstractValue<V>, S extends Store<S>> impl
           // This block doesn't contain any node, return the store in the transfer input
           return transferInput.getRegularStore();
         }
+        if (!analysis.isRunning()) {
+          TransferInput<V, S> snapshot = storesAfterNodes.get(lastNode);
+          if (snapshot != null) {
+            storeSnapshotHits++;
+            return snapshot.getRegularStore();
+          }
+        }
         return analysis.runAnalysisFor(
             lastNode, Analysis.BeforeOrAfter.AFTER, transferInput, nodeValues, analysisCaches);
       case BACKWARD:
@@ -387,6 +475,9 @@ public class AnalysisResult<V extends AbstractValue<V>, S extends Store<S>> impl
    * <p>If the given {@link Node} cannot be reached (in the control flow graph), then {@code null}
    * is returned.
    *
+   * <p>If the analysis recorded the store and is not running, the recorded store is returned
+   * without running the analysis. While the analysis runs, the recorded stores may be out of date.
+   *
    * @param node the node to analyze
    * @param preOrPost which store to return: the store immediately before {@code node} or the store
    *     after {@code node}
@@ -400,6 +491,15 @@ public class AnalysisResult<V extends AbstractValue<V>, S extends Store<S>> impl
     if (transferInput == null) {
       return null;
     }
+    if (!transferInput.analysis.isRunning()) {
+      TransferInput<V, S> snapshot =
+          (preOrPost == Analysis.BeforeOrAfter.BEFORE ? storesBeforeNodes : storesAfterNodes)
+              .get(node);
+      if (snapshot != null) {
+        storeSnapshotHits++;
+        return snapshot.getRegularStore();
+      }
+    }
     return runAnalysisFor(node, preOrPost, transferInput, nodeValues, analysisCaches);
   }
 
@@ -451,6 +551,7 @@ public class AnalysisResult<V extends AbstractValue<V>, S extends Store<S>> impl
     result.add("finalLocalValues = " + finalLocalValues);
     result.add("stores = " + stores);
     result.add("analysisCaches = " + analysisCaches);
+    result.add("storesAfterNodes = " + storesAfterNodes.size() + " nodes");
     return result.toString();
   }
 
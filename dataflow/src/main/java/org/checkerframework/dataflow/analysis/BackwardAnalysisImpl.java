@@ -35,7 +35,7 @@ public class BackwardAnalysisImpl<
   // TODO: Add widening support like what the forward analysis does.
 
   /** Out stores after every basic block (assumed to be 'no information' if not present). */
-  protected final IdentityHashMap<Block, S> outStores;
+  protected final BlockTable<S> outStores;
 
   /**
    * Exception store of an exception block, propagated by exceptional successors of its exception
@@ -54,7 +54,7 @@ public class BackwardAnalysisImpl<
    */
   public BackwardAnalysisImpl() {
     super(Direction.BACKWARD);
-    this.outStores = new IdentityHashMap<>();
+    this.outStores = new BlockTable<>();
     this.exceptionStores = new IdentityHashMap<>();
     this.storeAtEntry = null;
   }
@@ -186,7 +186,7 @@ public class BackwardAnalysisImpl<
   @Override
   protected void initFields(ControlFlowGraph cfg) {
     super.initFields(cfg);
-    outStores.clear();
+    outStores.clear(cfg);
     exceptionStores.clear();
     // storeAtEntry is null before analysis begin
     storeAtEntry = null;
@@ -198,8 +198,8 @@ public class BackwardAnalysisImpl<
     worklist.process(cfg);
     SpecialBlock regularExitBlock = cfg.getRegularExitBlock();
     SpecialBlock exceptionExitBlock = cfg.getExceptionalExitBlock();
-    if (worklist.depthFirstOrder.get(regularExitBlock) == null
-        && worklist.depthFirstOrder.get(exceptionExitBlock) == null) {
+    // Blocks that are not reachable in the control flow graph have no index.
+    if (regularExitBlock.getIndex() == -1 && exceptionExitBlock.getIndex() == -1) {
       throw new BugInCF(
           "regularExitBlock and exceptionExitBlock should never both be null at the same time.");
     }
@@ -210,12 +210,12 @@ public class BackwardAnalysisImpl<
     S exceptionalInitialStore = transferFunction.initialExceptionalExitStore(underlyingAST);
     // If regularExitBlock or exceptionExitBlock is reachable in the control flow graph, then
     // initialize it as a start point of the analysis.
-    if (worklist.depthFirstOrder.get(regularExitBlock) != null) {
+    if (regularExitBlock.getIndex() != -1) {
       worklist.add(regularExitBlock);
       inputs.put(regularExitBlock, new TransferInput<>(null, this, normalInitialStore));
       outStores.put(regularExitBlock, normalInitialStore);
     }
-    if (worklist.depthFirstOrder.get(exceptionExitBlock) != null) {
+    if (exceptionExitBlock.getIndex() != -1) {
       worklist.add(exceptionExitBlock);
       inputs.put(exceptionExitBlock, new TransferInput<>(null, this, exceptionalInitialStore));
       outStores.put(exceptionExitBlock, exceptionalInitialStore);
@@ -297,7 +297,7 @@ public class BackwardAnalysisImpl<
    * @return the store right after the given block
    */
   protected @Nullable S getStoreAfter(Block b) {
-    return readFromStore(outStores, b);
+    return outStores.get(b);
   }
 
   @Override
@@ -0,0 +1,109 @@
+package org.checkerframework.dataflow.analysis;
+
+import java.util.Arrays;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.checkerframework.dataflow.cfg.ControlFlowGraph;
+import org.checkerframework.dataflow.cfg.block.Block;
+import org.checkerframework.javacutil.BugInCF;
+
+/**
+ * A map from the blocks of one control flow graph to values. The values are stored in an array
+ * indexed by {@link Block#getIndex}, so lookups do not hash.
+ *
+ * <p>A table is reused across analyses: {@link #clear(ControlFlowGraph)} empties it and sizes it
+ * for the next graph. Looking up or storing a reachable block of any other graph is a bug and
+ * throws {@link BugInCF}.
+ *
+ * @param <E> the type of the values
+ */
+public class BlockTable<E> {
+
+  /** The values, indexed by block index. A null element means that the block has no value. */
+  private @Nullable Object[] values = new Object[0];
+
+  /** The number of non-null elements of {@link #values}. */
+  private int size = 0;
+
+  /** The control flow graph whose blocks are stored in this table, or null before the first use. */
+  private @Nullable ControlFlowGraph cfg = null;
+
+  /** Creates an empty table. */
+  public BlockTable() {}
+
+  /**
+   * Removes all values and prepares this table to hold the blocks of {@code cfg}.
+   *
+   * @param cfg the control flow graph whose blocks will be stored in this table
+   */
+  public void clear(ControlFlowGraph cfg) {
+    int blockCount = cfg.getBlockCount();
+    if (values.length < blockCount) {
+      values = new Object[blockCount];
+    } else {
+      Arrays.fill(values, null);
+    }
+    size = 0;
+    this.cfg = cfg;
+  }
+
+  /**
+   * Returns the index of {@code b} in this table, or -1 if {@code b} is not reachable.
+   *
+   * @param b a block of the control flow graph of this table
+   * @return the index of {@code b}, or -1 if {@code b} is not reachable
+   * @throws BugInCF if {@code b} is a reachable block of a different control flow graph
+   */
+  private int indexOf(Block b) {
+    int index = b.getIndex();
+    if (index < 0) {
+      return -1;
+    }
+    if (cfg == null || index >= cfg.getBlockCount() || cfg.getBlockByIndex(index) != b) {
+      throw new BugInCF("Block is not in the control flow graph of this table: " + b);
+    }
+    return index;
+  }
+
+  /**
+   * Returns the value for the given block, or null if it has none.
+   *
+   * @param b a block of the control flow graph of this table
+   * @return the value for {@code b}, or null
+   * @throws BugInCF if {@code b} is a reachable block of a different control flow graph
+   */
+  @SuppressWarnings("unchecked") // only values of type E are stored
+  public @Nullable E get(Block b) {
+    int index = indexOf(b);
+    if (index < 0) {
+      return null;
+    }
+    return (E) values[index];
+  }
+
+  /**
+   * Sets the value for the given block.
+   *
+   * @param b a block that is reachable in the control flow graph of this table
+   * @param value the new value for {@code b}
+   * @throws BugInCF if {@code b} is not a reachable block of the control flow graph of this table
+   */
+  public void put(Block b, E value) {
+    int index = indexOf(b);
+    if (index < 0) {
+      throw new BugInCF("Block is not reachable in the control flow graph: " + b);
+    }
+    if (values[index] == null) {
+      size++;
+    }
+    values[index] = value;
+  }
+
+  /**
+   * Returns true if no block has a value.
+   *
+   * @return true if no block has a value
+   */
+  public boolean isEmpty() {
+    return size == 0;
+  }
+}
@@ -20,6 +20,7 @@ import org.checkerframework.dataflow.cfg.block.ConditionalBlock;
 import org.checkerframework.dataflow.cfg.block.ExceptionBlock;
 import org.checkerframework.dataflow.cfg.block.RegularBlock;
 import org.checkerframework.dataflow.cfg.block.SpecialBlock;
+import org.checkerframework.dataflow.cfg.node.AssignmentNode;
 import org.checkerframework.dataflow.cfg.node.LocalVariableNode;
 import org.checkerframework.dataflow.cfg.node.Node;
 import org.checkerframework.dataflow.cfg.node.ReturnNode;
@@ -41,10 +42,11 @@ public class ForwardAnalysisImpl<
     extends AbstractAnalysis<V, S, T> implements ForwardAnalysis<V, S, T> {
 
   /**
-   * Number of times each block has been analyzed since the last time widening was applied. Null if
-   * maxCountBeforeWidening is -1, which implies widening isn't used for this analysis.
+   * Number of times each block has been analyzed since the last time widening was applied, indexed
+   * by {@link Block#getIndex}. Null if maxCountBeforeWidening is -1, which implies widening isn't
+   * used for this analysis.
    */
-  protected final @Nullable IdentityHashMap<Block, Integer> blockCount;
+  protected int @Nullable [] blockCount;
 
   /**
    * Number of times a block can be analyzed before widening. -1 implies that widening shouldn't be
@@ -53,14 +55,52 @@ public class ForwardAnalysisImpl<
   protected final int maxCountBeforeWidening;
 
   /** Then stores before every basic block (assumed to be 'no information' if not present). */
-  protected final IdentityHashMap<Block, S> thenStores;
+  protected final BlockTable<S> thenStores;
 
   /** Else stores before every basic block (assumed to be 'no information' if not present). */
-  protected final IdentityHashMap<Block, S> elseStores;
+  protected final BlockTable<S> elseStores;
 
   /** The stores after every return statement. */
   protected final IdentityHashMap<ReturnNode, TransferResult<V, S>> storesAtReturnStatements;
 
+  /**
+   * For every regular block that has been analyzed, which of its nodes the transfer function is
+   * store-neutral for (see {@link ForwardTransferFunction#isStoreNeutral}). Element {@code i} of
+   * the array describes the {@code i}th node of the block.
+   */
+  protected final BlockTable<boolean[]> storeNeutralNodes;
+
+  /**
+   * The maximum number of stores that are recorded for one control flow graph, or 0 if store
+   * snapshots are not recorded.
+   *
+   * @see #setMaxStoreSnapshots(int)
+   */
+  protected int maxStoreSnapshots = 0;
+
+  /**
+   * The input of the transfer function of each node, as of the last analysis of its block. Once
+   * the analysis reaches its fixpoint, these are the final stores. Empty if store snapshots are not
+   * recorded.
+   */
+  protected final IdentityHashMap<Node, TransferInput<V, S>> storesBeforeNodes;
+
+  /**
+   * The stores after each node, as of the last analysis of its block. A node that does not change
+   * the store maps to the same object as the node before it. Empty if store snapshots are not
+   * recorded.
+   */
+  protected final IdentityHashMap<Node, TransferInput<V, S>> storesAfterNodes;
+
+  /**
+   * The number of stores in {@link #storesAfterNodes} for the nodes of each block, indexed by
+   * {@link Block#getIndex}.
+   */
+  protected int[] storeSnapshotCounts = new int[0];
+
+  /** The number of stores in {@link #storesAfterNodes}, at most {@link #maxStoreSnapshots}. */
+  protected int storeSnapshotCount = 0;
+
   // `@code`, not `@link`, because dataflow module doesn't depend on framework module.
   /**
    * Construct an object that can perform a org.checkerframework.dataflow forward analysis over a
@@ -72,10 +112,13 @@ public class ForwardAnalysisImpl<
   public ForwardAnalysisImpl(int maxCountBeforeWidening) {
     super(Direction.FORWARD);
     this.maxCountBeforeWidening = maxCountBeforeWidening;
-    this.blockCount = maxCountBeforeWidening == -1 ? null : new IdentityHashMap<>();
-    this.thenStores = new IdentityHashMap<>();
-    this.elseStores = new IdentityHashMap<>();
+    this.blockCount = maxCountBeforeWidening == -1 ? null : new int[0];
+    this.thenStores = new BlockTable<>();
+    this.elseStores = new BlockTable<>();
     this.storesAtReturnStatements = new IdentityHashMap<>();
+    this.storeNeutralNodes = new BlockTable<>();
+    this.storesBeforeNodes = new IdentityHashMap<>();
+    this.storesAfterNodes = new IdentityHashMap<>();
   }
 
   /**
@@ -123,11 +166,41 @@ public class ForwardAnalysisImpl<
           currentInput = inputBefore.copy();
           Node lastNode = null;
           boolean addToWorklistAgain = false;
-          for (Node n : rb.getNodes()) {
+          List<Node> nodes = rb.getNodes();
+          boolean[] storeNeutral = getStoreNeutralNodes(rb);
+          boolean recordSnapshots = startStoreSnapshots(rb);
+          // The store before the current node, if it is being recorded. The transfer functions
+          // modify their input store, but not inputBefore, which currentInput is a copy of.
+          TransferInput<V, S> snapshot = inputBefore;
+          int lastStoreChangingNode = nodes.size() - 1;
+          while (lastStoreChangingNode >= 0 && storeNeutral[lastStoreChangingNode]) {
+            lastStoreChangingNode--;
+          }
+          for (int i = 0; i < nodes.size(); i++) {
+            Node n = nodes.get(i);
             assert currentInput != null : "@AssumeAssertion(nullness): invariant";
-            TransferResult<V, S> transferResult = callTransferFunction(n, currentInput);
-            addToWorklistAgain |= updateNodeValues(n, transferResult);
-            currentInput = new TransferInput<>(n, this, transferResult);
+            if (recordSnapshots) {
+              storesBeforeNodes.put(n, snapshot);
+            }
+            if (storeNeutral[i]) {
+              // The store passes through unchanged, so neither a transfer result nor a new
+              // transfer input is needed.
+              addToWorklistAgain |=
+                  updateNodeValue(n, callStoreNeutralTransferFunction(n, currentInput));
+            } else {
+              TransferResult<V, S> transferResult = callTransferFunction(n, currentInput);
+              addToWorklistAgain |= updateNodeValues(n, transferResult);
+              currentInput = new TransferInput<>(n, this, transferResult);
+              if (recordSnapshots) {
+                recordSnapshots = reserveStoreSnapshot(rb);
+                // The transfer function of the next node that changes the store will modify
+                // currentInput, so keep a copy unless there is no such node.
+                snapshot = i < lastStoreChangingNode ? currentInput.copy() : currentInput;
+              }
+            }
+            if (recordSnapshots) {
+              storesAfterNodes.put(n, snapshot);
+            }
             lastNode = n;
           }
           assert currentInput != null : "@AssumeAssertion(nullness): invariant";
@@ -150,6 +223,12 @@ public class ForwardAnalysisImpl<
           Node node = eb.getNode();
           TransferResult<V, S> transferResult = callTransferFunction(node, currentInput);
           boolean addToWorklistAgain = updateNodeValues(node, transferResult);
+          if (startStoreSnapshots(eb)) {
+            storesBeforeNodes.put(node, inputBefore);
+            if (reserveStoreSnapshot(eb)) {
+              storesAfterNodes.put(node, new TransferInput<>(node, this, transferResult));
+            }
+          }
           // Propagate store to successor
           Block succ = eb.getSuccessor();
           if (succ != null) {
@@ -326,15 +405,155 @@ public class ForwardAnalysisImpl<
 
   @Override
   protected void initFields(ControlFlowGraph cfg) {
-    thenStores.clear();
-    elseStores.clear();
+    thenStores.clear(cfg);
+    elseStores.clear(cfg);
     if (blockCount != null) {
-      blockCount.clear();
+      blockCount = new int[cfg.getBlockCount()];
     }
     storesAtReturnStatements.clear();
+    storeNeutralNodes.clear(cfg);
+    storesBeforeNodes.clear();
+    storesAfterNodes.clear();
+    if (maxStoreSnapshots > 0) {
+      storeSnapshotCounts = new int[cfg.getBlockCount()];
+    }
+    storeSnapshotCount = 0;
     super.initFields(cfg);
   }
 
+  /**
+   * Returns, for each node of the given block, whether the transfer function is store-neutral for
+   * it. The classification is computed the first time the block is analyzed and reused when the
+   * block is re-analyzed.
+   *
+   * <p>Lvalues and assignments are never treated as store-neutral, because {@link
+   * #callTransferFunction} handles them specially.
+   *
+   * @param b a regular block of the current control flow graph
+   * @return an array whose {@code i}th element is true if the transfer function is store-neutral
+   *     for the {@code i}th node of {@code b}
+   */
+  protected boolean[] getStoreNeutralNodes(RegularBlock b) {
+    boolean[] result = storeNeutralNodes.get(b);
+    if (result == null) {
+      assert transferFunction != null : "@AssumeAssertion(nullness): invariant";
+      List<Node> nodes = b.getNodes();
+      result = new boolean[nodes.size()];
+      for (int i = 0; i < result.length; i++) {
+        Node n = nodes.get(i);
+        result[i] =
+            !n.isLValue()
+                && !(n instanceof AssignmentNode)
+                && transferFunction.isStoreNeutral(n);
+      }
+      storeNeutralNodes.put(b, result);
+    }
+    return result;
+  }
+
+  /**
+   * Computes the value of a node for which the transfer function is store-neutral, and set that
+   * node as current node first. The stores of {@code transferInput} are not modified, so they
+   * remain the input to the next node.
+   *
+   * @param node a node for which the transfer function is store-neutral
+   * @param transferInput the transfer input
+   * @return the abstract value of {@code node}, or null
+   */
+  protected @Nullable V callStoreNeutralTransferFunction(
+      Node node, TransferInput<V, S> transferInput) {
+    assert transferFunction != null : "@AssumeAssertion(nullness): invariant";
+    transferInput.node = node;
+    setCurrentNode(node);
+    V value = transferFunction.getStoreNeutralValue(node, transferInput);
+    setCurrentNode(null);
+    return value;
+  }
+
+  /**
+   * Sets the maximum number of stores that are recorded for each control flow graph, so that {@link
+   * AnalysisResult#getStoreBefore(Node)} and {@link AnalysisResult#getStoreAfter(Node)} can look up
+   * the store of a node instead of running the transfer functions of the preceding nodes of its
+   * block again. The stores are recorded while the analysis runs, each time a block is analyzed;
+   * the last analysis of a block is the one on its final input. For nodes without a recorded store,
+   * the analysis result falls back to running the transfer functions. 0, the default, disables
+   * recording.
+   *
+   * <p>Only nodes that may change the store cost a store; the store is shared with the preceding
+   * node otherwise. A recorded store is a {@link Store#copy} of the store after the node, so
+   * recording is compact only if copying a store shares the unchanged part of the store, as
+   * persistent stores do.
+   *
+   * @param maxStoreSnapshots the maximum number of stores to record for one control flow graph
+   */
+  public void setMaxStoreSnapshots(int maxStoreSnapshots) {
+    if (maxStoreSnapshots < 0) {
+      throw new BugInCF("negative maxStoreSnapshots: " + maxStoreSnapshots);
+    }
+    this.maxStoreSnapshots = maxStoreSnapshots;
+  }
+
+  /**
+   * Returns the maximum number of stores that are recorded for each control flow graph.
+   *
+   * @return the maximum number of stores that are recorded for each control flow graph, or 0 if
+   *     store snapshots are not recorded
+   * @see #setMaxStoreSnapshots(int)
+   */
+  public int getMaxStoreSnapshots() {
+    return maxStoreSnapshots;
+  }
+
+  /**
+   * Prepares to record the stores of the nodes of {@code b}, which is about to be analyzed: removes
+   * the stores recorded by a previous analysis of {@code b}, which are out of date.
+   *
+   * @param b a regular or exception block of the current control flow graph
+   * @return true if stores should be recorded
+   */
+  protected boolean startStoreSnapshots(Block b) {
+    if (maxStoreSnapshots == 0) {
+      return false;
+    }
+    List<Node> nodes = b.getNodes();
+    // The store before the first node is recorded whenever the stores of the block are.
+    if (!nodes.isEmpty() && storesBeforeNodes.containsKey(nodes.get(0))) {
+      for (Node n : nodes) {
+        storesBeforeNodes.remove(n);
+        storesAfterNodes.remove(n);
+      }
+      int index = b.getIndex();
+      storeSnapshotCount -= storeSnapshotCounts[index];
+      storeSnapshotCounts[index] = 0;
+    }
+    return storeSnapshotCount < maxStoreSnapshots;
+  }
+
+  /**
+   * Counts a store that is about to be recorded for a node of {@code b}, if fewer than {@link
+   * #maxStoreSnapshots} stores are recorded.
+   *
+   * @param b the block whose node's store is to be recorded
+   * @return true if the store may be recorded, false if the limit has been reached
+   */
+  protected boolean reserveStoreSnapshot(Block b) {
+    if (storeSnapshotCount == maxStoreSnapshots) {
+      return false;
+    }
+    storeSnapshotCount++;
+    storeSnapshotCounts[b.getIndex()]++;
+    return true;
+  }
+
+  @Override
+  public AnalysisResult<V, S> getResult() {
+    AnalysisResult<V, S> result = super.getResult();
+    if (!storesAfterNodes.isEmpty()) {
+      result.addStoreSnapshots(storesBeforeNodes, storesAfterNodes, storeSnapshotCount);
+    }
+    return result;
+  }
+
   @Override
   @RequiresNonNull("cfg")
   protected void initInitialInputs() {
@@ -446,16 +665,14 @@ public class ForwardAnalysisImpl<
     S thenStore = getStoreBefore(b, Store.Kind.THEN);
     S elseStore = getStoreBefore(b, Store.Kind.ELSE);
     boolean shouldWiden = false;
-    if (blockCount != null) {
-      Integer count = blockCount.get(b);
-      if (count == null) {
-        count = 0;
-      }
-      shouldWiden = count >= maxCountBeforeWidening;
+    int[] counts = blockCount;
+    if (counts != null) {
+      int index = b.getIndex();
+      shouldWiden = counts[index] >= maxCountBeforeWidening;
       if (shouldWiden) {
-        blockCount.put(b, 0);
+        counts[index] = 0;
       } else {
-        blockCount.put(b, count + 1);
+        counts[index]++;
       }
     }
     switch (kind) {
@@ -548,9 +765,9 @@ public class ForwardAnalysisImpl<
   protected @Nullable S getStoreBefore(Block b, Store.Kind kind) {
     switch (kind) {
       case THEN:
-        return readFromStore(thenStores, b);
+        return thenStores.get(b);
       case ELSE:
-        return readFromStore(elseStores, b);
+        return elseStores.get(b);
       default:
         throw new BugInCF("Unexpected Store.Kind: " + kind);
     }
@@ -4,6 +4,7 @@ import java.util.List;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.checkerframework.dataflow.cfg.UnderlyingAST;
 import org.checkerframework.dataflow.cfg.node.LocalVariableNode;
+import org.checkerframework.dataflow.cfg.node.Node;
 
 /**
  * Interface of a forward transfer function for the abstract interpretation used for the forward
@@ -28,4 +29,36 @@ public interface ForwardTransferFunction<V extends AbstractValue<V>, S extends S
    * @return the initial store
    */
   S initialStore(UnderlyingAST underlyingAST, @Nullable List<LocalVariableNode> parameters);
+
+  /**
+   * Returns true if this transfer function is store-neutral for {@code node}: for every input, the
+   * transfer result for {@code node} has the same store or stores as the input (the same objects,
+   * unmodified), reports no store change, and has no exceptional stores.
+   *
+   * <p>A forward analysis does not visit store-neutral nodes. Instead, it calls {@link
+   * #getStoreNeutralValue} and passes its input on to the next node unchanged. The analysis calls
+   * this method once per node of a control flow graph, so the answer must depend only on the node.
+   *
+   * <p>The default implementation returns false.
+   *
+   * @param node a node
+   * @return true if this transfer function is store-neutral for {@code node}
+   */
+  default boolean isStoreNeutral(Node node) {
+    return false;
+  }
+
+  /**
+   * Returns the abstract value that visiting {@code node} would produce. Called only for nodes for
+   * which {@link #isStoreNeutral} returned true. Must not modify the stores of {@code input}.
+   *
+   * <p>The default implementation visits the node.
+   *
+   * @param node a node for which this transfer function is store-neutral
+   * @param input the transfer input
+   * @return the abstract value of {@code node}, or null
+   */
+  default @Nullable V getStoreNeutralValue(Node node, TransferInput<V, S> input) {
+    return node.accept(this, input).getResultValue();
+  }
 }
@@ -18,9 +18,12 @@ import java.util.Set;
 import java.util.StringJoiner;
 import java.util.concurrent.atomic.AtomicLong;
 import org.checkerframework.checker.initialization.qual.UnknownInitialization;
+import org.checkerframework.checker.nullness.qual.EnsuresNonNull;
+import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.checkerframework.dataflow.analysis.AnalysisResult;
 import org.checkerframework.dataflow.cfg.block.Block;
+import org.checkerframework.dataflow.cfg.block.BlockImpl;
 import org.checkerframework.dataflow.cfg.block.ConditionalBlock;
 import org.checkerframework.dataflow.cfg.block.ExceptionBlock;
 import org.checkerframework.dataflow.cfg.block.RegularBlock;
@@ -106,6 +109,12 @@ public class ControlFlowGraph implements UniqueId {
    */
   protected final List<LambdaExpressionTree> declaredLambdas;
 
+  /**
+   * The blocks that are reachable from the entry block, indexed by {@link Block#getIndex}. Null
+   * until {@link #numberBlocks} is called.
+   */
+  protected Block @MonotonicNonNull [] blocksByIndex = null;
+
   public ControlFlowGraph(
       SpecialBlock entryBlock,
       SpecialBlockImpl regularExitBlock,
@@ -255,6 +264,60 @@ public class ControlFlowGraph implements UniqueId {
     return dfsOrderResult;
   }
 
+  /**
+   * Numbers the blocks of this graph: each block that is reachable from the entry block gets as its
+   * {@link Block#getIndex index} its rank in {@link #getDepthFirstOrderedBlocks}, where only the
+   * last occurrence of a block counts. Unreachable blocks keep index -1. Does nothing if the blocks
+   * are already numbered.
+   *
+   * <p>The CFG builder calls this method once the graph is complete; the graph must not be changed
+   * afterwards.
+   */
+  @EnsuresNonNull("blocksByIndex")
+  public void numberBlocks() {
+    if (blocksByIndex != null) {
+      return;
+    }
+    List<Block> dfo = getDepthFirstOrderedBlocks();
+    List<Block> ordered = new ArrayList<>(dfo.size());
+    Set<Block> seen = new HashSet<>();
+    for (int i = dfo.size() - 1; i >= 0; i--) {
+      Block b = dfo.get(i);
+      if (seen.add(b)) {
+        ordered.add(b);
+      }
+    }
+    Collections.reverse(ordered);
+    Block[] result = ordered.toArray(new Block[0]);
+    for (int i = 0; i < result.length; i++) {
+      ((BlockImpl) result[i]).setIndex(i);
+    }
+    blocksByIndex = result;
+  }
+
+  /**
+   * Returns the number of blocks that are reachable from the entry block. Their indices are 0
+   * (inclusive) to the result (exclusive).
+   *
+   * @return the number of blocks that are reachable from the entry block
+   */
+  public int getBlockCount() {
+    numberBlocks();
+    return blocksByIndex.length;
+  }
+
+  /**
+   * Returns the reachable block with the given {@link Block#getIndex index}.
+   *
+   * @param index the index of a block, between 0 (inclusive) and {@link #getBlockCount}
+   *     (exclusive)
+   * @return the block with the given index
+   */
+  public Block getBlockByIndex(int index) {
+    numberBlocks();
+    return blocksByIndex[index];
+  }
+
   /**
    * Returns the copied tree-lookup map. Ignores convertedTreeLookup, though {@link
    * #getNodesCorrespondingToTree} uses that field.
@@ -33,6 +33,17 @@ public interface Block extends UniqueId {
    */
   BlockType getType();
 
+  /**
+   * Returns the index of this block within its control flow graph. The blocks that are reachable
+   * from the entry block are numbered densely from 0, in reverse postorder (see {@link
+   * org.checkerframework.dataflow.cfg.ControlFlowGraph#getBlockByIndex}), so the index can be used
+   * to store per-block information in arrays and bit sets.
+   *
+   * @return the index of this block, or -1 if this block is unreachable or its control flow graph
+   *     has not been numbered
+   */
+  int getIndex();
+
   /**
    * Returns the predecessors of this basic block.
    *
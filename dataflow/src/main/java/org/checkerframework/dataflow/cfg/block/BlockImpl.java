@@ -28,6 +28,27 @@ public abstract class BlockImpl implements Block {
     return uid;
   }
 
+  /**
+   * The index of this block within its control flow graph, or -1 if it has not been assigned. See
+   * {@link Block#getIndex}.
+   */
+  protected int index = -1;
+
+  @Override
+  public int getIndex() {
+    return index;
+  }
+
+  /**
+   * Set the index of this block within its control flow graph. Only {@link
+   * org.checkerframework.dataflow.cfg.ControlFlowGraph} should call this method.
+   *
+   * @param index the index of this block
+   */
+  public void setIndex(int index) {
+    this.index = index;
+  }
+
   /**
    * Create a new BlockImpl.
    *
@@ -5,7 +5,9 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Processor;
 import org.checkerframework.checker.signature.qual.BinaryName;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -153,6 +155,34 @@ public abstract class CheckerFrameworkPerDirectoryTest {
     TestUtilities.assertTestDidNotFail(adjustedTestResult);
   }
 
+  /**
+   * Compiles the test files with the given checker, with the checker options of this test and the
+   * given additional options, and returns the diagnostics. Unlike {@link #run}, does not compare the
+   * diagnostics with those expected by the test files. A test can use this method to check that an
+   * option does not change the diagnostics, and, because the caller creates the checker, that the
+   * option took effect.
+   *
+   * @param checker the checker to run, instead of the checkers of this test; it must not have been
+   *     run before
+   * @param additionalOptions options to pass in addition to the checker options of this test
+   * @return the diagnostics, including the names of the files
+   */
+  protected Set<String> compileWithOptions(Processor checker, String... additionalOptions) {
+    List<String> options = new ArrayList<>(checkerOptions);
+    options.addAll(Arrays.asList(additionalOptions));
+    TestConfiguration config =
+        TestConfigurationBuilder.buildDefaultConfiguration(
+            testDir,
+            testFiles,
+            classpathExtra,
+            checkerNames,
+            options,
+            TestUtilities.getShouldEmitDebugInfo());
+    CompilationResult result =
+        new TypecheckExecutor().compile(config, Collections.singletonList(checker));
+    return TestUtilities.diagnosticsToStrings(result.getDiagnostics(), false);
+  }
+
   /**
    * This method is called before issuing assertions about a TypecheckResult. Subclasses can
    * override it to customize behavior.
@@ -4,11 +4,13 @@ import java.io.File;
 import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.List;
+import javax.annotation.processing.Processor;
 import javax.tools.DiagnosticCollector;
 import javax.tools.JavaCompiler;
 import javax.tools.JavaFileObject;
 import javax.tools.StandardJavaFileManager;
 import javax.tools.ToolProvider;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.checkerframework.framework.test.diagnostics.JavaDiagnosticReader;
 import org.checkerframework.framework.test.diagnostics.TestDiagnostic;
 import org.checkerframework.javacutil.SystemUtil;
@@ -30,6 +32,21 @@ public class TypecheckExecutor {
    * and return the result in a CompilationResult.
    */
   public CompilationResult compile(TestConfiguration configuration) {
+    return compile(configuration, null);
+  }
+
+  /**
+   * Like {@link #compile(TestConfiguration)}, but if {@code processors} is non-null, runs the given
+   * annotation processor instances instead of instantiating the processors of the configuration.
+   * The caller can then inspect the processors after the compilation.
+   *
+   * @param configuration the test configuration
+   * @param processors the annotation processors to run, or null to run the processors of the
+   *     configuration
+   * @return the result of the compilation
+   */
+  public CompilationResult compile(
+      TestConfiguration configuration, @Nullable List<? extends Processor> processors) {
     String dOption = configuration.getOptions().get("-d");
     if (dOption == null) {
       throw new Error("-d not supplied");
@@ -50,8 +67,10 @@ public class TypecheckExecutor {
     //   accepted if annotation processing is explicitly requested
     // Therefore, we now add them to the beginning of the options list.
     final List<String> options = new ArrayList<>();
-    options.add("-processor");
-    options.add(String.join(",", configuration.getProcessors()));
+    if (processors == null) {
+      options.add("-processor");
+      options.add(String.join(",", configuration.getProcessors()));
+    }
     if (SystemUtil.getJreVersion() == 8) {
       options.add("-source");
       options.add("8");
@@ -88,6 +107,9 @@ public class TypecheckExecutor {
     JavaCompiler.CompilationTask task =
         compiler.getTask(
             javacOutput, fileManager, diagnostics, options, new ArrayList<String>(), javaFiles);
+    if (processors != null) {
+      task.setProcessors(processors);
+    }
 
     /*
      * In Eclipse, std out and std err for multiple tests appear as one
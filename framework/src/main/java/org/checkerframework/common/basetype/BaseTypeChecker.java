@@ -30,15 +30,21 @@ import org.checkerframework.checker.interning.qual.FindDistinct;
 import org.checkerframework.checker.interning.qual.InternedDistinct;
 import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
+import org.checkerframework.checker.nullness.qual.RequiresNonNull;
 import org.checkerframework.checker.signature.qual.ClassGetName;
 import org.checkerframework.common.reflection.MethodValChecker;
+import org.checkerframework.common.wholeprograminference.WholeProgramInferenceDependencies;
+import org.checkerframework.common.wholeprograminference.WholeProgramInferenceFixpoint;
 import org.checkerframework.dataflow.cfg.visualize.CFGVisualizer;
 import org.checkerframework.framework.qual.SubtypeOf;
 import org.checkerframework.framework.source.SourceChecker;
+import org.checkerframework.framework.stub.ParsedAnnotationFileCache;
 import org.checkerframework.framework.type.AnnotatedTypeFactory;
+import org.checkerframework.framework.type.CheckedMethodCache;
 import org.checkerframework.framework.type.GenericAnnotatedTypeFactory;
 import org.checkerframework.framework.type.QualifierHierarchy;
 import org.checkerframework.framework.type.TypeHierarchy;
+import org.checkerframework.framework.util.CheckerDaemon;
 import org.checkerframework.framework.util.TreePathCacher;
 import org.checkerframework.javacutil.AbstractTypeProcessor;
 import org.checkerframework.javacutil.AnnotationProvider;
@@ -93,6 +99,15 @@ public abstract class BaseTypeChecker extends SourceChecker {
 
   @Override
   public void initChecker() {
+    if (parentChecker == null && hasOption("infer")) {
+      // Create these before the type factories of this checker and its subcheckers, which use
+      // them.
+      wpiDependencies = new WholeProgramInferenceDependencies();
+      if (hasOption("inferFixpoint")) {
+        wpiFixpoint = new WholeProgramInferenceFixpoint(this, wpiDependencies);
+      }
+    }
+
     // initialize all checkers and share options as necessary
     for (BaseTypeChecker checker : getSubcheckers()) {
       // We need to add all options that are activated for the set of subcheckers to
@@ -107,13 +122,56 @@ public abstract class BaseTypeChecker extends SourceChecker {
       checker.initChecker();
     }
 
-    if (!getSubcheckers().isEmpty()) {
+    if (!getSubcheckers().isEmpty() || wpiFixpoint != null) {
       messageStore = new TreeSet<>(this::compareCheckerMessages);
     }
 
     super.initChecker();
   }
 
+  /**
+   * Iterates whole-program inference to a fixpoint. Only set for an ultimate parent checker, and
+   * only if the {@code -AinferFixpoint} command-line option was supplied.
+   */
+  private @MonotonicNonNull WholeProgramInferenceFixpoint wpiFixpoint;
+
+  /**
+   * The reverse dependences of the storage locations of whole-program inference. Only set for an
+   * ultimate parent checker, and only if the {@code -Ainfer} command-line option was supplied.
+   */
+  private @MonotonicNonNull WholeProgramInferenceDependencies wpiDependencies;
+
+  /**
+   * In {@code -AinferFixpoint} mode, the messages issued in the last check of each class. They are
+   * printed when inference has converged, because a message issued in an earlier round may not
+   * hold in light of later inferences.
+   */
+  private final Map<TreePath, TreeSet<CheckerMessage>> fixpointMessages = new LinkedHashMap<>();
+
+  /**
+   * Returns the object that iterates whole-program inference to a fixpoint for this checker and
+   * the other checkers in its compound checker.
+   *
+   * @return the object that iterates whole-program inference to a fixpoint, or null if the {@code
+   *     -AinferFixpoint} command-line option was not supplied
+   */
+  public @Nullable WholeProgramInferenceFixpoint getWholeProgramInferenceFixpoint() {
+    return getUltimateParentChecker().wpiFixpoint;
+  }
+
+  /**
+   * Returns the reverse dependences of the storage locations of whole-program inference, which are
+   * shared by this checker and the other checkers in its compound checker. A driver that
+   * type-checks classes again after inference has changed can use them to select the affected
+   * classes.
+   *
+   * @return the reverse dependences of whole-program inference, or null if the {@code -Ainfer}
+   *     command-line option was not supplied
+   */
+  public @Nullable WholeProgramInferenceDependencies getWholeProgramInferenceDependencies() {
+    return getUltimateParentChecker().wpiDependencies;
+  }
+
   /**
    * The full list of subcheckers that need to be run prior to this one, in the order they need to
    * be run in. This list will only be non-empty for the one checker that runs all other
@@ -370,6 +428,24 @@ public abstract class BaseTypeChecker extends SourceChecker {
     return visitor.getTypeFactory();
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Tells the record of checked methods, if any, that the method containing {@code source} is
+   * not free of diagnostics.
+   */
+  @Override
+  protected void reportedDiagnostic(@Nullable Object source) {
+    GenericAnnotatedTypeFactory<?, ?, ?, ?> atypeFactory = getTypeFactory();
+    if (atypeFactory == null) {
+      return;
+    }
+    CheckedMethodCache checkedMethodCache = atypeFactory.getCheckedMethodCache();
+    if (checkedMethodCache != null) {
+      checkedMethodCache.reportedDiagnostic(source);
+    }
+  }
+
   @Override
   public AnnotationProvider getAnnotationProvider() {
     return getTypeFactory();
@@ -505,7 +581,13 @@ public abstract class BaseTypeChecker extends SourceChecker {
   // AbstractTypeProcessor delegation
   @Override
   public void typeProcess(TypeElement element, TreePath tree) {
-    if (!getSubcheckers().isEmpty()) {
+    if (wpiDependencies != null) {
+      wpiDependencies.startClass(element);
+    }
+    if (wpiFixpoint != null) {
+      wpiFixpoint.addClass(element, tree);
+    }
+    if (!getSubcheckers().isEmpty() || wpiFixpoint != null) {
       // TODO: I expected this to only be necessary if (parentChecker == null).
       // However, the NestedAggregateChecker fails otherwise.
       messageStore.clear();
@@ -539,7 +621,12 @@ public abstract class BaseTypeChecker extends SourceChecker {
     this.errsOnLastExit = nerrorsOfAllPreviousCheckers;
     super.typeProcess(element, tree);
 
-    if (!getSubcheckers().isEmpty()) {
+    if (wpiDependencies != null) {
+      wpiDependencies.finishClass();
+    }
+    if (wpiFixpoint != null) {
+      fixpointMessages.put(tree, new TreeSet<>(messageStore));
+    } else if (!getSubcheckers().isEmpty()) {
       printStoredMessages(tree.getCompilationUnit());
       // Update errsOnLastExit to reflect the errors issued.
       this.errsOnLastExit = log.nerrors;
@@ -586,6 +673,31 @@ public abstract class BaseTypeChecker extends SourceChecker {
     return ultimateParentChecker;
   }
 
+  /**
+   * The parsed annotation files shared by this checker and its subcheckers. Only set for an
+   * ultimate parent checker; see {@link #getParsedAnnotationFileCache}.
+   */
+  private @MonotonicNonNull ParsedAnnotationFileCache parsedAnnotationFileCache;
+
+  /**
+   * Returns the cache of parsed stub files and annotated JDK files that is shared by the ultimate
+   * parent checker and all of its subcheckers, so that each file is parsed once per compilation
+   * rather than once per checker. When running in a {@link CheckerDaemon}, the cache is also shared
+   * by all later compilations.
+   *
+   * @return the cache of parsed annotation files for this compilation
+   */
+  public ParsedAnnotationFileCache getParsedAnnotationFileCache() {
+    BaseTypeChecker ultimateParent = getUltimateParentChecker();
+    if (ultimateParent.parsedAnnotationFileCache == null) {
+      ultimateParent.parsedAnnotationFileCache =
+          CheckerDaemon.isRunning()
+              ? ParsedAnnotationFileCache.getSharedInstance()
+              : new ParsedAnnotationFileCache();
+    }
+    return ultimateParent.parsedAnnotationFileCache;
+  }
+
   /**
    * {@inheritDoc}
    *
@@ -783,15 +895,6 @@ public abstract class BaseTypeChecker extends SourceChecker {
     }
   }
 
-  @Override
-  public void typeProcessingOver() {
-    for (BaseTypeChecker checker : getSubcheckers()) {
-      checker.typeProcessingOver();
-    }
-
-    super.typeProcessingOver();
-  }
-
   @Override
   public Set<String> getSupportedOptions() {
     if (supportedOptions == null) {
@@ -848,6 +951,85 @@ public abstract class BaseTypeChecker extends SourceChecker {
     return false;
   }
 
+  @Override
+  public void typeProcessingOver() {
+    if (wpiFixpoint != null) {
+      runInferenceToFixpoint();
+    } else if (wpiDependencies != null) {
+      wpiDependencies.endRound();
+    }
+    for (BaseTypeChecker checker : getSubcheckers()) {
+      checker.typeProcessingOver();
+    }
+    GenericAnnotatedTypeFactory<?, ?, ?, ?> atypeFactory = getTypeFactory();
+    if (atypeFactory != null) {
+      atypeFactory.typeProcessingOver();
+    }
+    super.typeProcessingOver();
+  }
+
+  /**
+   * In {@code -AinferFixpoint} mode, type-checks classes again until whole-program inference
+   * converges, then writes the inferred annotations and prints the messages of the last check of
+   * each class.
+   */
+  @RequiresNonNull("wpiFixpoint")
+  private void runInferenceToFixpoint() {
+    for (Map<TypeElement, TreePath> classes = wpiFixpoint.nextRound();
+        !classes.isEmpty();
+        classes = wpiFixpoint.nextRound()) {
+      for (Map.Entry<TypeElement, TreePath> entry : classes.entrySet()) {
+        // Force setRoot, so that the type factories read the inferences of the previous round.
+        this.currentRoot = null;
+        for (BaseTypeChecker subchecker : getSubcheckers()) {
+          subchecker.currentRoot = null;
+        }
+        typeProcess(entry.getKey(), entry.getValue());
+      }
+    }
+    wpiFixpoint.writeResults();
+
+    for (Map.Entry<TreePath, TreeSet<CheckerMessage>> entry : fixpointMessages.entrySet()) {
+      CompilationUnitTree root = entry.getKey().getCompilationUnit();
+      for (CheckerMessage msg : entry.getValue()) {
+        super.printOrStoreMessage(msg.kind, msg.message, msg.source, root, msg.trace);
+      }
+    }
+    fixpointMessages.clear();
+  }
+
+  @Override
+  protected void printStats() {
+    super.printStats();
+    printCacheStatistics(this);
+    for (BaseTypeChecker checker : getSubcheckers()) {
+      printCacheStatistics(checker);
+    }
+    if (parsedAnnotationFileCache != null) {
+      System.out.println(parsedAnnotationFileCache.getStatistics());
+    }
+    if (wpiDependencies != null) {
+      System.out.println(wpiDependencies.getStatistics());
+    }
+  }
+
+  /**
+   * Prints the statistics of the caches of the type factory of the given checker.
+   *
+   * @param checker the checker whose type factory's cache statistics to print
+   */
+  private static void printCacheStatistics(BaseTypeChecker checker) {
+    GenericAnnotatedTypeFactory<?, ?, ?, ?> atypeFactory = checker.getTypeFactory();
+    if (atypeFactory == null) {
+      return;
+    }
+    String statistics = atypeFactory.getCacheStatistics();
+    if (!statistics.isEmpty()) {
+      System.out.println(checker.getClass().getSimpleName() + " cache statistics");
+      System.out.println(statistics);
+    }
+  }
+
   @Override
   protected void shutdownHook() {
     super.shutdownHook();
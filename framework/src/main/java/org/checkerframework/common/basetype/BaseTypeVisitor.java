@@ -110,6 +110,7 @@ import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedTypeVari
 import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedUnionType;
 import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedWildcardType;
 import org.checkerframework.framework.type.AnnotatedTypeParameterBounds;
+import org.checkerframework.framework.type.CheckedMethodCache;
 import org.checkerframework.framework.type.GenericAnnotatedTypeFactory;
 import org.checkerframework.framework.type.QualifierHierarchy;
 import org.checkerframework.framework.type.TypeHierarchy;
@@ -705,6 +706,12 @@ public class BaseTypeVisitor<Factory extends GenericAnnotatedTypeFactory<?, ?, ?
    */
   @Override
   public Void visitMethod(MethodTree node, Void p) {
+    CheckedMethodCache checkedMethodCache = atypeFactory.getCheckedMethodCache();
+    if (checkedMethodCache != null && checkedMethodCache.isUnchanged(node)) {
+      // An earlier compilation checked this method without diagnostics.
+      return null;
+    }
+
     // We copy the result from getAnnotatedType to ensure that
     // circular types (e.g. K extends Comparable<K>) are represented
     // by circular AnnotatedTypeMirrors, which avoids problems with
@@ -792,7 +799,11 @@ public class BaseTypeVisitor<Factory extends GenericAnnotatedTypeFactory<?, ?, ?
         }
       }
 
-      return super.visitMethod(node, p);
+      super.visitMethod(node, p);
+      if (checkedMethodCache != null) {
+        checkedMethodCache.markChecked(node);
+      }
+      return null;
     } finally {
       visitorState.setMethodReceiver(preMRT);
       visitorState.setMethodTree(preMT);
@@ -643,7 +643,7 @@ public final class SceneToStubWriter {
       }
     }
     if (printWriter != null) {
-      printWriter.flush();
+      printWriter.close();
     }
   }
 
@@ -8,6 +8,7 @@ import java.util.Map;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.VariableElement;
 import org.checkerframework.common.basetype.BaseTypeChecker;
 import org.checkerframework.dataflow.analysis.Analysis;
@@ -193,9 +194,21 @@ public interface WholeProgramInference {
   void addMethodDeclarationAnnotation(ExecutableElement methodElt, AnnotationMirror anno);
 
   /**
-   * Writes the inferred results to a file. Ideally, it should be called at the end of the
-   * type-checking process. In practice, it is called after each class, because we don't know which
-   * class will be the last one in the type-checking process.
+   * Writes the inferred results for the compilation unit of a class to a file, if they have changed
+   * since the file was last written. Called after each top-level class has been type-checked, so
+   * that the output for a compilation unit is written as soon as it is likely to be complete, and
+   * so that a run that is stopped early still leaves the output for the classes that it finished.
+   *
+   * @param classElt a class that has just been type-checked
+   * @param format the file format in which to write the results
+   * @param checker the checker from which this method is called, for naming stub files
+   */
+  void writeResultsForClass(TypeElement classElt, OutputFormat format, BaseTypeChecker checker);
+
+  /**
+   * Writes all the inferred results that have changed since they were last written to files.
+   * Called at the end of the type-checking process, to write the results for compilation units that
+   * were modified after their own classes were type-checked.
    *
    * @param format the file format in which to write the results
    * @param checker the checker from which this method is called, for naming stub files
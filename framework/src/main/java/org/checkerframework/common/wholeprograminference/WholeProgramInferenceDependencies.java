@@ -0,0 +1,261 @@
+package org.checkerframework.common.wholeprograminference;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.checkerframework.javacutil.ElementUtils;
+
+/**
+ * The reverse dependences of whole-program inference: for each storage location, the classes whose
+ * type-checking read it. A driver that re-runs type-checking after inference has changed some
+ * storage locations uses this to re-check only the affected classes, rather than all of them.
+ *
+ * <p>A storage location is identified by the declaration that owns it: a field, or a method or
+ * constructor, which owns the inferred annotations on its parameters, receiver, and return type,
+ * its pre- and postconditions, and its declaration annotations. Only declarations in source code
+ * are storage locations.
+ *
+ * <p>One instance is shared by a checker and its subcheckers, so that a class is re-checked by all
+ * of them when the inferences of any of them change. Reads are recorded by {@link
+ * org.checkerframework.framework.type.AnnotatedTypeFactory} when it looks up the type or
+ * declaration annotations of an element, and changes by {@link WholeProgramInferenceImplementation}
+ * when it refines a storage location.
+ */
+public class WholeProgramInferenceDependencies {
+
+  /** For each storage location, the classes whose last type-check read it. */
+  private final Map<Element, Set<TypeElement>> readers = new HashMap<>();
+
+  /**
+   * For each class, the storage locations that its last type-check read. The inverse of {@link
+   * #readers}, used to discard a class's old reads when it is type-checked again.
+   */
+  private final Map<TypeElement, Set<Element>> reads = new HashMap<>();
+
+  /** The class that is being type-checked, or null if none is. */
+  private @Nullable TypeElement currentClass = null;
+
+  /** The storage locations whose inferred annotations have changed in the current round. */
+  private final Set<Element> changedLocations = new LinkedHashSet<>();
+
+  /** The number of storage locations that changed in each completed round. */
+  private final List<Integer> changedLocationsPerRound = new ArrayList<>();
+
+  /** The binary names of the classes affected by the changes of each completed round. */
+  private final List<Set<String>> affectedClassesPerRound = new ArrayList<>();
+
+  /** Creates an empty dependency graph. */
+  public WholeProgramInferenceDependencies() {}
+
+  /**
+   * Called before a class is type-checked. Discards the reads recorded in the class's previous
+   * type-check, if any.
+   *
+   * @param element the class
+   */
+  public void startClass(TypeElement element) {
+    Set<Element> oldReads = reads.remove(element);
+    if (oldReads != null) {
+      for (Element location : oldReads) {
+        Set<TypeElement> locationReaders = readers.get(location);
+        if (locationReaders != null) {
+          locationReaders.remove(element);
+        }
+      }
+    }
+    currentClass = element;
+  }
+
+  /** Called after a class has been type-checked by a checker and all of its subcheckers. */
+  public void finishClass() {
+    currentClass = null;
+  }
+
+  /**
+   * Records that the class being type-checked read the type or declaration annotations of an
+   * element. Does nothing if the element is not, or is not part of, a storage location.
+   *
+   * @param elt an element whose type or declaration annotations are read
+   */
+  public void recordRead(Element elt) {
+    if (currentClass == null) {
+      return;
+    }
+    Element location = getStorageLocation(elt);
+    if (location == null) {
+      return;
+    }
+    if (readers.computeIfAbsent(location, l -> new HashSet<>()).add(currentClass)) {
+      reads.computeIfAbsent(currentClass, c -> new HashSet<>()).add(location);
+    }
+  }
+
+  /**
+   * Records that the inferred annotations of a storage location have changed in the current round.
+   *
+   * @param elt an element that is, or is part of, a storage location
+   */
+  public void recordChange(Element elt) {
+    Element location = getStorageLocation(elt);
+    if (location != null) {
+      changedLocations.add(location);
+    }
+  }
+
+  /**
+   * Returns the classes whose last type-check read a storage location.
+   *
+   * @param location a field, method, or constructor
+   * @return the classes whose last type-check read {@code location}
+   */
+  public Set<TypeElement> getReaders(Element location) {
+    return Collections.unmodifiableSet(readers.getOrDefault(location, Collections.emptySet()));
+  }
+
+  /**
+   * Returns the storage locations whose inferred annotations have changed in the current round.
+   *
+   * @return the storage locations that have changed in the current round
+   */
+  public Set<Element> getChangedLocations() {
+    return Collections.unmodifiableSet(changedLocations);
+  }
+
+  /**
+   * Returns the classes that the changes of the current round affect: the classes that read a
+   * changed storage location, and the top-level classes that declare one.
+   *
+   * @return the classes to type-check again because of the changes of the current round
+   */
+  public Set<TypeElement> getAffectedClasses() {
+    Set<TypeElement> result = new LinkedHashSet<>();
+    for (Element location : changedLocations) {
+      result.add(ElementUtils.toplevelEnclosingTypeElement(location));
+      result.addAll(readers.getOrDefault(location, Collections.emptySet()));
+    }
+    return result;
+  }
+
+  /**
+   * Returns the source files of the classes that the changes of the current round affect. A driver
+   * that runs javac once per round needs to compile only these files, with the others on the
+   * classpath.
+   *
+   * @return the paths of the source files of {@link #getAffectedClasses()}
+   */
+  public Set<String> getAffectedCompilationUnits() {
+    Set<String> result = new TreeSet<>();
+    for (TypeElement affected : getAffectedClasses()) {
+      result.add(
+          ElementUtils.getSourceFilePath(ElementUtils.toplevelEnclosingTypeElement(affected)));
+    }
+    return result;
+  }
+
+  /**
+   * Ends the current round: records its statistics and forgets its changes.
+   *
+   * @return the classes to type-check again because of the changes of the round that ended
+   */
+  public Set<TypeElement> endRound() {
+    Set<TypeElement> affected = getAffectedClasses();
+    changedLocationsPerRound.add(changedLocations.size());
+    Set<String> affectedNames = new TreeSet<>();
+    for (TypeElement affectedClass : affected) {
+      affectedNames.add(ElementUtils.getBinaryName(affectedClass));
+    }
+    affectedClassesPerRound.add(Collections.unmodifiableSet(affectedNames));
+    changedLocations.clear();
+    return affected;
+  }
+
+  /**
+   * Returns the number of storage locations that changed in each completed round.
+   *
+   * @return the number of storage locations that changed in each completed round, in order
+   */
+  public List<Integer> getChangedLocationsPerRound() {
+    return Collections.unmodifiableList(changedLocationsPerRound);
+  }
+
+  /**
+   * Returns the binary names of the classes affected by the changes of each completed round.
+   *
+   * @return the binary names of the classes affected by the changes of each completed round, in
+   *     order
+   */
+  public List<Set<String>> getAffectedClassesPerRound() {
+    return Collections.unmodifiableList(affectedClassesPerRound);
+  }
+
+  /**
+   * Returns a description of the dependency graph and of the changes in each completed round.
+   *
+   * @return statistics of whole-program inference, one round per line
+   */
+  public String getStatistics() {
+    int edges = 0;
+    for (Set<TypeElement> locationReaders : readers.values()) {
+      edges += locationReaders.size();
+    }
+    StringBuilder sb = new StringBuilder();
+    sb.append(
+        String.format(
+            "Whole-program inference dependences: %d storage locations read by %d classes"
+                + " (%d edges)",
+            readers.size(), reads.size(), edges));
+    for (int i = 0; i < changedLocationsPerRound.size(); i++) {
+      sb.append(System.lineSeparator());
+      sb.append(
+          String.format(
+              "  round %d: %d storage locations changed, %d classes affected",
+              i + 1, changedLocationsPerRound.get(i), affectedClassesPerRound.get(i).size()));
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Returns the storage location that an element is, or is part of.
+   *
+   * @param elt an element
+   * @return the field, method, or constructor that owns the inferred annotations of {@code elt}, or
+   *     null if {@code elt} has no inferred annotations
+   */
+  private static @Nullable Element getStorageLocation(Element elt) {
+    Element location;
+    switch (elt.getKind()) {
+      case FIELD:
+      case ENUM_CONSTANT:
+      case METHOD:
+      case CONSTRUCTOR:
+        location = elt;
+        break;
+      case PARAMETER:
+        location = elt.getEnclosingElement();
+        if (location == null
+            || (location.getKind() != ElementKind.METHOD
+                && location.getKind() != ElementKind.CONSTRUCTOR)) {
+          // Not a parameter of a method or constructor.
+          return null;
+        }
+        break;
+      default:
+        return null;
+    }
+    if (ElementUtils.enclosingTypeElement(location) == null
+        || !ElementUtils.isElementFromSourceCode(location)) {
+      return null;
+    }
+    return location;
+  }
+}
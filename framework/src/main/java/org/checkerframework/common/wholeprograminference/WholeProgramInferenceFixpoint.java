@@ -0,0 +1,207 @@
+package org.checkerframework.common.wholeprograminference;
+
+import com.sun.source.util.TreePath;
+import com.sun.tools.javac.comp.CompileStates.CompileState;
+import com.sun.tools.javac.main.JavaCompiler;
+import com.sun.tools.javac.main.Option;
+import com.sun.tools.javac.processing.JavacProcessingEnvironment;
+import com.sun.tools.javac.util.Context;
+import com.sun.tools.javac.util.Options;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import org.checkerframework.common.basetype.BaseTypeChecker;
+import org.checkerframework.common.wholeprograminference.WholeProgramInference.OutputFormat;
+import org.checkerframework.framework.type.AnnotatedTypeFactory;
+import org.checkerframework.javacutil.UserError;
+
+/**
+ * Iterates whole-program inference to a fixpoint within a single run of javac, rather than once per
+ * run of javac as scripts such as {@code infer-and-annotate.sh} and {@code wpi.sh} do. Enabled by
+ * the {@code -AinferFixpoint} command-line option, which requires {@code -Ainfer=ajava}.
+ *
+ * <p>The first round is the ordinary type-checking of each class. At the end of each round, the
+ * ajava files that inference would write are rendered in memory and compared with those of the
+ * previous round. If none has changed, inference has converged and the files are written once. If
+ * some have changed, the type factories read the new inferences as if from {@code -Aajava} files,
+ * and the next round re-checks only the classes that are affected, according to the {@link
+ * WholeProgramInferenceDependencies}: those that declare a storage location that changed, and those
+ * that read one in their last check. Inferences are never discarded between rounds, only refined by
+ * least upper bound, so iteration terminates; {@code -AinferFixpoint=N} bounds the number of rounds
+ * regardless.
+ *
+ * <p>Diagnostics are reported once, from the last check of each class. Because the classes are
+ * checked again after javac would have lowered them, javac stops after flow analysis, and no class
+ * files are written in this mode; a warning says so unless {@code -proc:only} was supplied.
+ */
+public class WholeProgramInferenceFixpoint {
+
+  /** The maximum number of rounds if {@code -AinferFixpoint} has no argument. */
+  public static final int DEFAULT_MAX_ROUNDS = 20;
+
+  /** The ultimate parent checker, which runs the rounds. */
+  private final BaseTypeChecker checker;
+
+  /** The maximum number of rounds of type-checking. */
+  private final int maxRounds;
+
+  /** The current round, starting at 1. */
+  private int round = 1;
+
+  /** The reverse dependences of the storage locations of inference. */
+  private final WholeProgramInferenceDependencies dependencies;
+
+  /** The path to each class that is type-checked, in the order of the first round. */
+  private final Map<TypeElement, TreePath> classes = new LinkedHashMap<>();
+
+  /**
+   * The ajava files inferred by each type factory in the previous round, keyed by the path of the
+   * source file.
+   */
+  private final Map<AnnotatedTypeFactory, Map<String, String>> previousContents = new HashMap<>();
+
+  /**
+   * Creates the fixpoint driver for a checker, and stops javac after flow analysis so that the
+   * trees of every class can be type-checked again. Warns if javac would otherwise have written
+   * class files.
+   *
+   * @param checker the ultimate parent checker
+   * @param dependencies the reverse dependences of the storage locations of inference
+   * @throws UserError if the command-line options are inconsistent
+   */
+  public WholeProgramInferenceFixpoint(
+      BaseTypeChecker checker, WholeProgramInferenceDependencies dependencies) {
+    this.checker = checker;
+    this.dependencies = dependencies;
+    String maxRoundsArg = checker.getOption("inferFixpoint");
+    if (maxRoundsArg == null || maxRoundsArg.isEmpty()) {
+      maxRounds = DEFAULT_MAX_ROUNDS;
+    } else {
+      try {
+        maxRounds = Integer.parseInt(maxRoundsArg);
+      } catch (NumberFormatException e) {
+        throw new UserError(
+            "Bad argument -AinferFixpoint=%s should be a positive number of rounds", maxRoundsArg);
+      }
+      if (maxRounds < 1) {
+        throw new UserError(
+            "Bad argument -AinferFixpoint=%s should be a positive number of rounds", maxRoundsArg);
+      }
+    }
+    if (!"ajava".equals(checker.getOption("infer"))) {
+      throw new UserError("-AinferFixpoint requires -Ainfer=ajava");
+    }
+
+    Context context =
+        ((JavacProcessingEnvironment) checker.getProcessingEnvironment()).getContext();
+    JavaCompiler compiler = JavaCompiler.instance(context);
+    if (compiler.shouldStopPolicyIfNoError.isAfter(CompileState.FLOW)
+        && !Options.instance(context).isSet(Option.PROC, "only")) {
+      checker.message(
+          Diagnostic.Kind.WARNING,
+          "-AinferFixpoint stops javac after flow analysis, so no class files are written;"
+              + " compile again without -AinferFixpoint to produce them");
+    }
+    compiler.shouldStopPolicyIfNoError = CompileState.FLOW;
+  }
+
+  /**
+   * Called whenever a class is type-checked. Records the classes of the first round, which later
+   * rounds check again if they are affected by changed inferences.
+   *
+   * @param element the class
+   * @param path the path to the class
+   */
+  public void addClass(TypeElement element, TreePath path) {
+    if (round == 1) {
+      classes.put(element, path);
+    }
+  }
+
+  /**
+   * Ends the current round. If the inferences changed in this round, makes them visible to the type
+   * factories and returns the classes to check in the next round.
+   *
+   * @return the classes to type-check in the next round, in the order of the first round; empty if
+   *     inference has converged or the maximum number of rounds has been reached
+   */
+  public Map<TypeElement, TreePath> nextRound() {
+    Set<TypeElement> affected = dependencies.endRound();
+    boolean changed = false;
+    for (AnnotatedTypeFactory factory : getInferringFactories()) {
+      Map<String, String> contents = getStorage(factory).getAjavaFileContents();
+      Map<String, String> previous =
+          previousContents.getOrDefault(factory, Collections.emptyMap());
+      if (!contents.equals(previous)) {
+        changed = true;
+        previousContents.put(factory, contents);
+        factory.setInferredAjavaContents(contents);
+      }
+    }
+
+    if (!changed) {
+      return Collections.emptyMap();
+    }
+    if (round >= maxRounds) {
+      checker.message(
+          Diagnostic.Kind.WARNING,
+          "Whole-program inference did not converge in %d rounds; the results are incomplete",
+          maxRounds);
+      return Collections.emptyMap();
+    }
+
+    round++;
+    Map<TypeElement, TreePath> result = new LinkedHashMap<>();
+    for (Map.Entry<TypeElement, TreePath> entry : classes.entrySet()) {
+      if (affected.contains(entry.getKey())) {
+        result.put(entry.getKey(), entry.getValue());
+      }
+    }
+    return result;
+  }
+
+  /** Writes the inferred ajava files, once inference has converged. */
+  public void writeResults() {
+    for (AnnotatedTypeFactory factory : getInferringFactories()) {
+      factory
+          .getWholeProgramInference()
+          .writeResultsToFile(OutputFormat.AJAVA, factory.getChecker());
+    }
+  }
+
+  /**
+   * Returns the type factories of the checker and its subcheckers that perform whole-program
+   * inference.
+   *
+   * @return the type factories that perform whole-program inference
+   */
+  private List<AnnotatedTypeFactory> getInferringFactories() {
+    List<BaseTypeChecker> checkers = new ArrayList<>(checker.getSubcheckers());
+    checkers.add(checker);
+    List<AnnotatedTypeFactory> result = new ArrayList<>();
+    for (BaseTypeChecker c : checkers) {
+      AnnotatedTypeFactory factory = c.getTypeFactory();
+      if (factory != null && factory.getWholeProgramInference() != null) {
+        result.add(factory);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the storage of the inferences of a type factory.
+   *
+   * @param factory a type factory that performs whole-program inference into ajava files
+   * @return the storage of the inferences of {@code factory}
+   */
+  private static WholeProgramInferenceJavaParserStorage getStorage(AnnotatedTypeFactory factory) {
+    return (WholeProgramInferenceJavaParserStorage)
+        ((WholeProgramInferenceImplementation<?>) factory.getWholeProgramInference()).getStorage();
+  }
+}
@@ -15,6 +15,7 @@ import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.VariableElement;
 import javax.lang.model.util.ElementFilter;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.checkerframework.common.basetype.BaseTypeChecker;
 import org.checkerframework.dataflow.analysis.Analysis;
 import org.checkerframework.dataflow.cfg.node.FieldAccessNode;
@@ -99,6 +100,9 @@ public class WholeProgramInferenceImplementation<T> implements WholeProgramInfer
   /** Whether to ignore assignments where the rhs is null. */
   private final boolean ignoreNullAssignments;
 
+  /** Records which storage locations change; shared with the other checkers of the compilation. */
+  private final @Nullable WholeProgramInferenceDependencies dependencies;
+
   /**
    * Constructs a new {@code WholeProgramInferenceImplementation} that has not yet inferred any
    * annotations.
@@ -113,6 +117,7 @@ public class WholeProgramInferenceImplementation<T> implements WholeProgramInfer
     boolean isNullness =
         atypeFactory.getClass().getSimpleName().equals("NullnessAnnotatedTypeFactory");
     this.ignoreNullAssignments = !isNullness;
+    this.dependencies = atypeFactory.getChecker().getWholeProgramInferenceDependencies();
   }
 
   /**
@@ -187,7 +192,8 @@ public class WholeProgramInferenceImplementation<T> implements WholeProgramInfer
       atypeFactory.wpiAdjustForUpdateNonField(argATM);
       T paramAnnotations =
           storage.getParameterAnnotations(methodElt, i, paramATM, ve, atypeFactory);
-      updateAnnotationSet(paramAnnotations, TypeUseLocation.PARAMETER, argATM, paramATM, file);
+      updateAnnotationSet(
+          paramAnnotations, methodElt, TypeUseLocation.PARAMETER, argATM, paramATM, file);
     }
   }
 
@@ -238,7 +244,13 @@ public class WholeProgramInferenceImplementation<T> implements WholeProgramInfer
           storage.getPreOrPostconditionsForField(preOrPost, methodElt, fieldElement, atypeFactory);
       String file = storage.getFileForElement(methodElt);
       updateAnnotationSet(
-          preOrPostConditionAnnos, TypeUseLocation.FIELD, inferredType, fieldDeclType, file, false);
+          preOrPostConditionAnnos,
+          methodElt,
+          TypeUseLocation.FIELD,
+          inferredType,
+          fieldDeclType,
+          file,
+          false);
     }
   }
 
@@ -276,7 +288,8 @@ public class WholeProgramInferenceImplementation<T> implements WholeProgramInfer
       atypeFactory.wpiAdjustForUpdateNonField(argATM);
       T paramAnnotations =
           storage.getParameterAnnotations(methodElt, i, paramATM, ve, atypeFactory);
-      updateAnnotationSet(paramAnnotations, TypeUseLocation.PARAMETER, argATM, paramATM, file);
+      updateAnnotationSet(
+          paramAnnotations, methodElt, TypeUseLocation.PARAMETER, argATM, paramATM, file);
     }
 
     AnnotatedDeclaredType argADT = overriddenMethod.getReceiverType();
@@ -284,7 +297,8 @@ public class WholeProgramInferenceImplementation<T> implements WholeProgramInfer
       AnnotatedTypeMirror paramATM = atypeFactory.getAnnotatedType(methodTree).getReceiverType();
       if (paramATM != null) {
         T receiver = storage.getReceiverAnnotations(methodElt, paramATM, atypeFactory);
-        updateAnnotationSet(receiver, TypeUseLocation.RECEIVER, argADT, paramATM, file);
+        updateAnnotationSet(
+            receiver, methodElt, TypeUseLocation.RECEIVER, argADT, paramATM, file);
       }
     }
   }
@@ -316,7 +330,8 @@ public class WholeProgramInferenceImplementation<T> implements WholeProgramInfer
     T paramAnnotations =
         storage.getParameterAnnotations(methodElt, i, paramATM, paramElt, atypeFactory);
     String file = storage.getFileForElement(methodElt);
-    updateAnnotationSet(paramAnnotations, TypeUseLocation.PARAMETER, argATM, paramATM, file);
+    updateAnnotationSet(
+        paramAnnotations, methodElt, TypeUseLocation.PARAMETER, argATM, paramATM, file);
   }
 
   @Override
@@ -361,7 +376,7 @@ public class WholeProgramInferenceImplementation<T> implements WholeProgramInfer
     AnnotatedTypeMirror lhsATM = atypeFactory.getAnnotatedType(lhsTree);
     T fieldAnnotations = storage.getFieldAnnotations(element, fieldName, lhsATM, atypeFactory);
 
-    updateAnnotationSet(fieldAnnotations, TypeUseLocation.FIELD, rhsATM, lhsATM, file);
+    updateAnnotationSet(fieldAnnotations, element, TypeUseLocation.FIELD, rhsATM, lhsATM, file);
   }
 
   /**
@@ -430,7 +445,7 @@ public class WholeProgramInferenceImplementation<T> implements WholeProgramInfer
         ((GenericAnnotatedTypeFactory) atypeFactory).getDependentTypesHelper();
     dependentTypesHelper.delocalize(rhsATM, methodDeclTree);
     T returnTypeAnnos = storage.getReturnAnnotations(methodElt, lhsATM, atypeFactory);
-    updateAnnotationSet(returnTypeAnnos, TypeUseLocation.RETURN, rhsATM, lhsATM, file);
+    updateAnnotationSet(returnTypeAnnos, methodElt, TypeUseLocation.RETURN, rhsATM, lhsATM, file);
 
     // Now, update return types of overridden methods based on the implementation we just saw.
     // This inference is similar to the inference procedure for method parameters: both are
@@ -466,6 +481,7 @@ public class WholeProgramInferenceImplementation<T> implements WholeProgramInfer
 
       updateAnnotationSet(
           storedOverriddenMethodReturnTypeAnnotations,
+          overriddenMethodElement,
           TypeUseLocation.RETURN,
           rhsATM,
           overriddenMethodReturnType,
@@ -485,6 +501,9 @@ public class WholeProgramInferenceImplementation<T> implements WholeProgramInfer
     boolean isNewAnnotation = storage.addMethodDeclarationAnnotation(methodElt, anno);
     if (isNewAnnotation) {
       storage.setFileModified(file);
+      if (dependencies != null) {
+        dependencies.recordChange(methodElt);
+      }
     }
   }
 
@@ -501,6 +520,8 @@ public class WholeProgramInferenceImplementation<T> implements WholeProgramInfer
    * <p>Subclasses can customize this behavior.
    *
    * @param annotationsToUpdate the type whose annotations are modified by this method
+   * @param location the field, method, or constructor that owns {@code annotationsToUpdate}; used
+   *     for recording the change in the {@link WholeProgramInferenceDependencies}
    * @param defLoc the location where the annotation will be added
    * @param rhsATM the RHS of the annotated type on the source code
    * @param lhsATM the LHS of the annotated type on the source code
@@ -509,11 +530,12 @@ public class WholeProgramInferenceImplementation<T> implements WholeProgramInfer
    */
   protected void updateAnnotationSet(
       T annotationsToUpdate,
+      Element location,
       TypeUseLocation defLoc,
       AnnotatedTypeMirror rhsATM,
       AnnotatedTypeMirror lhsATM,
       String file) {
-    updateAnnotationSet(annotationsToUpdate, defLoc, rhsATM, lhsATM, file, true);
+    updateAnnotationSet(annotationsToUpdate, location, defLoc, rhsATM, lhsATM, file, true);
   }
 
   /**
@@ -529,6 +551,8 @@ public class WholeProgramInferenceImplementation<T> implements WholeProgramInfer
    * <p>Subclasses can customize this behavior.
    *
    * @param annotationsToUpdate the type whose annotations are modified by this method
+   * @param location the field, method, or constructor that owns {@code annotationsToUpdate}; used
+   *     for recording the change in the {@link WholeProgramInferenceDependencies}
    * @param defLoc the location where the annotation will be added
    * @param rhsATM the RHS of the annotated type on the source code
    * @param lhsATM the LHS of the annotated type on the source code
@@ -539,6 +563,7 @@ public class WholeProgramInferenceImplementation<T> implements WholeProgramInfer
    */
   protected void updateAnnotationSet(
       T annotationsToUpdate,
+      Element location,
       TypeUseLocation defLoc,
       AnnotatedTypeMirror rhsATM,
       AnnotatedTypeMirror lhsATM,
@@ -549,6 +574,9 @@ public class WholeProgramInferenceImplementation<T> implements WholeProgramInfer
     }
     AnnotatedTypeMirror atmFromStorage =
         storage.atmFromStorageLocation(rhsATM.getUnderlyingType(), annotationsToUpdate);
+    // The storage may return the stored type itself, which the update below side-effects.
+    @Nullable AnnotatedTypeMirror previous =
+        dependencies == null ? null : atmFromStorage.deepCopy();
     updateAtmWithLub(rhsATM, atmFromStorage);
     if (lhsATM instanceof AnnotatedTypeVariable) {
       Set<AnnotationMirror> upperAnnos =
@@ -563,6 +591,12 @@ public class WholeProgramInferenceImplementation<T> implements WholeProgramInfer
     storage.updateStorageLocationFromAtm(
         rhsATM, lhsATM, annotationsToUpdate, defLoc, ignoreIfAnnotated);
     storage.setFileModified(file);
+    if (previous != null
+        && dependencies != null
+        && !previous.equals(
+            storage.atmFromStorageLocation(rhsATM.getUnderlyingType(), annotationsToUpdate))) {
+      dependencies.recordChange(location);
+    }
   }
 
   /**
@@ -628,6 +662,12 @@ public class WholeProgramInferenceImplementation<T> implements WholeProgramInfer
     sourceCodeATM.replaceAnnotations(annosToReplace);
   }
 
+  @Override
+  public void writeResultsForClass(
+      TypeElement classElt, OutputFormat outputFormat, BaseTypeChecker checker) {
+    storage.writeResultsForClass(classElt, outputFormat, checker);
+  }
+
   @Override
   public void writeResultsToFile(OutputFormat outputFormat, BaseTypeChecker checker) {
     storage.writeResultsToFile(outputFormat, checker);
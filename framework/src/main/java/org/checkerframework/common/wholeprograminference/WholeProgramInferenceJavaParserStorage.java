@@ -1,5 +1,6 @@
 package org.checkerframework.common.wholeprograminference;
 
+import com.github.javaparser.Position;
 import com.github.javaparser.StaticJavaParser;
 import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.NodeList;
@@ -11,6 +12,7 @@ import com.github.javaparser.ast.body.MethodDeclaration;
 import com.github.javaparser.ast.body.ReceiverParameter;
 import com.github.javaparser.ast.body.TypeDeclaration;
 import com.github.javaparser.ast.body.VariableDeclarator;
+import com.github.javaparser.ast.expr.AnnotationExpr;
 import com.github.javaparser.ast.expr.ObjectCreationExpr;
 import com.github.javaparser.ast.type.ClassOrInterfaceType;
 import com.github.javaparser.ast.type.Type;
@@ -26,18 +28,26 @@ import com.sun.tools.javac.code.Symbol.ClassSymbol;
 import com.sun.tools.javac.code.Symbol.VarSymbol;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.NestingKind;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.VariableElement;
 import javax.lang.model.type.TypeKind;
@@ -62,12 +72,19 @@ import org.checkerframework.javacutil.AnnotationUtils;
 import org.checkerframework.javacutil.BugInCF;
 import org.checkerframework.javacutil.ElementUtils;
 import org.checkerframework.javacutil.TreeUtils;
+import org.checkerframework.javacutil.UserError;
 import scenelib.annotations.util.JVMNames;
 
 /**
  * This is an implementation of {@link WholeProgramInferenceStorage} that stores annotations
  * directly with the JavaParser node corresponding to the annotation's location. It outputs ajava
  * files.
+ *
+ * <p>The JavaParser AST of a source file is much larger than the annotations inferred for it. With
+ * the {@code -AinferMaxResidentFiles=N} command-line option, at most N ASTs are kept in memory. The
+ * AST of the least recently used source file is then discarded, and the source file is parsed again
+ * when an ajava file must be written for it or another class in it is read. The inferred
+ * annotations are always kept in memory, so looking them up never requires parsing.
  */
 public class WholeProgramInferenceJavaParserStorage
     implements WholeProgramInferenceStorage<AnnotatedTypeMirror> {
@@ -94,9 +111,31 @@ public class WholeProgramInferenceJavaParserStorage
    */
   private Set<String> modifiedFiles = new HashSet<>();
 
+  /**
+   * For each source file whose ajava file has been written, a summary of the annotations in the
+   * ajava file that was last written. Used to avoid printing and rewriting ajava files whose
+   * annotations have not changed.
+   */
+  private final Map<String, String> writtenAnnotations = new HashMap<>();
+
   /** Mapping from source file to the wrapper for the compilation unit parsed from that file. */
   private Map<String, CompilationUnitAnnos> sourceToAnnos = new HashMap<>();
 
+  /**
+   * The maximum number of source files whose JavaParser ASTs are kept in memory, or -1 if there is
+   * no maximum. Set by the {@code -AinferMaxResidentFiles} command-line option.
+   */
+  private final int maxResidentFiles;
+
+  /** The source files whose JavaParser ASTs are in memory, least recently used first. */
+  private final Set<String> residentFiles = new LinkedHashSet<>();
+
+  /** The source file whose ajava file is being written, whose AST must not be discarded. */
+  private @Nullable String pinnedFile = null;
+
+  /** The number of times a source file was parsed again after its AST had been discarded. */
+  private int reparsedFiles = 0;
+
   /**
    * Constructs a new {@code WholeProgramInferenceJavaParser} that has not yet inferred any
    * annotations.
@@ -105,6 +144,19 @@ public class WholeProgramInferenceJavaParserStorage
    */
   public WholeProgramInferenceJavaParserStorage(AnnotatedTypeFactory atypeFactory) {
     this.atypeFactory = atypeFactory;
+    String option = atypeFactory.getChecker().getOption("inferMaxResidentFiles");
+    if (option == null) {
+      maxResidentFiles = -1;
+    } else {
+      try {
+        maxResidentFiles = Integer.parseInt(option);
+      } catch (NumberFormatException e) {
+        throw new UserError("inferMaxResidentFiles was not an integer: " + option);
+      }
+      if (maxResidentFiles <= 0) {
+        throw new UserError("inferMaxResidentFiles must be positive: " + option);
+      }
+    }
   }
 
   @Override
@@ -330,8 +382,7 @@ public class WholeProgramInferenceJavaParserStorage
 
     TypeElement toplevelClass = ElementUtils.toplevelEnclosingTypeElement(element);
     String path = ElementUtils.getSourceFilePath(toplevelClass);
-    addSourceFile(path);
-    CompilationUnitAnnos sourceAnnos = sourceToAnnos.get(path);
+    CompilationUnitAnnos sourceAnnos = addSourceFile(path);
     TypeDeclaration<?> javaParserNode =
         sourceAnnos.getClassOrInterfaceDeclarationByName(toplevelClass.getSimpleName().toString());
     ClassTree toplevelClassTree = atypeFactory.getTreeUtils().getTree(toplevelClass);
@@ -341,14 +392,31 @@ public class WholeProgramInferenceJavaParserStorage
   /**
    * Reads in the file at {@code path} and creates a wrapper around its compilation unit. Stores the
    * wrapper in {@link #sourceToAnnos}, but doesn't create wrappers around any classes in the file.
+   * If the file has already been read but its AST has since been discarded, reads it again.
    *
    * @param path path to source file to read
+   * @return the wrapper for the compilation unit of the file, with its AST in memory
    */
-  private void addSourceFile(String path) {
-    if (sourceToAnnos.containsKey(path)) {
-      return;
+  private CompilationUnitAnnos addSourceFile(String path) {
+    CompilationUnitAnnos sourceAnnos = sourceToAnnos.get(path);
+    if (sourceAnnos == null) {
+      sourceAnnos = new CompilationUnitAnnos(parseSourceFile(path));
+      sourceToAnnos.put(path, sourceAnnos);
+    } else if (!sourceAnnos.isResident()) {
+      sourceAnnos.reload(parseSourceFile(path), path);
+      reparsedFiles++;
     }
+    markResident(path);
+    return sourceAnnos;
+  }
 
+  /**
+   * Parses a source file.
+   *
+   * @param path path to source file to read
+   * @return the compilation unit of the file
+   */
+  private static CompilationUnit parseSourceFile(String path) {
     CompilationUnit root;
     try {
       root = StaticJavaParser.parse(new File(path));
@@ -356,8 +424,46 @@ public class WholeProgramInferenceJavaParserStorage
       throw new BugInCF("Failed to read Java file " + path, e);
     }
     JavaParserUtils.concatenateAddedStringLiterals(root);
-    CompilationUnitAnnos sourceAnnos = new CompilationUnitAnnos(root);
-    sourceToAnnos.put(path, sourceAnnos);
+    return root;
+  }
+
+  /**
+   * Records that the AST of a source file has been used, and discards the ASTs of the least
+   * recently used other source files if more than {@code -AinferMaxResidentFiles} are in memory.
+   *
+   * @param path path to a source file whose AST is in memory
+   */
+  private void markResident(String path) {
+    residentFiles.remove(path);
+    residentFiles.add(path);
+    if (maxResidentFiles == -1) {
+      return;
+    }
+    Iterator<String> iter = residentFiles.iterator();
+    while (residentFiles.size() > maxResidentFiles && iter.hasNext()) {
+      String leastRecentlyUsed = iter.next();
+      if (leastRecentlyUsed.equals(path) || leastRecentlyUsed.equals(pinnedFile)) {
+        continue;
+      }
+      sourceToAnnos.get(leastRecentlyUsed).discardAst();
+      iter.remove();
+    }
+  }
+
+  /**
+   * Returns a description of the source files read by this storage, or the empty string if their
+   * ASTs are never discarded.
+   *
+   * @return statistics of the source files whose ASTs have been discarded and read again
+   */
+  public String getStatistics() {
+    if (maxResidentFiles == -1) {
+      return "";
+    }
+    return String.format(
+        "Whole-program inference storage: %d source files, %d ASTs in memory (max %d),"
+            + " %d source files parsed again",
+        sourceToAnnos.size(), residentFiles.size(), maxResidentFiles, reparsedFiles);
   }
 
   /**
@@ -400,12 +506,11 @@ public class WholeProgramInferenceJavaParserStorage
           private void addClass(ClassTree tree) {
             TypeElement classElt = TreeUtils.elementFromDeclaration(tree);
             String className = ElementUtils.getBinaryName(classElt);
-            ClassOrInterfaceAnnos typeWrapper = new ClassOrInterfaceAnnos();
-            if (!classToAnnos.containsKey(className)) {
-              classToAnnos.put(className, typeWrapper);
+            ClassOrInterfaceAnnos typeWrapper =
+                classToAnnos.computeIfAbsent(className, name -> new ClassOrInterfaceAnnos());
+            if (!sourceAnnos.types.contains(typeWrapper)) {
+              sourceAnnos.types.add(typeWrapper);
             }
-
-            sourceAnnos.types.add(typeWrapper);
           }
 
           @Override
@@ -479,8 +584,7 @@ public class WholeProgramInferenceJavaParserStorage
       return path;
     }
 
-    addSourceFile(path);
-    CompilationUnitAnnos sourceAnnos = sourceToAnnos.get(path);
+    CompilationUnitAnnos sourceAnnos = addSourceFile(path);
     ClassTree toplevelClassTree = (ClassTree) atypeFactory.declarationFromElement(toplevelClass);
     TypeDeclaration<?> javaParserNode =
         sourceAnnos.getClassOrInterfaceDeclarationByName(toplevelClass.getSimpleName().toString());
@@ -531,62 +635,191 @@ public class WholeProgramInferenceJavaParserStorage
   }
 
   @Override
-  public void writeResultsToFile(OutputFormat outputFormat, BaseTypeChecker checker) {
+  public void writeResultsForClass(
+      TypeElement classElt, OutputFormat outputFormat, BaseTypeChecker checker) {
     if (outputFormat != OutputFormat.AJAVA) {
       throw new BugInCF("WholeProgramInferenceJavaParser used with format " + outputFormat);
     }
+    if (classElt.getNestingKind() != NestingKind.TOP_LEVEL) {
+      // The compilation unit is written when its top-level class is finished.
+      return;
+    }
+
+    String path = ElementUtils.getSourceFilePath(classElt);
+    if (modifiedFiles.remove(path)) {
+      writeAjavaFile(path, checker);
+    }
+  }
 
-    File outputDir = new File(AJAVA_FILES_PATH);
-    if (!outputDir.exists()) {
-      outputDir.mkdirs();
+  @Override
+  public void writeResultsToFile(OutputFormat outputFormat, BaseTypeChecker checker) {
+    if (outputFormat != OutputFormat.AJAVA) {
+      throw new BugInCF("WholeProgramInferenceJavaParser used with format " + outputFormat);
     }
 
     for (String path : modifiedFiles) {
-      CompilationUnitAnnos root = sourceToAnnos.get(path);
-      prepareCompilationUnitForWriting(root);
-      root.transferAnnotations();
-      String packageDir = AJAVA_FILES_PATH;
-      if (root.compilationUnit.getPackageDeclaration().isPresent()) {
-        packageDir +=
-            File.separator
-                + root.compilationUnit
-                    .getPackageDeclaration()
-                    .get()
-                    .getNameAsString()
-                    .replaceAll("\\.", File.separator);
-      }
+      writeAjavaFile(path, checker);
+    }
 
-      File packageDirFile = new File(packageDir);
-      if (!packageDirFile.exists()) {
-        packageDirFile.mkdirs();
-      }
+    modifiedFiles.clear();
+  }
 
-      String name = new File(path).getName();
-      if (name.endsWith(".java")) {
-        name = name.substring(0, name.length() - ".java".length());
-      }
+  /**
+   * Writes the ajava file for a source file, unless its annotations are the same as when it was
+   * last written. The file is written to a temporary file that is then renamed, so that a reader of
+   * the ajava file, such as a concurrent or later run of inference, never sees a partial file.
+   *
+   * @param path the path of a source file in which an annotation has been inferred
+   * @param checker the checker for which the ajava file is written, for naming the ajava file
+   */
+  private void writeAjavaFile(String path, BaseTypeChecker checker) {
+    CompilationUnitAnnos root = prepareAjavaFile(path);
+    String fingerprint = getAnnotationsFingerprint(root.getCompilationUnit());
+    String previousFingerprint = writtenAnnotations.put(path, fingerprint);
+    if (fingerprint.equals(previousFingerprint)) {
+      return;
+    }
 
-      name += "-" + checker.getClass().getCanonicalName() + ".ajava";
-      String outputPath = packageDir + File.separator + name;
-      try {
-        FileWriter writer = new FileWriter(outputPath);
-
-        // JavaParser can output using lexical preserving printing, which writes the file
-        // such that its formatting is close to the original source file it was parsed from
-        // as possible. Currently, this feature is very buggy and crashes when adding
-        // annotations in certain locations. This implementation could be used instead if
-        // it's fixed in JavaParser.
-        // LexicalPreservingPrinter.print(root.declaration, writer);
-
-        PrettyPrinter prettyPrinter = new PrettyPrinter(new PrettyPrinterConfiguration());
-        writer.write(prettyPrinter.print(root.compilationUnit));
-        writer.close();
-      } catch (IOException e) {
-        throw new BugInCF("Error while writing ajava file " + outputPath, e);
+    String outputPath = getAjavaOutputPath(root, path, checker);
+    Path outputFile = Paths.get(outputPath);
+    byte[] contents = printCompilationUnit(root).getBytes(StandardCharsets.UTF_8);
+    try {
+      if (previousFingerprint == null
+          && Files.exists(outputFile)
+          && Arrays.equals(contents, Files.readAllBytes(outputFile))) {
+        // The ajava file written by a previous run of inference is up to date.
+        return;
       }
+      Path tmp =
+          Files.createTempFile(outputFile.getParent(), outputFile.getFileName() + "-", ".tmp");
+      Files.write(tmp, contents);
+      Files.move(
+          tmp, outputFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      writtenAnnotations.remove(path);
+      throw new BugInCF("Error while writing ajava file " + outputPath, e);
     }
+  }
 
-    modifiedFiles.clear();
+  /**
+   * Returns the path of the ajava file for a source file, creating its directory if necessary.
+   *
+   * @param root the compilation unit of the source file
+   * @param path the path of the source file
+   * @param checker the checker for which the ajava file is written, for naming the ajava file
+   * @return the path of the ajava file for {@code path}
+   */
+  private static String getAjavaOutputPath(
+      CompilationUnitAnnos root, String path, BaseTypeChecker checker) {
+    String packageDir = AJAVA_FILES_PATH;
+    if (root.getCompilationUnit().getPackageDeclaration().isPresent()) {
+      packageDir +=
+          File.separator
+              + root.getCompilationUnit()
+                  .getPackageDeclaration()
+                  .get()
+                  .getNameAsString()
+                  .replaceAll("\\.", File.separator);
+    }
+
+    File packageDirFile = new File(packageDir);
+    if (!packageDirFile.exists()) {
+      packageDirFile.mkdirs();
+    }
+
+    String name = new File(path).getName();
+    if (name.endsWith(".java")) {
+      name = name.substring(0, name.length() - ".java".length());
+    }
+
+    name += "-" + checker.getClass().getCanonicalName() + ".ajava";
+    return packageDir + File.separator + name;
+  }
+
+  /**
+   * Returns a summary of the annotations in a compilation unit: each annotation, with its position
+   * in a preorder traversal of the compilation unit. Two versions of a compilation unit, which
+   * differ only in their annotations, have the same summary exactly when they have the same
+   * annotations in the same places. Computing the summary is much cheaper than printing the
+   * compilation unit.
+   *
+   * @param compilationUnit a compilation unit into which inferred annotations have been transferred
+   * @return a summary of the annotations in {@code compilationUnit}
+   */
+  private static String getAnnotationsFingerprint(CompilationUnit compilationUnit) {
+    StringBuilder sb = new StringBuilder();
+    int[] index = {0};
+    compilationUnit.walk(
+        node -> {
+          index[0]++;
+          if (node instanceof AnnotationExpr) {
+            sb.append(index[0]).append(' ').append(node).append('\n');
+          }
+        });
+    return sb.toString();
+  }
+
+  /**
+   * Returns the ajava files that {@link #writeResultsToFile} would write, without writing them.
+   *
+   * @return the contents of the ajava file for each source file in which an annotation has been
+   *     inferred since files were last written, keyed by the path of the source file
+   */
+  public Map<String, String> getAjavaFileContents() {
+    Map<String, String> result = new HashMap<>();
+    for (String path : modifiedFiles) {
+      result.put(path, printAjavaFile(path));
+    }
+    return result;
+  }
+
+  /**
+   * Returns the contents of the ajava file for a source file: the source file with the inferred
+   * annotations inserted.
+   *
+   * @param path the path of a source file in which an annotation has been inferred
+   * @return the contents of the ajava file for {@code path}
+   */
+  private String printAjavaFile(String path) {
+    return printCompilationUnit(prepareAjavaFile(path));
+  }
+
+  /**
+   * Transfers the inferred annotations for a source file into its AST, reading the source file
+   * again if its AST has been discarded.
+   *
+   * @param path the path of a source file in which an annotation has been inferred
+   * @return the wrapper for the compilation unit of {@code path}, with the inferred annotations
+   */
+  private CompilationUnitAnnos prepareAjavaFile(String path) {
+    CompilationUnitAnnos root = addSourceFile(path);
+    // The type factory's hooks might read another source file, which must not discard this AST.
+    pinnedFile = path;
+    try {
+      prepareCompilationUnitForWriting(root);
+      root.transferAnnotations();
+    } finally {
+      pinnedFile = null;
+    }
+    return root;
+  }
+
+  /**
+   * Prints a compilation unit into which the inferred annotations have been transferred.
+   *
+   * @param root the compilation unit to print
+   * @return the contents of the ajava file for {@code root}
+   */
+  private static String printCompilationUnit(CompilationUnitAnnos root) {
+    // JavaParser can output using lexical preserving printing, which writes the file
+    // such that its formatting is close to the original source file it was parsed from
+    // as possible. Currently, this feature is very buggy and crashes when adding
+    // annotations in certain locations. This implementation could be used instead if
+    // it's fixed in JavaParser.
+    // LexicalPreservingPrinter.print(root.declaration, writer);
+
+    PrettyPrinter prettyPrinter = new PrettyPrinter(new PrettyPrinterConfiguration());
+    return prettyPrinter.print(root.getCompilationUnit());
   }
 
   /**
@@ -651,8 +884,8 @@ public class WholeProgramInferenceJavaParserStorage
    * interfaces in that compilation unit.
    */
   private static class CompilationUnitAnnos {
-    /** Compilation unit being wrapped. */
-    public CompilationUnit compilationUnit;
+    /** Compilation unit being wrapped, or null if its AST has been discarded. */
+    private @Nullable CompilationUnit compilationUnit;
     /** Wrappers for classes and interfaces in {@code declaration} */
     public List<ClassOrInterfaceAnnos> types;
 
@@ -666,12 +899,86 @@ public class WholeProgramInferenceJavaParserStorage
       types = new ArrayList<>();
     }
 
+    /**
+     * Returns true if the AST of the compilation unit is in memory.
+     *
+     * @return true if the AST of the compilation unit is in memory
+     */
+    public boolean isResident() {
+      return compilationUnit != null;
+    }
+
+    /**
+     * Returns the wrapped compilation unit.
+     *
+     * @return the wrapped compilation unit
+     * @throws BugInCF if the AST of the compilation unit has been discarded
+     */
+    public CompilationUnit getCompilationUnit() {
+      if (compilationUnit == null) {
+        throw new BugInCF("The AST of the compilation unit has been discarded");
+      }
+      return compilationUnit;
+    }
+
+    /**
+     * Discards the AST of the compilation unit, keeping the annotations that have been inferred for
+     * it.
+     */
+    public void discardAst() {
+      compilationUnit = null;
+      for (ClassOrInterfaceAnnos typeAnnos : types) {
+        for (CallableDeclarationAnnos callableAnnos : typeAnnos.callableDeclarations.values()) {
+          callableAnnos.declaration = null;
+        }
+        for (FieldAnnos field : typeAnnos.fields.values()) {
+          field.declaration = null;
+        }
+      }
+    }
+
+    /**
+     * Restores the AST of the compilation unit after it has been discarded, from a new parse of the
+     * same source file. The wrappers are matched with the declarations of the new AST by position,
+     * which is the same in every parse of the file.
+     *
+     * @param compilationUnit the compilation unit, parsed again
+     * @param path the path of the source file, for diagnostics
+     */
+    public void reload(CompilationUnit compilationUnit, String path) {
+      Map<Position, CallableDeclaration<?>> callables = new HashMap<>();
+      Map<Position, VariableDeclarator> variables = new HashMap<>();
+      compilationUnit.walk(
+          node -> {
+            if (node instanceof CallableDeclaration) {
+              callables.put(node.getBegin().get(), (CallableDeclaration<?>) node);
+            } else if (node instanceof VariableDeclarator) {
+              variables.put(node.getBegin().get(), (VariableDeclarator) node);
+            }
+          });
+      for (ClassOrInterfaceAnnos typeAnnos : types) {
+        for (CallableDeclarationAnnos callableAnnos : typeAnnos.callableDeclarations.values()) {
+          callableAnnos.declaration = callables.get(callableAnnos.position);
+          if (callableAnnos.declaration == null) {
+            throw new BugInCF("%s changed during compilation: %s", path, callableAnnos);
+          }
+        }
+        for (FieldAnnos field : typeAnnos.fields.values()) {
+          field.declaration = variables.get(field.position);
+          if (field.declaration == null) {
+            throw new BugInCF("%s changed during compilation: %s", path, field);
+          }
+        }
+      }
+      this.compilationUnit = compilationUnit;
+    }
+
     /**
      * Transfers all annotations inferred by whole program inference for the wrapped compilation
      * unit to their corresponding JavaParser locations.
      */
     public void transferAnnotations() {
-      JavaParserUtils.clearAnnotations(compilationUnit);
+      JavaParserUtils.clearAnnotations(getCompilationUnit());
       for (ClassOrInterfaceAnnos typeAnnos : types) {
         typeAnnos.transferAnnotations();
       }
@@ -684,7 +991,7 @@ public class WholeProgramInferenceJavaParserStorage
      * @return the type declaration named {@code name} in the wrapped compilation unit
      */
     public TypeDeclaration<?> getClassOrInterfaceDeclarationByName(String name) {
-      return JavaParserUtils.getTypeDeclarationByName(compilationUnit, name);
+      return JavaParserUtils.getTypeDeclarationByName(getCompilationUnit(), name);
     }
   }
 
@@ -728,8 +1035,15 @@ public class WholeProgramInferenceJavaParserStorage
    * inferred about its parameters and return type.
    */
   public class CallableDeclarationAnnos {
-    /** Wrapped method or constructor declaration. */
-    public CallableDeclaration<?> declaration;
+    /**
+     * Wrapped method or constructor declaration, or null if the AST of its compilation unit has
+     * been discarded.
+     */
+    private @Nullable CallableDeclaration<?> declaration;
+    /** The position of the declaration in its source file, used to find it in a new parse. */
+    private final Position position;
+    /** The number of parameters of the declaration. */
+    private final int numParameters;
     /** Path to file containing the declaration. */
     public String file;
     /**
@@ -771,6 +1085,21 @@ public class WholeProgramInferenceJavaParserStorage
      */
     public CallableDeclarationAnnos(CallableDeclaration<?> declaration) {
       this.declaration = declaration;
+      this.position = declaration.getBegin().get();
+      this.numParameters = declaration.getParameters().size();
+    }
+
+    /**
+     * Returns the wrapped method or constructor declaration.
+     *
+     * @return the wrapped method or constructor declaration
+     * @throws BugInCF if the AST of the compilation unit of the declaration has been discarded
+     */
+    public CallableDeclaration<?> getDeclaration() {
+      if (declaration == null) {
+        throw new BugInCF("The AST of the declaration has been discarded: " + this);
+      }
+      return declaration;
     }
 
     /**
@@ -789,8 +1118,7 @@ public class WholeProgramInferenceJavaParserStorage
     public AnnotatedTypeMirror getParameterTypeInitialized(
         AnnotatedTypeMirror type, int index, AnnotatedTypeFactory atf) {
       if (parameterTypes == null) {
-        parameterTypes =
-            new ArrayList<>(Collections.nCopies(declaration.getParameters().size(), null));
+        parameterTypes = new ArrayList<>(Collections.nCopies(numParameters, null));
       }
 
       if (parameterTypes.get(index) == null) {
@@ -971,6 +1299,7 @@ public class WholeProgramInferenceJavaParserStorage
      * locations.
      */
     public void transferAnnotations() {
+      CallableDeclaration<?> declaration = getDeclaration();
       if (atypeFactory instanceof GenericAnnotatedTypeFactory<?, ?, ?, ?>) {
         GenericAnnotatedTypeFactory<?, ?, ?, ?> genericAtf =
             (GenericAnnotatedTypeFactory<?, ?, ?, ?>) atypeFactory;
@@ -1033,8 +1362,12 @@ public class WholeProgramInferenceJavaParserStorage
 
   /** Stores the JavaParser node for a field and the annotations that have been inferred for it. */
   private static class FieldAnnos {
-    /** Wrapped field declaration. */
-    public VariableDeclarator declaration;
+    /**
+     * Wrapped field declaration, or null if the AST of its compilation unit has been discarded.
+     */
+    private @Nullable VariableDeclarator declaration;
+    /** The position of the declaration in its source file, used to find it in a new parse. */
+    private final Position position;
     /** Inferred type for field, initialized the first time it's accessed. */
     private @MonotonicNonNull AnnotatedTypeMirror type = null;
 
@@ -1045,6 +1378,7 @@ public class WholeProgramInferenceJavaParserStorage
      */
     public FieldAnnos(VariableDeclarator declaration) {
       this.declaration = declaration;
+      this.position = declaration.getBegin().get();
     }
 
     /**
@@ -1075,6 +1409,9 @@ public class WholeProgramInferenceJavaParserStorage
         return;
       }
 
+      if (declaration == null) {
+        throw new BugInCF("The AST of the declaration has been discarded: " + this);
+      }
       Type newType = (Type) declaration.getType().accept(new CloneVisitor(), null);
       WholeProgramInferenceJavaParserStorage.transferAnnotations(type, newType);
       declaration.setType(newType);
@@ -7,14 +7,18 @@ import com.sun.tools.javac.code.Symbol.VarSymbol;
 import java.io.File;
 import java.io.IOException;
 import java.lang.annotation.Target;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.VariableElement;
 import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
@@ -678,6 +682,45 @@ public class WholeProgramInferenceScenesStorage
     atypeFactory.prepareMethodForWriting(methodAnnos);
   }
 
+  @Override
+  public void writeResultsForClass(
+      TypeElement classElt,
+      WholeProgramInference.OutputFormat outputFormat,
+      BaseTypeChecker checker) {
+    if (outputFormat == OutputFormat.AJAVA) {
+      throw new BugInCF("WholeProgramInferenceScenes used with format " + outputFormat);
+    }
+    if (classElt.getNestingKind() != NestingKind.TOP_LEVEL) {
+      // The scenes of nested classes are written when their top-level class is finished.
+      return;
+    }
+
+    // The scenes of the class and of the classes nested in it.
+    String flatname = ((ClassSymbol) classElt).flatname.toString();
+    String classJaifPath = getJaifPath(flatname);
+    String nestedJaifPathPrefix = JAIF_FILES_PATH + flatname + "$";
+    List<String> toWrite = new ArrayList<>();
+    for (String jaifPath : modifiedScenes) {
+      if (jaifPath.equals(classJaifPath) || jaifPath.startsWith(nestedJaifPathPrefix)) {
+        toWrite.add(jaifPath);
+      }
+    }
+    if (toWrite.isEmpty()) {
+      return;
+    }
+
+    File jaifDir = new File(JAIF_FILES_PATH);
+    if (!jaifDir.exists()) {
+      jaifDir.mkdirs();
+    }
+    for (String jaifPath : toWrite) {
+      ASceneWrapper scene = scenes.get(jaifPath);
+      prepareSceneForWriting(scene.getAScene());
+      scene.writeToFile(jaifPath, annosToIgnore, outputFormat, checker);
+      modifiedScenes.remove(jaifPath);
+    }
+  }
+
   @Override
   public void writeResultsToFile(
       WholeProgramInference.OutputFormat outputFormat, BaseTypeChecker checker) {
@@ -4,6 +4,7 @@ import com.sun.source.tree.ClassTree;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.VariableElement;
 import javax.lang.model.type.TypeMirror;
 import org.checkerframework.common.basetype.BaseTypeChecker;
@@ -164,9 +165,22 @@ public interface WholeProgramInferenceStorage<T> {
       boolean ignoreIfAnnotated);
 
   /**
-   * Writes the inferred results to a file. Ideally, it should be called at the end of the
-   * type-checking process. In practice, it is called after each class, because we don't know which
-   * class will be the last one in the type-checking process.
+   * Writes the inferred results for the compilation unit of a class to a file, if they have been
+   * modified since they were last written. Does nothing unless {@code classElt} is a top-level
+   * class.
+   *
+   * @param classElt a class that has just been type-checked
+   * @param outputFormat the file format in which to write the results
+   * @param checker the checker from which this method is called, for naming stub files
+   */
+  public void writeResultsForClass(
+      TypeElement classElt,
+      WholeProgramInference.OutputFormat outputFormat,
+      BaseTypeChecker checker);
+
+  /**
+   * Writes all the inferred results that have been modified since they were last written to files.
+   * It is called at the end of the type-checking process.
    *
    * @param outputFormat the file format in which to write the results
    * @param checker the checker from which this method is called, for naming stub files
@@ -177,7 +191,8 @@ public interface WholeProgramInferenceStorage<T> {
   /**
    * Indicates that inferred annotations for the file at {@code path} have changed since last
    * written. This causes output files for {@code path} to be written out next time {@link
-   * #writeResultsToFile} is called.
+   * #writeResultsForClass} is called for a class in {@code path}, or {@link #writeResultsToFile} is
+   * called.
    *
    * @param path path to the file with annotations that have been modified
    */
@@ -1,10 +1,16 @@
 package org.checkerframework.common.wholeprograminference.scenelib;
 
 import com.sun.tools.javac.code.Symbol.ClassSymbol;
-import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -52,6 +58,14 @@ public class ASceneWrapper {
   /** The AScene being wrapped. */
   private final AScene theScene;
 
+  /**
+   * The SHA-256 digest of the contents of the file that was last written by {@link #writeToFile},
+   * or null if the scene has not been written. If {@link #writeToFile} deleted the file because
+   * nothing in the scene was printable, this is the digest of empty contents. Used to avoid
+   * replacing a file whose contents have not changed.
+   */
+  private byte @Nullable [] writtenDigest = null;
+
   /**
    * Constructor. Pass the AScene to wrap.
    *
@@ -110,7 +124,9 @@ public class ASceneWrapper {
   }
 
   /**
-   * Write the scene wrapped by this object to a file at the given path.
+   * Write the scene wrapped by this object to a file at the given path. The file is written to a
+   * temporary file that is then renamed, so that a reader never sees a partially-written file. The
+   * file is not replaced if its contents are the same as when this method last wrote it.
    *
    * @param jaifPath the path of the file to be written, but ending in ".jaif". If {@code
    *     outputformat} is not {@code JAIF}, the path will be modified to match.
@@ -139,44 +155,81 @@ public class ASceneWrapper {
       default:
         throw new BugInCF("Unhandled outputFormat " + outputFormat);
     }
-    new File(filepath).delete();
-    // Only write non-empty scenes into files.
-    if (!scene.isEmpty()) {
-      try {
-        switch (outputFormat) {
-          case STUB:
-            // For stub files, pass in the checker to compute contracts on the fly;
-            // precomputing yields incorrect annotations, most likely due to nested
-            // classes.
-            SceneToStubWriter.write(this, filepath, checker);
-            break;
-          case JAIF:
-            // For .jaif files, precompute contracts because the Annotation File
-            // Utilities knows nothing about (and cannot depend on) the Checker
-            // Framework.
-            for (Map.Entry<String, AClass> classEntry : scene.classes.entrySet()) {
-              AClass aClass = classEntry.getValue();
-              for (Map.Entry<String, AMethod> methodEntry : aClass.getMethods().entrySet()) {
-                AMethod aMethod = methodEntry.getValue();
-                List<AnnotationMirror> contractAnnotationMirrors =
-                    checker.getTypeFactory().getContractAnnotations(aMethod);
-                List<Annotation> contractAnnotations =
-                    CollectionsPlume.mapList(
-                        AnnotationConverter::annotationMirrorToAnnotation,
-                        contractAnnotationMirrors);
-                aMethod.contracts = contractAnnotations;
-              }
-            }
-            IndexFileWriter.write(scene, new FileWriter(filepath));
-            break;
-          default:
-            throw new BugInCF("Unhandled outputFormat " + outputFormat);
+
+    Path target = Paths.get(filepath);
+    try {
+      // Only write non-empty scenes into files.
+      if (scene.isEmpty()) {
+        byte[] digest = sha256(new byte[0]);
+        if (!Arrays.equals(digest, writtenDigest)) {
+          Files.deleteIfExists(target);
+          writtenDigest = digest;
         }
-      } catch (IOException e) {
-        throw new UserError("Problem while writing %s: %s", filepath, e.getMessage());
-      } catch (DefException e) {
-        throw new BugInCF(e);
+        return;
+      }
+      Path tmp = Files.createTempFile(target.getParent(), target.getFileName() + "-", ".tmp");
+      switch (outputFormat) {
+        case STUB:
+          // For stub files, pass in the checker to compute contracts on the fly;
+          // precomputing yields incorrect annotations, most likely due to nested
+          // classes.
+          SceneToStubWriter.write(this, tmp.toString(), checker);
+          break;
+        case JAIF:
+          // For .jaif files, precompute contracts because the Annotation File
+          // Utilities knows nothing about (and cannot depend on) the Checker
+          // Framework.
+          for (Map.Entry<String, AClass> classEntry : scene.classes.entrySet()) {
+            AClass aClass = classEntry.getValue();
+            for (Map.Entry<String, AMethod> methodEntry : aClass.getMethods().entrySet()) {
+              AMethod aMethod = methodEntry.getValue();
+              List<AnnotationMirror> contractAnnotationMirrors =
+                  checker.getTypeFactory().getContractAnnotations(aMethod);
+              List<Annotation> contractAnnotations =
+                  CollectionsPlume.mapList(
+                      AnnotationConverter::annotationMirrorToAnnotation,
+                      contractAnnotationMirrors);
+              aMethod.contracts = contractAnnotations;
+            }
+          }
+          try (FileWriter writer = new FileWriter(tmp.toFile())) {
+            IndexFileWriter.write(scene, writer);
+          }
+          break;
+        default:
+          throw new BugInCF("Unhandled outputFormat " + outputFormat);
       }
+      byte[] digest = sha256(Files.readAllBytes(tmp));
+      if (Arrays.equals(digest, writtenDigest)) {
+        // The file that was last written is up to date.
+        Files.delete(tmp);
+      } else if (Files.size(tmp) == 0) {
+        // Nothing in the scene was printable.
+        Files.delete(tmp);
+        Files.deleteIfExists(target);
+      } else {
+        Files.move(
+            tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      }
+      writtenDigest = digest;
+    } catch (IOException e) {
+      throw new UserError("Problem while writing %s: %s", filepath, e.getMessage());
+    } catch (DefException e) {
+      throw new BugInCF(e);
+    }
+  }
+
+  /**
+   * Returns the SHA-256 digest of {@code bytes}.
+   *
+   * @param bytes the bytes to digest
+   * @return the SHA-256 digest of {@code bytes}
+   */
+  private static byte[] sha256(byte[] bytes) {
+    try {
+      return MessageDigest.getInstance("SHA-256").digest(bytes);
+    } catch (NoSuchAlgorithmException e) {
+      throw new BugInCF("SHA-256 is not available", e);
     }
   }
 
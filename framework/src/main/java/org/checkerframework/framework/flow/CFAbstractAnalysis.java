@@ -22,6 +22,7 @@ import org.checkerframework.framework.type.TypeHierarchy;
 import org.checkerframework.framework.util.dependenttypes.DependentTypesHelper;
 import org.checkerframework.javacutil.AnnotationUtils;
 import org.checkerframework.javacutil.Pair;
+import org.checkerframework.javacutil.UserError;
 
 /**
  * {@link CFAbstractAnalysis} is an extensible org.checkerframework.dataflow analysis for the
@@ -67,6 +68,18 @@ public abstract class CFAbstractAnalysis<
   /** Instance of the types utility. */
   protected final Types types;
 
+  /**
+   * True if the -ApersistentStores or -AstoreSnapshots command-line option was passed to the
+   * checker.
+   */
+  private final boolean persistentStoresOption;
+
+  /**
+   * The maximum number of stores recorded for each control flow graph if the {@code
+   * -AstoreSnapshots} command-line option is passed without a value.
+   */
+  public static final int DEFAULT_MAX_STORE_SNAPSHOTS = 10_000;
+
   /**
    * Create a CFAbstractAnalysis.
    *
@@ -88,6 +101,9 @@ public abstract class CFAbstractAnalysis<
     dependentTypesHelper = factory.getDependentTypesHelper();
     this.atypeFactory = factory;
     this.checker = checker;
+    setMaxStoreSnapshots(getMaxStoreSnapshotsOption(checker));
+    // Store snapshots are compact only if copying a store shares its unchanged part.
+    this.persistentStoresOption = checker.hasOption("persistentStores") || maxStoreSnapshots > 0;
     this.transferFunction = createTransferFunction();
     // TODO: remove parameter and set to empty list.
     this.fieldValues = fieldValues;
@@ -114,6 +130,50 @@ public abstract class CFAbstractAnalysis<
     return fieldValues;
   }
 
+  /**
+   * Returns true if the stores of this analysis should keep their information in {@link
+   * org.checkerframework.javacutil.PersistentHashMap}s rather than hash maps. Copying such a store
+   * takes constant time, and joining or comparing two stores skips the information they share.
+   * This pays off for long methods that track many expressions. The default implementation returns
+   * true if the {@code -ApersistentStores} or {@code -AstoreSnapshots} command-line option is
+   * passed to the checker; a checker may override this method to choose a representation
+   * regardless of the options.
+   *
+   * @return true if stores should use persistent maps
+   */
+  public boolean usePersistentStores() {
+    return persistentStoresOption;
+  }
+
+  /**
+   * Returns the maximum number of stores to record for each control flow graph, as given by the
+   * {@code -AstoreSnapshots} command-line option: 0 if the option is not passed, {@link
+   * #DEFAULT_MAX_STORE_SNAPSHOTS} if it is passed without a value.
+   *
+   * @param checker the checker
+   * @return the maximum number of stores to record for each control flow graph
+   * @see ForwardAnalysisImpl#setMaxStoreSnapshots(int)
+   */
+  private static int getMaxStoreSnapshotsOption(SourceChecker checker) {
+    if (!checker.hasOption("storeSnapshots")) {
+      return 0;
+    }
+    String option = checker.getOption("storeSnapshots");
+    if (option == null || option.isEmpty()) {
+      return DEFAULT_MAX_STORE_SNAPSHOTS;
+    }
+    int result;
+    try {
+      result = Integer.parseInt(option);
+    } catch (NumberFormatException ex) {
+      throw new UserError("storeSnapshots was not an integer: " + option);
+    }
+    if (result < 0) {
+      throw new UserError("storeSnapshots must be non-negative: " + option);
+    }
+    return result;
+  }
+
   /**
    * Returns the transfer function to be used by the analysis.
    *
@@ -39,6 +39,7 @@ import org.checkerframework.javacutil.AnnotationBuilder;
 import org.checkerframework.javacutil.AnnotationUtils;
 import org.checkerframework.javacutil.BugInCF;
 import org.checkerframework.javacutil.Pair;
+import org.checkerframework.javacutil.PersistentHashMap;
 import org.plumelib.util.ToStringComparator;
 import org.plumelib.util.UniqueId;
 
@@ -118,27 +119,63 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
 
   protected CFAbstractStore(CFAbstractAnalysis<V, S, ?> analysis, boolean sequentialSemantics) {
     this.analysis = analysis;
-    localVariableValues = new HashMap<>();
+    localVariableValues = newMap(analysis);
     thisValue = null;
-    fieldValues = new HashMap<>();
-    methodValues = new HashMap<>();
-    arrayValues = new HashMap<>();
-    classValues = new HashMap<>();
+    fieldValues = newMap(analysis);
+    methodValues = newMap(analysis);
+    arrayValues = newMap(analysis);
+    classValues = newMap(analysis);
     this.sequentialSemantics = sequentialSemantics;
   }
 
   /** Copy constructor. */
   protected CFAbstractStore(CFAbstractStore<V, S> other) {
     this.analysis = other.analysis;
-    localVariableValues = new HashMap<>(other.localVariableValues);
+    localVariableValues = copyMap(other.localVariableValues);
     thisValue = other.thisValue;
-    fieldValues = new HashMap<>(other.fieldValues);
-    methodValues = new HashMap<>(other.methodValues);
-    arrayValues = new HashMap<>(other.arrayValues);
-    classValues = new HashMap<>(other.classValues);
+    fieldValues = copyMap(other.fieldValues);
+    methodValues = copyMap(other.methodValues);
+    arrayValues = copyMap(other.arrayValues);
+    classValues = copyMap(other.classValues);
     sequentialSemantics = other.sequentialSemantics;
   }
 
+  /**
+   * Returns a new, empty map for one kind of information in a store. The map is a {@link
+   * PersistentHashMap} if the analysis {@link CFAbstractAnalysis#usePersistentStores uses
+   * persistent stores}, and a {@link HashMap} otherwise.
+   *
+   * @param <K> the type of keys
+   * @param <E> the type of values
+   * @param analysis the analysis that the store belongs to
+   * @return a new, empty map
+   */
+  protected static <K, E> Map<K, E> newMap(CFAbstractAnalysis<?, ?, ?> analysis) {
+    if (analysis.usePersistentStores()) {
+      return new PersistentHashMap<>();
+    } else {
+      return new HashMap<>();
+    }
+  }
+
+  /**
+   * Returns a copy of a map created by {@link #newMap}. Copying a {@link PersistentHashMap} takes
+   * constant time.
+   *
+   * @param <K> the type of keys
+   * @param <E> the type of values
+   * @param map the map to copy
+   * @return a copy of {@code map}
+   */
+  @SuppressWarnings("unchecked") // a PersistentHashMap in a store has the store's type arguments
+  protected static <K, E> Map<K, E> copyMap(Map<K, E> map) {
+    if (map instanceof PersistentHashMap) {
+      return ((PersistentHashMap<K, E>) map).copy();
+    } else {
+      return new HashMap<>(map);
+    }
+  }
+
   /**
    * Set the abstract value of a method parameter (only adds the information to the store, does not
    * remove any other knowledge). Any previous information is erased; this method should only be
@@ -223,7 +260,7 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
       if (sideEffectsUnrefineAliases) {
         fieldValues.entrySet().removeIf(e -> !e.getKey().isUnmodifiableByOtherCode());
       } else {
-        Map<FieldAccess, V> newFieldValues = new HashMap<>();
+        Map<FieldAccess, V> newFieldValues = newMap(analysis);
         for (Map.Entry<FieldAccess, V> e : fieldValues.entrySet()) {
           FieldAccess fieldAccess = e.getKey();
           V otherVal = e.getValue();
@@ -1059,21 +1096,11 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
   private S upperBound(S other, boolean shouldWiden) {
     S newStore = analysis.createEmptyStore(sequentialSemantics);
 
-    for (Map.Entry<LocalVariable, V> e : other.localVariableValues.entrySet()) {
-      // local variables that are only part of one store, but not the
-      // other are discarded, as one of store implicitly contains 'top'
-      // for that variable.
-      LocalVariable localVar = e.getKey();
-      V thisVal = localVariableValues.get(localVar);
-      if (thisVal != null) {
-        V otherVal = e.getValue();
-        V mergedVal = upperBoundOfValues(otherVal, thisVal, shouldWiden);
-
-        if (mergedVal != null) {
-          newStore.localVariableValues.put(localVar, mergedVal);
-        }
-      }
-    }
+    // Local variables that are only part of one store, but not the other, are discarded, as one
+    // of the stores implicitly contains 'top' for that variable.  The same holds for the other
+    // kinds of information below.
+    upperBoundOfMaps(
+        localVariableValues, other.localVariableValues, newStore.localVariableValues, shouldWiden);
 
     // information about the current object
     {
@@ -1085,60 +1112,52 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
       }
     }
 
-    for (Map.Entry<FieldAccess, V> e : other.fieldValues.entrySet()) {
-      // information about fields that are only part of one store, but not
-      // the other are discarded, as one store implicitly contains 'top'
-      // for that field.
-      FieldAccess el = e.getKey();
-      V thisVal = fieldValues.get(el);
-      if (thisVal != null) {
-        V otherVal = e.getValue();
-        V mergedVal = upperBoundOfValues(otherVal, thisVal, shouldWiden);
-        if (mergedVal != null) {
-          newStore.fieldValues.put(el, mergedVal);
-        }
-      }
-    }
-    for (Map.Entry<ArrayAccess, V> e : other.arrayValues.entrySet()) {
-      // information about arrays that are only part of one store, but not
-      // the other are discarded, as one store implicitly contains 'top'
-      // for that array access.
-      ArrayAccess el = e.getKey();
-      V thisVal = arrayValues.get(el);
-      if (thisVal != null) {
-        V otherVal = e.getValue();
-        V mergedVal = upperBoundOfValues(otherVal, thisVal, shouldWiden);
-        if (mergedVal != null) {
-          newStore.arrayValues.put(el, mergedVal);
-        }
-      }
-    }
-    for (Map.Entry<MethodCall, V> e : other.methodValues.entrySet()) {
-      // information about methods that are only part of one store, but
-      // not the other are discarded, as one store implicitly contains
-      // 'top' for that field.
-      MethodCall el = e.getKey();
-      V thisVal = methodValues.get(el);
-      if (thisVal != null) {
-        V otherVal = e.getValue();
-        V mergedVal = upperBoundOfValues(otherVal, thisVal, shouldWiden);
-        if (mergedVal != null) {
-          newStore.methodValues.put(el, mergedVal);
-        }
-      }
+    upperBoundOfMaps(fieldValues, other.fieldValues, newStore.fieldValues, shouldWiden);
+    upperBoundOfMaps(arrayValues, other.arrayValues, newStore.arrayValues, shouldWiden);
+    upperBoundOfMaps(methodValues, other.methodValues, newStore.methodValues, shouldWiden);
+    upperBoundOfMaps(classValues, other.classValues, newStore.classValues, shouldWiden);
+    return newStore;
+  }
+
+  /**
+   * Puts into {@code result} the upper bounds of the values of the keys that are in both {@code
+   * thisMap} and {@code otherMap}.
+   *
+   * <p>If all three maps are {@link PersistentHashMap}s, subtrees that {@code thisMap} and {@code
+   * otherMap} share are reused without computing upper bounds (except when widening), because the
+   * least upper bound of a value and itself is that value.
+   *
+   * @param <K> the type of keys
+   * @param thisMap a map of this store
+   * @param otherMap the corresponding map of the other store
+   * @param result the corresponding, empty map of the new store
+   * @param shouldWiden true if the values should be widened rather than joined
+   */
+  @SuppressWarnings("unchecked") // a PersistentHashMap in a store has the store's type arguments
+  private <K> void upperBoundOfMaps(
+      Map<K, V> thisMap, Map<K, V> otherMap, Map<K, V> result, boolean shouldWiden) {
+    if (thisMap instanceof PersistentHashMap
+        && otherMap instanceof PersistentHashMap
+        && result instanceof PersistentHashMap) {
+      ((PersistentHashMap<K, V>) result)
+          .setToIntersection(
+              (PersistentHashMap<K, V>) thisMap,
+              (PersistentHashMap<K, V>) otherMap,
+              (thisVal, otherVal) -> upperBoundOfValues(otherVal, thisVal, shouldWiden),
+              !shouldWiden);
+      return;
     }
-    for (Map.Entry<ClassName, V> e : other.classValues.entrySet()) {
-      ClassName el = e.getKey();
-      V thisVal = classValues.get(el);
+    for (Map.Entry<K, V> e : otherMap.entrySet()) {
+      K key = e.getKey();
+      V thisVal = thisMap.get(key);
       if (thisVal != null) {
         V otherVal = e.getValue();
         V mergedVal = upperBoundOfValues(otherVal, thisVal, shouldWiden);
         if (mergedVal != null) {
-          newStore.classValues.put(el, mergedVal);
+          result.put(key, mergedVal);
         }
       }
     }
-    return newStore;
   }
 
   private V upperBoundOfValues(V otherVal, V thisVal, boolean shouldWiden) {
@@ -1152,37 +1171,31 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
    * predicate.
    */
   protected boolean supersetOf(CFAbstractStore<V, S> other) {
-    for (Map.Entry<LocalVariable, V> e : other.localVariableValues.entrySet()) {
-      LocalVariable key = e.getKey();
-      V value = localVariableValues.get(key);
-      if (value == null || !value.equals(e.getValue())) {
-        return false;
-      }
-    }
-    for (Map.Entry<FieldAccess, V> e : other.fieldValues.entrySet()) {
-      FieldAccess key = e.getKey();
-      V value = fieldValues.get(key);
-      if (value == null || !value.equals(e.getValue())) {
-        return false;
-      }
-    }
-    for (Map.Entry<ArrayAccess, V> e : other.arrayValues.entrySet()) {
-      ArrayAccess key = e.getKey();
-      V value = arrayValues.get(key);
-      if (value == null || !value.equals(e.getValue())) {
-        return false;
-      }
-    }
-    for (Map.Entry<MethodCall, V> e : other.methodValues.entrySet()) {
-      MethodCall key = e.getKey();
-      V value = methodValues.get(key);
-      if (value == null || !value.equals(e.getValue())) {
-        return false;
-      }
+    return mapSupersetOf(localVariableValues, other.localVariableValues)
+        && mapSupersetOf(fieldValues, other.fieldValues)
+        && mapSupersetOf(arrayValues, other.arrayValues)
+        && mapSupersetOf(methodValues, other.methodValues)
+        && mapSupersetOf(classValues, other.classValues);
+  }
+
+  /**
+   * Returns true if {@code thisMap} contains every entry of {@code otherMap}. Subtrees that two
+   * {@link PersistentHashMap}s share are not examined.
+   *
+   * @param <K> the type of keys
+   * @param <E> the type of values
+   * @param thisMap a map
+   * @param otherMap a map
+   * @return true if {@code thisMap} contains every entry of {@code otherMap}
+   */
+  @SuppressWarnings("unchecked") // a PersistentHashMap in a store has the store's type arguments
+  private static <K, E> boolean mapSupersetOf(Map<K, E> thisMap, Map<K, E> otherMap) {
+    if (thisMap instanceof PersistentHashMap && otherMap instanceof PersistentHashMap) {
+      return ((PersistentHashMap<K, E>) thisMap)
+          .containsAllMappings((PersistentHashMap<K, E>) otherMap);
     }
-    for (Map.Entry<ClassName, V> e : other.classValues.entrySet()) {
-      ClassName key = e.getKey();
-      V value = classValues.get(key);
+    for (Map.Entry<K, E> e : otherMap.entrySet()) {
+      E value = thisMap.get(e.getKey());
       if (value == null || !value.equals(e.getValue())) {
         return false;
       }
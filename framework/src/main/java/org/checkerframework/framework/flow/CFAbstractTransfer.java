@@ -34,6 +34,7 @@ import org.checkerframework.dataflow.cfg.UnderlyingAST.CFGMethod;
 import org.checkerframework.dataflow.cfg.UnderlyingAST.Kind;
 import org.checkerframework.dataflow.cfg.node.AbstractNodeVisitor;
 import org.checkerframework.dataflow.cfg.node.ArrayAccessNode;
+import org.checkerframework.dataflow.cfg.node.ArrayTypeNode;
 import org.checkerframework.dataflow.cfg.node.AssignmentNode;
 import org.checkerframework.dataflow.cfg.node.CaseNode;
 import org.checkerframework.dataflow.cfg.node.ClassNameNode;
@@ -43,16 +44,21 @@ import org.checkerframework.dataflow.cfg.node.FieldAccessNode;
 import org.checkerframework.dataflow.cfg.node.InstanceOfNode;
 import org.checkerframework.dataflow.cfg.node.LambdaResultExpressionNode;
 import org.checkerframework.dataflow.cfg.node.LocalVariableNode;
+import org.checkerframework.dataflow.cfg.node.MarkerNode;
 import org.checkerframework.dataflow.cfg.node.MethodInvocationNode;
 import org.checkerframework.dataflow.cfg.node.NarrowingConversionNode;
 import org.checkerframework.dataflow.cfg.node.Node;
 import org.checkerframework.dataflow.cfg.node.NotEqualNode;
 import org.checkerframework.dataflow.cfg.node.ObjectCreationNode;
+import org.checkerframework.dataflow.cfg.node.PackageNameNode;
+import org.checkerframework.dataflow.cfg.node.ParameterizedTypeNode;
+import org.checkerframework.dataflow.cfg.node.PrimitiveTypeNode;
 import org.checkerframework.dataflow.cfg.node.ReturnNode;
 import org.checkerframework.dataflow.cfg.node.StringConcatenateAssignmentNode;
 import org.checkerframework.dataflow.cfg.node.StringConversionNode;
 import org.checkerframework.dataflow.cfg.node.TernaryExpressionNode;
 import org.checkerframework.dataflow.cfg.node.ThisNode;
+import org.checkerframework.dataflow.cfg.node.ValueLiteralNode;
 import org.checkerframework.dataflow.cfg.node.VariableDeclarationNode;
 import org.checkerframework.dataflow.cfg.node.WideningConversionNode;
 import org.checkerframework.dataflow.expression.ClassName;
@@ -581,17 +587,63 @@ public abstract class CFAbstractTransfer<
    */
   @Override
   public TransferResult<V, S> visitNode(Node n, TransferInput<V, S> in) {
-    V value = null;
+    return createTransferResult(getDefaultValue(n), in);
+  }
 
+  /**
+   * Returns the value that {@link #visitNode} computes for {@code n}, before {@link #finishValue}.
+   *
+   * @param n a node
+   * @return the abstract value of {@code n} according to the type factory, or null
+   */
+  private @Nullable V getDefaultValue(Node n) {
     // TODO: handle implicit/explicit this and go to correct factory method
     Tree tree = n.getTree();
     if (tree != null) {
       if (TreeUtils.canHaveTypeAnnotation(tree)) {
-        value = getValueFromFactory(tree, n);
+        return getValueFromFactory(tree, n);
       }
     }
+    return null;
+  }
 
-    return createTransferResult(value, in);
+  /**
+   * Returns true if {@code node} is a literal, a marker, or a package or type name. The transfer
+   * function of {@code CFAbstractTransfer} for such a node is {@link #visitNode}, by way of the
+   * default methods of {@link AbstractNodeVisitor}, so it is store-neutral for the node (see {@link
+   * #isStoreNeutral}) unless a subclass overrides one of the methods on that path or {@link
+   * #createTransferResult}.
+   *
+   * <p>{@code CFAbstractTransfer} does not claim to be store-neutral for any node, because it cannot
+   * know which of those methods its subclasses override. A subclass that overrides none of them may
+   * override {@link #isStoreNeutral} to return the result of this method; {@link CFTransfer} does.
+   *
+   * @param node a node
+   * @return true if {@code node} is a literal, a marker, or a package or type name
+   */
+  protected static boolean isLiteralOrTypeName(Node node) {
+    return node instanceof ValueLiteralNode
+        || node instanceof MarkerNode
+        || node instanceof PackageNameNode
+        || node instanceof ArrayTypeNode
+        || node instanceof ParameterizedTypeNode
+        || node instanceof PrimitiveTypeNode;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>This implementation computes the same value as {@link #visitNode}, without creating a
+   * transfer result.
+   */
+  @Override
+  public @Nullable V getStoreNeutralValue(Node node, TransferInput<V, S> in) {
+    V value = getDefaultValue(node);
+    if (in.containsTwoStores()) {
+      return finishValue(value, in.getThenStore(), in.getElseStore());
+    } else {
+      return finishValue(value, in.getRegularStore());
+    }
   }
 
   /**
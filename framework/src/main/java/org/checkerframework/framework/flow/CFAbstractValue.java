@@ -18,6 +18,7 @@ import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedTypeVari
 import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedWildcardType;
 import org.checkerframework.framework.type.QualifierHierarchy;
 import org.checkerframework.framework.util.AnnotatedTypes;
+import org.checkerframework.framework.util.AnnotationMirrorSet;
 import org.checkerframework.javacutil.AnnotationUtils;
 import org.checkerframework.javacutil.TypesUtils;
 import org.plumelib.util.StringsPlume;
@@ -248,7 +249,7 @@ public abstract class CFAbstractValue<V extends CFAbstractValue<V>> implements A
       mostSpecifTypeMirror = this.getUnderlyingType();
     }
 
-    Set<AnnotationMirror> mostSpecific = AnnotationUtils.createAnnotationSet();
+    Set<AnnotationMirror> mostSpecific = new AnnotationMirrorSet();
     MostSpecificVisitor ms =
         new MostSpecificVisitor(
             mostSpecifTypeMirror,
@@ -414,11 +415,22 @@ public abstract class CFAbstractValue<V extends CFAbstractValue<V>> implements A
       return v;
     }
     ProcessingEnvironment processingEnv = analysis.getTypeFactory().getProcessingEnv();
-    Set<AnnotationMirror> lub = AnnotationUtils.createAnnotationSet();
+    Set<AnnotationMirror> lub = new AnnotationMirrorSet();
     TypeMirror lubTypeMirror =
         TypesUtils.leastUpperBound(
             this.getUnderlyingType(), other.getUnderlyingType(), processingEnv);
 
+    QualifierHierarchy hierarchy = analysis.getTypeFactory().getQualifierHierarchy();
+    int width = hierarchy.getWidth();
+    if (!shouldWiden
+        && this.getAnnotations().size() == width
+        && other.getAnnotations().size() == width) {
+      // Both values have a qualifier in every hierarchy, so LubVisitor would compute the lub of
+      // each pair of qualifiers. The set version of the lub can do so more efficiently.
+      lub.addAll(hierarchy.leastUpperBounds(this.getAnnotations(), other.getAnnotations()));
+      return analysis.createAbstractValue(lub, lubTypeMirror);
+    }
+
     LubVisitor lubVisitor =
         new LubVisitor(
             lubTypeMirror,
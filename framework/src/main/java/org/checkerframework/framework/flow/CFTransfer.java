@@ -1,9 +1,24 @@
 package org.checkerframework.framework.flow;
 
+import org.checkerframework.dataflow.cfg.node.Node;
+
 /** The default transfer function used in the Checker Framework. */
 public class CFTransfer extends CFAbstractTransfer<CFValue, CFStore, CFTransfer> {
 
   public CFTransfer(CFAbstractAnalysis<CFValue, CFStore, CFTransfer> analysis) {
     super(analysis);
   }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>This implementation returns true for literals, markers, and package and type names; see
+   * {@link #isLiteralOrTypeName}. A subclass that overrides the transfer function for one of them,
+   * {@link #visitNode}, or {@link #createTransferResult} must override this method to return false
+   * for the affected nodes.
+   */
+  @Override
+  public boolean isStoreNeutral(Node node) {
+    return isLiteralOrTypeName(node);
+  }
 }
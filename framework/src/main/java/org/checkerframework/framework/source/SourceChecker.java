@@ -10,6 +10,8 @@ import com.sun.source.util.SourcePositions;
 import com.sun.source.util.TreePath;
 import com.sun.source.util.Trees;
 import com.sun.tools.javac.code.Source;
+import com.sun.tools.javac.comp.CompileStates.CompileState;
+import com.sun.tools.javac.main.JavaCompiler;
 import com.sun.tools.javac.processing.JavacProcessingEnvironment;
 import com.sun.tools.javac.util.Context;
 import com.sun.tools.javac.util.DiagnosticSource;
@@ -203,6 +205,17 @@ import org.plumelib.util.UtilPlume;
   // "-Ainfer=stubs" or "-Ainfer=jaifs".
   "infer",
 
+  // Whether whole-program inference iterates to a fixpoint within a single javac run, rather than
+  // once per run of a script such as infer-and-annotate.sh. Requires "-Ainfer=ajava". Takes an
+  // optional argument, the maximum number of rounds.
+  // org.checkerframework.common.wholeprograminference.WholeProgramInferenceFixpoint
+  "inferFixpoint",
+
+  // With "-Ainfer=ajava", the maximum number of source files whose JavaParser ASTs are kept in
+  // memory. The least recently used ASTs are discarded, and the files are parsed again on demand.
+  // org.checkerframework.common.wholeprograminference.WholeProgramInferenceJavaParserStorage
+  "inferMaxResidentFiles",
+
   // With each warning, in addition to the concrete error key,
   // output the SuppressWarnings strings that can be used to
   // suppress that warning.
@@ -229,6 +242,10 @@ import org.plumelib.util.UtilPlume;
   // org.checkerframework.framework.type.ElementAnnotationApplier.apply
   "ignoreInvalidAnnotationLocations",
 
+  // Type-check only the compilation units in the given shard, of the form "I/N".
+  // org.checkerframework.framework.source.SourceChecker.isInTypeCheckShard
+  "typeCheckShard",
+
   ///
   /// Partially-annotated libraries
   ///
@@ -314,6 +331,11 @@ import org.plumelib.util.UtilPlume;
   // org.checkerframework.framework.stub.AnnotationFileElementTypes.AnnotationFileElementTypes
   "parseAllJdk",
 
+  // Do not use the pre-built index of the annotated JDK to avoid parsing JDK files that contain no
+  // annotations relevant to the checker; primarily for testing or debugging.
+  // org.checkerframework.framework.stub.AnnotationFileElementTypes.getJdkIndex()
+  "ignoreJdkIndex",
+
   // Whether to print debugging messages while processing the stub files
   // org.checkerframework.framework.stub.AnnotationFileParser.debugAnnotationFileParser
   "stubDebug",
@@ -373,9 +395,41 @@ import org.plumelib.util.UtilPlume;
   // Set the cache size for caches in AnnotatedTypeFactory
   "atfCacheSize",
 
+  // Set the maximum total weight (number of types) of each cache of annotated types in
+  // AnnotatedTypeFactory
+  // org.checkerframework.framework.type.AnnotatedTypeFactory.getCacheMaxWeight()
+  "atfCacheMaxWeight",
+
   // Sets AnnotatedTypeFactory shouldCache to false
   "atfDoNotCache",
 
+  // Memoize up to the given number of subtype queries about types without type variables, keyed by
+  // the structure of the types.
+  // org.checkerframework.framework.type.DefaultTypeHierarchy.createSubtypeQueryCache()
+  "subtypeCacheSize",
+
+  // Directory in which to store the annotated types of elements from bytecode, for reuse by later
+  // javac invocations with the same checker, options, stub files, and classpath.
+  // org.checkerframework.framework.type.PersistentElementTypeCache
+  "elementTypeCacheDir",
+
+  // Whether dataflow stores keep their information in persistent maps, which makes copying a
+  // store cheap.  May be given for one checker only, e.g. -ANullnessChecker_persistentStores.
+  // org.checkerframework.framework.flow.CFAbstractAnalysis.usePersistentStores()
+  "persistentStores",
+
+  // Record the store before and after each node during dataflow analysis of a method, instead of
+  // re-running transfer functions when the type factory queries a store.  Implies
+  // -ApersistentStores.  The optional value bounds the number of stores recorded per method, and
+  // the number kept per compilation unit.
+  // org.checkerframework.framework.flow.CFAbstractAnalysis.getMaxStoreSnapshotsOption()
+  "storeSnapshots",
+
+  // Directory in which to record the methods that were checked without diagnostics, so that later
+  // javac invocations skip them while they and their dependencies are unchanged.
+  // org.checkerframework.framework.type.CheckedMethodCache
+  "incrementalCacheDir",
+
   /// Miscellaneous debugging options
 
   // Whether to output resource statistics at JVM shutdown
@@ -483,6 +537,19 @@ public abstract class SourceChecker extends AbstractTypeProcessor implements Opt
    */
   private Pattern onlyDefsPattern;
 
+  /**
+   * The number of shards into which the compilation units are partitioned, as specified by the
+   * {@code -AtypeCheckShard} command-line option, or 0 if all compilation units are type-checked.
+   */
+  private int typeCheckShardCount = 0;
+
+  /**
+   * The shard of the compilation units that this checker type-checks, as specified by the {@code
+   * -AtypeCheckShard} command-line option. Only meaningful if {@link #typeCheckShardCount} is
+   * positive.
+   */
+  private int typeCheckShardIndex = 0;
+
   /** The supported lint options. */
   private Set<String> supportedLints;
 
@@ -878,6 +945,69 @@ public abstract class SourceChecker extends AbstractTypeProcessor implements Opt
     if (this.activeLints == null) {
       this.activeLints = createActiveLints(getOptions());
     }
+
+    String shard = getOption("typeCheckShard");
+    if (shard != null) {
+      parseTypeCheckShard(shard);
+      if (typeCheckShardIndex != 0) {
+        // Only shard 0 writes class files, so that concurrent shards do not write the same files.
+        Context context = ((JavacProcessingEnvironment) processingEnv).getContext();
+        JavaCompiler.instance(context).shouldStopPolicyIfNoError = CompileState.FLOW;
+      }
+    }
+  }
+
+  /**
+   * Sets {@link #typeCheckShardIndex} and {@link #typeCheckShardCount} from the argument of the
+   * {@code -AtypeCheckShard} command-line option.
+   *
+   * @param shard the argument of {@code -AtypeCheckShard}, of the form "I/N" where 0 &le; I &lt; N
+   */
+  private void parseTypeCheckShard(String shard) {
+    String[] parts = shard.split("/", -1);
+    try {
+      if (parts.length == 2) {
+        typeCheckShardIndex = Integer.parseInt(parts[0].trim());
+        typeCheckShardCount = Integer.parseInt(parts[1].trim());
+        if (typeCheckShardCount > 0
+            && typeCheckShardIndex >= 0
+            && typeCheckShardIndex < typeCheckShardCount) {
+          return;
+        }
+      }
+    } catch (NumberFormatException e) {
+      // fall through to the error
+    }
+    typeCheckShardCount = 0;
+    throw new UserError(
+        "-AtypeCheckShard must be of the form I/N, where 0 <= I < N; found \"%s\"", shard);
+  }
+
+  /**
+   * Returns true if {@code root} should be type-checked by this run of the checker. Every
+   * compilation unit is type-checked unless the {@code -AtypeCheckShard=I/N} command-line option
+   * was supplied. Then, the compilation units are partitioned into N shards and only those in shard
+   * I are type-checked, so that N compiler invocations with the same sources, each with a different
+   * I, together type-check every compilation unit exactly once and can run in parallel. Every
+   * invocation still parses and attributes all of the compilation units, and only the invocation
+   * for shard 0 writes class files: the others stop after flow analysis.
+   *
+   * <p>The shard of a compilation unit depends only on its package and file name, so it is the same
+   * across machines and working directories.
+   *
+   * @param root a compilation unit
+   * @return true if {@code root} should be type-checked
+   */
+  protected boolean isInTypeCheckShard(CompilationUnitTree root) {
+    if (typeCheckShardCount == 0) {
+      return true;
+    }
+    String path = root.getSourceFile().toUri().getPath();
+    String fileName = path == null ? root.getSourceFile().getName() : path;
+    fileName = fileName.substring(fileName.lastIndexOf('/') + 1);
+    String key =
+        root.getPackageName() == null ? fileName : root.getPackageName() + "." + fileName;
+    return Math.floorMod(key.hashCode(), typeCheckShardCount) == typeCheckShardIndex;
   }
 
   /** Output the warning about source level at most once. */
@@ -964,6 +1094,10 @@ public abstract class SourceChecker extends AbstractTypeProcessor implements Opt
       return;
     }
 
+    if (!isInTypeCheckShard(p.getCompilationUnit())) {
+      return;
+    }
+
     if (visitor == null) {
       // typeProcessingStart invokes initChecker, which should
       // have set the visitor. If the field is still null, an
@@ -1034,6 +1168,14 @@ public abstract class SourceChecker extends AbstractTypeProcessor implements Opt
     report(source, Kind.MANDATORY_WARNING, messageKey, args);
   }
 
+  /**
+   * Called whenever this checker reports an error or warning that is not suppressed. Does nothing
+   * by default.
+   *
+   * @param source the source position information; may be an Element, a Tree, or null
+   */
+  protected void reportedDiagnostic(@Nullable Object source) {}
+
   /**
    * Reports a diagnostic message. By default, prints it to the screen via the compiler's internal
    * messager.
@@ -1081,6 +1223,7 @@ public abstract class SourceChecker extends AbstractTypeProcessor implements Opt
       System.err.println("(NOTE) " + String.format(messageKey, args));
       return;
     }
+    reportedDiagnostic(source);
 
     final String defaultFormat = "(" + messageKey + ")";
     String fmtString;
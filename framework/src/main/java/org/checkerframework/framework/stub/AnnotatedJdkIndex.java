@@ -0,0 +1,322 @@
+package org.checkerframework.framework.stub;
+
+import com.github.javaparser.ParseResult;
+import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.BodyDeclaration;
+import com.github.javaparser.ast.body.ConstructorDeclaration;
+import com.github.javaparser.ast.body.EnumConstantDeclaration;
+import com.github.javaparser.ast.body.EnumDeclaration;
+import com.github.javaparser.ast.body.FieldDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.ast.body.VariableDeclarator;
+import com.github.javaparser.ast.expr.AnnotationExpr;
+import com.github.javaparser.utils.CollectionStrategy;
+import com.github.javaparser.utils.ParserCollectionStrategy;
+import com.github.javaparser.utils.ProjectRoot;
+import com.github.javaparser.utils.SourceRoot;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.TypeParameterElement;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.checkerframework.javacutil.BugInCF;
+import org.checkerframework.javacutil.ElementUtils;
+
+/**
+ * A pre-computed index of the annotated JDK, which records the simple names of the annotations
+ * written on each class and member. It is created at build time by {@link #main} and stored in
+ * checker.jar as {@link #RESOURCE_NAME}.
+ *
+ * <p>{@link AnnotationFileElementTypes} uses the index to avoid parsing an annotated JDK file when
+ * the requested element has no annotation that could affect its type for the current checker.
+ * Without the index, every annotated JDK file that contains a requested element is parsed.
+ *
+ * <p>In the index, a class is identified by its fully-qualified name and a member by its simple
+ * name ({@code <init>} for constructors), so overloaded methods share one entry. The class itself
+ * is the member with the empty name; its annotations are those on the class declaration, its type
+ * parameters, and its supertypes. The annotations of a member include all annotations within its
+ * declaration, such as those on parameters and type arguments.
+ */
+public class AnnotatedJdkIndex {
+
+  /** The name of the resource that contains the index. */
+  public static final String RESOURCE_NAME = "/annotated-jdk.index";
+
+  /** The first four bytes of an index file. */
+  private static final int MAGIC = 0x434a444b;
+
+  /** The version of the index file format. Increment when the format changes. */
+  private static final int FORMAT_VERSION = 1;
+
+  /**
+   * Maps a class's fully-qualified name to a map from the simple names of its members to the simple
+   * names of the annotations written on them.
+   */
+  private final Map<String, Map<String, Set<String>>> index;
+
+  /**
+   * Creates an index.
+   *
+   * @param index maps a class's fully-qualified name to a map from member names to annotation
+   *     names
+   */
+  private AnnotatedJdkIndex(Map<String, Map<String, Set<String>>> index) {
+    this.index = index;
+  }
+
+  /**
+   * Reads an index from the given stream.
+   *
+   * @param in the stream to read
+   * @return the index
+   * @throws IOException if the stream cannot be read or is not an index
+   */
+  public static AnnotatedJdkIndex read(InputStream in) throws IOException {
+    try (DataInputStream dis = new DataInputStream(new BufferedInputStream(in))) {
+      if (dis.readInt() != MAGIC || dis.readInt() != FORMAT_VERSION) {
+        throw new IOException("Not an annotated JDK index, or an outdated one");
+      }
+      int classCount = dis.readInt();
+      Map<String, Map<String, Set<String>>> index = new HashMap<>(classCount * 2);
+      // The same annotation names occur many times; share the strings.
+      Map<String, String> interned = new HashMap<>();
+      for (int i = 0; i < classCount; i++) {
+        String className = dis.readUTF();
+        int memberCount = dis.readInt();
+        Map<String, Set<String>> members = new HashMap<>(memberCount * 2);
+        for (int j = 0; j < memberCount; j++) {
+          String memberName = dis.readUTF();
+          int annoCount = dis.readInt();
+          Set<String> annos = new TreeSet<>();
+          for (int k = 0; k < annoCount; k++) {
+            String anno = dis.readUTF();
+            annos.add(interned.computeIfAbsent(anno, a -> a));
+          }
+          members.put(memberName, annos);
+        }
+        index.put(className, members);
+      }
+      return new AnnotatedJdkIndex(index);
+    }
+  }
+
+  /**
+   * Returns true if the annotated JDK contains the given class.
+   *
+   * @param className the fully-qualified name of a class
+   * @return true if the annotated JDK contains the given class
+   */
+  public boolean containsClass(String className) {
+    return index.containsKey(className);
+  }
+
+  /**
+   * Returns the number of classes in the index.
+   *
+   * @return the number of classes in the index
+   */
+  public int classCount() {
+    return index.size();
+  }
+
+  /**
+   * Returns the number of members (including classes themselves) in the index.
+   *
+   * @return the number of members in the index
+   */
+  public int memberCount() {
+    int result = 0;
+    for (Map<String, Set<String>> members : index.values()) {
+      result += members.size();
+    }
+    return result;
+  }
+
+  /**
+   * Returns the simple names of the annotations written on the declaration of {@code elt} in the
+   * annotated JDK, or null if the index does not determine them. The result is the empty set if
+   * {@code elt}'s class is in the annotated JDK but {@code elt} has no annotations there.
+   *
+   * @param elt an element
+   * @return the simple names of the annotations on the declaration of {@code elt}, or null if
+   *     unknown
+   */
+  public @Nullable Set<String> getAnnotationNames(Element elt) {
+    if (elt.getKind() == ElementKind.TYPE_PARAMETER) {
+      return getAnnotationNames(((TypeParameterElement) elt).getGenericElement());
+    }
+    if (elt.getKind() == ElementKind.PARAMETER) {
+      return getAnnotationNames(elt.getEnclosingElement());
+    }
+    String className;
+    String memberName;
+    switch (elt.getKind()) {
+      case CLASS:
+      case INTERFACE:
+      case ENUM:
+      case ANNOTATION_TYPE:
+        className = ((TypeElement) elt).getQualifiedName().toString();
+        memberName = "";
+        break;
+      case METHOD:
+      case CONSTRUCTOR:
+      case FIELD:
+      case ENUM_CONSTANT:
+        TypeElement enclosing = ElementUtils.enclosingTypeElement(elt.getEnclosingElement());
+        if (enclosing == null) {
+          return null;
+        }
+        className = enclosing.getQualifiedName().toString();
+        memberName = elt.getSimpleName().toString();
+        break;
+      default:
+        return null;
+    }
+    Map<String, Set<String>> members = index.get(className);
+    if (members == null) {
+      return null;
+    }
+    Set<String> result = members.get(memberName);
+    return result == null ? Collections.emptySet() : result;
+  }
+
+  ///
+  /// Creating the index at build time
+  ///
+
+  /**
+   * Creates the index of the annotated JDK files in a directory.
+   *
+   * @param args two command-line arguments: the directory containing the annotated JDK, which has
+   *     already been processed by {@link JavaStubifier}, and the index file to write
+   */
+  public static void main(String[] args) {
+    if (args.length != 2) {
+      System.err.println("Usage: AnnotatedJdkIndex annotated-jdk-dir index-file");
+      System.exit(1);
+    }
+    Map<String, Map<String, Set<String>>> index = new TreeMap<>();
+    Path root = JavaStubifier.dirnameToPath(args[0]);
+    CollectionStrategy strategy = new ParserCollectionStrategy();
+    // Required to include directories that contain a module-info.java, which don't parse by
+    // default.
+    strategy.getParserConfiguration().setLanguageLevel(ParserConfiguration.LanguageLevel.JAVA_11);
+    ProjectRoot projectRoot = strategy.collect(root);
+    SourceRoot.Callback indexer =
+        (Path localPath, Path absolutePath, ParseResult<CompilationUnit> result) -> {
+          Optional<CompilationUnit> opt = result.getResult();
+          if (opt.isPresent()) {
+            for (TypeDeclaration<?> typeDecl : opt.get().findAll(TypeDeclaration.class)) {
+              indexType(typeDecl, index);
+            }
+          }
+          return SourceRoot.Callback.Result.DONT_SAVE;
+        };
+    for (SourceRoot sourceRoot : projectRoot.getSourceRoots()) {
+      try {
+        sourceRoot.parse("", indexer);
+      } catch (IOException e) {
+        throw new BugInCF("Problem while reading " + sourceRoot.getRoot(), e);
+      }
+    }
+
+    try (DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(new FileOutputStream(args[1])))) {
+      out.writeInt(MAGIC);
+      out.writeInt(FORMAT_VERSION);
+      out.writeInt(index.size());
+      for (Map.Entry<String, Map<String, Set<String>>> classEntry : index.entrySet()) {
+        out.writeUTF(classEntry.getKey());
+        out.writeInt(classEntry.getValue().size());
+        for (Map.Entry<String, Set<String>> memberEntry : classEntry.getValue().entrySet()) {
+          out.writeUTF(memberEntry.getKey());
+          out.writeInt(memberEntry.getValue().size());
+          for (String anno : memberEntry.getValue()) {
+            out.writeUTF(anno);
+          }
+        }
+      }
+    } catch (IOException e) {
+      throw new BugInCF("Problem while writing " + args[1], e);
+    }
+  }
+
+  /**
+   * Adds the members of one type declaration to the index. Does not add nested type declarations;
+   * they are added separately.
+   *
+   * @param typeDecl a type declaration
+   * @param index the index being built
+   */
+  private static void indexType(
+      TypeDeclaration<?> typeDecl, Map<String, Map<String, Set<String>>> index) {
+    Optional<String> className = typeDecl.getFullyQualifiedName();
+    if (!className.isPresent()) {
+      // A local class.
+      return;
+    }
+    Map<String, Set<String>> members =
+        index.computeIfAbsent(className.get(), name -> new TreeMap<>());
+
+    Set<String> header = members.computeIfAbsent("", name -> new TreeSet<>());
+    for (Node child : typeDecl.getChildNodes()) {
+      // Skip members, including nested types, which are indexed separately.
+      if (!(child instanceof BodyDeclaration)) {
+        // Annotations, type parameters, and supertypes.
+        addAnnotationNames(child, header);
+      }
+    }
+
+    for (BodyDeclaration<?> member : typeDecl.getMembers()) {
+      if (member instanceof MethodDeclaration) {
+        String name = ((MethodDeclaration) member).getNameAsString();
+        addAnnotationNames(member, members.computeIfAbsent(name, n -> new TreeSet<>()));
+      } else if (member instanceof ConstructorDeclaration) {
+        addAnnotationNames(member, members.computeIfAbsent("<init>", n -> new TreeSet<>()));
+      } else if (member instanceof FieldDeclaration) {
+        for (VariableDeclarator var : ((FieldDeclaration) member).getVariables()) {
+          String name = var.getNameAsString();
+          addAnnotationNames(member, members.computeIfAbsent(name, n -> new TreeSet<>()));
+        }
+      }
+    }
+    if (typeDecl instanceof EnumDeclaration) {
+      for (EnumConstantDeclaration constant : ((EnumDeclaration) typeDecl).getEntries()) {
+        String name = constant.getNameAsString();
+        addAnnotationNames(constant, members.computeIfAbsent(name, n -> new TreeSet<>()));
+      }
+    }
+  }
+
+  /**
+   * Adds the simple names of all annotations within {@code node}, including {@code node} itself, to
+   * {@code names}. {@link JavaStubifier} has removed method bodies and initializers, so {@code
+   * node} contains no local or anonymous classes.
+   *
+   * @param node an AST node
+   * @param names the set to which to add annotation names
+   */
+  private static void addAnnotationNames(Node node, Set<String> names) {
+    for (AnnotationExpr anno : node.findAll(AnnotationExpr.class)) {
+      names.add(anno.getName().getIdentifier());
+    }
+  }
+}
@@ -2,6 +2,7 @@ package org.checkerframework.framework.stub;
 
 import com.sun.source.tree.CompilationUnitTree;
 import io.github.classgraph.ClassGraph;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -10,12 +11,14 @@ import java.net.JarURLConnection;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -41,6 +44,7 @@ import org.checkerframework.framework.stub.AnnotationFileParser.AnnotationFileAn
 import org.checkerframework.framework.type.AnnotatedTypeFactory;
 import org.checkerframework.framework.type.AnnotatedTypeMirror;
 import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedExecutableType;
+import org.checkerframework.framework.util.CheckerDaemon;
 import org.checkerframework.javacutil.BugInCF;
 import org.checkerframework.javacutil.ElementUtils;
 import org.checkerframework.javacutil.Pair;
@@ -81,6 +85,30 @@ public class AnnotationFileElementTypes {
   /** Parse all JDK files at startup rather than as needed. */
   private final boolean parseAllJdkFiles;
 
+  /**
+   * The index of the annotated JDK, or null if it has not been read yet or is not available. Read
+   * on first use by {@link #getJdkIndex()}.
+   */
+  private @Nullable AnnotatedJdkIndex jdkIndex;
+
+  /** The number of annotated JDK files that have been parsed. */
+  private int jdkFilesParsed = 0;
+
+  /** True if {@link #jdkIndex} has been read, or an attempt to read it failed. */
+  private boolean jdkIndexRead = false;
+
+  /**
+   * Maps the URL of an annotated JDK index to its contents. Used only when running in a {@link
+   * CheckerDaemon}, so that the index is read once rather than once per compilation.
+   */
+  private static final Map<String, AnnotatedJdkIndex> sharedJdkIndexes = new HashMap<>();
+
+  /**
+   * The simple names of the supported type qualifiers and their aliases. Computed on first use by
+   * {@link #mayHaveTypeAnnotationsInJdk}.
+   */
+  private @Nullable Set<String> qualifierSimpleNames;
+
   /**
    * Creates an empty annotation source.
    *
@@ -233,6 +261,47 @@ public class AnnotationFileElementTypes {
     parsing = false;
   }
 
+  /**
+   * Parses ajava files that are held in memory rather than named by the -Aajava command-line
+   * option. As with {@link #parseAjavaFiles()}, the files are parsed as stub files, so only
+   * annotations on public elements are stored.
+   *
+   * @param ajavaFiles the contents of each ajava file, keyed by a name used in diagnostic messages
+   */
+  public void parseInMemoryAjavaFiles(Map<String, String> ajavaFiles) {
+    parsing = true;
+    for (Map.Entry<String, String> file : ajavaFiles.entrySet()) {
+      AnnotationFileParser.parseInMemoryAjavaFileAsStub(
+          file.getKey(),
+          new ByteArrayInputStream(file.getValue().getBytes(StandardCharsets.UTF_8)),
+          factory,
+          factory.getProcessingEnv(),
+          annotationFileAnnos);
+    }
+    parsing = false;
+  }
+
+  /**
+   * Like {@link #parseAjavaFileWithTree(String, CompilationUnitTree)}, but for an ajava file that
+   * is held in memory.
+   *
+   * @param ajavaName a name for the ajava file, used in diagnostic messages
+   * @param contents the contents of the ajava file
+   * @param root javac tree for the compilation unit stored in the ajava file
+   */
+  public void parseInMemoryAjavaFileWithTree(
+      String ajavaName, String contents, CompilationUnitTree root) {
+    parsing = true;
+    AnnotationFileParser.parseAjavaFile(
+        ajavaName,
+        new ByteArrayInputStream(contents.getBytes(StandardCharsets.UTF_8)),
+        root,
+        factory,
+        factory.getProcessingEnv(),
+        annotationFileAnnos);
+    parsing = false;
+  }
+
   /**
    * Parses the files in {@code annotationFiles} of the given file type. This includes files listed
    * directly in {@code annotationFiles} and for each listed directory, also includes all files
@@ -281,7 +350,14 @@ public class AnnotationFileElementTypes {
         }
         InputStream in = checker.getClass().getResourceAsStream(path);
         if (in != null) {
-          AnnotationFileParser.parseStubFile(path, in, factory, processingEnv, annotationFileAnnos);
+          // Use the URL as the file name: the same relative path names different resources for
+          // checkers in different packages.
+          AnnotationFileParser.parseStubFile(
+              checker.getClass().getResource(path).toString(),
+              in,
+              factory,
+              processingEnv,
+              annotationFileAnnos);
         } else {
           // Didn't find the file.  Issue a warning.
 
@@ -348,7 +424,10 @@ public class AnnotationFileElementTypes {
     if (parsing) {
       return null;
     }
-    parseEnclosingClass(e);
+    if (mayHaveTypeAnnotationsInJdk(e)) {
+      parseEnclosingClass(e);
+      processDeferredMember(e);
+    }
     AnnotatedTypeMirror type = annotationFileAnnos.atypes.get(e);
     return type == null ? null : type.deepCopy();
   }
@@ -369,6 +448,7 @@ public class AnnotationFileElementTypes {
     }
 
     parseEnclosingClass(elt);
+    processDeferredMember(elt);
     String eltName = ElementUtils.getQualifiedName(elt);
     if (annotationFileAnnos.declAnnos.containsKey(eltName)) {
       return annotationFileAnnos.declAnnos.get(eltName);
@@ -395,6 +475,14 @@ public class AnnotationFileElementTypes {
       return null;
     }
 
+    // Fake overrides are written in the annotated JDK file for the receiver's class, which might
+    // not have been parsed yet if the receiver's type was read from the persistent element type
+    // cache.
+    TypeElement receiverElement = TypesUtils.getTypeElement(receiverType.getUnderlyingType());
+    if (receiverElement != null) {
+      parseEnclosingClass(receiverElement);
+    }
+
     ExecutableElement method = (ExecutableElement) elt;
 
     TypeMirror methodReceiverType = method.getReceiverType();
@@ -474,10 +562,148 @@ public class AnnotationFileElementTypes {
         fakeReceiverType, candidates, applicableClasses, applicableInterfaces);
   }
 
+  /**
+   * Returns the number of members of parsed annotated JDK files whose processing was deferred until
+   * their annotations are requested.
+   *
+   * @return the number of members of annotated JDK files whose processing was deferred
+   */
+  public int getDeferredJdkMemberCount() {
+    return annotationFileAnnos.getDeferredMemberCount();
+  }
+
+  /**
+   * Returns the number of members of annotated JDK files that were processed after being deferred.
+   *
+   * @return the number of deferred members of annotated JDK files that have been processed
+   */
+  public int getProcessedJdkMemberCount() {
+    return annotationFileAnnos.getProcessedDeferredMemberCount();
+  }
+
+  /**
+   * Returns a one-line summary of how much of the annotated JDK has been parsed and processed, for
+   * use with the {@code -AresourceStats} command-line option. Returns the empty string if the
+   * annotated JDK is not used.
+   *
+   * @return a summary of the use of the annotated JDK
+   */
+  public String getStatistics() {
+    if (!shouldParseJdk) {
+      return "";
+    }
+    AnnotatedJdkIndex index = getJdkIndex();
+    return String.format(
+        "annotated JDK: %d files parsed, %d of %d members processed%s",
+        jdkFilesParsed,
+        getProcessedJdkMemberCount(),
+        getDeferredJdkMemberCount(),
+        index == null
+            ? ""
+            : String.format(
+                " (%d classes and %d members available)",
+                index.classCount(), index.memberCount()));
+  }
+
   ///
   /// End of public methods, private helper methods follow
   ///
 
+  /**
+   * Processes the declaration of {@code elt} in the annotated JDK, if it was parsed but not yet
+   * processed.
+   *
+   * @param elt an element whose annotations are requested
+   */
+  private void processDeferredMember(Element elt) {
+    parsing = true;
+    try {
+      annotationFileAnnos.processDeferredMember(elt);
+    } finally {
+      parsing = false;
+    }
+  }
+
+  /**
+   * Returns false if the annotated JDK index shows that the declaration of {@code e} in the
+   * annotated JDK has no annotation that is a supported type qualifier or an alias of one. In that
+   * case, the annotated JDK file need not be parsed to obtain the type of {@code e}: the type would
+   * be the same as the one read from bytecode. Returns true if there is no index or the index does
+   * not contain {@code e}'s class.
+   *
+   * <p>Declaration annotations are not considered; {@link #getDeclAnnotation} always parses the
+   * file.
+   *
+   * @param e an element whose annotated type is requested
+   * @return false if {@code e} certainly has no relevant type annotations in the annotated JDK
+   */
+  private boolean mayHaveTypeAnnotationsInJdk(Element e) {
+    if (!shouldParseJdk || parseAllJdkFiles) {
+      return true;
+    }
+    AnnotatedJdkIndex index = getJdkIndex();
+    if (index == null) {
+      return true;
+    }
+    Set<String> annotationNames = index.getAnnotationNames(e);
+    if (annotationNames == null) {
+      return true;
+    }
+    if (qualifierSimpleNames == null) {
+      qualifierSimpleNames = new HashSet<>();
+      for (String name : factory.getSupportedTypeQualifierNames()) {
+        qualifierSimpleNames.add(name.substring(name.lastIndexOf('.') + 1));
+      }
+      for (String name : factory.getQualifierAliasNames()) {
+        qualifierSimpleNames.add(name.substring(name.lastIndexOf('.') + 1));
+      }
+    }
+    return !Collections.disjoint(annotationNames, qualifierSimpleNames);
+  }
+
+  /**
+   * Returns the index of the annotated JDK, reading it on first use. Returns null if the index is
+   * not available, for example when running from a build that did not create it, or if the
+   * {@code -AignoreJdkIndex} command-line option was supplied.
+   *
+   * @return the index of the annotated JDK, or null
+   */
+  private @Nullable AnnotatedJdkIndex getJdkIndex() {
+    if (jdkIndexRead) {
+      return jdkIndex;
+    }
+    jdkIndexRead = true;
+    if (factory.getChecker().hasOption("ignoreJdkIndex")) {
+      return null;
+    }
+    URL indexURL = factory.getClass().getResource(AnnotatedJdkIndex.RESOURCE_NAME);
+    if (indexURL == null) {
+      return null;
+    }
+    boolean shareIndex = CheckerDaemon.isRunning();
+    if (shareIndex) {
+      synchronized (sharedJdkIndexes) {
+        jdkIndex = sharedJdkIndexes.get(indexURL.toString());
+      }
+      if (jdkIndex != null) {
+        return jdkIndex;
+      }
+    }
+    try (InputStream in = indexURL.openStream()) {
+      jdkIndex = AnnotatedJdkIndex.read(in);
+      if (shareIndex) {
+        synchronized (sharedJdkIndexes) {
+          sharedJdkIndexes.put(indexURL.toString(), jdkIndex);
+        }
+      }
+    } catch (IOException e) {
+      factory
+          .getChecker()
+          .message(Kind.NOTE, "Ignoring unreadable annotated JDK index: " + e.getMessage());
+    }
+    return jdkIndex;
+  }
+
   /**
    * Parses the outermost enclosing class of {@code e} if there exists an annotation file for it and
    * it has not already been parsed.
@@ -539,9 +765,10 @@ public class AnnotationFileElementTypes {
    */
   private void parseStubFile(Path path) {
     parsing = true;
+    jdkFilesParsed++;
     try (FileInputStream jdkStub = new FileInputStream(path.toFile())) {
       AnnotationFileParser.parseJdkFileAsStub(
-          path.toFile().getName(),
+          path.toString(),
           jdkStub,
           factory,
           factory.getProcessingEnv(),
@@ -561,6 +788,7 @@ public class AnnotationFileElementTypes {
   private void parseJarEntry(String jarEntryName) {
     JarURLConnection connection = getJarURLConnectionToJdk();
     parsing = true;
+    jdkFilesParsed++;
     try (JarFile jarFile = connection.getJarFile()) {
       InputStream jdkStub;
       try {
@@ -73,6 +73,7 @@ import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.PackageElement;
 import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.TypeParameterElement;
 import javax.lang.model.element.VariableElement;
 import javax.lang.model.type.ArrayType;
 import javax.lang.model.type.DeclaredType;
@@ -163,7 +164,10 @@ public class AnnotationFileParser {
   /** Whether to print verbose debugging messages. */
   private final boolean debugAnnotationFileParser;
 
-  /** The name of the file being processed; used only for diagnostic messages. */
+  /**
+   * The name of the file being processed; used for diagnostic messages and, for stub files, as the
+   * key of the file in the {@link ParsedAnnotationFileCache}.
+   */
   private final String filename;
 
   /**
@@ -236,6 +240,14 @@ public class AnnotationFileParser {
   /** Whether or not the file is a stub file that's part of the JDK. */
   private final boolean isJdkAsStub;
 
+  /**
+   * Whether to defer processing the fields, methods, and constructors of the file until their
+   * annotations are requested. True for annotated JDK files unless {@code -AparseAllJdk} is passed.
+   * Most of the members of an annotated JDK class are never used by the program being checked, so
+   * this saves both time and the memory for their annotated types.
+   */
+  private final boolean deferJdkMembers;
+
   /**
    * The result of calling AnnotationFileParser.parse: the annotated types and declaration
    * annotations from the file.
@@ -267,6 +279,128 @@ public class AnnotationFileParser {
      */
     public final Map<ExecutableElement, List<Pair<TypeMirror, AnnotatedTypeMirror>>> fakeOverrides =
         new HashMap<>();
+
+    /**
+     * Map from a member of a class in the annotated JDK to its declaration, which has not been
+     * processed yet. Members of annotated JDK classes are processed on demand, by {@link
+     * #processDeferredMember}; until then, they are not in {@link #atypes} or {@link #declAnnos}.
+     */
+    private final Map<Element, DeferredMember> deferredMembers = new HashMap<>();
+
+    /** The number of members that have been added to {@link #deferredMembers}. */
+    private int deferredMemberCount = 0;
+
+    /** The number of members of {@link #deferredMembers} that have been processed. */
+    private int processedDeferredMemberCount = 0;
+
+    /**
+     * If the declaration of {@code elt} (or of the method or constructor that declares {@code
+     * elt}, if it is a parameter or a type parameter) is deferred, processes it now so that its
+     * annotations appear in {@link #atypes} and {@link #declAnnos}. Otherwise, does nothing.
+     *
+     * @param elt an element whose annotations are requested
+     */
+    public void processDeferredMember(Element elt) {
+      if (deferredMembers.isEmpty()) {
+        return;
+      }
+      Element member;
+      switch (elt.getKind()) {
+        case PARAMETER:
+          member = elt.getEnclosingElement();
+          break;
+        case TYPE_PARAMETER:
+          member = ((TypeParameterElement) elt).getGenericElement();
+          break;
+        default:
+          member = elt;
+          break;
+      }
+      DeferredMember deferred = deferredMembers.remove(member);
+      if (deferred != null) {
+        processedDeferredMemberCount++;
+        deferred.process();
+      }
+    }
+
+    /**
+     * Returns the number of members whose processing was deferred.
+     *
+     * @return the number of members whose processing was deferred
+     */
+    public int getDeferredMemberCount() {
+      return deferredMemberCount;
+    }
+
+    /**
+     * Returns the number of deferred members that have been processed.
+     *
+     * @return the number of deferred members that have been processed
+     */
+    public int getProcessedDeferredMemberCount() {
+      return processedDeferredMemberCount;
+    }
+  }
+
+  /**
+   * The declaration of a member of an annotated JDK class, together with the parser state needed to
+   * process it later. See {@link AnnotationFileAnnotations#processDeferredMember}.
+   */
+  private class DeferredMember {
+    /** The member's element. */
+    private final Element elt;
+
+    /** The member's declaration. */
+    private final BodyDeclaration<?> decl;
+
+    /** The type being parsed when the member was encountered. */
+    private final FqName enclosingType;
+
+    /** The annotations on the package declaration of the member's compilation unit. */
+    private final @Nullable List<AnnotationExpr> enclosingPackageAnnos;
+
+    /** The class type parameters in scope at the member's declaration. */
+    private final List<AnnotatedTypeVariable> enclosingTypeParameters;
+
+    /** The annotations to which the member's annotations are added. */
+    private final AnnotationFileAnnotations destination;
+
+    /**
+     * Creates a deferred member from the current state of the parser.
+     *
+     * @param elt the member's element
+     * @param decl the member's declaration
+     */
+    DeferredMember(Element elt, BodyDeclaration<?> decl) {
+      this.elt = elt;
+      this.decl = decl;
+      this.enclosingType = typeBeingParsed;
+      this.enclosingPackageAnnos = packageAnnos;
+      this.enclosingTypeParameters = new ArrayList<>(typeParameters);
+      this.destination = annotationFileAnnos;
+    }
+
+    /** Processes the member, restoring the parser state that was in effect for its declaration. */
+    void process() {
+      FqName oldTypeBeingParsed = typeBeingParsed;
+      List<AnnotationExpr> oldPackageAnnos = packageAnnos;
+      List<AnnotatedTypeVariable> oldTypeParameters = new ArrayList<>(typeParameters);
+      AnnotationFileAnnotations oldAnnotationFileAnnos = annotationFileAnnos;
+      typeBeingParsed = enclosingType;
+      packageAnnos = enclosingPackageAnnos;
+      typeParameters.clear();
+      typeParameters.addAll(enclosingTypeParameters);
+      annotationFileAnnos = destination;
+      try {
+        processMember(elt, decl);
+      } finally {
+        typeBeingParsed = oldTypeBeingParsed;
+        packageAnnos = oldPackageAnnos;
+        typeParameters.clear();
+        typeParameters.addAll(oldTypeParameters);
+        annotationFileAnnos = oldAnnotationFileAnnos;
+      }
+    }
   }
 
   /**
@@ -306,6 +440,7 @@ public class AnnotationFileParser {
     this.fromStubFileAnno = AnnotationBuilder.fromClass(elements, FromStubFile.class);
 
     this.isJdkAsStub = isJdkAsStub;
+    this.deferJdkMembers = isJdkAsStub && !options.containsKey("parseAllJdk");
   }
 
   /**
@@ -502,7 +637,8 @@ public class AnnotationFileParser {
   /**
    * The main entry point. Parse a stub file and side-effects the last argument.
    *
-   * @param filename name of stub file, used only for diagnostic messages
+   * @param filename name of stub file, used for diagnostic messages and as its key in the
+   *     checker's {@link ParsedAnnotationFileCache}, so it must identify the file uniquely
    * @param inputStream of stub file to parse
    * @param atypeFactory AnnotatedTypeFactory to use
    * @param processingEnv ProcessingEnvironment to use
@@ -538,7 +674,7 @@ public class AnnotationFileParser {
     AnnotationFileParser afp =
         new AnnotationFileParser(filename, atypeFactory, processingEnv, false, false);
     try {
-      afp.parseStubUnit(inputStream);
+      afp.parseStubUnit(inputStream, null);
       JavaParserUtils.concatenateAddedStringLiterals(afp.stubUnit);
       afp.setRoot(root);
       afp.process(ajavaAnnos);
@@ -549,10 +685,42 @@ public class AnnotationFileParser {
     }
   }
 
+  /**
+   * Parses an ajava file that is held in memory as a stub file, and side-effects the last argument.
+   * Unlike {@link #parseStubFile(String, InputStream, AnnotatedTypeFactory, ProcessingEnvironment,
+   * AnnotationFileAnnotations)}, this does not use the checker's {@link ParsedAnnotationFileCache},
+   * because the contents of such a file change: it holds the annotations inferred in one round of
+   * whole-program inference with {@code -AinferFixpoint}.
+   *
+   * @param filename name of the ajava file, used only for diagnostic messages
+   * @param inputStream of the ajava file to parse
+   * @param atypeFactory AnnotatedTypeFactory to use
+   * @param processingEnv ProcessingEnvironment to use
+   * @param annotationFileAnnos annotations from the ajava file; side-effected by this method
+   */
+  public static void parseInMemoryAjavaFileAsStub(
+      String filename,
+      InputStream inputStream,
+      AnnotatedTypeFactory atypeFactory,
+      ProcessingEnvironment processingEnv,
+      AnnotationFileAnnotations annotationFileAnnos) {
+    AnnotationFileParser afp =
+        new AnnotationFileParser(filename, atypeFactory, processingEnv, false, true);
+    try {
+      afp.parseStubUnit(inputStream, null);
+      afp.process(annotationFileAnnos);
+    } catch (ParseProblemException e) {
+      for (Problem p : e.getProblems()) {
+        afp.warn(null, p.getVerboseMessage());
+      }
+    }
+  }
+
   /**
    * Parse a stub file that is a part of the annotated JDK and side-effects the last two arguments.
    *
-   * @param filename name of stub file, used only for diagnostic messages
+   * @param filename name of stub file, used for diagnostic messages and as its key in the
+   *     checker's {@link ParsedAnnotationFileCache}, so it must identify the file uniquely
    * @param inputStream of stub file to parse
    * @param atypeFactory AnnotatedTypeFactory to use
    * @param processingEnv ProcessingEnvironment to use
@@ -570,7 +738,8 @@ public class AnnotationFileParser {
   /**
    * Parse a stub file and adds annotations to {@code annotationFileAnnos}.
    *
-   * @param filename name of stub file, used only for diagnostic messages
+   * @param filename name of stub file, used for diagnostic messages and as its key in the
+   *     checker's {@link ParsedAnnotationFileCache}, so it must identify the file uniquely
    * @param inputStream of stub file to parse
    * @param atypeFactory AnnotatedTypeFactory to use
    * @param processingEnv ProcessingEnvironment to use
@@ -587,7 +756,7 @@ public class AnnotationFileParser {
     AnnotationFileParser afp =
         new AnnotationFileParser(filename, atypeFactory, processingEnv, isJdkAsStub, true);
     try {
-      afp.parseStubUnit(inputStream);
+      afp.parseStubUnit(inputStream, atypeFactory.getChecker().getParsedAnnotationFileCache());
       afp.process(annotationFileAnnos);
     } catch (ParseProblemException e) {
       for (Problem p : e.getProblems()) {
@@ -603,12 +772,17 @@ public class AnnotationFileParser {
    * <p>Subsequently, all work uses the AST.
    *
    * @param inputStream the stream from which to read an annotation file
+   * @param cache if non-null, the cache from which to obtain the AST, keyed by {@link #filename};
+   *     must be null if the AST will be modified
    */
-  private void parseStubUnit(InputStream inputStream) {
+  private void parseStubUnit(InputStream inputStream, @Nullable ParsedAnnotationFileCache cache) {
     if (debugAnnotationFileParser) {
       stubDebug(String.format("parsing stub file %s", filename));
     }
-    stubUnit = StaticJavaParser.parseStubUnit(inputStream);
+    stubUnit =
+        cache == null
+            ? StaticJavaParser.parseStubUnit(inputStream)
+            : cache.parse(filename, inputStream);
 
     // getAllAnnotations() also modifies importedConstants and importedTypes. This should
     // be refactored to be nicer.
@@ -813,14 +987,15 @@ public class AnnotationFileParser {
       final BodyDeclaration<?> decl = entry.getValue();
       switch (elt.getKind()) {
         case FIELD:
-          processField((FieldDeclaration) decl, (VariableElement) elt);
-          break;
         case ENUM_CONSTANT:
-          processEnumConstant((EnumConstantDeclaration) decl, (VariableElement) elt);
-          break;
         case CONSTRUCTOR:
         case METHOD:
-          processCallableDeclaration((CallableDeclaration<?>) decl, (ExecutableElement) elt);
+          if (deferJdkMembers) {
+            annotationFileAnnos.deferredMembers.put(elt, new DeferredMember(elt, decl));
+            annotationFileAnnos.deferredMemberCount++;
+          } else {
+            processMember(elt, decl);
+          }
           break;
         case CLASS:
         case INTERFACE:
@@ -852,6 +1027,30 @@ public class AnnotationFileParser {
     return null;
   }
 
+  /**
+   * Process a field, enum constant, method, or constructor: copy its annotations to {@code
+   * #annotationFileAnnos}.
+   *
+   * @param elt the member's element
+   * @param decl the member's declaration
+   */
+  private void processMember(Element elt, BodyDeclaration<?> decl) {
+    switch (elt.getKind()) {
+      case FIELD:
+        processField((FieldDeclaration) decl, (VariableElement) elt);
+        break;
+      case ENUM_CONSTANT:
+        processEnumConstant((EnumConstantDeclaration) decl, (VariableElement) elt);
+        break;
+      case CONSTRUCTOR:
+      case METHOD:
+        processCallableDeclaration((CallableDeclaration<?>) decl, (ExecutableElement) elt);
+        break;
+      default:
+        throw new BugInCF("AnnotationFileParser.processMember: unexpected element " + elt);
+    }
+  }
+
   /**
    * Returns true if the argument contains {@code @NoAnnotationFileParserWarning}.
    *
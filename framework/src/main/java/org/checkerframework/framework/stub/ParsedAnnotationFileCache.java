@@ -0,0 +1,151 @@
+package org.checkerframework.framework.stub;
+
+import com.github.javaparser.ParseProblemException;
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.StubUnit;
+import java.io.File;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A cache of the JavaParser ASTs of annotation files (stub files and annotated JDK files). One
+ * cache is shared by a checker and all of its subcheckers (see {@link
+ * org.checkerframework.common.basetype.BaseTypeChecker#getParsedAnnotationFileCache}), so that each
+ * file is parsed only once per compilation even though each subchecker's type factory processes
+ * it.
+ *
+ * <p>The ASTs are independent of any checker: {@link AnnotationFileParser} reads but never modifies
+ * an AST that it obtains from this cache. Files that fail to parse are not cached, so that every
+ * checker that reads them reports the problem.
+ *
+ * <p>Keys must identify a file uniquely, for example by its absolute path or URL.
+ *
+ * <p>A {@link org.checkerframework.framework.util.CheckerDaemon} runs many compilations in one
+ * JVM; they all use the {@link #getSharedInstance shared instance}, which re-parses a file on the
+ * local file system if it has changed since it was parsed.
+ */
+public class ParsedAnnotationFileCache {
+
+  /** The cache shared by all compilations in this JVM; see {@link #getSharedInstance}. */
+  private static @MonotonicNonNull ParsedAnnotationFileCache sharedInstance;
+
+  /** Maps the key of a file to its AST. */
+  private final Map<String, StubUnit> cache = new HashMap<>();
+
+  /**
+   * Maps the key of a file that exists on the local file system to its modification time and size
+   * when it was parsed. Null unless this cache outlives a compilation.
+   */
+  private final @Nullable Map<String, @Nullable String> fileStamps;
+
+  /** The number of requests that were satisfied from the cache. */
+  private int hitCount = 0;
+
+  /** The number of requests that parsed a file. */
+  private int missCount = 0;
+
+  /** Creates an empty cache. */
+  public ParsedAnnotationFileCache() {
+    this(false);
+  }
+
+  /**
+   * Creates an empty cache.
+   *
+   * @param checkFileStamps whether to re-parse a file on the local file system if it has changed
+   *     since it was parsed
+   */
+  private ParsedAnnotationFileCache(boolean checkFileStamps) {
+    this.fileStamps = checkFileStamps ? new HashMap<>() : null;
+  }
+
+  /**
+   * Returns the cache that is shared by all compilations in this JVM. It is used instead of a
+   * per-compilation cache when a {@link org.checkerframework.framework.util.CheckerDaemon} runs
+   * many compilations in one JVM.
+   *
+   * @return the cache that is shared by all compilations in this JVM
+   */
+  public static synchronized ParsedAnnotationFileCache getSharedInstance() {
+    if (sharedInstance == null) {
+      sharedInstance = new ParsedAnnotationFileCache(true);
+    }
+    return sharedInstance;
+  }
+
+  /**
+   * Returns the AST of the file identified by {@code key}, parsing it from {@code inputStream} if
+   * it is not already in the cache. Does not read {@code inputStream} if the file is in the cache.
+   * Does not close {@code inputStream}.
+   *
+   * @param key a string that uniquely identifies the file, such as its path or URL
+   * @param inputStream the contents of the file
+   * @return the AST of the file
+   * @throws ParseProblemException if the file cannot be parsed
+   */
+  public synchronized StubUnit parse(String key, InputStream inputStream) {
+    String stamp = fileStamps == null ? null : fileStamp(key);
+    StubUnit result = cache.get(key);
+    if (result != null && (fileStamps == null || Objects.equals(stamp, fileStamps.get(key)))) {
+      hitCount++;
+      return result;
+    }
+    missCount++;
+    result = StaticJavaParser.parseStubUnit(inputStream);
+    cache.put(key, result);
+    if (fileStamps != null) {
+      fileStamps.put(key, stamp);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the modification time and size of the file named {@code key}, or null if {@code key}
+   * does not name a file on the local file system (for example, because it is the URL of a
+   * resource in a jar file).
+   *
+   * @param key the key of a file
+   * @return a string that changes when the file changes, or null
+   */
+  private static @Nullable String fileStamp(String key) {
+    File file = new File(key);
+    if (!file.isFile()) {
+      return null;
+    }
+    return file.lastModified() + ":" + file.length();
+  }
+
+  /**
+   * Returns the number of requests that were satisfied from the cache, that is, the number of
+   * parses avoided.
+   *
+   * @return the number of requests that were satisfied from the cache
+   */
+  public synchronized int getHitCount() {
+    return hitCount;
+  }
+
+  /**
+   * Returns the number of requests that parsed a file.
+   *
+   * @return the number of requests that parsed a file
+   */
+  public synchronized int getMissCount() {
+    return missCount;
+  }
+
+  /**
+   * Returns a one-line summary of the number of files parsed and the number of parses avoided.
+   *
+   * @return a summary of the use of this cache
+   */
+  public synchronized String getStatistics() {
+    return String.format(
+        "annotation file ASTs: %d files parsed, %d parses shared among checkers",
+        missCount, hitCount);
+  }
+}
@@ -77,9 +77,12 @@ import org.checkerframework.common.reflection.MethodValChecker;
 import org.checkerframework.common.reflection.ReflectionResolver;
 import org.checkerframework.common.reflection.qual.MethodVal;
 import org.checkerframework.common.wholeprograminference.WholeProgramInference;
+import org.checkerframework.common.wholeprograminference.WholeProgramInferenceDependencies;
+import org.checkerframework.common.wholeprograminference.WholeProgramInferenceFixpoint;
 import org.checkerframework.common.wholeprograminference.WholeProgramInferenceImplementation;
 import org.checkerframework.common.wholeprograminference.WholeProgramInferenceJavaParserStorage;
 import org.checkerframework.common.wholeprograminference.WholeProgramInferenceScenesStorage;
+import org.checkerframework.common.wholeprograminference.WholeProgramInferenceStorage;
 import org.checkerframework.dataflow.qual.SideEffectFree;
 import org.checkerframework.framework.qual.AnnotatedFor;
 import org.checkerframework.framework.qual.EnsuresQualifier;
@@ -124,6 +127,7 @@ import org.checkerframework.javacutil.TypeKindUtils;
 import org.checkerframework.javacutil.TypeSystemError;
 import org.checkerframework.javacutil.TypesUtils;
 import org.checkerframework.javacutil.UserError;
+import org.checkerframework.javacutil.WeightedCache;
 import org.checkerframework.javacutil.trees.DetachedVarSymbol;
 import org.plumelib.util.CollectionsPlume;
 import org.plumelib.util.StringsPlume;
@@ -245,6 +249,18 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
   /** Performs whole-program inference. If null, whole-program inference is disabled. */
   private final @Nullable WholeProgramInference wholeProgramInference;
 
+  /**
+   * Iterates whole-program inference to a fixpoint within this javac run. Null unless the {@code
+   * -AinferFixpoint} command-line option was supplied.
+   */
+  private final @Nullable WholeProgramInferenceFixpoint wpiFixpoint;
+
+  /**
+   * Records which storage locations of whole-program inference are read by which classes. Null
+   * unless whole-program inference is enabled.
+   */
+  private final @Nullable WholeProgramInferenceDependencies wpiDependencies;
+
   /**
    * This formatter is used for converting AnnotatedTypeMirrors to Strings. This formatter will be
    * used by all AnnotatedTypeMirrors created by this factory in their toString methods.
@@ -296,6 +312,19 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
    */
   public @Nullable AnnotationFileElementTypes currentFileAjavaTypes;
 
+  /**
+   * In {@code -AinferFixpoint} mode, stores annotations on public elements that were inferred in
+   * the previous round. Plays the role that {@link #ajavaTypes} plays when the results of the
+   * previous round are read from ajava files.
+   */
+  private @Nullable AnnotationFileElementTypes inferredAjavaTypes;
+
+  /**
+   * In {@code -AinferFixpoint} mode, the ajava files inferred in the previous round, keyed by the
+   * path of the source file. See {@link #setInferredAjavaContents(Map)}.
+   */
+  private Map<String, String> inferredAjavaContents = Collections.emptyMap();
+
   /**
    * A cache used to store elements whose declaration annotations have already been stored by
    * calling the method {@link #getDeclAnnotations(Element)}.
@@ -415,8 +444,14 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
   /** Size of LRU cache if one isn't specified using the atfCacheSize option. */
   private static final int DEFAULT_CACHE_SIZE = 300;
 
+  /**
+   * If the atfCacheMaxWeight option isn't supplied, the maximum weight of each cache of annotated
+   * types is this number times the cache size.
+   */
+  private static final int DEFAULT_CACHE_WEIGHT_PER_ENTRY = 20;
+
   /** Mapping from a Tree to its annotated type; defaults have been applied. */
-  private final Map<Tree, AnnotatedTypeMirror> classAndMethodTreeCache;
+  private final WeightedCache<Tree, AnnotatedTypeMirror> classAndMethodTreeCache;
 
   /**
    * Mapping from an expression tree to its annotated type; before defaults are applied, just what
@@ -438,12 +473,32 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
 
   /**
    * Mapping from an Element to its annotated type; before defaults are applied, just what the
-   * programmer wrote.
+   * programmer wrote. The values are frozen (see {@link AnnotatedTypeMirror#isFrozen()}) and may be
+   * shared with other entries.
    */
-  private final Map<Element, AnnotatedTypeMirror> elementCache;
+  private final WeightedCache<Element, AnnotatedTypeMirror> elementCache;
+
+  /**
+   * Canonical instances of the ground types in {@link #elementCache}, so that elements whose types
+   * are the same, such as the many library methods that return {@code String}, share one frozen
+   * type. Keyed by {@link SubtypeQueryCache#describeGroundType}.
+   */
+  private final WeightedCache<List<Object>, AnnotatedTypeMirror> internedElementTypes;
 
   /** Mapping from an Element to the source Tree of the declaration. */
-  private final Map<Element, Tree> elementToTreeCache;
+  private final WeightedCache<Element, Tree> elementToTreeCache;
+
+  /**
+   * On-disk cache of the annotated types of elements from bytecode, shared between javac
+   * invocations. Null unless the elementTypeCacheDir option is supplied.
+   */
+  private final @Nullable PersistentElementTypeCache persistentElementTypeCache;
+
+  /**
+   * Counts the types that make up an annotated type. Used as the weight of cached annotated types.
+   */
+  private final SimpleAnnotatedTypeScanner<Integer, Void> atmSizeScanner =
+      new SimpleAnnotatedTypeScanner<>((type, p) -> 1, Integer::sum, 0);
 
   /** Mapping from a Tree to its TreePath. Shared between all instances. */
   private final TreePathCacher treePathCache;
@@ -486,6 +541,8 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
     this.processingEnv = checker.getProcessingEnvironment();
     // this.root = root;
     this.checker = checker;
+    this.wpiFixpoint = checker.getWholeProgramInferenceFixpoint();
+    this.wpiDependencies = checker.getWholeProgramInferenceDependencies();
     this.trees = Trees.instance(processingEnv);
     this.elements = processingEnv.getElementUtils();
     this.types = processingEnv.getTypeUtils();
@@ -496,6 +553,7 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
     this.stubTypes = new AnnotationFileElementTypes(this);
     this.ajavaTypes = new AnnotationFileElementTypes(this);
     this.currentFileAjavaTypes = null;
+    this.inferredAjavaTypes = null;
 
     this.cacheDeclAnnos = new HashMap<>();
 
@@ -505,13 +563,13 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
 
     this.shouldCache = !checker.hasOption("atfDoNotCache");
     if (shouldCache) {
-      int cacheSize = getCacheSize();
-      this.classAndMethodTreeCache = CollectionUtils.createLRUCache(cacheSize);
-      this.fromExpressionTreeCache = CollectionUtils.createLRUCache(cacheSize);
-      this.fromMemberTreeCache = CollectionUtils.createLRUCache(cacheSize);
-      this.fromTypeTreeCache = CollectionUtils.createLRUCache(cacheSize);
-      this.elementCache = CollectionUtils.createLRUCache(cacheSize);
-      this.elementToTreeCache = CollectionUtils.createLRUCache(cacheSize);
+      this.classAndMethodTreeCache = newAnnotatedTypeCache("classAndMethodTreeCache");
+      this.fromExpressionTreeCache = newAnnotatedTypeCache("fromExpressionTreeCache");
+      this.fromMemberTreeCache = newAnnotatedTypeCache("fromMemberTreeCache");
+      this.fromTypeTreeCache = newAnnotatedTypeCache("fromTypeTreeCache");
+      this.elementCache = newAnnotatedTypeCache("elementCache");
+      this.internedElementTypes = newAnnotatedTypeCache("internedElementTypes");
+      this.elementToTreeCache = new WeightedCache<>("elementToTreeCache", getCacheSize());
       this.annotationClassNames =
           Collections.synchronizedMap(CollectionUtils.createLRUCache(ANNOTATION_CACHE_SIZE));
     } else {
@@ -520,10 +578,17 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
       this.fromMemberTreeCache = null;
       this.fromTypeTreeCache = null;
       this.elementCache = null;
+      this.internedElementTypes = null;
       this.elementToTreeCache = null;
       this.annotationClassNames = null;
     }
 
+    String elementTypeCacheDir = checker.getOption("elementTypeCacheDir");
+    this.persistentElementTypeCache =
+        elementTypeCacheDir == null
+            ? null
+            : new PersistentElementTypeCache(this, elementTypeCacheDir);
+
     this.typeFormatter = createAnnotatedTypeFormatter();
     this.annotationFormatter = createAnnotationFormatter();
 
@@ -800,6 +865,7 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
       // elementCache.clear();
     }
 
+    currentFileAjavaTypes = null;
     if (root != null && checker.hasOption("ajava")) {
       // Search for an ajava file with annotations for the current source file and the current
       // checker. It will be in a directory specified by the "ajava" option in a
@@ -842,8 +908,35 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
           break;
         }
       }
-    } else {
-      currentFileAjavaTypes = null;
+    }
+
+    if (root != null) {
+      String sourcePath = root.getSourceFile().toUri().getPath();
+      String inferred = inferredAjavaContents.get(sourcePath);
+      if (inferred != null) {
+        if (currentFileAjavaTypes == null) {
+          currentFileAjavaTypes = new AnnotationFileElementTypes(this);
+        }
+        currentFileAjavaTypes.parseInMemoryAjavaFileWithTree(sourcePath, inferred, root);
+      }
+    }
+  }
+
+  /**
+   * In {@code -AinferFixpoint} mode, makes the annotations inferred in the previous round visible
+   * to this factory, as if they had been read from ajava files with the {@code -Aajava}
+   * command-line option. Discards the cached types of elements, which may have changed.
+   *
+   * @param contents the contents of each ajava file, keyed by the path of its source file
+   */
+  public void setInferredAjavaContents(Map<String, String> contents) {
+    inferredAjavaContents = contents;
+    inferredAjavaTypes = new AnnotationFileElementTypes(this);
+    inferredAjavaTypes.parseInMemoryAjavaFiles(contents);
+    cacheDeclAnnos.clear();
+    if (shouldCache) {
+      elementCache.clear();
+      internedElementTypes.clear();
     }
   }
 
@@ -1141,6 +1234,100 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
     }
   }
 
+  /**
+   * Returns the long supplied to the checker via the atfCacheMaxWeight option, or a default maximum
+   * weight that is proportional to the cache size. The weight of a cached annotated type is the
+   * number of types it is composed of.
+   *
+   * @return the maximum total weight of each cache of annotated types
+   */
+  protected long getCacheMaxWeight() {
+    String option = checker.getOption("atfCacheMaxWeight");
+    if (option == null) {
+      return (long) getCacheSize() * DEFAULT_CACHE_WEIGHT_PER_ENTRY;
+    }
+    try {
+      return Long.valueOf(option);
+    } catch (NumberFormatException ex) {
+      throw new UserError("atfCacheMaxWeight was not an integer: " + option);
+    }
+  }
+
+  /**
+   * Creates a cache of annotated types, bounded by {@link #getCacheSize()} and {@link
+   * #getCacheMaxWeight()}. This is called by the constructor, so it is not overridable.
+   *
+   * @param <K> the type of the keys of the cache
+   * @param name the name of the cache, used in statistics output
+   * @return a new cache of annotated types
+   */
+  private <K> WeightedCache<K, AnnotatedTypeMirror> newAnnotatedTypeCache(String name) {
+    return new WeightedCache<>(
+        name, getCacheSize(), getCacheMaxWeight(), type -> atmSizeScanner.visit(type));
+  }
+
+  /**
+   * Returns a description of the hit, miss, and eviction counts of the caches of this factory, one
+   * line per cache, followed by how much of the annotated JDK has been processed and how many
+   * source files whole-program inference has parsed again. Returns the empty string if there is
+   * nothing to report.
+   *
+   * @return a description of the statistics of the caches of this factory
+   */
+  public String getCacheStatistics() {
+    StringJoiner result = new StringJoiner(System.lineSeparator());
+    if (shouldCache) {
+      result.add(classAndMethodTreeCache.getStatistics());
+      // The protected caches are declared as Maps, but the constructor creates WeightedCaches.
+      result.add(((WeightedCache<?, ?>) fromExpressionTreeCache).getStatistics());
+      result.add(((WeightedCache<?, ?>) fromMemberTreeCache).getStatistics());
+      result.add(((WeightedCache<?, ?>) fromTypeTreeCache).getStatistics());
+      result.add(elementCache.getStatistics());
+      result.add(internedElementTypes.getStatistics());
+      result.add(elementToTreeCache.getStatistics());
+    }
+    if (persistentElementTypeCache != null) {
+      result.add(persistentElementTypeCache.getStatistics());
+    }
+    if (typeHierarchy instanceof DefaultTypeHierarchy) {
+      String subtypeStatistics =
+          ((DefaultTypeHierarchy) typeHierarchy).getSubtypeQueryCacheStatistics();
+      if (!subtypeStatistics.isEmpty()) {
+        result.add(subtypeStatistics);
+      }
+    }
+    String jdkStatistics = stubTypes.getStatistics();
+    if (!jdkStatistics.isEmpty()) {
+      result.add(jdkStatistics);
+    }
+    if (wholeProgramInference instanceof WholeProgramInferenceImplementation) {
+      WholeProgramInferenceStorage<?> wpiStorage =
+          ((WholeProgramInferenceImplementation<?>) wholeProgramInference).getStorage();
+      if (wpiStorage instanceof WholeProgramInferenceJavaParserStorage) {
+        String wpiStatistics =
+            ((WholeProgramInferenceJavaParserStorage) wpiStorage).getStatistics();
+        if (!wpiStatistics.isEmpty()) {
+          result.add(wpiStatistics);
+        }
+      }
+    }
+    return result.toString();
+  }
+
+  /**
+   * Called once, after all compilation units have been type-checked. Writes the results of
+   * whole-program inference that have not yet been written, and the persistent element type cache,
+   * if any.
+   */
+  public void typeProcessingOver() {
+    if (wholeProgramInference != null && wpiFixpoint == null) {
+      wholeProgramInference.writeResultsToFile(wpiOutputFormat, this.checker);
+    }
+    if (persistentElementTypeCache != null) {
+      persistentElementTypeCache.save();
+    }
+  }
+
   /**
    * Returns an AnnotatedTypeMirror representing the annotated type of {@code elt}.
    *
@@ -1189,8 +1376,11 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
     if (tree == null) {
       throw new BugInCF("AnnotatedTypeFactory.getAnnotatedType: null tree");
     }
-    if (shouldCache && classAndMethodTreeCache.containsKey(tree)) {
-      return classAndMethodTreeCache.get(tree).deepCopy();
+    if (shouldCache) {
+      AnnotatedTypeMirror cached = classAndMethodTreeCache.get(tree);
+      if (cached != null) {
+        return cached.deepCopy();
+      }
     }
 
     AnnotatedTypeMirror type;
@@ -1238,15 +1428,22 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
    * to override this method if storing defaulted types is not desirable.
    */
   public void postProcessClassTree(ClassTree tree) {
+    if (wpiFixpoint != null) {
+      // In -AinferFixpoint mode, no class files are written, and storing the types of this round
+      // into the elements would hide the inferences of later rounds. The results of inference
+      // are written once, when inference has converged.
+      return;
+    }
     TypesIntoElements.store(processingEnv, this, tree);
     DeclarationsIntoElements.store(processingEnv, this, tree);
     if (wholeProgramInference != null) {
-      // Write out the results of whole-program inference, just once for each class.
-      // As soon as any class is finished processing, all modified scenes are written to
-      // files, in case this was the last class to be processed.  Post-processing of
-      // subsequent classes might result in re-writing some of the scenes if new information
-      // has been written to them.
-      wholeProgramInference.writeResultsToFile(wpiOutputFormat, this.checker);
+      // Write out the results of whole-program inference for this class's compilation unit as
+      // soon as the class is finished processing, so that the output is written incrementally
+      // and survives a run that does not reach typeProcessingOver. Only files whose inferred
+      // annotations have changed since they were last written are rewritten. Inferences made
+      // by subsequent classes about this one are written when they finish, or at the end.
+      wholeProgramInference.writeResultsForClass(
+          TreeUtils.elementFromDeclaration(tree), wpiOutputFormat, this.checker);
     }
   }
 
@@ -1325,9 +1522,26 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
    * @return AnnotatedTypeMirror of the element with explicitly-written and stub file annotations
    */
   public AnnotatedTypeMirror fromElement(Element elt) {
-    if (shouldCache && elementCache.containsKey(elt)) {
-      return elementCache.get(elt).deepCopy();
+    if (wpiDependencies != null) {
+      wpiDependencies.recordRead(elt);
     }
+    if (shouldCache) {
+      AnnotatedTypeMirror cached = elementCache.get(elt);
+      if (cached != null) {
+        return cached.deepCopy();
+      }
+    }
+    return computeElementType(elt);
+  }
+
+  /**
+   * Computes the type that {@link #fromElement(Element)} returns for an element whose type is not
+   * in the element cache, and caches a frozen copy of it if possible.
+   *
+   * @param elt the element
+   * @return AnnotatedTypeMirror of the element with explicitly-written and stub file annotations
+   */
+  private AnnotatedTypeMirror computeElementType(Element elt) {
     if (elt.getKind() == ElementKind.PACKAGE) {
       return toAnnotatedType(elt.asType(), false);
     }
@@ -1341,10 +1555,18 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
     Tree decl = declarationFromElement(elt);
 
     if (decl == null) {
-      type = stubTypes.getAnnotatedTypeMirror(elt);
+      boolean usePersistentCache =
+          persistentElementTypeCache != null && PersistentElementTypeCache.isCacheable(elt);
+      type = usePersistentCache ? persistentElementTypeCache.get(elt) : null;
       if (type == null) {
-        type = toAnnotatedType(elt.asType(), ElementUtils.isTypeDeclaration(elt));
-        ElementAnnotationApplier.apply(type, elt, this);
+        type = stubTypes.getAnnotatedTypeMirror(elt);
+        if (type == null) {
+          type = toAnnotatedType(elt.asType(), ElementUtils.isTypeDeclaration(elt));
+          ElementAnnotationApplier.apply(type, elt, this);
+        }
+        if (usePersistentCache && !stubTypes.isParsing()) {
+          persistentElementTypeCache.put(elt, type);
+        }
       }
     } else if (decl instanceof ClassTree) {
       type = fromClass((ClassTree) decl);
@@ -1363,6 +1585,9 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
     }
 
     type = mergeAnnotationFileAnnosIntoType(type, elt, ajavaTypes);
+    if (inferredAjavaTypes != null) {
+      type = mergeAnnotationFileAnnosIntoType(type, elt, inferredAjavaTypes);
+    }
     if (currentFileAjavaTypes != null) {
       type = mergeAnnotationFileAnnosIntoType(type, elt, currentFileAjavaTypes);
     }
@@ -1381,9 +1606,59 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
     if (shouldCache
         && !stubTypes.isParsing()
         && !ajavaTypes.isParsing()
+        && (inferredAjavaTypes == null || !inferredAjavaTypes.isParsing())
         && (currentFileAjavaTypes == null || !currentFileAjavaTypes.isParsing())) {
-      elementCache.put(elt, type.deepCopy());
+      elementCache.put(elt, internElementType(type.deepCopy()));
+    }
+    return type;
+  }
+
+  /**
+   * Like {@link #fromElement(Element)}, but the result may be shared with other callers and must
+   * not be side-effected: it is frozen, and its mutators throw an exception. This avoids copying
+   * the type, so it is preferable to {@link #fromElement(Element)} for clients that only read the
+   * type. A client that needs to modify the result must call {@link AnnotatedTypeMirror#deepCopy()}
+   * first.
+   *
+   * @param elt the element
+   * @return AnnotatedTypeMirror of the element with explicitly-written and stub file annotations;
+   *     must not be side-effected
+   */
+  public AnnotatedTypeMirror fromElementUnmodifiable(Element elt) {
+    if (wpiDependencies != null) {
+      wpiDependencies.recordRead(elt);
+    }
+    if (shouldCache) {
+      AnnotatedTypeMirror cached = elementCache.get(elt);
+      if (cached != null) {
+        return cached;
+      }
+    }
+    AnnotatedTypeMirror type = computeElementType(elt);
+    // Return the cached, frozen copy of the type, without counting a second lookup.
+    AnnotatedTypeMirror cached = shouldCache ? elementCache.peek(elt) : null;
+    return cached != null ? cached : type;
+  }
+
+  /**
+   * Freezes {@code type} and returns the canonical instance of it: a previously-interned type that
+   * is interchangeable with {@code type}, or {@code type} itself. Only ground types are interned;
+   * other types, such as method types and types that contain type variables, are only frozen.
+   *
+   * @param type a type that is not referenced by any client
+   * @return the canonical, frozen instance of {@code type}
+   */
+  private AnnotatedTypeMirror internElementType(AnnotatedTypeMirror type) {
+    type.freeze();
+    List<Object> key = SubtypeQueryCache.describeGroundType(type);
+    if (key == null) {
+      return type;
     }
+    AnnotatedTypeMirror interned = internedElementTypes.get(key);
+    if (interned != null) {
+      return interned;
+    }
+    internedElementTypes.put(key, type);
     return type;
   }
 
@@ -1416,12 +1691,18 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
       throw new BugInCF(
           "AnnotatedTypeFactory.fromMember: not a method or variable declaration: " + tree);
     }
-    if (shouldCache && fromMemberTreeCache.containsKey(tree)) {
-      return fromMemberTreeCache.get(tree).deepCopy();
+    if (shouldCache) {
+      AnnotatedTypeMirror cached = fromMemberTreeCache.get(tree);
+      if (cached != null) {
+        return cached.deepCopy();
+      }
     }
     AnnotatedTypeMirror result = TypeFromTree.fromMember(this, tree);
 
     result = mergeAnnotationFileAnnosIntoType(result, tree, ajavaTypes);
+    if (inferredAjavaTypes != null) {
+      result = mergeAnnotationFileAnnosIntoType(result, tree, inferredAjavaTypes);
+    }
     if (currentFileAjavaTypes != null) {
       result = mergeAnnotationFileAnnosIntoType(result, tree, currentFileAjavaTypes);
     }
@@ -1508,8 +1789,11 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
    * @see TypeFromExpressionVisitor
    */
   private AnnotatedTypeMirror fromExpression(ExpressionTree tree) {
-    if (shouldCache && fromExpressionTreeCache.containsKey(tree)) {
-      return fromExpressionTreeCache.get(tree).deepCopy();
+    if (shouldCache) {
+      AnnotatedTypeMirror cached = fromExpressionTreeCache.get(tree);
+      if (cached != null) {
+        return cached.deepCopy();
+      }
     }
 
     AnnotatedTypeMirror result = TypeFromTree.fromExpression(this, tree);
@@ -1538,8 +1822,11 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
    * @return the (partially) annotated type of the type in the AST
    */
   /*package private*/ final AnnotatedTypeMirror fromTypeTree(Tree tree) {
-    if (shouldCache && fromTypeTreeCache.containsKey(tree)) {
-      return fromTypeTreeCache.get(tree).deepCopy();
+    if (shouldCache) {
+      AnnotatedTypeMirror cached = fromTypeTreeCache.get(tree);
+      if (cached != null) {
+        return cached.deepCopy();
+      }
     }
 
     AnnotatedTypeMirror result = TypeFromTree.fromTypeTree(this, tree);
@@ -3175,6 +3462,16 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
             aliasName, null, copyElements, canonicalAnno.getCanonicalName(), ignorableElements));
   }
 
+  /**
+   * Returns the fully-qualified names of the annotations that are aliases of supported type
+   * qualifiers.
+   *
+   * @return the fully-qualified names of the aliases of supported type qualifiers
+   */
+  public Set<@FullyQualifiedName String> getQualifierAliasNames() {
+    return Collections.unmodifiableSet(aliases.keySet());
+  }
+
   /**
    * Returns the canonical annotation for the passed annotation. Returns null if the passed
    * annotation is not an alias of a canonical one in the framework.
@@ -3292,8 +3589,12 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
     if (root == null) {
       return null;
     }
-    if (shouldCache && elementToTreeCache.containsKey(elt)) {
-      return elementToTreeCache.get(elt);
+    if (shouldCache) {
+      Tree cached = elementToTreeCache.get(elt);
+      // The cache records elements that have no declaration in this compilation unit as null.
+      if (cached != null || elementToTreeCache.containsKey(elt)) {
+        return cached;
+      }
     }
 
     // Check for new declarations, outside of the AST.
@@ -3709,6 +4010,9 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
    * @return all of the declaration annotations on this element, written in stub files, or inherited
    */
   public Set<AnnotationMirror> getDeclAnnotations(Element elt) {
+    if (wpiDependencies != null) {
+      wpiDependencies.recordRead(elt);
+    }
     Set<AnnotationMirror> cachedValue = cacheDeclAnnos.get(elt);
     if (cachedValue != null) {
       // Found in cache, return result.
@@ -3736,6 +4040,7 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
     // If parsing annotation files, return only the annotations in the element.
     if (stubTypes.isParsing()
         || ajavaTypes.isParsing()
+        || (inferredAjavaTypes != null && inferredAjavaTypes.isParsing())
         || (currentFileAjavaTypes != null && currentFileAjavaTypes.isParsing())) {
       return results;
     }
@@ -3743,6 +4048,9 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
     // Add annotations from annotation files.
     results.addAll(stubTypes.getDeclAnnotation(elt));
     results.addAll(ajavaTypes.getDeclAnnotation(elt));
+    if (inferredAjavaTypes != null) {
+      results.addAll(inferredAjavaTypes.getDeclAnnotation(elt));
+    }
     if (currentFileAjavaTypes != null) {
       results.addAll(currentFileAjavaTypes.getDeclAnnotation(elt));
     }
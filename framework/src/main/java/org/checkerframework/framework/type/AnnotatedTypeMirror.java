@@ -30,6 +30,8 @@ import org.checkerframework.checker.nullness.qual.Nullable;
 import org.checkerframework.dataflow.qual.Pure;
 import org.checkerframework.dataflow.qual.SideEffectFree;
 import org.checkerframework.framework.type.visitor.AnnotatedTypeVisitor;
+import org.checkerframework.framework.type.visitor.SimpleAnnotatedTypeScanner;
+import org.checkerframework.framework.util.AnnotationMirrorSet;
 import org.checkerframework.framework.util.element.ElementAnnotationUtil.ErrorTypeKindException;
 import org.checkerframework.javacutil.AnnotationBuilder;
 import org.checkerframework.javacutil.AnnotationUtils;
@@ -140,7 +142,13 @@ public abstract class AnnotatedTypeMirror {
   // the class name of Annotation instead.
   // Caution: Assumes that a type can have at most one AnnotationMirror for
   // any Annotation type.
-  protected final Set<AnnotationMirror> annotations = AnnotationUtils.createAnnotationSet();
+  protected final Set<AnnotationMirror> annotations = new AnnotationMirrorSet();
+
+  /**
+   * True if neither this type nor any type it contains may be side-effected, because this object is
+   * shared. Set by {@link #freeze()}.
+   */
+  private boolean frozen = false;
 
   /** The explicitly written annotations on this type. */
   // TODO: use this to cache the result once computed? For generic types?
@@ -179,6 +187,49 @@ public abstract class AnnotatedTypeMirror {
     return HASHCODE_VISITOR.visit(this);
   }
 
+  /**
+   * Returns true if this type may not be side-effected. A frozen type is shared, for example by
+   * {@link AnnotatedTypeFactory#fromElementUnmodifiable(Element)}; a client that needs to modify it
+   * must modify a {@link #deepCopy()} instead, which is never frozen.
+   *
+   * @return true if this type may not be side-effected
+   */
+  public boolean isFrozen() {
+    return frozen;
+  }
+
+  /**
+   * Makes this type and every type it contains unmodifiable. The lazily-initialized parts of the
+   * types, such as type arguments and bounds, are computed first, so that reading a frozen type
+   * never side-effects it.
+   */
+  /*default-visibility*/ void freeze() {
+    if (frozen) {
+      return;
+    }
+    List<AnnotatedTypeMirror> parts = new ArrayList<>();
+    new SimpleAnnotatedTypeScanner<Void, Void>(
+            (type, p) -> {
+              parts.add(type);
+              return null;
+            })
+        .visit(this);
+    for (AnnotatedTypeMirror part : parts) {
+      part.frozen = true;
+    }
+  }
+
+  /**
+   * Throws an exception if this type is frozen. Called by every method that side-effects a type.
+   *
+   * @throws BugInCF if this type is frozen
+   */
+  protected final void checkNotFrozen() {
+    if (frozen) {
+      throw new BugInCF("Attempt to side-effect the shared, unmodifiable type %s", this);
+    }
+  }
+
   /**
    * Applies a visitor to this type.
    *
@@ -577,6 +628,7 @@ public abstract class AnnotatedTypeMirror {
    * @param a the annotation to add
    */
   public void addAnnotation(AnnotationMirror a) {
+    checkNotFrozen();
     if (a == null) {
       throw new BugInCF("AnnotatedTypeMirror.addAnnotation: null argument.");
     }
@@ -655,6 +707,7 @@ public abstract class AnnotatedTypeMirror {
    * @return true if the annotation was removed, false if the type's annotations were unchanged
    */
   public boolean removeAnnotation(AnnotationMirror a) {
+    checkNotFrozen();
     AnnotationMirror anno = AnnotationUtils.getSame(annotations, a);
     if (anno != null) {
       return annotations.remove(anno);
@@ -669,6 +722,7 @@ public abstract class AnnotatedTypeMirror {
    * @return true if the annotation was removed, false if the type's annotations were unchanged
    */
   public boolean removeAnnotationByClass(Class<? extends Annotation> a) {
+    checkNotFrozen();
     AnnotationMirror anno = atypeFactory.getAnnotationByClass(annotations, a);
     if (anno != null) {
       return annotations.remove(anno);
@@ -729,6 +783,7 @@ public abstract class AnnotatedTypeMirror {
    * is generally better to use {@link #removeAnnotation(AnnotationMirror)} and similar methods.
    */
   public void clearAnnotations() {
+    checkNotFrozen();
     annotations.clear();
   }
 
@@ -938,6 +993,7 @@ public abstract class AnnotatedTypeMirror {
      */
     // WMD
     public void setTypeArguments(List<? extends AnnotatedTypeMirror> ts) {
+      checkNotFrozen();
       if (ts == null || ts.isEmpty()) {
         typeArgs = Collections.emptyList();
       } else {
@@ -988,6 +1044,7 @@ public abstract class AnnotatedTypeMirror {
      * a raw type.
      */
     protected void setWasRaw() {
+      checkNotFrozen();
       this.wasRaw = true;
     }
 
@@ -1047,6 +1104,7 @@ public abstract class AnnotatedTypeMirror {
      * @param enclosingType the new enclosing type
      */
     /*default-visibility*/ void setEnclosingType(@Nullable AnnotatedDeclaredType enclosingType) {
+      checkNotFrozen();
       this.enclosingType = enclosingType;
     }
 
@@ -1110,6 +1168,7 @@ public abstract class AnnotatedTypeMirror {
      * @param params the parameter types, excluding the receiver
      */
     void setParameterTypes(List<? extends AnnotatedTypeMirror> params) {
+      checkNotFrozen();
       paramTypes.clear();
       paramTypes.addAll(params);
     }
@@ -1135,6 +1194,7 @@ public abstract class AnnotatedTypeMirror {
      * @param returnType the return type
      */
     void setReturnType(AnnotatedTypeMirror returnType) {
+      checkNotFrozen();
       this.returnType = returnType;
     }
 
@@ -1183,6 +1243,7 @@ public abstract class AnnotatedTypeMirror {
      * @param receiverType the receiver type
      */
     void setReceiverType(AnnotatedDeclaredType receiverType) {
+      checkNotFrozen();
       this.receiverType = receiverType;
     }
 
@@ -1214,6 +1275,7 @@ public abstract class AnnotatedTypeMirror {
      * @param thrownTypes the thrown types
      */
     void setThrownTypes(List<? extends AnnotatedTypeMirror> thrownTypes) {
+      checkNotFrozen();
       this.throwsTypes.clear();
       this.throwsTypes.addAll(thrownTypes);
     }
@@ -1239,6 +1301,7 @@ public abstract class AnnotatedTypeMirror {
      * @param types the type variables of this executable type
      */
     void setTypeVariables(List<AnnotatedTypeVariable> types) {
+      checkNotFrozen();
       typeVarTypes.clear();
       typeVarTypes.addAll(types);
     }
@@ -1292,6 +1355,7 @@ public abstract class AnnotatedTypeMirror {
     }
 
     public void setElement(@NonNull ExecutableElement elem) {
+      checkNotFrozen();
       this.element = elem;
     }
 
@@ -1354,6 +1418,7 @@ public abstract class AnnotatedTypeMirror {
      */
     // WMD
     public void setComponentType(AnnotatedTypeMirror type) {
+      checkNotFrozen();
       this.componentType = type;
     }
 
@@ -1464,6 +1529,7 @@ public abstract class AnnotatedTypeMirror {
      * @param declaration true if this type variable should be considered a declaration
      */
     public void setDeclaration(boolean declaration) {
+      checkNotFrozen();
       this.declaration = declaration;
     }
 
@@ -1499,6 +1565,7 @@ public abstract class AnnotatedTypeMirror {
      * @param type the lower bound type
      */
     void setLowerBound(AnnotatedTypeMirror type) {
+      checkNotFrozen();
       checkBound("Lower", type, this);
       this.lowerBound = type;
       fixupBoundAnnotations();
@@ -1569,6 +1636,7 @@ public abstract class AnnotatedTypeMirror {
      * @param type the upper bound type
      */
     void setUpperBound(AnnotatedTypeMirror type) {
+      checkNotFrozen();
       checkBound("Upper", type, this);
       this.upperBound = type;
       fixupBoundAnnotations();
@@ -1847,6 +1915,7 @@ public abstract class AnnotatedTypeMirror {
      * @param type the type of the lower bound
      */
     void setSuperBound(AnnotatedTypeMirror type) {
+      checkNotFrozen();
       checkBound("Super", type, this);
       this.superBound = type;
       fixupBoundAnnotations();
@@ -1876,6 +1945,7 @@ public abstract class AnnotatedTypeMirror {
      * @param type the type of the upper bound
      */
     void setExtendsBound(AnnotatedTypeMirror type) {
+      checkNotFrozen();
       checkBound("Extends", type, this);
       this.extendsBound = type;
       fixupBoundAnnotations();
@@ -1916,6 +1986,7 @@ public abstract class AnnotatedTypeMirror {
      * during initialization of the type.
      */
     void setTypeVariable(TypeParameterElement typeParameterElement) {
+      checkNotFrozen();
       this.typeVariable = (TypeVariable) typeParameterElement.asType();
     }
 
@@ -1924,6 +1995,7 @@ public abstract class AnnotatedTypeMirror {
      * during initialization of the type.
      */
     void setTypeVariable(TypeVariable typeVariable) {
+      checkNotFrozen();
       this.typeVariable = typeVariable;
     }
 
@@ -1998,6 +2070,7 @@ public abstract class AnnotatedTypeMirror {
      * fixed, this must be removed.
      */
     public void setUninferredTypeArgument() {
+      checkNotFrozen();
       uninferredTypeArgument = true;
     }
 
@@ -2138,6 +2211,7 @@ public abstract class AnnotatedTypeMirror {
      * @param bounds bounds to use
      */
     /*default-visibility*/ void setBounds(List<AnnotatedTypeMirror> bounds) {
+      checkNotFrozen();
       this.bounds = bounds;
     }
 
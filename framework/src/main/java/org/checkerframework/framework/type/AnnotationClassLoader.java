@@ -14,9 +14,11 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
@@ -32,6 +34,7 @@ import org.checkerframework.checker.signature.qual.BinaryName;
 import org.checkerframework.checker.signature.qual.DotSeparatedIdentifiers;
 import org.checkerframework.checker.signature.qual.Identifier;
 import org.checkerframework.common.basetype.BaseTypeChecker;
+import org.checkerframework.framework.util.CheckerDaemon;
 import org.checkerframework.javacutil.AnnotationBuilder;
 import org.checkerframework.javacutil.AnnotationUtils;
 import org.checkerframework.javacutil.BugInCF;
@@ -98,6 +101,14 @@ public class AnnotationClassLoader {
   /** The class loader used to load annotation classes. */
   protected final URLClassLoader classLoader;
 
+  /**
+   * Maps the resource URL of the qual directory of a checker in a jar file to the binary names of
+   * the annotations in it. Used only when running in a {@link CheckerDaemon}, so that each jar file
+   * is scanned once rather than once per compilation.
+   */
+  private static final Map<String, Set<@BinaryName String>> sharedBundledAnnotationNames =
+      new HashMap<>();
+
   /**
    * The annotation classes bundled with a checker (located in its qual directory) that are deemed
    * supported by the checker (non-alias annotations). Each checker can override {@link
@@ -495,37 +506,7 @@ public class AnnotationClassLoader {
     Set<@BinaryName String> annotationNames;
     // see whether the resource URL has a protocol of jar or file
     if (resourceURL != null && resourceURL.getProtocol().contentEquals("jar")) {
-      // if the checker class file is contained within a jar, then the
-      // resource URL for the qual directory will have the protocol
-      // "jar". This means the whole checker is loaded as a jar file.
-
-      JarURLConnection connection;
-      // create a connection to the jar file
-      try {
-        connection = (JarURLConnection) resourceURL.openConnection();
-
-        // disable caching / connection sharing of the low level URLConnection to the Jar
-        // file
-        connection.setDefaultUseCaches(false);
-        connection.setUseCaches(false);
-
-        // connect to the Jar file
-        connection.connect();
-      } catch (IOException e) {
-        throw new BugInCF(
-            "AnnotationClassLoader: cannot open a connection to the Jar file "
-                + resourceURL.getFile());
-      }
-
-      // open up that jar file and extract annotation class names
-      try (JarFile jarFile = connection.getJarFile()) {
-        // get class names inside the jar file within the particular package
-        annotationNames = getBundledAnnotationNamesFromJar(jarFile);
-      } catch (IOException e) {
-        throw new BugInCF(
-            "AnnotationClassLoader: cannot open the Jar file " + resourceURL.getFile());
-      }
-
+      annotationNames = getBundledAnnotationNamesFromJarResource();
     } else if (resourceURL != null && resourceURL.getProtocol().contentEquals("file")) {
       // if the checker class file is found within the file system itself
       // within some directory (usually development build directories),
@@ -556,6 +537,66 @@ public class AnnotationClassLoader {
     supportedBundledAnnotationClasses.addAll(loadAnnotationClasses(annotationNames));
   }
 
+  /**
+   * Returns the binary names of the annotations in the qual directory of a checker, which is in a
+   * jar file. When running in a {@link CheckerDaemon}, the names are read from the jar file once
+   * and reused by later compilations.
+   *
+   * @return the binary names of the annotations in the qual directory of a checker
+   */
+  private Set<@BinaryName String> getBundledAnnotationNamesFromJarResource() {
+    boolean shareNames = CheckerDaemon.isRunning();
+    if (shareNames) {
+      synchronized (sharedBundledAnnotationNames) {
+        Set<@BinaryName String> sharedNames =
+            sharedBundledAnnotationNames.get(resourceURL.toString());
+        if (sharedNames != null) {
+          return new LinkedHashSet<>(sharedNames);
+        }
+      }
+    }
+
+    // if the checker class file is contained within a jar, then the
+    // resource URL for the qual directory will have the protocol
+    // "jar". This means the whole checker is loaded as a jar file.
+
+    Set<@BinaryName String> annotationNames;
+    JarURLConnection connection;
+    // create a connection to the jar file
+    try {
+      connection = (JarURLConnection) resourceURL.openConnection();
+
+      // disable caching / connection sharing of the low level URLConnection to the Jar
+      // file
+      connection.setDefaultUseCaches(false);
+      connection.setUseCaches(false);
+
+      // connect to the Jar file
+      connection.connect();
+    } catch (IOException e) {
+      throw new BugInCF(
+          "AnnotationClassLoader: cannot open a connection to the Jar file "
+              + resourceURL.getFile());
+    }
+
+    // open up that jar file and extract annotation class names
+    try (JarFile jarFile = connection.getJarFile()) {
+      // get class names inside the jar file within the particular package
+      annotationNames = getBundledAnnotationNamesFromJar(jarFile);
+    } catch (IOException e) {
+      throw new BugInCF(
+          "AnnotationClassLoader: cannot open the Jar file " + resourceURL.getFile());
+    }
+
+    if (shareNames) {
+      synchronized (sharedBundledAnnotationNames) {
+        sharedBundledAnnotationNames.put(
+            resourceURL.toString(), new LinkedHashSet<>(annotationNames));
+      }
+    }
+    return annotationNames;
+  }
+
   /**
    * Gets the set of annotation classes in the qual directory of a checker shipped with the Checker
    * Framework. Note that the returned set from this method is mutable. This method is intended to
@@ -0,0 +1,822 @@
+package org.checkerframework.framework.type;
+
+import com.sun.source.tree.BinaryTree;
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.CompoundAssignmentTree;
+import com.sun.source.tree.EnhancedForLoopTree;
+import com.sun.source.tree.ExpressionTree;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.MemberReferenceTree;
+import com.sun.source.tree.MemberSelectTree;
+import com.sun.source.tree.MethodInvocationTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.NewClassTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.tree.TryTree;
+import com.sun.source.tree.VariableTree;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.TreeScanner;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.IntersectionType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.TypeVariable;
+import javax.lang.model.type.UnionType;
+import javax.lang.model.type.WildcardType;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic.Kind;
+import org.checkerframework.checker.nullness.qual.EnsuresNonNull;
+import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.checkerframework.common.basetype.BaseTypeChecker;
+import org.checkerframework.framework.source.SourceChecker;
+import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedDeclaredType;
+import org.checkerframework.framework.util.AnnotatedTypes;
+import org.checkerframework.javacutil.ElementUtils;
+import org.checkerframework.javacutil.TreePathUtil;
+import org.checkerframework.javacutil.TreeUtils;
+import org.checkerframework.javacutil.TypesUtils;
+
+/**
+ * A record, persisted on disk between javac invocations, of the methods that a checker found free
+ * of errors and warnings. It is used when the {@code -AincrementalCacheDir} command-line option is
+ * supplied: a method whose fingerprint is in the record is neither analyzed by dataflow nor visited
+ * by the type-checker, so that re-checking a program after an edit costs time proportional to the
+ * edited methods.
+ *
+ * <p>The fingerprint of a method is a hash of:
+ *
+ * <ul>
+ *   <li>its source code and its annotated type;
+ *   <li>the declarations of the fields and initializers of its class, which determine the store at
+ *       the start of the method;
+ *   <li>the declaration annotations, such as {@code @DefaultQualifier}, of its class and of the
+ *       classes and package that enclose it;
+ *   <li>the annotated types and declaration annotations (including contracts) of the elements the
+ *       method refers to, of the methods that javac calls implicitly (in enhanced {@code for}
+ *       loops, unboxing, try-with-resources, and string concatenation), and of the methods it
+ *       overrides; and
+ *   <li>for every class that the method refers to or that is the type of an expression or variable
+ *       in the method, including types that are only inferred, the annotated types of the class and
+ *       of all its supertypes, and their annotated direct supertypes.
+ * </ul>
+ *
+ * The record itself is keyed by everything else the checker's results depend on, as in {@link
+ * PersistentElementTypeCache}.
+ *
+ * <p>Constructors, methods of local and anonymous classes, and methods that declare classes are
+ * always checked, because their stores flow into or out of other code. A method is recorded only if
+ * neither the dataflow analysis of the method nor the visit of the method reported diagnostics
+ * within it, so diagnostics are never lost by skipping a method. A method is recorded when the
+ * checker moves on to the next compilation unit, because the dataflow analysis of a class runs
+ * before any of its methods is visited. If a diagnostic cannot be attributed to a method, no method
+ * of its compilation unit is recorded.
+ *
+ * <p>The cache is not used by a compound checker or its subcheckers: each subchecker would decide
+ * on its own to skip the dataflow analysis of a method, and the parent checker would then query a
+ * subchecker's type factory about a method that the subchecker did not analyze.
+ */
+public class CheckedMethodCache {
+
+  /** The first line of a cache file. Change when the format or the fingerprint changes. */
+  private static final String HEADER = "CheckedMethodCache 3";
+
+  /** The maximum number of fingerprints kept in a cache file. */
+  private static final int MAX_ENTRIES = 200_000;
+
+  /** The type factory of the checker whose results are recorded. */
+  private final AnnotatedTypeFactory atypeFactory;
+
+  /** The cache file for the current configuration. */
+  private final Path cacheFile;
+
+  /** The fingerprints read from the cache file; null until the file has been read. */
+  private @MonotonicNonNull Set<String> previouslyChecked;
+
+  /** The fingerprints of the methods found free of diagnostics, or skipped, in this compilation. */
+  private final Set<String> checked = new LinkedHashSet<>();
+
+  /**
+   * The fingerprints of the methods of the current compilation unit. A null value means that the
+   * method is always checked.
+   */
+  private final Map<MethodTree, @Nullable String> fingerprints = new IdentityHashMap<>();
+
+  /**
+   * The descriptions of the classes that the methods of this compilation depend on, as computed by
+   * {@link #describeType}.
+   */
+  private final Map<TypeElement, String> typeDescriptions = new HashMap<>();
+
+  /**
+   * The methods of the current compilation unit that were visited and are recorded as checked
+   * unless a diagnostic is reported within them.
+   */
+  private final Set<MethodTree> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+
+  /** The methods of the current compilation unit within which a diagnostic was reported. */
+  private final Set<MethodTree> withDiagnostics =
+      Collections.newSetFromMap(new IdentityHashMap<>());
+
+  /**
+   * True if a diagnostic that could not be attributed to a method was reported in the current
+   * compilation unit.
+   */
+  private boolean unattributedDiagnostic = false;
+
+  /** The number of methods that were skipped. */
+  private int skipCount = 0;
+
+  /** The number of methods that were checked and reported no diagnostics. */
+  private int checkCount = 0;
+
+  /**
+   * Creates a cache for the given type factory that is stored in the given directory.
+   *
+   * @param atypeFactory the type factory of the checker whose results are recorded
+   * @param cacheDir the directory in which to store cache files
+   */
+  private CheckedMethodCache(AnnotatedTypeFactory atypeFactory, String cacheDir) {
+    this.atypeFactory = atypeFactory;
+    SourceChecker checker = atypeFactory.getChecker();
+    this.cacheFile =
+        Paths.get(
+            cacheDir,
+            checker.getClass().getSimpleName()
+                + "-"
+                + PersistentElementTypeCache.computeConfigurationKey(atypeFactory, 1)
+                + ".methods");
+  }
+
+  /**
+   * Returns a cache for the given type factory that is stored in the given directory, or null if
+   * methods may not be skipped for the factory's checker. In that case, the checker that the user
+   * ran warns that {@code -AincrementalCacheDir} is ignored.
+   *
+   * @param atypeFactory the type factory of the checker whose results are recorded
+   * @param cacheDir the directory in which to store cache files
+   * @return a cache for {@code atypeFactory}, or null
+   */
+  public static @Nullable CheckedMethodCache create(
+      AnnotatedTypeFactory atypeFactory, String cacheDir) {
+    BaseTypeChecker checker = atypeFactory.getChecker();
+    String reason = whyNotApplicable(checker);
+    if (reason == null) {
+      return new CheckedMethodCache(atypeFactory, cacheDir);
+    }
+    // Subcheckers are not applicable either; warn only once.
+    if (checker.getParentChecker() == null) {
+      checker.message(Kind.WARNING, "-AincrementalCacheDir is ignored: %s", reason);
+    }
+    return null;
+  }
+
+  /**
+   * Returns why methods may not be skipped for {@code checker}, or null if they may be. They may
+   * not be skipped for a compound checker or one of its subcheckers, such as the Nullness, Index,
+   * Lock, or Called Methods Checker, nor if some command-line option requires seeing every method;
+   * for example, whole-program inference does.
+   *
+   * @param checker a checker
+   * @return why methods may not be skipped, or null if they may be
+   */
+  public static @Nullable String whyNotApplicable(BaseTypeChecker checker) {
+    if (checker.getParentChecker() != null || !checker.getSubcheckers().isEmpty()) {
+      return checker.getClass().getSimpleName() + " has subcheckers";
+    }
+    for (String option :
+        new String[] {"infer", "warnUnneededSuppressions", "flowdotdir", "cfgviz"}) {
+      if (checker.hasOption(option)) {
+        return "-A" + option + " was supplied";
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Records the methods of the previous compilation unit that were checked without diagnostics, and
+   * forgets its methods.
+   *
+   * @see GenericAnnotatedTypeFactory#setRoot
+   */
+  public void finishCompilationUnit() {
+    if (!unattributedDiagnostic) {
+      for (MethodTree tree : visited) {
+        if (withDiagnostics.contains(tree)) {
+          continue;
+        }
+        String fingerprint = getFingerprint(tree);
+        if (fingerprint != null && checked.add(fingerprint)) {
+          checkCount++;
+        }
+      }
+    }
+    visited.clear();
+    withDiagnostics.clear();
+    unattributedDiagnostic = false;
+    fingerprints.clear();
+  }
+
+  /**
+   * Returns true if {@code tree} has been checked without diagnostics in a previous compilation and
+   * neither it nor anything it depends on has changed since. Such a method need not be analyzed or
+   * checked again.
+   *
+   * @param tree a method declaration in the current compilation unit
+   * @return true if {@code tree} need not be checked
+   */
+  public boolean isUnchanged(MethodTree tree) {
+    String fingerprint = getFingerprint(tree);
+    if (fingerprint == null) {
+      return false;
+    }
+    load();
+    if (previouslyChecked.contains(fingerprint)) {
+      if (checked.add(fingerprint)) {
+        skipCount++;
+      }
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Records that the visitor has checked {@code tree}. The method is recorded as checked without
+   * diagnostics by {@link #finishCompilationUnit} unless {@link #reportedDiagnostic} is called for
+   * a tree within it.
+   *
+   * @param tree a method declaration in the current compilation unit
+   */
+  public void markChecked(MethodTree tree) {
+    visited.add(tree);
+  }
+
+  /**
+   * Records that the checker reported a diagnostic at {@code source}, during either dataflow
+   * analysis or the visit of the compilation unit. The enclosing method of {@code source} will not
+   * be recorded as checked. If {@code source} is not a tree in the current compilation unit, then
+   * no method of the compilation unit will be recorded.
+   *
+   * @param source the source position information of a diagnostic; may be an Element, a Tree, or
+   *     null
+   */
+  public void reportedDiagnostic(@Nullable Object source) {
+    TreePath path = source instanceof Tree ? atypeFactory.getPath((Tree) source) : null;
+    if (path == null) {
+      unattributedDiagnostic = true;
+      return;
+    }
+    MethodTree method = TreePathUtil.enclosingMethod(path);
+    // A diagnostic outside every method is reported again when the class is checked again.
+    if (method != null) {
+      withDiagnostics.add(method);
+    }
+  }
+
+  /**
+   * Writes the cache file: the fingerprints recorded in this compilation, followed by those of the
+   * previous cache file, up to {@link #MAX_ENTRIES}. First records the methods of the last
+   * compilation unit. Fingerprints of methods that were compiled in
+   * other compilations remain valid, so they are kept. The file is written to a temporary file and
+   * then renamed, so concurrent compilations never read a partially written cache file.
+   */
+  public void save() {
+    finishCompilationUnit();
+    if (checkCount == 0) {
+      return;
+    }
+    load();
+    Set<String> all = new LinkedHashSet<>(checked);
+    for (String fingerprint : previouslyChecked) {
+      if (all.size() >= MAX_ENTRIES) {
+        break;
+      }
+      all.add(fingerprint);
+    }
+    try {
+      Files.createDirectories(cacheFile.getParent());
+      Path tmpFile = Files.createTempFile(cacheFile.getParent(), "checkedMethods", ".tmp");
+      try (BufferedWriter out = Files.newBufferedWriter(tmpFile, StandardCharsets.UTF_8)) {
+        out.write(HEADER);
+        out.newLine();
+        for (String fingerprint : all) {
+          out.write(fingerprint);
+          out.newLine();
+        }
+      }
+      Files.move(
+          tmpFile, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      atypeFactory
+          .getChecker()
+          .message(Kind.WARNING, "Could not write checked method cache %s: %s", cacheFile, e);
+    }
+  }
+
+  /**
+   * Returns a one-line summary of the number of methods skipped and checked.
+   *
+   * @return a one-line summary of the statistics of this cache
+   */
+  public String getStatistics() {
+    return String.format(
+        "checkedMethodCache: %d methods skipped, %d methods checked without diagnostics",
+        skipCount, checkCount);
+  }
+
+  /** Reads the cache file, if it has not been read yet. A corrupt or outdated file is ignored. */
+  @EnsuresNonNull("previouslyChecked")
+  private void load() {
+    if (previouslyChecked != null) {
+      return;
+    }
+    previouslyChecked = new HashSet<>();
+    if (!Files.isRegularFile(cacheFile)) {
+      return;
+    }
+    try (BufferedReader in = Files.newBufferedReader(cacheFile, StandardCharsets.UTF_8)) {
+      if (!HEADER.equals(in.readLine())) {
+        return;
+      }
+      String line;
+      while ((line = in.readLine()) != null) {
+        previouslyChecked.add(line);
+      }
+    } catch (IOException e) {
+      previouslyChecked.clear();
+    }
+  }
+
+  /**
+   * Returns the fingerprint of {@code tree}, or null if the method must always be checked.
+   *
+   * @param tree a method declaration in the current compilation unit
+   * @return the fingerprint of {@code tree}, or null
+   */
+  private @Nullable String getFingerprint(MethodTree tree) {
+    if (fingerprints.containsKey(tree)) {
+      return fingerprints.get(tree);
+    }
+    String result = computeFingerprint(tree);
+    fingerprints.put(tree, result);
+    return result;
+  }
+
+  /**
+   * Computes the fingerprint of {@code tree}, or returns null if the method must always be
+   * checked.
+   *
+   * @param tree a method declaration in the current compilation unit
+   * @return the fingerprint of {@code tree}, or null
+   */
+  private @Nullable String computeFingerprint(MethodTree tree) {
+    if (tree.getBody() == null || TreeUtils.isConstructor(tree)) {
+      return null;
+    }
+    ExecutableElement method = TreeUtils.elementFromDeclaration(tree);
+    TypeElement clazz = ElementUtils.enclosingTypeElement(method);
+    if (clazz == null
+        || clazz.getNestingKind() == NestingKind.LOCAL
+        || clazz.getNestingKind() == NestingKind.ANONYMOUS) {
+      return null;
+    }
+    ReferenceCollector collector =
+        new ReferenceCollector(
+            atypeFactory.getElementUtils(), atypeFactory.getProcessingEnv().getTypeUtils());
+    collector.scan(tree, null);
+    if (collector.declaresClass) {
+      return null;
+    }
+
+    StringBuilder sb = new StringBuilder();
+    sb.append(tree).append('\n');
+    sb.append(atypeFactory.getAnnotatedType(method).toString(true)).append('\n');
+
+    // The class: its header, fields, and initializers.
+    Tree classDecl = atypeFactory.declarationFromElement(clazz);
+    if (!(classDecl instanceof ClassTree)) {
+      return null;
+    }
+    ClassTree classTree = (ClassTree) classDecl;
+    sb.append(clazz.getQualifiedName()).append('\n');
+    sb.append(classTree.getModifiers()).append('\n');
+    sb.append(classTree.getExtendsClause()).append(' ').append(classTree.getImplementsClause());
+    sb.append('\n');
+    for (Tree member : classTree.getMembers()) {
+      if (member.getKind() == Tree.Kind.VARIABLE || member.getKind() == Tree.Kind.BLOCK) {
+        sb.append(member).append('\n');
+      }
+    }
+    // The enclosing classes and package, whose declaration annotations can set defaults.
+    Element enclosing = clazz;
+    while (enclosing != null) {
+      appendDeclAnnotations(sb, enclosing);
+      if (enclosing instanceof PackageElement) {
+        break;
+      }
+      enclosing = enclosing.getEnclosingElement();
+    }
+    sb.append('\n');
+
+    // The elements the method refers to, and the methods it overrides.  TreeSet makes the order
+    // deterministic.
+    Set<String> dependencies = new TreeSet<>();
+    for (Element elt : collector.referenced) {
+      dependencies.add(describe(elt));
+    }
+    for (ExecutableElement overridden :
+        AnnotatedTypes.overriddenMethods(atypeFactory.getElementUtils(), atypeFactory, method)
+            .values()) {
+      dependencies.add(describe(overridden));
+    }
+    // The classes used by the method, and their supertypes.
+    Set<TypeElement> classes = new LinkedHashSet<>();
+    Set<TypeMirror> visited = new HashSet<>();
+    for (Element elt : collector.referenced) {
+      if (elt instanceof TypeElement) {
+        classes.add((TypeElement) elt);
+      }
+      TypeElement enclosingClass = ElementUtils.enclosingTypeElement(elt);
+      if (enclosingClass != null) {
+        classes.add(enclosingClass);
+      }
+    }
+    for (TypeMirror type : collector.exprTypes) {
+      collectClasses(type, classes, visited);
+    }
+    collectClasses(method.asType(), classes, visited);
+    for (TypeElement c : classes) {
+      for (TypeElement supertype :
+          ElementUtils.getAllSupertypes(c, atypeFactory.getProcessingEnv())) {
+        dependencies.add(describeType(supertype));
+      }
+    }
+    for (String dependency : dependencies) {
+      sb.append(dependency).append('\n');
+    }
+    return PersistentElementTypeCache.hash(sb.toString());
+  }
+
+  /**
+   * Adds the classes that occur in {@code type} to {@code classes}: the class of a declared type
+   * and of its type arguments and enclosing type, the component type of an array, and the bounds
+   * of type variables, wildcards, intersections, and unions.
+   *
+   * @param type a type
+   * @param classes the set to add classes to
+   * @param visited the types already visited, to stop at recursive bounds
+   */
+  private static void collectClasses(
+      @Nullable TypeMirror type, Set<TypeElement> classes, Set<TypeMirror> visited) {
+    if (type == null || !visited.add(type)) {
+      return;
+    }
+    switch (type.getKind()) {
+      case DECLARED:
+        DeclaredType declared = (DeclaredType) type;
+        classes.add((TypeElement) declared.asElement());
+        collectClasses(declared.getEnclosingType(), classes, visited);
+        for (TypeMirror typeArg : declared.getTypeArguments()) {
+          collectClasses(typeArg, classes, visited);
+        }
+        break;
+      case ARRAY:
+        collectClasses(((ArrayType) type).getComponentType(), classes, visited);
+        break;
+      case TYPEVAR:
+        collectClasses(((TypeVariable) type).getUpperBound(), classes, visited);
+        collectClasses(((TypeVariable) type).getLowerBound(), classes, visited);
+        break;
+      case WILDCARD:
+        collectClasses(((WildcardType) type).getExtendsBound(), classes, visited);
+        collectClasses(((WildcardType) type).getSuperBound(), classes, visited);
+        break;
+      case INTERSECTION:
+        for (TypeMirror bound : ((IntersectionType) type).getBounds()) {
+          collectClasses(bound, classes, visited);
+        }
+        break;
+      case UNION:
+        for (TypeMirror alternative : ((UnionType) type).getAlternatives()) {
+          collectClasses(alternative, classes, visited);
+        }
+        break;
+      case EXECUTABLE:
+        ExecutableType executable = (ExecutableType) type;
+        collectClasses(executable.getReturnType(), classes, visited);
+        collectClasses(executable.getReceiverType(), classes, visited);
+        for (TypeMirror paramType : executable.getParameterTypes()) {
+          collectClasses(paramType, classes, visited);
+        }
+        for (TypeMirror thrownType : executable.getThrownTypes()) {
+          collectClasses(thrownType, classes, visited);
+        }
+        break;
+      default:
+        break;
+    }
+  }
+
+  /**
+   * Returns a description of the class {@code clazz} that changes when its annotated type, its
+   * declaration annotations, or the annotated types of its direct supertypes change. The
+   * description of each class is computed once per compilation.
+   *
+   * @param clazz a class
+   * @return a description of the declaration of {@code clazz}
+   */
+  private String describeType(TypeElement clazz) {
+    String result = typeDescriptions.get(clazz);
+    if (result == null) {
+      StringBuilder sb = new StringBuilder();
+      AnnotatedDeclaredType type = atypeFactory.getAnnotatedType(clazz);
+      sb.append(clazz.getQualifiedName()).append(' ').append(type.toString(true));
+      for (AnnotatedDeclaredType supertype : type.directSupertypes()) {
+        sb.append(' ').append(supertype.toString(true));
+      }
+      appendDeclAnnotations(sb, clazz);
+      result = sb.toString();
+      typeDescriptions.put(clazz, result);
+    }
+    return result;
+  }
+
+  /**
+   * Returns a description of {@code elt} that changes when the declaration of {@code elt} changes
+   * in a way that can affect the checking of code that uses it.
+   *
+   * @param elt an element
+   * @return a description of the declaration of {@code elt}
+   */
+  private String describe(Element elt) {
+    StringBuilder sb = new StringBuilder();
+    Element enclosing = elt.getEnclosingElement();
+    if (enclosing != null) {
+      sb.append(enclosing).append('.');
+    }
+    sb.append(elt).append(' ');
+    sb.append(atypeFactory.getAnnotatedType(elt).toString(true));
+    appendDeclAnnotations(sb, elt);
+    return sb.toString();
+  }
+
+  /**
+   * Appends the declaration annotations of {@code elt}, including those from stub files, to {@code
+   * sb}.
+   *
+   * @param sb the string builder to append to
+   * @param elt an element
+   */
+  private void appendDeclAnnotations(StringBuilder sb, Element elt) {
+    List<String> annos = new ArrayList<>();
+    for (AnnotationMirror anno : atypeFactory.getDeclAnnotations(elt)) {
+      annos.add(anno.toString());
+    }
+    annos.sort(null);
+    sb.append(annos);
+  }
+
+  /**
+   * Collects the elements of fields, methods, constructors, and classes that a method body refers
+   * to, the types of its expressions and variables, and whether the body declares a class. The
+   * elements include the methods that javac calls implicitly, which no tree refers to: {@code
+   * iterator}, {@code hasNext}, and {@code next} in an enhanced {@code for} loop, the unboxing
+   * methods such as {@code intValue}, {@code close} in a try-with-resources statement, and {@code
+   * toString} in a string concatenation. Where the called method depends on a type that is not
+   * exactly known, such as a type variable, every candidate in the classes of its bounds is
+   * collected.
+   */
+  private static class ReferenceCollector extends TreeScanner<Void, Void> {
+
+    /** The element utilities. */
+    private final Elements elements;
+
+    /** The type utilities. */
+    private final Types types;
+
+    /** The elements referred to. */
+    final Set<Element> referenced = new LinkedHashSet<>();
+
+    /** The types of the expressions and variables, including types that javac inferred. */
+    final Set<TypeMirror> exprTypes = new LinkedHashSet<>();
+
+    /** True if a class declaration (including an anonymous class) was found. */
+    boolean declaresClass = false;
+
+    /**
+     * Creates a ReferenceCollector.
+     *
+     * @param elements the element utilities
+     * @param types the type utilities
+     */
+    ReferenceCollector(Elements elements, Types types) {
+      this.elements = elements;
+      this.types = types;
+    }
+
+    /**
+     * Adds the element of {@code tree}, if it is a field, method, constructor, or class.
+     *
+     * @param tree a tree that refers to an element
+     */
+    private void add(Tree tree) {
+      Element elt = TreeUtils.elementFromTree(tree);
+      if (elt == null) {
+        return;
+      }
+      ElementKind kind = elt.getKind();
+      if (kind.isField()
+          || kind == ElementKind.METHOD
+          || kind == ElementKind.CONSTRUCTOR
+          || kind.isClass()
+          || kind.isInterface()) {
+        referenced.add(elt);
+      }
+    }
+
+    /**
+     * Adds the methods that javac may call implicitly on a value of type {@code type}: the methods
+     * named {@code name} with {@code paramCount} parameters that are members of the classes in
+     * {@code type}.
+     *
+     * @param type the type of the receiver; may be null
+     * @param name the name of the method
+     * @param paramCount the number of parameters of the method
+     * @return the methods that were added
+     */
+    private List<ExecutableElement> addImplicitCall(
+        @Nullable TypeMirror type, String name, int paramCount) {
+      List<ExecutableElement> result = new ArrayList<>();
+      if (type == null) {
+        return result;
+      }
+      Set<TypeElement> classes = new LinkedHashSet<>();
+      collectClasses(type, classes, new HashSet<>());
+      for (TypeElement clazz : classes) {
+        for (ExecutableElement member : ElementFilter.methodsIn(elements.getAllMembers(clazz))) {
+          if (member.getSimpleName().contentEquals(name)
+              && member.getParameters().size() == paramCount) {
+            referenced.add(member);
+            result.add(member);
+          }
+        }
+      }
+      return result;
+    }
+
+    /**
+     * Adds the method that unboxes a value of type {@code type}, if {@code type} is a boxed
+     * primitive type.
+     *
+     * @param type a type
+     */
+    private void addUnboxing(@Nullable TypeMirror type) {
+      if (type != null && TypesUtils.isBoxedPrimitive(type)) {
+        TypeKind primitive = types.unboxedType(type).getKind();
+        addImplicitCall(type, primitive.name().toLowerCase(Locale.ROOT) + "Value", 0);
+      }
+    }
+
+    /**
+     * Adds the {@code toString} methods that a string concatenation calls on an operand.
+     *
+     * @param operand an operand of a string concatenation
+     */
+    private void addStringConversion(ExpressionTree operand) {
+      TypeMirror type = TreeUtils.typeOf(operand);
+      if (type != null && !type.getKind().isPrimitive()) {
+        addImplicitCall(type, "toString", 0);
+      }
+    }
+
+    @Override
+    public Void scan(Tree tree, Void p) {
+      if (tree instanceof ExpressionTree || tree instanceof VariableTree) {
+        TypeMirror type = TreeUtils.typeOf(tree);
+        if (type != null) {
+          exprTypes.add(type);
+          // An expression of a boxed type may be unboxed.
+          addUnboxing(type);
+        }
+      }
+      return super.scan(tree, p);
+    }
+
+    @Override
+    public Void visitClass(ClassTree tree, Void p) {
+      declaresClass = true;
+      return null;
+    }
+
+    @Override
+    public Void visitNewClass(NewClassTree tree, Void p) {
+      if (tree.getClassBody() != null) {
+        declaresClass = true;
+        return null;
+      }
+      add(tree);
+      return super.visitNewClass(tree, p);
+    }
+
+    @Override
+    public Void visitIdentifier(IdentifierTree tree, Void p) {
+      add(tree);
+      return super.visitIdentifier(tree, p);
+    }
+
+    @Override
+    public Void visitMemberSelect(MemberSelectTree tree, Void p) {
+      add(tree);
+      return super.visitMemberSelect(tree, p);
+    }
+
+    @Override
+    public Void visitMethodInvocation(MethodInvocationTree tree, Void p) {
+      add(tree);
+      return super.visitMethodInvocation(tree, p);
+    }
+
+    @Override
+    public Void visitMemberReference(MemberReferenceTree tree, Void p) {
+      add(tree);
+      return super.visitMemberReference(tree, p);
+    }
+
+    @Override
+    public Void visitEnhancedForLoop(EnhancedForLoopTree tree, Void p) {
+      TypeMirror iterableType = TreeUtils.typeOf(tree.getExpression());
+      if (iterableType != null && iterableType.getKind() != TypeKind.ARRAY) {
+        for (ExecutableElement iterator : addImplicitCall(iterableType, "iterator", 0)) {
+          addImplicitCall(iterator.getReturnType(), "hasNext", 0);
+          for (ExecutableElement next : addImplicitCall(iterator.getReturnType(), "next", 0)) {
+            addUnboxing(next.getReturnType());
+          }
+        }
+      }
+      return super.visitEnhancedForLoop(tree, p);
+    }
+
+    @Override
+    public Void visitTry(TryTree tree, Void p) {
+      for (Tree resource : tree.getResources()) {
+        TypeMirror resourceType =
+            resource instanceof VariableTree
+                ? TreeUtils.elementFromDeclaration((VariableTree) resource).asType()
+                : TreeUtils.typeOf(resource);
+        addImplicitCall(resourceType, "close", 0);
+      }
+      return super.visitTry(tree, p);
+    }
+
+    @Override
+    public Void visitBinary(BinaryTree tree, Void p) {
+      TypeMirror type = TreeUtils.typeOf(tree);
+      if (tree.getKind() == Tree.Kind.PLUS && type != null && TypesUtils.isString(type)) {
+        addStringConversion(tree.getLeftOperand());
+        addStringConversion(tree.getRightOperand());
+      }
+      return super.visitBinary(tree, p);
+    }
+
+    @Override
+    public Void visitCompoundAssignment(CompoundAssignmentTree tree, Void p) {
+      TypeMirror type = TreeUtils.typeOf(tree.getVariable());
+      if (tree.getKind() == Tree.Kind.PLUS_ASSIGNMENT
+          && type != null
+          && TypesUtils.isString(type)) {
+        addStringConversion(tree.getExpression());
+      }
+      return super.visitCompoundAssignment(tree, p);
+    }
+  }
+}
@@ -9,6 +9,7 @@ import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
 import javax.lang.model.type.TypeVariable;
 import javax.lang.model.util.Types;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.checkerframework.common.basetype.BaseTypeChecker;
 import org.checkerframework.framework.qual.Covariant;
 import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedArrayType;
@@ -26,6 +27,7 @@ import org.checkerframework.javacutil.AnnotationUtils;
 import org.checkerframework.javacutil.BugInCF;
 import org.checkerframework.javacutil.TreeUtils;
 import org.checkerframework.javacutil.TypesUtils;
+import org.checkerframework.javacutil.UserError;
 
 /**
  * Default implementation of TypeHierarchy that implements the JLS specification with minor
@@ -126,6 +128,12 @@ public class DefaultTypeHierarchy extends AbstractAtmComboVisitor<Boolean, Void>
   /** The Covariant.value field/element. */
   final ExecutableElement covariantValueElement;
 
+  /**
+   * Memoized results of queries about ground types, or null if the {@code -AsubtypeCacheSize}
+   * command-line option was not supplied.
+   */
+  protected final @Nullable SubtypeQueryCache subtypeQueryCache;
+
   /**
    * Creates a DefaultTypeHierarchy.
    *
@@ -145,6 +153,7 @@ public class DefaultTypeHierarchy extends AbstractAtmComboVisitor<Boolean, Void>
     this.isSubtypeVisitHistory = new SubtypeVisitHistory();
     this.areEqualVisitHistory = new StructuralEqualityVisitHistory();
     this.equalityComparer = createEqualityComparer();
+    this.subtypeQueryCache = createSubtypeQueryCache();
 
     this.ignoreRawTypes = ignoreRawTypes;
     this.invariantArrayComponents = invariantArrayComponents;
@@ -153,6 +162,49 @@ public class DefaultTypeHierarchy extends AbstractAtmComboVisitor<Boolean, Void>
         TreeUtils.getMethod(Covariant.class, "value", 0, checker.getProcessingEnvironment());
   }
 
+  /**
+   * Creates the memo table of subtype queries, if the {@code -AsubtypeCacheSize} command-line
+   * option was supplied. A subclass whose subtyping relation depends on state other than the two
+   * types and the hierarchy should override this to return null.
+   *
+   * @return the memo table of subtype queries, or null to not memoize subtype queries
+   */
+  protected @Nullable SubtypeQueryCache createSubtypeQueryCache() {
+    String option = checker.getOption("subtypeCacheSize");
+    if (option == null) {
+      return null;
+    }
+    int maxSize;
+    try {
+      maxSize = Integer.parseInt(option);
+    } catch (NumberFormatException e) {
+      throw new UserError("subtypeCacheSize was not an integer: " + option);
+    }
+    if (maxSize <= 0) {
+      throw new UserError("subtypeCacheSize must be positive: " + option);
+    }
+    return new SubtypeQueryCache(maxSize);
+  }
+
+  /**
+   * Returns the memo table of subtype queries, or null if subtype queries are not memoized.
+   *
+   * @return the memo table of subtype queries, or null
+   */
+  public @Nullable SubtypeQueryCache getSubtypeQueryCache() {
+    return subtypeQueryCache;
+  }
+
+  /**
+   * Returns a summary of the use of the memo table of subtype queries, or the empty string if
+   * subtype queries are not memoized.
+   *
+   * @return a summary of the use of the memo table of subtype queries, or the empty string
+   */
+  public String getSubtypeQueryCacheStatistics() {
+    return subtypeQueryCache == null ? "" : subtypeQueryCache.getStatistics();
+  }
+
   /**
    * Create the equality comparer.
    *
@@ -201,7 +253,20 @@ public class DefaultTypeHierarchy extends AbstractAtmComboVisitor<Boolean, Void>
       final AnnotationMirror top) {
     assert top != null;
     currentTop = top;
-    return AtmCombo.accept(subtype, supertype, null, this);
+    if (subtypeQueryCache == null) {
+      return AtmCombo.accept(subtype, supertype, null, this);
+    }
+    List<Object> key = subtypeQueryCache.createKey(subtype, supertype, top);
+    if (key == null) {
+      return AtmCombo.accept(subtype, supertype, null, this);
+    }
+    Boolean previousResult = subtypeQueryCache.get(key);
+    if (previousResult != null) {
+      return previousResult;
+    }
+    boolean result = AtmCombo.accept(subtype, supertype, null, this);
+    subtypeQueryCache.put(key, result);
+    return result;
   }
 
   /**
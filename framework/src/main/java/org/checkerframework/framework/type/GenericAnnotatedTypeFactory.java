@@ -303,6 +303,13 @@ public abstract class GenericAnnotatedTypeFactory<
    */
   protected boolean shouldClearSubcheckerSharedCFGs = true;
 
+  /**
+   * The record of the methods that earlier compilations checked without diagnostics, or null if
+   * the {@code -AincrementalCacheDir} command-line option was not supplied. Such methods are
+   * neither analyzed nor visited.
+   */
+  protected final @Nullable CheckedMethodCache checkedMethodCache;
+
   /**
    * Creates a type factory. Its compilation unit is not yet set.
    *
@@ -329,6 +336,10 @@ public abstract class GenericAnnotatedTypeFactory<
 
     this.cfgVisualizer = createCFGVisualizer();
 
+    String incrementalCacheDir = checker.getOption("incrementalCacheDir");
+    this.checkedMethodCache =
+        incrementalCacheDir == null ? null : CheckedMethodCache.create(this, incrementalCacheDir);
+
     if (shouldCache) {
       int cacheSize = getCacheSize();
       flowResultAnalysisCaches = CollectionUtils.createLRUCache(cacheSize);
@@ -390,6 +401,39 @@ public abstract class GenericAnnotatedTypeFactory<
     this.parseAnnotationFiles();
   }
 
+  /**
+   * Returns the record of the methods that earlier compilations checked without diagnostics, or
+   * null if the {@code -AincrementalCacheDir} command-line option was not supplied.
+   *
+   * @return the record of checked methods, or null
+   */
+  public @Nullable CheckedMethodCache getCheckedMethodCache() {
+    return checkedMethodCache;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Also writes the record of checked methods, if any.
+   */
+  @Override
+  public void typeProcessingOver() {
+    super.typeProcessingOver();
+    if (checkedMethodCache != null) {
+      checkedMethodCache.save();
+    }
+  }
+
+  @Override
+  public String getCacheStatistics() {
+    String result = super.getCacheStatistics();
+    if (checkedMethodCache == null) {
+      return result;
+    }
+    String statistics = checkedMethodCache.getStatistics();
+    return result.isEmpty() ? statistics : result + System.lineSeparator() + statistics;
+  }
+
   /**
    * Performs flow-sensitive type refinement on {@code classTree} if this type factory is configured
    * to do so.
@@ -415,7 +459,13 @@ public abstract class GenericAnnotatedTypeFactory<
   @Override
   public void setRoot(@Nullable CompilationUnitTree root) {
     super.setRoot(root);
+    if (checkedMethodCache != null) {
+      checkedMethodCache.finishCompilationUnit();
+    }
     this.scannedClasses.clear();
+    if (flowResult != null) {
+      storeSnapshotHits += flowResult.getStoreSnapshotHitCount();
+    }
     this.flowResult = null;
     this.regularExitStores = null;
     this.exceptionalExitStores = null;
@@ -1020,6 +1070,23 @@ public abstract class GenericAnnotatedTypeFactory<
    */
   protected AnalysisResult<Value, Store> flowResult;
 
+  /**
+   * The number of stores looked up in the store snapshots of the flow results of previous
+   * compilation units; see {@link #getStoreSnapshotHitCount}.
+   */
+  private long storeSnapshotHits = 0;
+
+  /**
+   * Returns the number of stores that were looked up in store snapshots, which the {@code
+   * -AstoreSnapshots} command-line option records, instead of being computed by re-running
+   * transfer functions.
+   *
+   * @return the number of lookups of store snapshots in this compilation
+   */
+  public long getStoreSnapshotHitCount() {
+    return storeSnapshotHits + (flowResult == null ? 0 : flowResult.getStoreSnapshotHitCount());
+  }
+
   /**
    * A mapping from methods (or other code blocks) to their regular exit store (used to check
    * postconditions).
@@ -1240,6 +1307,12 @@ public abstract class GenericAnnotatedTypeFactory<
    * Perform a org.checkerframework.dataflow analysis over a single class tree and its nested
    * classes.
    *
+   * <p>The methods, lambdas, and field initializers of the class are analyzed one at a time. They
+   * cannot be analyzed concurrently: building their CFGs and running the transfer functions use
+   * this factory's caches and {@code visitorState}, and javac's {@code Types} and symbol
+   * completion, none of which are thread-safe. {@code -AtypeCheckShard} divides the compilation
+   * units, not the classes, among compiler invocations, so it does not speed up a single class.
+   *
    * @param classTree the class to analyze
    */
   protected void performFlowAnalysis(ClassTree classTree) {
@@ -1248,6 +1321,8 @@ public abstract class GenericAnnotatedTypeFactory<
       exceptionalExitStores = new IdentityHashMap<>();
       returnStatementStores = new IdentityHashMap<>();
       flowResult = new AnalysisResult<>(flowResultAnalysisCaches);
+      // Bound the stores recorded for the whole compilation unit, not just for each method.
+      flowResult.setMaxStoreSnapshots(analysis.getMaxStoreSnapshots());
     }
 
     // no need to scan annotations
@@ -1305,6 +1380,10 @@ public abstract class GenericAnnotatedTypeFactory<
               if (mt.getBody() == null) {
                 break;
               }
+              // The visitor also skips a method that an earlier compilation checked.
+              if (checkedMethodCache != null && checkedMethodCache.isUnchanged(mt)) {
+                break;
+              }
 
               // Wait with scanning the method until all other members
               // have been processed.
@@ -3,6 +3,8 @@ package org.checkerframework.framework.type;
 import java.lang.annotation.Annotation;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
@@ -20,6 +22,7 @@ import org.checkerframework.javacutil.AnnotationBuilder;
 import org.checkerframework.javacutil.AnnotationUtils;
 import org.checkerframework.javacutil.BugInCF;
 import org.checkerframework.javacutil.TypeSystemError;
+import org.plumelib.util.StringsPlume;
 
 /**
  * A {@link QualifierHierarchy} where no qualifier has arguments; that is, no qualifier is
@@ -29,6 +32,13 @@ import org.checkerframework.javacutil.TypeSystemError;
  * <p>It uses a {@link QualifierKindHierarchy} to model the relationships between qualifiers.
  * Subclasses can override {@link #createQualifierKindHierarchy(Collection)} to return a subclass of
  * QualifierKindHierarchy.
+ *
+ * <p>If there are at most 64 qualifiers, each qualifier is encoded as a small integer, and the
+ * results of {@link #isSubtype(AnnotationMirror, AnnotationMirror)}, {@link
+ * #leastUpperBound(AnnotationMirror, AnnotationMirror)}, and {@link
+ * #greatestLowerBound(AnnotationMirror, AnnotationMirror)} are looked up in tables that are
+ * computed once from the QualifierKindHierarchy. The methods on sets of qualifiers encode a set as
+ * a bit set.
  */
 @AnnotatedFor("nullness")
 public class NoElementQualifierHierarchy implements QualifierHierarchy {
@@ -48,6 +58,9 @@ public class NoElementQualifierHierarchy implements QualifierHierarchy {
   /** Set of all annotations in all the hierarchies. */
   protected final Set<? extends AnnotationMirror> qualifiers;
 
+  /** The encoding of the qualifiers as integers, or null if there are too many qualifiers. */
+  private final @Nullable QualifierEncoding encoding;
+
   /**
    * Creates a NoElementQualifierHierarchy from the given classes.
    *
@@ -64,6 +77,11 @@ public class NoElementQualifierHierarchy implements QualifierHierarchy {
 
     this.tops = createTops();
     this.bottoms = createBottoms();
+
+    this.encoding =
+        qualifierKindHierarchy.allQualifierKinds().size() <= Long.SIZE
+            ? new QualifierEncoding(qualifierKindHierarchy, kindToAnnotationMirror)
+            : null;
   }
 
   /**
@@ -217,6 +235,10 @@ public class NoElementQualifierHierarchy implements QualifierHierarchy {
 
   @Override
   public boolean isSubtype(AnnotationMirror subAnno, AnnotationMirror superAnno) {
+    QualifierEncoding encoding = this.encoding;
+    if (encoding != null) {
+      return encoding.isSubtype(encoding.getIndex(subAnno), encoding.getIndex(superAnno));
+    }
     QualifierKind subKind = getQualifierKind(subAnno);
     QualifierKind superKind = getQualifierKind(superAnno);
     return subKind.isSubtypeOf(superKind);
@@ -224,6 +246,11 @@ public class NoElementQualifierHierarchy implements QualifierHierarchy {
 
   @Override
   public @Nullable AnnotationMirror leastUpperBound(AnnotationMirror a1, AnnotationMirror a2) {
+    QualifierEncoding encoding = this.encoding;
+    if (encoding != null) {
+      return encoding.getAnnotationMirror(
+          encoding.lubs[encoding.getIndex(a1)][encoding.getIndex(a2)]);
+    }
     QualifierKind qual1 = getQualifierKind(a1);
     QualifierKind qual2 = getQualifierKind(a2);
 
@@ -236,6 +263,11 @@ public class NoElementQualifierHierarchy implements QualifierHierarchy {
 
   @Override
   public @Nullable AnnotationMirror greatestLowerBound(AnnotationMirror a1, AnnotationMirror a2) {
+    QualifierEncoding encoding = this.encoding;
+    if (encoding != null) {
+      return encoding.getAnnotationMirror(
+          encoding.glbs[encoding.getIndex(a1)][encoding.getIndex(a2)]);
+    }
     QualifierKind qual1 = getQualifierKind(a1);
     QualifierKind qual2 = getQualifierKind(a2);
     QualifierKind glb = qualifierKindHierarchy.greatestLowerBound(qual1, qual2);
@@ -244,4 +276,229 @@ public class NoElementQualifierHierarchy implements QualifierHierarchy {
     }
     return kindToAnnotationMirror.get(glb);
   }
+
+  @Override
+  public boolean isSubtype(
+      Collection<? extends AnnotationMirror> subQualifiers,
+      Collection<? extends AnnotationMirror> superQualifiers) {
+    QualifierEncoding encoding = this.encoding;
+    if (encoding == null) {
+      return QualifierHierarchy.super.isSubtype(subQualifiers, superQualifiers);
+    }
+    QualifierHierarchy.assertSameSize(subQualifiers, superQualifiers);
+    long superSet = encoding.encode(superQualifiers);
+    for (AnnotationMirror subQual : subQualifiers) {
+      int subIndex = encoding.getIndex(subQual);
+      long superQual = superSet & encoding.hierarchyMasks[subIndex];
+      if (superQual == 0) {
+        throw new BugInCF(
+            "NoElementQualifierHierarchy: missing annotation in hierarchy %s. found: %s",
+            subQual, StringsPlume.join(",", superQualifiers));
+      }
+      if ((superQual & encoding.superMasks[subIndex]) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public Set<? extends AnnotationMirror> leastUpperBounds(
+      Collection<? extends AnnotationMirror> qualifiers1,
+      Collection<? extends AnnotationMirror> qualifiers2) {
+    QualifierEncoding encoding = this.encoding;
+    if (encoding == null) {
+      return QualifierHierarchy.super.leastUpperBounds(qualifiers1, qualifiers2);
+    }
+    if (qualifiers1.isEmpty()) {
+      throw new BugInCF(
+          "NoElementQualifierHierarchy.leastUpperBounds: tried to determine LUB with empty"
+              + " sets");
+    }
+    return combine(encoding, encoding.lubs, qualifiers1, qualifiers2);
+  }
+
+  @Override
+  public Set<? extends AnnotationMirror> greatestLowerBounds(
+      Collection<? extends AnnotationMirror> qualifiers1,
+      Collection<? extends AnnotationMirror> qualifiers2) {
+    QualifierEncoding encoding = this.encoding;
+    if (encoding == null) {
+      return QualifierHierarchy.super.greatestLowerBounds(qualifiers1, qualifiers2);
+    }
+    if (qualifiers1.isEmpty()) {
+      throw new BugInCF(
+          "NoElementQualifierHierarchy.greatestLowerBounds: tried to determine GLB with empty"
+              + " sets");
+    }
+    return combine(encoding, encoding.glbs, qualifiers1, qualifiers2);
+  }
+
+  /**
+   * Combines the qualifiers of each hierarchy in {@code qualifiers1} and {@code qualifiers2} using
+   * {@code table}, which is {@code encoding.lubs} or {@code encoding.glbs}.
+   *
+   * @param encoding the encoding of the qualifiers of this
+   * @param table the table that maps the indices of two qualifiers to the index of their
+   *     combination
+   * @param qualifiers1 set of qualifiers; exactly one per hierarchy
+   * @param qualifiers2 set of qualifiers; exactly one per hierarchy
+   * @return the set of the combinations of the qualifiers of each hierarchy
+   */
+  private Set<AnnotationMirror> combine(
+      QualifierEncoding encoding,
+      int[][] table,
+      Collection<? extends AnnotationMirror> qualifiers1,
+      Collection<? extends AnnotationMirror> qualifiers2) {
+    QualifierHierarchy.assertSameSize(qualifiers1, qualifiers2);
+    long set2 = encoding.encode(qualifiers2);
+    Set<AnnotationMirror> result = AnnotationUtils.createAnnotationSet();
+    for (AnnotationMirror a1 : qualifiers1) {
+      int index1 = encoding.getIndex(a1);
+      long qual2 = set2 & encoding.hierarchyMasks[index1];
+      if (qual2 != 0) {
+        AnnotationMirror combined =
+            encoding.getAnnotationMirror(table[index1][Long.numberOfTrailingZeros(qual2)]);
+        if (combined != null) {
+          result.add(combined);
+        }
+      }
+    }
+    QualifierHierarchy.assertSameSize(qualifiers1, qualifiers2, result);
+    return result;
+  }
+
+  /**
+   * An encoding of the qualifiers of a hierarchy as the integers 0 to 63, together with tables of
+   * the subtype relationship, least upper bounds, and greatest lower bounds of the qualifiers. A
+   * set of qualifiers is encoded as a {@code long} whose bit {@code i} is set if the set contains
+   * the qualifier whose index is {@code i}.
+   */
+  private static final class QualifierEncoding {
+
+    /** Maps the name of each qualifier to its index. */
+    private final Map<String, Integer> nameToIndex;
+
+    /** The annotation mirror of each qualifier, by index. */
+    private final AnnotationMirror[] annotationMirrors;
+
+    /**
+     * Bit {@code j} of {@code superMasks[i]} is set iff qualifier {@code i} is a subtype of or
+     * equal to qualifier {@code j}.
+     */
+    final long[] superMasks;
+
+    /**
+     * Bit {@code j} of {@code hierarchyMasks[i]} is set iff qualifiers {@code i} and {@code j} are
+     * in the same hierarchy.
+     */
+    final long[] hierarchyMasks;
+
+    /**
+     * The index of the least upper bound of qualifiers {@code i} and {@code j} is {@code
+     * lubs[i][j]}, which is -1 if they are not in the same hierarchy.
+     */
+    final int[][] lubs;
+
+    /**
+     * The index of the greatest lower bound of qualifiers {@code i} and {@code j} is {@code
+     * glbs[i][j]}, which is -1 if they are not in the same hierarchy.
+     */
+    final int[][] glbs;
+
+    /**
+     * Encodes the qualifiers of {@code qualifierKindHierarchy}, which has at most 64 qualifiers.
+     *
+     * @param qualifierKindHierarchy the qualifier kind hierarchy
+     * @param kindToAnnotationMirror mapping from each qualifier kind to its annotation mirror
+     */
+    QualifierEncoding(
+        QualifierKindHierarchy qualifierKindHierarchy,
+        Map<QualifierKind, AnnotationMirror> kindToAnnotationMirror) {
+      List<? extends QualifierKind> kinds = qualifierKindHierarchy.allQualifierKinds();
+      int size = kinds.size();
+      nameToIndex = new HashMap<>();
+      annotationMirrors = new AnnotationMirror[size];
+      for (int i = 0; i < size; i++) {
+        QualifierKind kind = kinds.get(i);
+        nameToIndex.put(kind.getName(), i);
+        @SuppressWarnings("nullness:assignment.type.incompatible" // All QualifierKinds are keys in
+        // kindToAnnotationMirror
+        )
+        @NonNull AnnotationMirror anno = kindToAnnotationMirror.get(kind);
+        annotationMirrors[i] = anno;
+      }
+
+      superMasks = new long[size];
+      hierarchyMasks = new long[size];
+      lubs = new int[size][size];
+      glbs = new int[size][size];
+      for (int i = 0; i < size; i++) {
+        QualifierKind kind1 = kinds.get(i);
+        for (int j = 0; j < size; j++) {
+          QualifierKind kind2 = kinds.get(j);
+          if (kind1.isSubtypeOf(kind2)) {
+            superMasks[i] |= 1L << j;
+          }
+          if (kind1.isInSameHierarchyAs(kind2)) {
+            hierarchyMasks[i] |= 1L << j;
+          }
+          QualifierKind lub = qualifierKindHierarchy.leastUpperBound(kind1, kind2);
+          lubs[i][j] = lub == null ? -1 : kinds.indexOf(lub);
+          QualifierKind glb = qualifierKindHierarchy.greatestLowerBound(kind1, kind2);
+          glbs[i][j] = glb == null ? -1 : kinds.indexOf(glb);
+        }
+      }
+    }
+
+    /**
+     * Returns the index of the given qualifier.
+     *
+     * @param anno an annotation that is a qualifier in this
+     * @return the index of {@code anno}
+     */
+    int getIndex(AnnotationMirror anno) {
+      Integer index = nameToIndex.get(AnnotationUtils.annotationName(anno));
+      if (index == null) {
+        throw new BugInCF("Annotation not in hierarchy: %s", anno);
+      }
+      return index;
+    }
+
+    /**
+     * Returns the qualifier whose index is {@code index}, or null if {@code index} is -1.
+     *
+     * @param index the index of a qualifier, or -1
+     * @return the qualifier whose index is {@code index}, or null if {@code index} is -1
+     */
+    @Nullable AnnotationMirror getAnnotationMirror(int index) {
+      return index == -1 ? null : annotationMirrors[index];
+    }
+
+    /**
+     * Returns true if the qualifier with index {@code subIndex} is a subtype of or equal to the
+     * qualifier with index {@code superIndex}.
+     *
+     * @param subIndex the index of the possible subtype
+     * @param superIndex the index of the possible supertype
+     * @return true if the first qualifier is a subtype of or equal to the second
+     */
+    boolean isSubtype(int subIndex, int superIndex) {
+      return (superMasks[subIndex] & (1L << superIndex)) != 0;
+    }
+
+    /**
+     * Returns the bit set that encodes {@code annos}.
+     *
+     * @param annos qualifiers in this
+     * @return the bit set that encodes {@code annos}
+     */
+    long encode(Collection<? extends AnnotationMirror> annos) {
+      long result = 0;
+      for (AnnotationMirror anno : annos) {
+        result |= 1L << getIndex(anno);
+      }
+      return result;
+    }
+  }
 }
@@ -0,0 +1,815 @@
+package org.checkerframework.framework.type;
+
+import com.sun.tools.javac.code.Symbol.ClassSymbol;
+import com.sun.tools.javac.processing.JavacProcessingEnvironment;
+import com.sun.tools.javac.util.Context;
+import com.sun.tools.javac.util.Options;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.stream.Stream;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.Elements;
+import javax.tools.Diagnostic.Kind;
+import javax.tools.JavaFileObject;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.checkerframework.framework.qual.StubFiles;
+import org.checkerframework.framework.source.SourceChecker;
+import org.checkerframework.framework.type.visitor.AnnotatedTypeScanner;
+import org.checkerframework.javacutil.AnnotationBuilder;
+import org.checkerframework.javacutil.AnnotationUtils;
+import org.checkerframework.javacutil.BugInCF;
+import org.checkerframework.javacutil.ElementUtils;
+import org.checkerframework.javacutil.SystemUtil;
+
+/**
+ * A cache, persisted on disk between javac invocations, of the annotated types of elements that are
+ * read from bytecode. It is used by {@link AnnotatedTypeFactory#fromElement(Element)} when the
+ * {@code -AelementTypeCacheDir} command-line option is supplied, and avoids re-parsing annotated
+ * JDK files and re-applying stub and bytecode annotations in every compilation.
+ *
+ * <p>The cache file is keyed by a hash of everything the cached types depend on: the checker and
+ * type factory classes, the jar or directory they were loaded from (which contains the bundled
+ * stub files and annotated JDK), the checker's command-line options, the stub files supplied by
+ * the user, the JDK, and the classpath. A change to any of these selects a different cache file.
+ * Classpath and stub files are fingerprinted by their contents, not by their size and modification
+ * time, which a build may preserve while changing an annotation. A jar file is fingerprinted by its
+ * central directory, which records the CRC-32 checksum of every entry, so that computing the key
+ * does not read whole jar files. Other directories, such as a directory of stub files, are
+ * fingerprinted by the names, sizes, and modification times of their files. Fingerprints are
+ * computed once per compilation and shared by all the checkers (including subcheckers) that run in
+ * it.
+ *
+ * <p>A classpath directory, such as the output directory of an earlier build step, is identified
+ * only by its path, because its contents change on every build. Instead, each entry for an element
+ * of a class in such a directory records the modification time of the class file, and is not used
+ * if the class file has changed since.
+ *
+ * <p>For each element, the cache stores the primary annotations of every component of its type, in
+ * the order an {@link AnnotatedTypeScanner} visits them. On a lookup, the un-annotated type of the
+ * element is created and the annotations are re-applied. Types whose structure does not match the
+ * cached entry, and types that contain annotations with element values, are not cached.
+ *
+ * <p>The cache file is read into memory when it is loaded; entries are decoded only when looked up.
+ * It is not memory-mapped, because {@link #save()} replaces it while it is loaded. New entries are
+ * written, together with the previously-cached ones, by {@link #save()}.
+ */
+public class PersistentElementTypeCache {
+
+  /** The first four bytes of a cache file. */
+  private static final int MAGIC = 0x43464554;
+
+  /** The version of the cache file format. Increment when the format changes. */
+  private static final int FORMAT_VERSION = 2;
+
+  /** The javac options whose values are paths that affect the types of elements from bytecode. */
+  private static final String[] PATH_OPTIONS = {
+    "-classpath",
+    "-cp",
+    "--class-path",
+    "-bootclasspath",
+    "--boot-class-path",
+    "-Xbootclasspath/p:",
+    "-Xbootclasspath/a:",
+    "--module-path",
+    "-p",
+    "--system"
+  };
+
+  /** The type factory whose element types are cached. */
+  private final AnnotatedTypeFactory atypeFactory;
+
+  /** The element utilities. */
+  private final Elements elements;
+
+  /** The cache file for the current configuration. */
+  private final Path cacheFile;
+
+  /** True if the cache file has been read (or there was none to read). */
+  private boolean loaded = false;
+
+  /** The contents of the cache file, or null if it has not been read or does not exist. */
+  private @Nullable ByteBuffer buffer;
+
+  /** The string table of the cache file. */
+  private String[] strings = new String[0];
+
+  /** Maps an element key to the offset of its entry in {@link #buffer}. */
+  private final Map<String, Integer> fileEntries = new HashMap<>();
+
+  /** Entries computed during this compilation that are not in the cache file. */
+  private final Map<String, CachedType> newEntries = new LinkedHashMap<>();
+
+  /** Decoded annotations, keyed by annotation name. */
+  private final Map<String, @Nullable AnnotationMirror> annotationsByName = new HashMap<>();
+
+  /** The number of lookups that found a usable entry. */
+  private int hitCount = 0;
+
+  /** The number of lookups that did not find an entry. */
+  private int missCount = 0;
+
+  /** The number of entries that were found but did not match the structure of the type. */
+  private int mismatchCount = 0;
+
+  /**
+   * The fingerprints computed by {@link #fingerprint}, for each compilation. A compilation is
+   * identified by its javac context, so that all the checkers in a compilation share the
+   * fingerprints, but a long-running process such as a compiler daemon recomputes them for each
+   * compilation.
+   */
+  private static final Map<Context, Map<String, String>> fingerprintsByCompilation =
+      new WeakHashMap<>();
+
+  /**
+   * The annotations on the components of a type, in the order {@link #collectComponents} returns
+   * them.
+   */
+  private static class CachedType {
+    /** The {@link #classFileStamp} of the element when the entry was created. */
+    final long stamp;
+
+    /** The {@link javax.lang.model.type.TypeKind} ordinal of each component. */
+    final byte[] kinds;
+
+    /** The names of the primary annotations on each component. */
+    final String[][] annotations;
+
+    /**
+     * Creates a new CachedType.
+     *
+     * @param stamp the {@link #classFileStamp} of the element
+     * @param kinds the TypeKind ordinal of each component
+     * @param annotations the names of the primary annotations on each component
+     */
+    CachedType(long stamp, byte[] kinds, String[][] annotations) {
+      this.stamp = stamp;
+      this.kinds = kinds;
+      this.annotations = annotations;
+    }
+  }
+
+  /**
+   * Creates a cache for the given type factory that is stored in the given directory.
+   *
+   * @param atypeFactory the type factory whose element types are cached
+   * @param cacheDir the directory in which to store cache files
+   */
+  public PersistentElementTypeCache(AnnotatedTypeFactory atypeFactory, String cacheDir) {
+    this.atypeFactory = atypeFactory;
+    this.elements = atypeFactory.getElementUtils();
+    SourceChecker checker = atypeFactory.getChecker();
+    this.cacheFile =
+        Paths.get(
+            cacheDir,
+            checker.getClass().getSimpleName()
+                + "-"
+                + computeConfigurationKey(atypeFactory, FORMAT_VERSION)
+                + ".cache");
+  }
+
+  /**
+   * Returns true if the annotated type of {@code elt} may be stored in this cache.
+   *
+   * @param elt an element
+   * @return true if the annotated type of {@code elt} may be stored in this cache
+   */
+  public static boolean isCacheable(Element elt) {
+    switch (elt.getKind()) {
+      case CLASS:
+      case INTERFACE:
+      case ENUM:
+      case ANNOTATION_TYPE:
+      case METHOD:
+      case CONSTRUCTOR:
+      case FIELD:
+      case ENUM_CONSTANT:
+        return ElementUtils.isElementFromByteCode(elt);
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * Returns the cached annotated type of {@code elt}, or null if it is not in the cache.
+   *
+   * @param elt an element for which {@link #isCacheable} returns true
+   * @return the cached annotated type of {@code elt}, or null
+   */
+  public @Nullable AnnotatedTypeMirror get(Element elt) {
+    String key = elementKey(elt);
+    CachedType cached = newEntries.get(key);
+    if (cached == null) {
+      load();
+      Integer offset = fileEntries.get(key);
+      if (offset != null) {
+        cached = decode(offset);
+        if (cached.stamp != classFileStamp(elt)) {
+          // The class file has changed; let put() replace the entry.
+          fileEntries.remove(key);
+          cached = null;
+        }
+      }
+    }
+    if (cached == null) {
+      missCount++;
+      return null;
+    }
+    AnnotatedTypeMirror type =
+        AnnotatedTypeMirror.createType(
+            elt.asType(), atypeFactory, ElementUtils.isTypeDeclaration(elt));
+    List<AnnotatedTypeMirror> components = collectComponents(type);
+    if (!apply(cached, components)) {
+      mismatchCount++;
+      return null;
+    }
+    hitCount++;
+    return type;
+  }
+
+  /**
+   * Records the annotated type of {@code elt}. Does nothing if {@code type} cannot be represented
+   * in the cache.
+   *
+   * @param elt an element for which {@link #isCacheable} returns true
+   * @param type the annotated type of {@code elt}
+   */
+  public void put(Element elt, AnnotatedTypeMirror type) {
+    String key = elementKey(elt);
+    if (newEntries.containsKey(key)) {
+      return;
+    }
+    load();
+    if (fileEntries.containsKey(key)) {
+      return;
+    }
+    List<AnnotatedTypeMirror> components = collectComponents(type);
+    byte[] kinds = new byte[components.size()];
+    String[][] annotations = new String[components.size()][];
+    for (int i = 0; i < components.size(); i++) {
+      AnnotatedTypeMirror component = components.get(i);
+      kinds[i] = (byte) component.getKind().ordinal();
+      Set<AnnotationMirror> annos = component.getAnnotations();
+      annotations[i] = new String[annos.size()];
+      int j = 0;
+      for (AnnotationMirror anno : annos) {
+        if (!anno.getElementValues().isEmpty()) {
+          return;
+        }
+        annotations[i][j++] = AnnotationUtils.annotationName(anno);
+      }
+    }
+    newEntries.put(key, new CachedType(classFileStamp(elt), kinds, annotations));
+  }
+
+  /**
+   * Writes the cache file, if any new entries were added during this compilation. The file is
+   * written to a temporary file and then renamed, so concurrent compilations never read a partially
+   * written cache file.
+   */
+  public void save() {
+    if (newEntries.isEmpty()) {
+      return;
+    }
+    load();
+    Map<String, CachedType> allEntries = new LinkedHashMap<>();
+    for (Map.Entry<String, Integer> entry : fileEntries.entrySet()) {
+      allEntries.put(entry.getKey(), decode(entry.getValue()));
+    }
+    allEntries.putAll(newEntries);
+
+    Map<String, Integer> stringTable = new LinkedHashMap<>();
+    for (Map.Entry<String, CachedType> entry : allEntries.entrySet()) {
+      stringTable.putIfAbsent(entry.getKey(), stringTable.size());
+      for (String[] annos : entry.getValue().annotations) {
+        for (String anno : annos) {
+          stringTable.putIfAbsent(anno, stringTable.size());
+        }
+      }
+    }
+
+    try {
+      Files.createDirectories(cacheFile.getParent());
+      Path tmpFile = Files.createTempFile(cacheFile.getParent(), "elementTypes", ".tmp");
+      try (OutputStream os = Files.newOutputStream(tmpFile);
+          DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os))) {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(stringTable.size());
+        for (String s : stringTable.keySet()) {
+          byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+          out.writeInt(bytes.length);
+          out.write(bytes);
+        }
+        out.writeInt(allEntries.size());
+        for (Map.Entry<String, CachedType> entry : allEntries.entrySet()) {
+          CachedType cached = entry.getValue();
+          out.writeInt(stringTable.get(entry.getKey()));
+          out.writeLong(cached.stamp);
+          out.writeInt(cached.kinds.length);
+          for (int i = 0; i < cached.kinds.length; i++) {
+            out.writeByte(cached.kinds[i]);
+            out.writeByte(cached.annotations[i].length);
+            for (String anno : cached.annotations[i]) {
+              out.writeInt(stringTable.get(anno));
+            }
+          }
+        }
+      }
+      Files.move(
+          tmpFile, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      atypeFactory
+          .getChecker()
+          .message(Kind.WARNING, "Could not write element type cache %s: %s", cacheFile, e);
+    }
+  }
+
+  /**
+   * Returns a one-line summary of the hit, miss, and mismatch counts of this cache.
+   *
+   * @return a one-line summary of the statistics of this cache
+   */
+  public String getStatistics() {
+    return String.format(
+        "persistentElementTypeCache: %d hits, %d misses, %d mismatches, %d entries read from %s,"
+            + " %d new entries",
+        hitCount, missCount, mismatchCount, fileEntries.size(), cacheFile, newEntries.size());
+  }
+
+  /**
+   * Reads and indexes the cache file, if it exists and has not been read yet. A corrupt or
+   * outdated cache file is ignored.
+   */
+  private void load() {
+    if (loaded) {
+      return;
+    }
+    loaded = true;
+    if (!Files.isRegularFile(cacheFile)) {
+      return;
+    }
+    try {
+      ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(cacheFile));
+      if (buf.getInt() != MAGIC || buf.getInt() != FORMAT_VERSION) {
+        return;
+      }
+      String[] stringTable = new String[buf.getInt()];
+      for (int i = 0; i < stringTable.length; i++) {
+        byte[] bytes = new byte[buf.getInt()];
+        buf.get(bytes);
+        stringTable[i] = new String(bytes, StandardCharsets.UTF_8);
+      }
+      int entryCount = buf.getInt();
+      Map<String, Integer> index = new HashMap<>(entryCount * 2);
+      for (int i = 0; i < entryCount; i++) {
+        String key = stringTable[buf.getInt()];
+        index.put(key, buf.position());
+        buf.getLong();
+        int componentCount = buf.getInt();
+        for (int j = 0; j < componentCount; j++) {
+          buf.get();
+          int annoCount = buf.get();
+          buf.position(buf.position() + annoCount * Integer.BYTES);
+        }
+      }
+      this.strings = stringTable;
+      this.fileEntries.putAll(index);
+      this.buffer = buf;
+    } catch (IOException | RuntimeException e) {
+      // A truncated or otherwise unreadable cache file is equivalent to no cache file.
+      fileEntries.clear();
+      atypeFactory
+          .getChecker()
+          .message(Kind.NOTE, "Ignoring unreadable element type cache %s: %s", cacheFile, e);
+    }
+  }
+
+  /**
+   * Decodes the entry at {@code offset} in {@link #buffer}.
+   *
+   * @param offset the offset of an entry in {@link #buffer}
+   * @return the decoded entry
+   */
+  private CachedType decode(int offset) {
+    ByteBuffer buf = buffer.duplicate();
+    buf.position(offset);
+    long stamp = buf.getLong();
+    int componentCount = buf.getInt();
+    byte[] kinds = new byte[componentCount];
+    String[][] annotations = new String[componentCount][];
+    for (int i = 0; i < componentCount; i++) {
+      kinds[i] = buf.get();
+      annotations[i] = new String[buf.get()];
+      for (int j = 0; j < annotations[i].length; j++) {
+        annotations[i][j] = strings[buf.getInt()];
+      }
+    }
+    return new CachedType(stamp, kinds, annotations);
+  }
+
+  /**
+   * Replaces the primary annotations of {@code components} by those in {@code cached}.
+   *
+   * @param cached a cached entry
+   * @param components the components of an un-annotated type, as returned by {@link
+   *     #collectComponents}
+   * @return false if {@code cached} does not match the structure of {@code components} or an
+   *     annotation could not be found, in which case {@code components} may have been partially
+   *     modified
+   */
+  private boolean apply(CachedType cached, List<AnnotatedTypeMirror> components) {
+    if (cached.kinds.length != components.size()) {
+      return false;
+    }
+    // A type variable or wildcard that occurs more than once is the same object; only annotate it
+    // the first time, because annotating it also annotates its bounds.
+    Map<AnnotatedTypeMirror, Boolean> applied = new IdentityHashMap<>();
+    for (int i = 0; i < cached.kinds.length; i++) {
+      AnnotatedTypeMirror component = components.get(i);
+      if (cached.kinds[i] != (byte) component.getKind().ordinal()) {
+        return false;
+      }
+      if (applied.put(component, Boolean.TRUE) != null) {
+        continue;
+      }
+      component.clearAnnotations();
+      for (String name : cached.annotations[i]) {
+        AnnotationMirror anno =
+            annotationsByName.computeIfAbsent(name, n -> AnnotationBuilder.fromName(elements, n));
+        if (anno == null) {
+          return false;
+        }
+        component.addAnnotation(anno);
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the components of {@code type}, in the order they are visited by an {@link
+   * AnnotatedTypeScanner}. A component that is visited more than once appears more than once.
+   *
+   * @param type an annotated type
+   * @return the components of {@code type}
+   */
+  private static List<AnnotatedTypeMirror> collectComponents(AnnotatedTypeMirror type) {
+    List<AnnotatedTypeMirror> result = new ArrayList<>();
+    new AnnotatedTypeScanner<Void, List<AnnotatedTypeMirror>>() {
+      @Override
+      protected Void scan(AnnotatedTypeMirror type, List<AnnotatedTypeMirror> components) {
+        components.add(type);
+        return super.scan(type, components);
+      }
+    }.visit(type, result);
+    return result;
+  }
+
+  /**
+   * Returns a string that uniquely identifies {@code elt} across compilations.
+   *
+   * @param elt an element for which {@link #isCacheable} returns true
+   * @return a string that uniquely identifies {@code elt}
+   */
+  private static String elementKey(Element elt) {
+    if (elt instanceof TypeElement) {
+      return ElementUtils.getBinaryName((TypeElement) elt);
+    }
+    TypeElement enclosing = ElementUtils.enclosingTypeElement(elt);
+    return ElementUtils.getBinaryName(enclosing) + "#" + elt;
+  }
+
+  /**
+   * Returns the modification time of the class file that declares {@code elt}, if it is in a
+   * directory, or 0 if it is in a jar file or the JDK. Jar files and the JDK are part of the
+   * configuration key, but classpath directories are not.
+   *
+   * @param elt an element for which {@link #isCacheable} returns true
+   * @return the modification time of the class file of {@code elt}, or 0
+   */
+  private static long classFileStamp(Element elt) {
+    TypeElement typeElt =
+        elt instanceof TypeElement ? (TypeElement) elt : ElementUtils.enclosingTypeElement(elt);
+    JavaFileObject classfile = ((ClassSymbol) typeElt).classfile;
+    if (classfile == null || !"file".equals(classfile.toUri().getScheme())) {
+      return 0;
+    }
+    return classfile.getLastModified();
+  }
+
+  /**
+   * Computes a hash of the configuration that the results of a checker depend on, apart from the
+   * source code being checked: the checker and type factory, the Checker Framework build, the
+   * command-line options, the stub files, the JDK, and the classpath.
+   *
+   * @param atypeFactory the type factory
+   * @param formatVersion the version of the format of the file that the key names
+   * @return a hexadecimal hash of the configuration
+   */
+  static String computeConfigurationKey(AnnotatedTypeFactory atypeFactory, int formatVersion) {
+    SourceChecker checker = atypeFactory.getChecker();
+    ProcessingEnvironment env = atypeFactory.getProcessingEnv();
+    Context context = ((JavacProcessingEnvironment) env).getContext();
+    Map<String, String> fingerprints;
+    synchronized (fingerprintsByCompilation) {
+      fingerprints =
+          fingerprintsByCompilation.computeIfAbsent(
+              context, c -> Collections.synchronizedMap(new HashMap<>()));
+    }
+    StringBuilder sb = new StringBuilder();
+    sb.append(formatVersion).append('\n');
+    sb.append(checker.getClass().getName()).append('\n');
+    sb.append(atypeFactory.getClass().getName()).append('\n');
+    sb.append(fingerprint(fingerprints, codeSourcePath(checker.getClass()))).append('\n');
+    sb.append(fingerprint(fingerprints, codeSourcePath(AnnotatedTypeFactory.class))).append('\n');
+    sb.append(getGitCommit(checker)).append('\n');
+
+    // The checker's options.  TreeMap makes the order deterministic.
+    for (Map.Entry<String, String> option : new TreeMap<>(env.getOptions()).entrySet()) {
+      sb.append("-A").append(option.getKey()).append('=').append(option.getValue()).append('\n');
+    }
+
+    // Stub files supplied by the user.
+    List<String> stubs = new ArrayList<>();
+    StubFiles stubFilesAnnotation = checker.getClass().getAnnotation(StubFiles.class);
+    if (stubFilesAnnotation != null) {
+      Collections.addAll(stubs, stubFilesAnnotation.value());
+    }
+    String[] stubPaths = {
+      System.getProperty("stubs"), System.getenv("stubs"), checker.getOption("stubs")
+    };
+    for (String stubPath : stubPaths) {
+      if (stubPath != null) {
+        Collections.addAll(stubs, stubPath.split(File.pathSeparator));
+      }
+    }
+    for (String stub : stubs) {
+      sb.append(fingerprint(fingerprints, stub)).append('\n');
+    }
+
+    // The JDK and the classpath.
+    sb.append(System.getProperty("java.home")).append('\n');
+    sb.append(System.getProperty("java.version")).append('\n');
+    sb.append(SystemUtil.getReleaseValue(env)).append('\n');
+    for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+      sb.append(classpathFingerprint(fingerprints, entry)).append('\n');
+    }
+    Options options = Options.instance(context);
+    // Option names differ between JDK 8 and later JDKs, so look up all of them.
+    for (String optionName : PATH_OPTIONS) {
+      String path = options.get(optionName);
+      if (path != null) {
+        for (String entry : path.split(File.pathSeparator)) {
+          sb.append(classpathFingerprint(fingerprints, entry)).append('\n');
+        }
+      }
+    }
+
+    return hash(sb.toString());
+  }
+
+  /**
+   * Returns a hexadecimal string of the first 128 bits of the SHA-256 hash of {@code s}.
+   *
+   * @param s a string
+   * @return a hexadecimal hash of {@code s}
+   */
+  static String hash(String s) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      return toHex(digest.digest(s.getBytes(StandardCharsets.UTF_8)));
+    } catch (NoSuchAlgorithmException e) {
+      throw new BugInCF("SHA-256 is not available", e);
+    }
+  }
+
+  /**
+   * Returns a hexadecimal string of the first 128 bits of {@code hash}.
+   *
+   * @param hash a SHA-256 hash
+   * @return a hexadecimal string of the first 128 bits of {@code hash}
+   */
+  private static String toHex(byte[] hash) {
+    StringBuilder hex = new StringBuilder();
+    for (int i = 0; i < 16; i++) {
+      hex.append(String.format("%02x", hash[i]));
+    }
+    return hex.toString();
+  }
+
+  /**
+   * Returns the fingerprint of a classpath entry: the same as {@link #fingerprint}, except that a
+   * directory is identified only by its path. Entries for classes in a classpath directory are
+   * validated by {@link #classFileStamp} instead.
+   *
+   * @param fingerprints the fingerprints already computed in this compilation
+   * @param entry a classpath entry; may not exist
+   * @return a fingerprint of the classpath entry
+   */
+  private static String classpathFingerprint(Map<String, String> fingerprints, String entry) {
+    if (new File(entry).isDirectory()) {
+      return entry + ":directory";
+    }
+    return fingerprint(fingerprints, entry);
+  }
+
+  /**
+   * Returns a string that changes whenever the file or directory at {@code path} changes: for a jar
+   * file, a hash of its central directory; for another file, a hash of its contents; and for a
+   * directory, a hash of the names, sizes, and modification times of the files in it. The result is
+   * computed once per compilation.
+   *
+   * @param fingerprints the fingerprints already computed in this compilation
+   * @param path a path to a file or directory; may not exist
+   * @return a fingerprint of the file or directory
+   */
+  private static String fingerprint(Map<String, String> fingerprints, @Nullable String path) {
+    if (path == null) {
+      return "null";
+    }
+    return fingerprints.computeIfAbsent(path, PersistentElementTypeCache::computeFingerprint);
+  }
+
+  /**
+   * Computes the fingerprint of the file or directory at {@code path}, as described in {@link
+   * #fingerprint}.
+   *
+   * @param path a path to a file or directory; may not exist
+   * @return a fingerprint of the file or directory
+   */
+  private static String computeFingerprint(String path) {
+    File file = new File(path);
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      if (file.isFile()) {
+        digest.update(readFingerprintedContents(file.toPath()));
+      } else if (file.isDirectory()) {
+        Path dir = file.toPath();
+        try (Stream<Path> walk = Files.walk(dir)) {
+          for (Path p : (Iterable<Path>) walk.sorted()::iterator) {
+            digest.update(dir.relativize(p).toString().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            if (Files.isRegularFile(p)) {
+              String stamp = Files.size(p) + ":" + Files.getLastModifiedTime(p).toMillis();
+              digest.update(stamp.getBytes(StandardCharsets.UTF_8));
+            }
+          }
+        }
+      } else {
+        return path + ":missing";
+      }
+      return path + ":" + toHex(digest.digest());
+    } catch (IOException e) {
+      return path + ":unreadable";
+    } catch (NoSuchAlgorithmException e) {
+      throw new BugInCF("SHA-256 is not available", e);
+    }
+  }
+
+  /**
+   * Returns the part of a file that {@link #computeFingerprint} hashes: the central directory of a jar or
+   * zip file, or the whole contents of any other file, including a jar file whose central directory
+   * cannot be found.
+   *
+   * @param file a file
+   * @return the bytes of {@code file} that determine its fingerprint
+   * @throws IOException if the file cannot be read
+   */
+  private static byte[] readFingerprintedContents(Path file) throws IOException {
+    String name = file.getFileName().toString();
+    if (name.endsWith(".jar") || name.endsWith(".zip")) {
+      byte[] centralDirectory = readCentralDirectory(file);
+      if (centralDirectory != null) {
+        return centralDirectory;
+      }
+    }
+    return Files.readAllBytes(file);
+  }
+
+  /** The signature of the end of central directory record of a zip file. */
+  private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+
+  /** The size of the end of central directory record of a zip file, without its comment. */
+  private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+
+  /**
+   * Returns the central directory of a zip file, which holds the name, size, and CRC-32 checksum of
+   * every entry, or null if it cannot be found, for example because the file is not a zip file or
+   * is in the zip64 format.
+   *
+   * @param zipFile a file
+   * @return the central directory of {@code zipFile}, or null
+   * @throws IOException if the file cannot be read
+   */
+  private static byte @Nullable [] readCentralDirectory(Path zipFile) throws IOException {
+    try (FileChannel channel = FileChannel.open(zipFile, StandardOpenOption.READ)) {
+      long size = channel.size();
+      // The end of central directory record is followed by a comment of at most 0xFFFF bytes.
+      int tailLength = (int) Math.min(size, END_OF_CENTRAL_DIRECTORY_SIZE + 0xFFFF);
+      long tailStart = size - tailLength;
+      ByteBuffer tail = ByteBuffer.allocate(tailLength).order(ByteOrder.LITTLE_ENDIAN);
+      readFully(channel, tail, tailStart);
+      for (int i = tailLength - END_OF_CENTRAL_DIRECTORY_SIZE; i >= 0; i--) {
+        if (tail.getInt(i) == END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+          long directorySize = tail.getInt(i + 12) & 0xFFFFFFFFL;
+          long directoryOffset = tail.getInt(i + 16) & 0xFFFFFFFFL;
+          if (directoryOffset + directorySize > tailStart + i) {
+            return null;
+          }
+          ByteBuffer directory = ByteBuffer.allocate((int) directorySize);
+          readFully(channel, directory, directoryOffset);
+          return directory.array();
+        }
+      }
+      return null;
+    }
+  }
+
+  /**
+   * Fills {@code buffer} with the bytes of {@code channel} starting at {@code position}.
+   *
+   * @param channel a file channel
+   * @param buffer the buffer to fill
+   * @param position the position in the file of the first byte to read
+   * @throws IOException if the file cannot be read or ends before the buffer is full
+   */
+  private static void readFully(FileChannel channel, ByteBuffer buffer, long position)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new IOException("Unexpected end of file");
+      }
+    }
+  }
+
+  /**
+   * Returns the path of the jar file or directory from which {@code cls} was loaded, or null if it
+   * cannot be determined.
+   *
+   * @param cls a class
+   * @return the path of the jar file or directory from which {@code cls} was loaded, or null
+   */
+  private static @Nullable String codeSourcePath(Class<?> cls) {
+    CodeSource codeSource = cls.getProtectionDomain().getCodeSource();
+    if (codeSource == null) {
+      return null;
+    }
+    URL location = codeSource.getLocation();
+    try {
+      return Paths.get(location.toURI()).toString();
+    } catch (URISyntaxException | IllegalArgumentException e) {
+      return location.toString();
+    }
+  }
+
+  /**
+   * Returns the commit from which the Checker Framework was built, or the empty string if it is not
+   * known.
+   *
+   * @param checker the checker
+   * @return the commit from which the Checker Framework was built, or the empty string
+   */
+  private static String getGitCommit(SourceChecker checker) {
+    try (InputStream in = checker.getClass().getResourceAsStream("/git.properties")) {
+      if (in == null) {
+        return "";
+      }
+      Properties gitProperties = new Properties();
+      gitProperties.load(in);
+      return gitProperties.getProperty("git.commit.id", "");
+    } catch (IOException e) {
+      return "";
+    }
+  }
+}
@@ -6,7 +6,6 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 import javax.lang.model.element.AnnotationMirror;
-import javax.lang.model.element.TypeElement;
 import javax.lang.model.type.DeclaredType;
 import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
@@ -106,7 +105,7 @@ public class QualifierUpperBounds {
     if (type.getKind() == TypeKind.DECLARED) {
       DeclaredType declaredType = (DeclaredType) type;
       bounds.addAll(
-          atypeFactory.fromElement((TypeElement) declaredType.asElement()).getAnnotations());
+          atypeFactory.fromElementUnmodifiable(declaredType.asElement()).getAnnotations());
       qname = TypesUtils.getQualifiedName(declaredType).toString();
     } else if (type.getKind().isPrimitive()) {
       qname = type.toString();
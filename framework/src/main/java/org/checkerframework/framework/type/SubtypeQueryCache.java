@@ -0,0 +1,196 @@
+package org.checkerframework.framework.type;
+
+import com.sun.tools.javac.code.Type.WildcardType;
+import java.util.ArrayList;
+import java.util.List;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.type.TypeKind;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedArrayType;
+import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedDeclaredType;
+import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedWildcardType;
+import org.checkerframework.javacutil.AnnotationBuilder;
+import org.checkerframework.javacutil.AnnotationUtils;
+import org.checkerframework.javacutil.WeightedCache;
+
+/**
+ * A bounded memo table of the results of subtype queries, shared by all queries of a {@link
+ * DefaultTypeHierarchy}. Unlike {@link SubtypeVisitHistory}, which breaks cycles within one query
+ * and is keyed by type identity, this table is keyed by the structure of the two types, so a
+ * query about a type such as {@code Map<String, List<@Nullable Foo>>} is answered without walking
+ * the types again even if they are different {@link AnnotatedTypeMirror} objects.
+ *
+ * <p>Only queries about <em>ground</em> types are memoized: types built from primitive, null,
+ * array, non-raw declared, and wildcard types. The result of such a query depends only on the
+ * types' structure, their annotations, and the hierarchy. Queries that involve type variables,
+ * intersection types, union types, or raw types are not memoized, because their result may depend
+ * on the state of an enclosing query.
+ *
+ * <p>A key is a list that describes the two types in preorder: for each type, its kind, its
+ * annotations, and for a declared type its element, its enclosing type, and its type arguments.
+ * For a wildcard, it also records how the wildcard was written ({@code ?}, {@code ? extends}, or
+ * {@code ? super}) and the type parameter it is an argument for, because defaulting depends on
+ * them: {@code ?} and {@code ? extends Object} have the same bounds before defaulting.
+ */
+public class SubtypeQueryCache {
+
+  /** Maps a description of a query to its result. */
+  private final WeightedCache<List<Object>, Boolean> cache;
+
+  /** The number of queries that could not be memoized because they involve non-ground types. */
+  private long unmemoizableCount = 0;
+
+  /**
+   * Creates a memo table.
+   *
+   * @param maxSize the maximum number of query results to keep
+   */
+  public SubtypeQueryCache(int maxSize) {
+    this.cache = new WeightedCache<>("subtypeQueryCache", maxSize);
+  }
+
+  /**
+   * Returns the key for the query whether {@code subtype <: supertype} in the hierarchy of {@code
+   * top}, or null if the query should not be memoized.
+   *
+   * @param subtype the expected subtype
+   * @param supertype the expected supertype
+   * @param top the top of the hierarchy
+   * @return the key for the query, or null if the query should not be memoized
+   */
+  public @Nullable List<Object> createKey(
+      AnnotatedTypeMirror subtype, AnnotatedTypeMirror supertype, AnnotationMirror top) {
+    List<Object> key = new ArrayList<>();
+    key.add(describe(top));
+    if (!appendType(subtype, key) || !appendType(supertype, key)) {
+      unmemoizableCount++;
+      return null;
+    }
+    return key;
+  }
+
+  /**
+   * Returns a description of {@code type} that is equal to the description of another type only if
+   * the two types are interchangeable, or null if {@code type} is not a ground type. Used to intern
+   * the types of elements; see {@link AnnotatedTypeFactory#fromElementUnmodifiable}. Like the keys
+   * of queries, the description distinguishes all element values of the types' annotations, even
+   * ones that print the same.
+   *
+   * @param type a type
+   * @return a description of {@code type}, or null if {@code type} is not a ground type
+   */
+  static @Nullable List<Object> describeGroundType(AnnotatedTypeMirror type) {
+    List<Object> key = new ArrayList<>();
+    return appendType(type, key) ? key : null;
+  }
+
+  /**
+   * Returns the memoized result of the query described by {@code key}, or null if there is none.
+   *
+   * @param key a key created by {@link #createKey}
+   * @return the memoized result of the query, or null
+   */
+  public @Nullable Boolean get(List<Object> key) {
+    return cache.get(key);
+  }
+
+  /**
+   * Memoizes the result of the query described by {@code key}.
+   *
+   * @param key a key created by {@link #createKey}
+   * @param isSubtype the result of the query
+   */
+  public void put(List<Object> key, boolean isSubtype) {
+    cache.put(key, isSubtype);
+  }
+
+  /**
+   * Returns the number of queries whose result was found in this table.
+   *
+   * @return the number of queries whose result was found in this table
+   */
+  public long getHitCount() {
+    return cache.getHitCount();
+  }
+
+  /**
+   * Returns a one-line summary of the hit, miss, and eviction counts of this table, and of the
+   * number of queries that could not be memoized.
+   *
+   * @return a summary of the use of this table
+   */
+  public String getStatistics() {
+    return cache.getStatistics() + ", " + unmemoizableCount + " queries not memoizable";
+  }
+
+  /**
+   * Appends a description of {@code type} to {@code key}.
+   *
+   * @param type a type
+   * @param key the key to which to append; is side-effected by this method
+   * @return false if {@code type} is not a ground type, in which case {@code key} must be
+   *     discarded
+   */
+  private static boolean appendType(AnnotatedTypeMirror type, List<Object> key) {
+    TypeKind kind = type.getKind();
+    key.add(kind);
+    key.add(type.getAnnotations().size());
+    for (AnnotationMirror anno : type.getAnnotations()) {
+      key.add(describe(anno));
+    }
+
+    if (kind.isPrimitive() || kind == TypeKind.NULL) {
+      return true;
+    }
+    switch (kind) {
+      case ARRAY:
+        return appendType(((AnnotatedArrayType) type).getComponentType(), key);
+      case DECLARED:
+        AnnotatedDeclaredType declaredType = (AnnotatedDeclaredType) type;
+        if (declaredType.wasRaw()) {
+          return false;
+        }
+        key.add(declaredType.getUnderlyingType().asElement());
+        key.add(declaredType.isDeclaration());
+        AnnotatedDeclaredType enclosingType = declaredType.getEnclosingType();
+        key.add(enclosingType != null);
+        if (enclosingType != null && !appendType(enclosingType, key)) {
+          return false;
+        }
+        List<AnnotatedTypeMirror> typeArgs = declaredType.getTypeArguments();
+        key.add(typeArgs.size());
+        for (AnnotatedTypeMirror typeArg : typeArgs) {
+          if (!appendType(typeArg, key)) {
+            return false;
+          }
+        }
+        return true;
+      case WILDCARD:
+        AnnotatedWildcardType wildcardType = (AnnotatedWildcardType) type;
+        key.add(wildcardType.isUninferredTypeArgument());
+        // QualifierDefaults#getWildcardBoundType reads these.
+        WildcardType wildcard = (WildcardType) wildcardType.getUnderlyingType();
+        key.add(wildcard.kind);
+        key.add(wildcard.bound == null ? null : wildcard.bound.asElement());
+        return appendType(wildcardType.getExtendsBound(), key)
+            && appendType(wildcardType.getSuperBound(), key);
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * Returns a description of {@code anno} that is equal to the description of another annotation
+   * only if the two annotations have the same name and element values. The description of an
+   * annotation with element values is its {@link AnnotationBuilder#internKey structure}, not its
+   * string representation, which does not distinguish all element values.
+   *
+   * @param anno an annotation
+   * @return a description of {@code anno}
+   */
+  private static Object describe(AnnotationMirror anno) {
+    return anno.getElementValues().isEmpty()
+        ? AnnotationUtils.annotationName(anno)
+        : AnnotationBuilder.internKey(anno);
+  }
+}
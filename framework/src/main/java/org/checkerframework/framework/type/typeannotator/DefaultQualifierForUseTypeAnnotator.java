@@ -83,7 +83,7 @@ public class DefaultQualifierForUseTypeAnnotator extends TypeAnnotator {
 
   /** Return the annotations explicitly written on the element. */
   protected Set<AnnotationMirror> getExplicitAnnos(Element element) {
-    AnnotatedTypeMirror explicitAnnoOnDecl = typeFactory.fromElement(element);
+    AnnotatedTypeMirror explicitAnnoOnDecl = typeFactory.fromElementUnmodifiable(element);
     return explicitAnnoOnDecl.getAnnotations();
   }
 
@@ -80,7 +80,7 @@ public class PropagationTypeAnnotator extends TypeAnnotator {
       // Copy annotations from the declaration to the wildcards.
       AnnotatedDeclaredType declaration =
           (AnnotatedDeclaredType)
-              typeFactory.fromElement(declaredType.getUnderlyingType().asElement());
+              typeFactory.fromElementUnmodifiable(declaredType.getUnderlyingType().asElement());
       List<AnnotatedTypeMirror> typeArgs = declaredType.getTypeArguments();
       for (int i = 0; i < typeArgs.size(); i++) {
         if (typeArgs.get(i).getKind() != TypeKind.WILDCARD
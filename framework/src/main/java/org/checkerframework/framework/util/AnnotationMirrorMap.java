@@ -1,10 +1,15 @@
 package org.checkerframework.framework.util;
 
-import java.util.Collection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.TreeMap;
 import javax.lang.model.element.AnnotationMirror;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.checkerframework.javacutil.AnnotationUtils;
 
 /**
@@ -20,16 +25,36 @@ import org.checkerframework.javacutil.AnnotationUtils;
  *
  * <p>AnnotationMirror is an interface and not all implementing classes provide a correct equals
  * method; therefore, existing implementations of Map cannot be used.
+ *
+ * <p>Like {@link AnnotationMirrorSet}, a map with at most {@link
+ * AnnotationMirrorSet#MAX_ARRAY_SIZE} entries is stored in sorted arrays, and a larger map is
+ * stored in a {@link TreeMap}.
  */
-public class AnnotationMirrorMap<V> implements Map<AnnotationMirror, V> {
+public class AnnotationMirrorMap<V> extends AbstractMap<AnnotationMirror, V> {
+
+  /** The shared key array of empty maps. */
+  private static final AnnotationMirror[] EMPTY_KEYS = new AnnotationMirror[0];
+
+  /** The shared value array of empty maps. */
+  private static final Object[] EMPTY_VALUES = new Object[0];
 
-  /** The actual map to which all work is delegated. */
-  private final Map<AnnotationMirror, V> shadowMap;
+  /**
+   * The keys of this, in sorted order, if {@link #shadowMap} is null. Only the first {@link #size}
+   * entries are used.
+   */
+  private AnnotationMirror[] keys = EMPTY_KEYS;
+
+  /** The value of the key at the same index of {@link #keys}. */
+  private @Nullable Object[] values = EMPTY_VALUES;
+
+  /** The number of entries in {@link #keys} and {@link #values}. */
+  private int size = 0;
+
+  /** The map to which all work is delegated, or null if the entries are stored in arrays. */
+  private @Nullable Map<AnnotationMirror, V> shadowMap = null;
 
   /** Default constructor. */
-  public AnnotationMirrorMap() {
-    this.shadowMap = new TreeMap<>(AnnotationUtils::compareAnnotationMirrors);
-  }
+  public AnnotationMirrorMap() {}
 
   /**
    * Creates an annotation mirror map and adds all the mappings in {@code copy}.
@@ -43,35 +68,63 @@ public class AnnotationMirrorMap<V> implements Map<AnnotationMirror, V> {
 
   @Override
   public int size() {
-    return shadowMap.size();
+    return shadowMap != null ? shadowMap.size() : size;
   }
 
   @Override
   public boolean isEmpty() {
-    return shadowMap.isEmpty();
+    return size() == 0;
+  }
+
+  /**
+   * Returns the index in {@link #keys} of the key that is the same as {@code key}, or -1.
+   *
+   * @param key an annotation
+   * @return the index of the key that is the same as {@code key}, or -1 if there is none
+   */
+  private int indexOf(AnnotationMirror key) {
+    for (int i = 0; i < size; i++) {
+      if (AnnotationUtils.areSame(keys[i], key)) {
+        return i;
+      }
+    }
+    return -1;
   }
 
   @Override
   public boolean containsKey(Object key) {
-    if (key instanceof AnnotationMirror) {
-      return AnnotationUtils.containsSame(shadowMap.keySet(), (AnnotationMirror) key);
-    } else {
+    if (!(key instanceof AnnotationMirror)) {
       return false;
     }
+    if (shadowMap != null) {
+      return AnnotationUtils.containsSame(shadowMap.keySet(), (AnnotationMirror) key);
+    }
+    return indexOf((AnnotationMirror) key) != -1;
   }
 
   @Override
   public boolean containsValue(Object value) {
-    return shadowMap.containsValue(value);
+    if (shadowMap != null) {
+      return shadowMap.containsValue(value);
+    }
+    return super.containsValue(value);
   }
 
   @Override
+  @SuppressWarnings("unchecked") // values[i] is a V
   public V get(Object key) {
     if (key instanceof AnnotationMirror) {
-      AnnotationMirror keyAnno =
-          AnnotationUtils.getSame(shadowMap.keySet(), (AnnotationMirror) key);
-      if (keyAnno != null) {
-        return shadowMap.get(keyAnno);
+      if (shadowMap != null) {
+        AnnotationMirror keyAnno =
+            AnnotationUtils.getSame(shadowMap.keySet(), (AnnotationMirror) key);
+        if (keyAnno != null) {
+          return shadowMap.get(keyAnno);
+        }
+      } else {
+        int index = indexOf((AnnotationMirror) key);
+        if (index != -1) {
+          return (V) values[index];
+        }
       }
     }
     return null;
@@ -81,22 +134,76 @@ public class AnnotationMirrorMap<V> implements Map<AnnotationMirror, V> {
   public V put(AnnotationMirror key, V value) {
     V pre = get(key);
     remove(key);
-    shadowMap.put(key, value);
+    if (shadowMap != null) {
+      shadowMap.put(key, value);
+      return pre;
+    }
+    if (size == AnnotationMirrorSet.MAX_ARRAY_SIZE) {
+      Map<AnnotationMirror, V> newMap = new TreeMap<>(AnnotationUtils::compareAnnotationMirrors);
+      for (int i = 0; i < size; i++) {
+        @SuppressWarnings("unchecked") // values[i] is a V
+        V v = (V) values[i];
+        newMap.put(keys[i], v);
+      }
+      newMap.put(key, value);
+      shadowMap = newMap;
+      keys = EMPTY_KEYS;
+      values = EMPTY_VALUES;
+      size = 0;
+      return pre;
+    }
+    int index = 0;
+    while (index < size && AnnotationUtils.compareAnnotationMirrors(keys[index], key) < 0) {
+      index++;
+    }
+    if (size == keys.length) {
+      int newLength = Math.max(1, Math.min(2 * size, AnnotationMirrorSet.MAX_ARRAY_SIZE));
+      keys = Arrays.copyOf(keys, newLength);
+      values = Arrays.copyOf(values, newLength);
+    }
+    System.arraycopy(keys, index, keys, index + 1, size - index);
+    System.arraycopy(values, index, values, index + 1, size - index);
+    keys[index] = key;
+    values[index] = value;
+    size++;
     return pre;
   }
 
   @Override
+  @SuppressWarnings("unchecked") // values[i] is a V
   public V remove(Object key) {
     if (key instanceof AnnotationMirror) {
-      AnnotationMirror keyAnno =
-          AnnotationUtils.getSame(shadowMap.keySet(), (AnnotationMirror) key);
-      if (keyAnno != null) {
-        return shadowMap.remove(keyAnno);
+      if (shadowMap != null) {
+        AnnotationMirror keyAnno =
+            AnnotationUtils.getSame(shadowMap.keySet(), (AnnotationMirror) key);
+        if (keyAnno != null) {
+          return shadowMap.remove(keyAnno);
+        }
+      } else {
+        int index = indexOf((AnnotationMirror) key);
+        if (index != -1) {
+          V pre = (V) values[index];
+          removeAt(index);
+          return pre;
+        }
       }
     }
     return null;
   }
 
+  /**
+   * Removes the entry at {@code index} of {@link #keys} and {@link #values}.
+   *
+   * @param index the index of the entry to remove
+   */
+  private void removeAt(int index) {
+    System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+    System.arraycopy(values, index + 1, values, index, size - index - 1);
+    size--;
+    keys[size] = null;
+    values[size] = null;
+  }
+
   @Override
   public void putAll(Map<? extends AnnotationMirror, ? extends V> m) {
     for (Map.Entry<? extends AnnotationMirror, ? extends V> entry : m.entrySet()) {
@@ -106,26 +213,150 @@ public class AnnotationMirrorMap<V> implements Map<AnnotationMirror, V> {
 
   @Override
   public void clear() {
-    shadowMap.clear();
+    shadowMap = null;
+    keys = EMPTY_KEYS;
+    values = EMPTY_VALUES;
+    size = 0;
   }
 
+  // AbstractMap#equals looks up the keys using get, that is, using AnnotationUtils#areSame.
+  // Annotations that are the same have the same name, so hash the names of the keys rather than
+  // the keys, whose hash codes are not consistent with areSame.
   @Override
-  public Set<AnnotationMirror> keySet() {
-    return new AnnotationMirrorSet(shadowMap.keySet());
+  public int hashCode() {
+    int result = 0;
+    for (Map.Entry<AnnotationMirror, V> entry : entrySet()) {
+      result += entryHashCode(entry.getKey(), entry.getValue());
+    }
+    return result;
+  }
+
+  /**
+   * Returns the hash code of an entry, which is consistent with {@link AnnotationUtils#areSame} on
+   * the key.
+   *
+   * @param key the key of the entry
+   * @param value the value of the entry
+   * @return the hash code of the entry
+   */
+  private static int entryHashCode(AnnotationMirror key, @Nullable Object value) {
+    return AnnotationUtils.annotationName(key).hashCode() ^ (value == null ? 0 : value.hashCode());
   }
 
   @Override
-  public Collection<V> values() {
-    return shadowMap.values();
+  public Set<AnnotationMirror> keySet() {
+    if (shadowMap != null) {
+      return new AnnotationMirrorSet(shadowMap.keySet());
+    }
+    return new AnnotationMirrorSet(Arrays.asList(keys).subList(0, size));
   }
 
   @Override
   public Set<Map.Entry<AnnotationMirror, V>> entrySet() {
-    return shadowMap.entrySet();
+    if (shadowMap != null) {
+      return shadowMap.entrySet();
+    }
+    return new ArrayEntrySet();
   }
 
-  @Override
-  public String toString() {
-    return shadowMap.toString();
+  /** A view of the entries of {@link #keys} and {@link #values}. */
+  private class ArrayEntrySet extends AbstractSet<Map.Entry<AnnotationMirror, V>> {
+
+    @Override
+    public int size() {
+      return AnnotationMirrorMap.this.size();
+    }
+
+    @Override
+    public Iterator<Map.Entry<AnnotationMirror, V>> iterator() {
+      return new Iterator<Map.Entry<AnnotationMirror, V>>() {
+
+        /** The index of the next entry to return. */
+        private int next = 0;
+
+        /** True if {@link #remove} may be called. */
+        private boolean canRemove = false;
+
+        @Override
+        public boolean hasNext() {
+          return next < size;
+        }
+
+        @Override
+        public Map.Entry<AnnotationMirror, V> next() {
+          if (next >= size) {
+            throw new NoSuchElementException();
+          }
+          canRemove = true;
+          return new ArrayEntry(next++);
+        }
+
+        @Override
+        public void remove() {
+          if (!canRemove) {
+            throw new IllegalStateException();
+          }
+          canRemove = false;
+          removeAt(--next);
+        }
+      };
+    }
+  }
+
+  /** An entry of {@link #keys} and {@link #values}, which is valid until the map is modified. */
+  private class ArrayEntry implements Map.Entry<AnnotationMirror, V> {
+
+    /** The index of the entry. */
+    private final int index;
+
+    /**
+     * Creates an entry.
+     *
+     * @param index the index of the entry
+     */
+    ArrayEntry(int index) {
+      this.index = index;
+    }
+
+    @Override
+    public AnnotationMirror getKey() {
+      return keys[index];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked") // values[i] is a V
+    public V getValue() {
+      return (V) values[index];
+    }
+
+    @Override
+    public V setValue(V value) {
+      V pre = getValue();
+      values[index] = value;
+      return pre;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object o) {
+      if (!(o instanceof Map.Entry)) {
+        return false;
+      }
+      Map.Entry<?, ?> other = (Map.Entry<?, ?>) o;
+      Object otherKey = other.getKey();
+      Object value = getValue();
+      return otherKey instanceof AnnotationMirror
+          && AnnotationUtils.areSame(getKey(), (AnnotationMirror) otherKey)
+          && (value == null ? other.getValue() == null : value.equals(other.getValue()));
+    }
+
+    @Override
+    public int hashCode() {
+      return entryHashCode(getKey(), getValue());
+    }
+
+    @Override
+    public String toString() {
+      return getKey() + "=" + getValue();
+    }
   }
 }
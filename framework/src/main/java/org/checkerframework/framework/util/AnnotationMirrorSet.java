@@ -1,10 +1,14 @@
 package org.checkerframework.framework.util;
 
+import java.util.AbstractSet;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.TreeSet;
 import javax.lang.model.element.AnnotationMirror;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.checkerframework.javacutil.AnnotationUtils;
 
 /**
@@ -20,12 +24,31 @@ import org.checkerframework.javacutil.AnnotationUtils;
  *
  * <p>AnnotationMirror is an interface and not all implementing classes provide a correct equals
  * method; therefore, the existing implementations of Set cannot be used.
+ *
+ * <p>The elements are iterated in the order given by {@link
+ * AnnotationUtils#compareAnnotationMirrors}. Most sets of qualifiers contain one qualifier per
+ * hierarchy, so a set with at most {@link #MAX_ARRAY_SIZE} elements is stored in a sorted array,
+ * which is smaller and faster to search than a tree. Larger sets are stored in a {@link TreeSet}.
  */
-public class AnnotationMirrorSet implements Set<AnnotationMirror> {
+public class AnnotationMirrorSet extends AbstractSet<AnnotationMirror> {
+
+  /** The largest number of elements that are stored in {@link #array}. */
+  static final int MAX_ARRAY_SIZE = 8;
+
+  /** The shared backing array of empty sets. */
+  private static final AnnotationMirror[] EMPTY_ARRAY = new AnnotationMirror[0];
 
-  /** Backing set. */
-  private Set<AnnotationMirror> shadowSet =
-      new TreeSet<>(AnnotationUtils::compareAnnotationMirrors);
+  /**
+   * The elements of this, in sorted order, if there are at most {@link #MAX_ARRAY_SIZE} of them
+   * and {@link #shadowSet} is null. Only the first {@link #size} entries are used.
+   */
+  private AnnotationMirror[] array = EMPTY_ARRAY;
+
+  /** The number of elements in {@link #array}. */
+  private int size = 0;
+
+  /** Backing set, or null if the elements are stored in {@link #array}. */
+  private @Nullable Set<AnnotationMirror> shadowSet = null;
 
   /** Default constructor. */
   public AnnotationMirrorSet() {}
@@ -37,33 +60,79 @@ public class AnnotationMirrorSet implements Set<AnnotationMirror> {
 
   @Override
   public int size() {
-    return shadowSet.size();
+    return shadowSet != null ? shadowSet.size() : size;
   }
 
   @Override
   public boolean isEmpty() {
-    return shadowSet.isEmpty();
+    return size() == 0;
   }
 
   @Override
   public boolean contains(Object o) {
-    return o instanceof AnnotationMirror
-        && AnnotationUtils.containsSame(shadowSet, (AnnotationMirror) o);
+    if (!(o instanceof AnnotationMirror)) {
+      return false;
+    }
+    if (shadowSet != null) {
+      return AnnotationUtils.containsSame(shadowSet, (AnnotationMirror) o);
+    }
+    return indexOf((AnnotationMirror) o) != -1;
   }
 
-  @Override
-  public Iterator<AnnotationMirror> iterator() {
-    return shadowSet.iterator();
+  /**
+   * Returns the index in {@link #array} of the element that is the same as {@code anno}, or -1.
+   *
+   * @param anno an annotation
+   * @return the index of the element that is the same as {@code anno}, or -1 if there is none
+   */
+  private int indexOf(AnnotationMirror anno) {
+    for (int i = 0; i < size; i++) {
+      if (AnnotationUtils.areSame(array[i], anno)) {
+        return i;
+      }
+    }
+    return -1;
   }
 
   @Override
-  public Object[] toArray() {
-    return shadowSet.toArray();
+  public Iterator<AnnotationMirror> iterator() {
+    if (shadowSet != null) {
+      return shadowSet.iterator();
+    }
+    return new ArrayIterator();
   }
 
-  @Override
-  public <T> T[] toArray(T[] a) {
-    return shadowSet.toArray(a);
+  /** An iterator over {@link #array}. */
+  private class ArrayIterator implements Iterator<AnnotationMirror> {
+
+    /** The index of the next element to return. */
+    private int next = 0;
+
+    /** True if {@link #remove} may be called. */
+    private boolean canRemove = false;
+
+    @Override
+    public boolean hasNext() {
+      return next < size;
+    }
+
+    @Override
+    public AnnotationMirror next() {
+      if (next >= size) {
+        throw new NoSuchElementException();
+      }
+      canRemove = true;
+      return array[next++];
+    }
+
+    @Override
+    public void remove() {
+      if (!canRemove) {
+        throw new IllegalStateException();
+      }
+      canRemove = false;
+      removeAt(--next);
+    }
   }
 
   @Override
@@ -71,17 +140,58 @@ public class AnnotationMirrorSet implements Set<AnnotationMirror> {
     if (contains(annotationMirror)) {
       return false;
     }
-    shadowSet.add(annotationMirror);
+    if (shadowSet != null) {
+      shadowSet.add(annotationMirror);
+      return true;
+    }
+    if (size == MAX_ARRAY_SIZE) {
+      Set<AnnotationMirror> newSet = new TreeSet<>(AnnotationUtils::compareAnnotationMirrors);
+      newSet.addAll(Arrays.asList(array).subList(0, size));
+      newSet.add(annotationMirror);
+      shadowSet = newSet;
+      array = EMPTY_ARRAY;
+      size = 0;
+      return true;
+    }
+    int index = 0;
+    while (index < size
+        && AnnotationUtils.compareAnnotationMirrors(array[index], annotationMirror) < 0) {
+      index++;
+    }
+    if (size == array.length) {
+      array = Arrays.copyOf(array, Math.max(1, Math.min(2 * size, MAX_ARRAY_SIZE)));
+    }
+    System.arraycopy(array, index, array, index + 1, size - index);
+    array[index] = annotationMirror;
+    size++;
     return true;
   }
 
   @Override
   public boolean remove(Object o) {
-    if (o instanceof AnnotationMirror) {
+    if (!(o instanceof AnnotationMirror)) {
+      return false;
+    }
+    if (shadowSet != null) {
       AnnotationMirror found = AnnotationUtils.getSame(shadowSet, (AnnotationMirror) o);
       return found != null && shadowSet.remove(found);
     }
-    return false;
+    int index = indexOf((AnnotationMirror) o);
+    if (index == -1) {
+      return false;
+    }
+    removeAt(index);
+    return true;
+  }
+
+  /**
+   * Removes the element at {@code index} of {@link #array}.
+   *
+   * @param index the index of the element to remove
+   */
+  private void removeAt(int index) {
+    System.arraycopy(array, index + 1, array, index, size - index - 1);
+    array[--size] = null;
   }
 
   @Override
@@ -107,15 +217,30 @@ public class AnnotationMirrorSet implements Set<AnnotationMirror> {
 
   @Override
   public boolean retainAll(Collection<?> c) {
-    Set<AnnotationMirror> newSet = new TreeSet<>(AnnotationUtils::compareAnnotationMirrors);
-    for (Object o : c) {
-      if (contains(o)) {
-        newSet.add((AnnotationMirror) o);
+    boolean changed = false;
+    Iterator<AnnotationMirror> iter = iterator();
+    while (iter.hasNext()) {
+      AnnotationMirror anno = iter.next();
+      if (!containsSame(c, anno)) {
+        iter.remove();
+        changed = true;
       }
     }
-    if (newSet.size() != shadowSet.size()) {
-      shadowSet = newSet;
-      return true;
+    return changed;
+  }
+
+  /**
+   * Returns true if {@code c} contains an annotation that is the same as {@code anno}.
+   *
+   * @param c a collection
+   * @param anno an annotation
+   * @return true if {@code c} contains an annotation that is the same as {@code anno}
+   */
+  private static boolean containsSame(Collection<?> c, AnnotationMirror anno) {
+    for (Object o : c) {
+      if (o instanceof AnnotationMirror && AnnotationUtils.areSame((AnnotationMirror) o, anno)) {
+        return true;
+      }
     }
     return false;
   }
@@ -131,9 +256,23 @@ public class AnnotationMirrorSet implements Set<AnnotationMirror> {
     return result;
   }
 
+  // AbstractSet#equals compares the elements using contains, that is, using
+  // AnnotationUtils#areSame. Annotations that are the same have the same name, so hash the names
+  // rather than the elements, whose hash codes are not consistent with areSame.
+  @Override
+  public int hashCode() {
+    int result = 0;
+    for (AnnotationMirror anno : this) {
+      result += AnnotationUtils.annotationName(anno).hashCode();
+    }
+    return result;
+  }
+
   @Override
   public void clear() {
-    shadowSet.clear();
+    shadowSet = null;
+    array = EMPTY_ARRAY;
+    size = 0;
   }
 
   /**
@@ -147,9 +286,4 @@ public class AnnotationMirrorSet implements Set<AnnotationMirror> {
     newSet.add(value);
     return newSet;
   }
-
-  @Override
-  public String toString() {
-    return shadowSet.toString();
-  }
 }
@@ -0,0 +1,664 @@
+package org.checkerframework.framework.util;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.InetAddress;
+import java.net.MalformedURLException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.processing.Processor;
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.checkerframework.javacutil.UserError;
+
+/**
+ * A long-lived process that runs javac and the Checker Framework on many compilations in one JVM.
+ *
+ * <p>Each run of {@link CheckerMain} starts a new JVM, so it pays for JIT warmup, class loading,
+ * reading the annotated JDK and stub files, and scanning each checker's qualifiers. A daemon pays
+ * for these once: the checkers are loaded by the daemon's own class loader and instantiated for
+ * each compilation, and while a daemon is running the following are shared by all compilations
+ * (see {@link #isRunning}):
+ *
+ * <ul>
+ *   <li>the parsed stub files and annotated JDK files ({@link
+ *       org.checkerframework.framework.stub.ParsedAnnotationFileCache#getSharedInstance}); a stub
+ *       file on the local file system is re-parsed if it changes,
+ *   <li>the index of the annotated JDK, and
+ *   <li>the names of the qualifiers of each checker in a jar file.
+ * </ul>
+ *
+ * Type factories and qualifier hierarchies refer to javac's data structures for one compilation,
+ * so they are still created for each compilation.
+ *
+ * <p>Start a daemon with {@code java -jar checker.jar -daemon -port PORT}, passing any {@code -J}
+ * arguments that the JVM needs, or by running this class directly. With {@code -port}, the daemon
+ * accepts connections on the loopback interface only; without it, the daemon reads requests from
+ * standard input and writes responses to standard output.
+ *
+ * <p>A request can run arbitrary code in the daemon's JVM, because it names the processors to run
+ * and the processorpath to load them from. Therefore, a daemon listening on a port accepts only
+ * requests from clients that can read its token file, which the daemon creates readable and
+ * writable by its owner only. The token file is {@code .checker-daemon-PORT} in the user's home
+ * directory, or the file given by {@code -tokenfile FILE}, and it holds a random token. The first
+ * line on each connection must be {@code token TOKEN}; otherwise the daemon closes the connection
+ * without running anything. The daemon deletes the token file when it shuts down.
+ *
+ * <p>The protocol is line-based and uses UTF-8. A request is a sequence of lines of the form
+ * {@code | ARGUMENT}, one per command-line argument, followed by a line {@code run}. The arguments
+ * are the ones that CheckerMain accepts, for example {@code -processor nullness Foo.java}; relative
+ * paths are resolved against the daemon's working directory. The response is the compiler's output,
+ * one line {@code | LINE} per line, followed by a line {@code exit STATUS}, where STATUS is javac's
+ * exit status. The request {@code shutdown} stops the daemon.
+ *
+ * <p>{@code java -cp checker.jar org.checkerframework.framework.util.CheckerDaemon -connect PORT
+ * ARGUMENTS} sends one request to the daemon listening on PORT, prints the compiler's output to
+ * standard error, and exits with the compiler's exit status. {@code -tokenfile FILE} before {@code
+ * -connect} names the daemon's token file, if it is not the default.
+ *
+ * <p>Compilations run one at a time. A processor is loaded from the processorpath in preference to
+ * the daemon's own classpath, so a request runs the checker it names rather than the daemon's copy
+ * of it; elements of the processorpath that are also on the daemon's classpath are loaded by the
+ * daemon's class loader, which keeps them warm. The daemon keeps the classes that it loads, so
+ * restart the daemon after rebuilding a checker.
+ */
+public class CheckerDaemon {
+
+  /** Option name for the port on which the daemon listens for connections. */
+  public static final String PORT_OPT = "-port";
+
+  /** Option name for sending one request to the daemon listening on the given port. */
+  public static final String CONNECT_OPT = "-connect";
+
+  /** Option name for the file that holds the token that authenticates clients. */
+  public static final String TOKEN_FILE_OPT = "-tokenfile";
+
+  /** The prefix of the first line on a connection, which is followed by the daemon's token. */
+  public static final String TOKEN_PREFIX = "token ";
+
+  /** The prefix of a line that holds a command-line argument or a line of compiler output. */
+  public static final String LINE_PREFIX = "| ";
+
+  /** The request that runs the compiler on the preceding arguments. */
+  public static final String RUN_REQUEST = "run";
+
+  /** The request that stops the daemon. */
+  public static final String SHUTDOWN_REQUEST = "shutdown";
+
+  /** The prefix of the last line of a response, which is followed by the exit status. */
+  public static final String EXIT_PREFIX = "exit ";
+
+  /** The exit status of a successful compilation, as for javac. */
+  private static final int EXIT_OK = 0;
+
+  /** The exit status of a compilation that issued errors, as for javac. */
+  private static final int EXIT_ERROR = 1;
+
+  /** The exit status of a compilation with bad command-line arguments, as for javac. */
+  private static final int EXIT_CMDERR = 2;
+
+  /** The exit status of a compilation that crashed, as for javac. */
+  private static final int EXIT_ABNORMAL = 4;
+
+  /** True if a daemon is running in this JVM. */
+  private static volatile boolean running = false;
+
+  /** The path to checker.jar, which is used to expand shorthand processor names. */
+  private final File checkerJar;
+
+  /** The compiler, which is reused by all compilations. */
+  private final JavaCompiler compiler;
+
+  /** The elements of the daemon's own classpath. */
+  private final Set<String> daemonClasspath;
+
+  /**
+   * Maps a processorpath to a class loader for the processors on it that the daemon's own class
+   * loader cannot load.
+   */
+  private final Map<String, ClassLoader> processorClassLoaders = new HashMap<>();
+
+  /**
+   * The packages whose classes a processor class loader always loads from the daemon's class
+   * loader, because javac and the processors it runs must agree on them.
+   */
+  private static final String[] PARENT_FIRST_PACKAGES = {
+    "java.", "javax.", "jdk.", "sun.", "com.sun."
+  };
+
+  /** The number of compilations run by this daemon. */
+  private int compilationCount = 0;
+
+  /**
+   * Creates a daemon.
+   *
+   * @param checkerJar the path to checker.jar
+   */
+  public CheckerDaemon(File checkerJar) {
+    this.checkerJar = checkerJar;
+    JavaCompiler systemCompiler = ToolProvider.getSystemJavaCompiler();
+    if (systemCompiler == null) {
+      throw new UserError("The checker daemon must be run by a JDK, not a JRE.");
+    }
+    this.compiler = systemCompiler;
+    this.daemonClasspath =
+        new HashSet<>(
+            Arrays.asList(System.getProperty("java.class.path", "").split(File.pathSeparator)));
+  }
+
+  /**
+   * Returns true if a daemon is running in this JVM, in which case caches of data that does not
+   * depend on a compilation may outlive it.
+   *
+   * @return true if a daemon is running in this JVM
+   */
+  public static boolean isRunning() {
+    return running;
+  }
+
+  /**
+   * Runs a daemon, or with {@code -connect}, sends one request to a daemon.
+   *
+   * @param args command-line arguments
+   */
+  public static void main(String[] args) {
+    List<String> argList = new ArrayList<>(Arrays.asList(args));
+    String tokenFileArg = null;
+    if (argList.size() >= 2 && argList.get(0).equals(TOKEN_FILE_OPT)) {
+      tokenFileArg = argList.get(1);
+      argList = argList.subList(2, argList.size());
+    }
+    if (!argList.isEmpty() && argList.get(0).equals(CONNECT_OPT)) {
+      if (argList.size() < 2) {
+        throw new UserError("%s requires a port number", CONNECT_OPT);
+      }
+      int port = parsePort(argList.get(1));
+      System.exit(
+          sendRequest(port, getTokenFile(tokenFileArg, port), argList.subList(2, argList.size())));
+    }
+
+    argList = new ArrayList<>(argList);
+    String portArg = CheckerMain.extractArg(PORT_OPT, null, argList);
+    if (tokenFileArg == null) {
+      tokenFileArg = CheckerMain.extractArg(TOKEN_FILE_OPT, null, argList);
+    }
+    if (!argList.isEmpty()) {
+      throw new UserError("Unexpected arguments to the checker daemon: %s", argList);
+    }
+    CheckerDaemon daemon =
+        new CheckerDaemon(new File(CheckerMain.findPathTo(CheckerDaemon.class, false)));
+    running = true;
+    try {
+      if (portArg == null) {
+        daemon.serve(
+            new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)),
+            new PrintWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8)));
+      } else {
+        daemon.listen(parsePort(portArg), tokenFileArg);
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Checker daemon failed", e);
+    } finally {
+      running = false;
+    }
+  }
+
+  /**
+   * Returns the port number represented by {@code port}.
+   *
+   * @param port a port number
+   * @return the port number represented by {@code port}
+   */
+  private static int parsePort(String port) {
+    try {
+      return Integer.parseInt(port);
+    } catch (NumberFormatException e) {
+      throw new UserError("Bad port number for the checker daemon: %s", port);
+    }
+  }
+
+  /**
+   * Returns the token file of the daemon listening on {@code port}.
+   *
+   * @param tokenFileArg the argument of {@code -tokenfile}, or null for the default
+   * @param port the port on which the daemon listens
+   * @return the token file of the daemon listening on {@code port}
+   */
+  private static Path getTokenFile(@Nullable String tokenFileArg, int port) {
+    if (tokenFileArg != null) {
+      return Paths.get(tokenFileArg);
+    }
+    return Paths.get(System.getProperty("user.home"), ".checker-daemon-" + port);
+  }
+
+  /**
+   * Creates a token file that only the current user can read or write, and writes a new random
+   * token to it. Any existing file is replaced.
+   *
+   * @param tokenFile the token file
+   * @return the token
+   * @throws IOException if the token file cannot be created
+   */
+  private static String createTokenFile(Path tokenFile) throws IOException {
+    byte[] bytes = new byte[32];
+    new SecureRandom().nextBytes(bytes);
+    StringBuilder token = new StringBuilder(2 * bytes.length);
+    for (byte b : bytes) {
+      token.append(String.format("%02x", b));
+    }
+
+    Files.deleteIfExists(tokenFile);
+    if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+      // Create the file with its final permissions, so that no other user can ever open it.
+      Files.createFile(
+          tokenFile,
+          PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+    } else {
+      Files.createFile(tokenFile);
+      File file = tokenFile.toFile();
+      if (!(file.setReadable(false, false)
+          && file.setReadable(true, true)
+          && file.setWritable(false, false)
+          && file.setWritable(true, true))) {
+        Files.delete(tokenFile);
+        throw new UserError("Cannot restrict the permissions of the token file %s", tokenFile);
+      }
+    }
+    Files.write(tokenFile, token.toString().getBytes(StandardCharsets.UTF_8));
+    return token.toString();
+  }
+
+  /**
+   * Accepts connections on the loopback interface and serves the requests on each connection, until
+   * a {@link #SHUTDOWN_REQUEST}. Connections are served one at a time. A connection is served only
+   * if its first line is {@link #TOKEN_PREFIX} followed by the token in the daemon's token file.
+   *
+   * @param port the port on which to listen, or 0 to choose a free port
+   * @param tokenFileArg the token file, or null for the default one for the port
+   * @throws IOException if the daemon cannot listen on the port or create the token file
+   */
+  public void listen(int port, @Nullable String tokenFileArg) throws IOException {
+    try (ServerSocket serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+      Path tokenFile = getTokenFile(tokenFileArg, serverSocket.getLocalPort());
+      byte[] token = (TOKEN_PREFIX + createTokenFile(tokenFile)).getBytes(StandardCharsets.UTF_8);
+      try {
+        System.out.printf(
+            "Checker daemon listening on port %d with token file %s%n",
+            serverSocket.getLocalPort(), tokenFile);
+        System.out.flush();
+        boolean shutdown = false;
+        while (!shutdown) {
+          try (Socket socket = serverSocket.accept()) {
+            BufferedReader in =
+                new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            PrintWriter out =
+                new PrintWriter(
+                    new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+            String first = in.readLine();
+            if (first == null
+                || !MessageDigest.isEqual(token, first.getBytes(StandardCharsets.UTF_8))) {
+              out.println(LINE_PREFIX + "error: bad checker daemon token");
+              out.println(EXIT_PREFIX + EXIT_CMDERR);
+              out.flush();
+              continue;
+            }
+            shutdown = !serve(in, out);
+          } catch (IOException e) {
+            // A client that disconnects early must not stop the daemon.
+            System.err.println("Checker daemon: connection failed: " + e.getMessage());
+          }
+        }
+      } finally {
+        Files.deleteIfExists(tokenFile);
+      }
+    }
+  }
+
+  /**
+   * Serves the requests read from {@code in} until the end of the input or a {@link
+   * #SHUTDOWN_REQUEST}.
+   *
+   * @param in the requests
+   * @param out where to write the responses
+   * @return false if the daemon should shut down
+   * @throws IOException if reading a request fails
+   */
+  public boolean serve(BufferedReader in, PrintWriter out) throws IOException {
+    List<String> args = new ArrayList<>();
+    String line;
+    while ((line = in.readLine()) != null) {
+      if (line.startsWith(LINE_PREFIX)) {
+        args.add(line.substring(LINE_PREFIX.length()));
+      } else if (line.equals(RUN_REQUEST)) {
+        StringWriter output = new StringWriter();
+        int status = compile(args, new PrintWriter(output));
+        for (String outputLine : output.toString().split("\\R", -1)) {
+          if (!outputLine.isEmpty()) {
+            out.println(LINE_PREFIX + outputLine);
+          }
+        }
+        out.println(EXIT_PREFIX + status);
+        out.flush();
+        args.clear();
+      } else if (line.equals(SHUTDOWN_REQUEST)) {
+        out.println(EXIT_PREFIX + EXIT_OK);
+        out.flush();
+        return false;
+      } else {
+        out.println(LINE_PREFIX + "error: bad checker daemon request: " + line);
+        out.println(EXIT_PREFIX + EXIT_CMDERR);
+        out.flush();
+        args.clear();
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Runs javac and the processors named by the {@code -processor} argument in this JVM.
+   *
+   * @param requestArgs the arguments, as for {@link CheckerMain}
+   * @param out where to write the compiler's output
+   * @return javac's exit status
+   */
+  public int compile(List<String> requestArgs, PrintWriter out) {
+    long start = System.nanoTime();
+    int status = compileOnce(requestArgs, out);
+    out.flush();
+    compilationCount++;
+    System.err.printf(
+        "Checker daemon: compilation %d finished with status %d in %d ms%n",
+        compilationCount, status, (System.nanoTime() - start) / 1_000_000);
+    return status;
+  }
+
+  /**
+   * Runs javac and the processors named by the {@code -processor} argument in this JVM.
+   *
+   * @param requestArgs the arguments, as for {@link CheckerMain}
+   * @param out where to write the compiler's output
+   * @return javac's exit status
+   */
+  private int compileOnce(List<String> requestArgs, PrintWriter out) {
+    List<String> args;
+    try {
+      CheckerMain checkerMain = new CheckerMain(checkerJar, new ArrayList<>(requestArgs));
+      args = expandArgFiles(checkerMain.getCompilerArguments());
+    } catch (RuntimeException | IOException e) {
+      out.println("error: " + e.getMessage());
+      return EXIT_CMDERR;
+    }
+
+    try (StandardJavaFileManager fileManager =
+        compiler.getStandardFileManager(null, null, null)) {
+      List<String> options = new ArrayList<>();
+      List<String> sourceFiles = new ArrayList<>();
+      List<String> classNames = new ArrayList<>();
+      String processorNames = null;
+      String processorPath = null;
+      for (int i = 0; i < args.size(); i++) {
+        String arg = args.get(i);
+        if (arg.equals("-processor") && i + 1 < args.size()) {
+          processorNames = args.get(++i);
+        } else if (arg.equals("-processorpath") && i + 1 < args.size()) {
+          processorPath = args.get(++i);
+        } else if (arg.startsWith("-")) {
+          options.add(arg);
+          int argCount =
+              Math.max(compiler.isSupportedOption(arg), fileManager.isSupportedOption(arg));
+          for (int j = 0; j < argCount && i + 1 < args.size(); j++) {
+            options.add(args.get(++i));
+          }
+        } else if (arg.endsWith(".java")) {
+          sourceFiles.add(arg);
+        } else {
+          classNames.add(arg);
+        }
+      }
+
+      List<Processor> processors = null;
+      if (processorNames == null) {
+        // Let javac find the processors on the processorpath, as it would without the daemon.
+        if (processorPath != null) {
+          options.add("-processorpath");
+          options.add(processorPath);
+        }
+      } else {
+        try {
+          processors = instantiateProcessors(processorNames, processorPath);
+        } catch (ReflectiveOperationException | ClassCastException | MalformedURLException e) {
+          out.println("error: cannot instantiate annotation processor: " + e);
+          return EXIT_CMDERR;
+        }
+      }
+
+      JavaCompiler.CompilationTask task =
+          compiler.getTask(
+              out,
+              fileManager,
+              null,
+              options,
+              classNames.isEmpty() ? null : classNames,
+              fileManager.getJavaFileObjectsFromStrings(sourceFiles));
+      if (processors != null) {
+        task.setProcessors(processors);
+      }
+      return task.call() ? EXIT_OK : EXIT_ERROR;
+    } catch (IllegalArgumentException e) {
+      // javac rejected an option.
+      out.println("error: " + e.getMessage());
+      return EXIT_CMDERR;
+    } catch (RuntimeException | IOException e) {
+      // A processor crashed; javac wraps the exception.
+      e.printStackTrace(out);
+      return EXIT_ABNORMAL;
+    }
+  }
+
+  /**
+   * Creates an instance of each of the given processors. A processor is loaded by the daemon's own
+   * class loader if possible, and otherwise from {@code processorPath}.
+   *
+   * @param processorNames a comma-separated list of fully-qualified processor names
+   * @param processorPath the processorpath, or null
+   * @return the processors
+   * @throws ReflectiveOperationException if a processor cannot be loaded or instantiated
+   * @throws MalformedURLException if an element of {@code processorPath} is not a valid path
+   */
+  private List<Processor> instantiateProcessors(
+      String processorNames, @Nullable String processorPath)
+      throws ReflectiveOperationException, MalformedURLException {
+    ClassLoader loader = getProcessorClassLoader(processorPath);
+    List<Processor> processors = new ArrayList<>();
+    for (String name : processorNames.split(",")) {
+      Class<? extends Processor> processorClass =
+          Class.forName(name.trim(), true, loader).asSubclass(Processor.class);
+      processors.add(processorClass.getDeclaredConstructor().newInstance());
+    }
+    return processors;
+  }
+
+  /**
+   * Returns a class loader for the processors on {@code processorPath}. It loads classes from the
+   * elements of {@code processorPath} that are not on the daemon's classpath before delegating to
+   * the daemon's own class loader, so that a request runs its own version of a checker, while a
+   * checker on the daemon's classpath stays warm. It is reused by later compilations with the same
+   * processorpath.
+   *
+   * @param processorPath the processorpath, or null
+   * @return a class loader for the processors on {@code processorPath}
+   * @throws MalformedURLException if an element of {@code processorPath} is not a valid path
+   */
+  private ClassLoader getProcessorClassLoader(@Nullable String processorPath)
+      throws MalformedURLException {
+    ClassLoader daemonLoader = CheckerDaemon.class.getClassLoader();
+    if (processorPath == null) {
+      return daemonLoader;
+    }
+    ClassLoader loader = processorClassLoaders.get(processorPath);
+    if (loader == null) {
+      List<URL> urls = new ArrayList<>();
+      for (String element : processorPath.split(File.pathSeparator)) {
+        if (!element.isEmpty() && !daemonClasspath.contains(element)) {
+          urls.add(new File(element).toURI().toURL());
+        }
+      }
+      loader =
+          urls.isEmpty()
+              ? daemonLoader
+              : new ChildFirstClassLoader(urls.toArray(new URL[urls.size()]), daemonLoader);
+      processorClassLoaders.put(processorPath, loader);
+    }
+    return loader;
+  }
+
+  /**
+   * Replaces each argument that starts with @ by the arguments in the file it names, as javac
+   * does. {@link JavaCompiler#getTask} does not expand such arguments.
+   *
+   * @param args command-line arguments
+   * @return {@code args}, with argument files expanded
+   * @throws IOException if an argument file cannot be read
+   */
+  private static List<String> expandArgFiles(List<String> args) throws IOException {
+    List<String> result = new ArrayList<>(args.size());
+    for (String arg : args) {
+      if (!arg.startsWith("@")) {
+        result.add(arg);
+        continue;
+      }
+      for (String line : Files.readAllLines(Paths.get(arg.substring(1)))) {
+        for (String token : line.trim().split("\\s+")) {
+          if (token.length() >= 2 && token.startsWith("\"") && token.endsWith("\"")) {
+            token = token.substring(1, token.length() - 1);
+          }
+          if (!token.isEmpty()) {
+            result.add(token);
+          }
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Sends a request to the daemon listening on {@code port}, and prints the compiler's output to
+   * standard error.
+   *
+   * @param port the port on which the daemon listens
+   * @param tokenFile the daemon's token file
+   * @param args the arguments, as for {@link CheckerMain}
+   * @return the compiler's exit status
+   */
+  private static int sendRequest(int port, Path tokenFile, List<String> args) {
+    String token;
+    try {
+      token = new String(Files.readAllBytes(tokenFile), StandardCharsets.UTF_8).trim();
+    } catch (IOException e) {
+      throw new UserError(
+          "Cannot read the token file %s of the checker daemon on port %d: %s",
+          tokenFile, port, e.getMessage());
+    }
+    try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        PrintWriter out =
+            new PrintWriter(
+                new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+        BufferedReader in =
+            new BufferedReader(
+                new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+      out.println(TOKEN_PREFIX + token);
+      for (String arg : args) {
+        out.println(LINE_PREFIX + arg);
+      }
+      out.println(RUN_REQUEST);
+      out.flush();
+      String line;
+      while ((line = in.readLine()) != null) {
+        if (line.startsWith(LINE_PREFIX)) {
+          System.err.println(line.substring(LINE_PREFIX.length()));
+        } else if (line.startsWith(EXIT_PREFIX)) {
+          return Integer.parseInt(line.substring(EXIT_PREFIX.length()));
+        }
+      }
+      throw new UserError("The checker daemon on port %d closed the connection", port);
+    } catch (IOException e) {
+      throw new UserError(
+          "Cannot communicate with the checker daemon on port %d: %s", port, e.getMessage());
+    }
+  }
+
+  /**
+   * A class loader that loads a class from its own URLs before delegating to its parent, except for
+   * the classes of the JDK.
+   */
+  private static class ChildFirstClassLoader extends URLClassLoader {
+
+    static {
+      ClassLoader.registerAsParallelCapable();
+    }
+
+    /**
+     * Creates a class loader.
+     *
+     * @param urls the URLs from which to load classes
+     * @param parent the class loader for the classes that are not found in {@code urls}
+     */
+    ChildFirstClassLoader(URL[] urls, ClassLoader parent) {
+      super(urls, parent);
+    }
+
+    @Override
+    protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+      for (String prefix : PARENT_FIRST_PACKAGES) {
+        if (name.startsWith(prefix)) {
+          return super.loadClass(name, resolve);
+        }
+      }
+      synchronized (getClassLoadingLock(name)) {
+        Class<?> c = findLoadedClass(name);
+        if (c == null) {
+          try {
+            c = findClass(name);
+          } catch (ClassNotFoundException e) {
+            return super.loadClass(name, resolve);
+          }
+        }
+        if (resolve) {
+          resolveClass(c);
+        }
+        return c;
+      }
+    }
+
+    @Override
+    public @Nullable URL getResource(String name) {
+      URL url = findResource(name);
+      return url != null ? url : super.getResource(name);
+    }
+  }
+}
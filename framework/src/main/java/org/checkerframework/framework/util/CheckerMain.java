@@ -35,6 +35,9 @@ import org.plumelib.util.CollectionsPlume;
  *   <li>pass all remaining command-line arguments to the real javac
  * </ul>
  *
+ * With the {@code -daemon} command-line argument, CheckerMain instead starts a {@link
+ * CheckerDaemon}, which runs many compilations in one JVM.
+ *
  * To debug this class, use the {@code -AoutputArgsToFile=FILENAME} command-line argument or {@code
  * -AoutputArgsToFile=-} to output to standard out.
  *
@@ -58,8 +61,9 @@ public class CheckerMain {
   public static void main(String[] args) {
     final File pathToThisJar = new File(findPathTo(CheckerMain.class, false));
     ArrayList<String> alargs = new ArrayList<>(Arrays.asList(args));
+    final boolean startDaemon = alargs.remove(DAEMON_OPT);
     final CheckerMain program = new CheckerMain(pathToThisJar, alargs);
-    final int exitStatus = program.invokeCompiler();
+    final int exitStatus = startDaemon ? program.invokeDaemon() : program.invokeCompiler();
     System.exit(exitStatus);
   }
 
@@ -122,6 +126,13 @@ public class CheckerMain {
    */
   public static final String JDK_PATH_OPT = "-jdkJar";
 
+  /**
+   * Option name for starting a {@link CheckerDaemon} instead of running javac once. The other
+   * arguments, such as {@code -port}, are passed to the daemon, except that {@code -J} arguments
+   * are passed to the daemon's JVM.
+   */
+  public static final String DAEMON_OPT = "-daemon";
+
   /**
    * Construct all the relevant file locations and Java version given the path to this jar and a set
    * of directories in which to search for jars.
@@ -421,7 +432,20 @@ public class CheckerMain {
   /** Invoke the compiler with all relevant jars on its classpath and/or bootclasspath. */
   public List<String> getExecArguments() {
     List<String> args = new ArrayList<>(jvmOpts.size() + cpOpts.size() + toolOpts.size() + 7);
+    addJvmArguments(args, runtimeClasspath);
+    addMainToArgs(args);
+    addCompilerArguments(args, true);
+    return args;
+  }
 
+  /**
+   * Adds the arguments that start the JVM that runs javac to {@code args}, up to but not including
+   * the name of the main class.
+   *
+   * @param args the list to add to; is side-effected by this method
+   * @param classpath the runtime classpath of the JVM
+   */
+  private void addJvmArguments(List<String> args, List<String> classpath) {
     // TODO: do we need java.exe on Windows?
     final String java = "java";
     args.add(java);
@@ -437,22 +461,43 @@ public class CheckerMain {
     }
 
     args.add("-classpath");
-    args.add(String.join(File.pathSeparator, runtimeClasspath));
+    args.add(String.join(File.pathSeparator, classpath));
     args.add("-ea");
     // com.sun.tools needs to be enabled separately
     args.add("-ea:com.sun.tools...");
 
     args.addAll(jvmOpts);
+  }
 
-    addMainToArgs(args);
+  /**
+   * Returns the arguments to pass to javac, without the arguments that start the JVM that runs it.
+   * Used by {@link CheckerDaemon}, which runs javac in its own JVM.
+   *
+   * @return the arguments to pass to javac
+   */
+  public List<String> getCompilerArguments() {
+    List<String> args = new ArrayList<>(cpOpts.size() + toolOpts.size() + 9);
+    addCompilerArguments(args, false);
+    return args;
+  }
 
+  /**
+   * Adds the arguments to pass to javac to {@code args}.
+   *
+   * @param args the list to add to; is side-effected by this method
+   * @param quotePaths whether to quote the classpath and processorpath if they contain spaces,
+   *     because they will be passed on a command line
+   */
+  private void addCompilerArguments(List<String> args, boolean quotePaths) {
     if (!argsListHasClassPath(argListFiles)) {
       args.add("-classpath");
-      args.add(quote(concatenatePaths(cpOpts)));
+      String classpath = concatenatePaths(cpOpts);
+      args.add(quotePaths ? quote(classpath) : classpath);
     }
     if (!argsListHasProcessorPath(argListFiles)) {
       args.add("-processorpath");
-      args.add(quote(concatenatePaths(ppOpts)));
+      String processorpath = concatenatePaths(ppOpts);
+      args.add(quotePaths ? quote(processorpath) : processorpath);
     }
 
     if (SystemUtil.getJreVersion() == 8) {
@@ -472,7 +517,6 @@ public class CheckerMain {
     }
 
     args.addAll(toolOpts);
-    return args;
   }
 
   /** Given a list of paths, concatenate them to form a single path. Also expand wildcards. */
@@ -535,6 +579,25 @@ public class CheckerMain {
     return ExecUtil.execute(args.toArray(new String[args.size()]), System.out, System.err);
   }
 
+  /**
+   * Start a {@link CheckerDaemon} in a JVM with all relevant jars, and the processorpath, on its
+   * classpath. The arguments other than {@code -J} arguments are passed to the daemon. Returns
+   * when the daemon shuts down.
+   *
+   * @return the exit status of the daemon
+   */
+  public int invokeDaemon() {
+    List<String> classpath = new ArrayList<>(runtimeClasspath);
+    classpath.add(concatenatePaths(ppOpts));
+    classpath.add(checkerQualJar.getAbsolutePath());
+
+    List<String> args = new ArrayList<>(jvmOpts.size() + toolOpts.size() + 8);
+    addJvmArguments(args, classpath);
+    args.add(CheckerDaemon.class.getName());
+    args.addAll(toolOpts);
+    return ExecUtil.execute(args.toArray(new String[args.size()]), System.out, System.err);
+  }
+
   private static void outputArgumentsToFile(String outputFilename, List<String> args) {
     if (outputFilename != null) {
       String errorMessage = null;
@@ -6,8 +6,10 @@ import com.sun.tools.javac.processing.JavacProcessingEnvironment;
 import com.sun.tools.javac.util.Context;
 import com.sun.tools.javac.util.List;
 import com.sun.tools.javac.util.Options;
+import java.util.Collections;
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
 import javax.lang.model.type.TypeMirror;
 import org.checkerframework.framework.testchecker.util.AnnoWithStringArg;
 import org.checkerframework.framework.testchecker.util.Encrypted;
@@ -318,4 +320,77 @@ public class AnnotationBuilderTest {
     AnnotationBuilder builder = new AnnotationBuilder(env, ContainingAnno.class);
     builder.setValue("value", anno);
   }
+
+  @Test
+  public void equalAnnotationsAreInterned() {
+    AnnotationMirror a1 =
+        new AnnotationBuilder(env, B.class).setValue("strings", new String[] {"m", "n"}).build();
+    AnnotationMirror a2 =
+        new AnnotationBuilder(env, B.class).setValue("strings", new String[] {"m", "n"}).build();
+    Assert.assertSame(a1, a2);
+  }
+
+  @Test
+  public void stringsThatPrintTheSameAreNotInterned() {
+    // Both annotations print as @B(strings={"a", "b"}).
+    AnnotationMirror one =
+        new AnnotationBuilder(env, B.class).setValue("strings", new String[] {"a\", \"b"}).build();
+    AnnotationMirror two =
+        new AnnotationBuilder(env, B.class).setValue("strings", new String[] {"a", "b"}).build();
+    Assert.assertEquals(one.toString(), two.toString());
+    Assert.assertNotSame(one, two);
+    Assert.assertEquals(1, getListValue(one).size());
+    Assert.assertEquals(2, getListValue(two).size());
+  }
+
+  public static @interface LongElt {
+    long[] value();
+  }
+
+  @Test
+  public void numbersThatPrintTheSameAreNotInterned() {
+    AnnotationValue longs =
+        new AnnotationBuilder(env, LongElt.class)
+            .setValue("value", new Long[] {1L})
+            .build()
+            .getElementValues()
+            .values()
+            .iterator()
+            .next();
+    AnnotationValue ints =
+        new AnnotationBuilder(env, A.class)
+            .setValue("numbers", new Integer[] {1})
+            .build()
+            .getElementValues()
+            .values()
+            .iterator()
+            .next();
+    // Two annotations that print as @LongElt({1}), one of whose values is an Integer.
+    AnnotationMirror withLong =
+        AnnotationBuilder.fromName(
+            env.getElementUtils(),
+            LongElt.class.getCanonicalName(),
+            Collections.singletonMap("value", longs));
+    AnnotationMirror withInt =
+        AnnotationBuilder.fromName(
+            env.getElementUtils(),
+            LongElt.class.getCanonicalName(),
+            Collections.singletonMap("value", ints));
+    Assert.assertEquals(withLong.toString(), withInt.toString());
+    Assert.assertNotSame(withLong, withInt);
+    Assert.assertEquals(
+        Long.class, ((AnnotationValue) getListValue(withLong).get(0)).getValue().getClass());
+    Assert.assertEquals(
+        Integer.class, ((AnnotationValue) getListValue(withInt).get(0)).getValue().getClass());
+  }
+
+  /**
+   * Returns the value of the only element of an annotation whose element is an array.
+   *
+   * @param anno an annotation with one element, whose type is an array
+   * @return the value of the element of {@code anno}
+   */
+  private static java.util.List<?> getListValue(AnnotationMirror anno) {
+    return (java.util.List<?>) anno.getElementValues().values().iterator().next().getValue();
+  }
 }
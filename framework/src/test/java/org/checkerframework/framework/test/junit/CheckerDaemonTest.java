@@ -0,0 +1,135 @@
+package org.checkerframework.framework.test.junit;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.jar.JarOutputStream;
+import org.checkerframework.common.subtyping.SubtypingChecker;
+import org.checkerframework.framework.test.TestUtilities;
+import org.checkerframework.framework.util.CheckerDaemon;
+import org.checkerframework.framework.util.CheckerMain;
+import org.checkerframework.framework.util.ExecUtil;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that a {@link CheckerDaemon} issues the same diagnostics and exit status as {@link
+ * CheckerMain}, which runs javac in a new JVM, and that it issues them again when it serves the
+ * same request a second time.
+ */
+public class CheckerDaemonTest {
+
+  /** The directory that holds the source file and the jars that CheckerMain requires. */
+  private Path dir;
+
+  /** A source file with one error in the Encrypted type system. */
+  private static final String SOURCE =
+      "import org.checkerframework.framework.testchecker.util.Encrypted;\n"
+          + "class Use {\n"
+          + "  void m(String p, @Encrypted String q) {\n"
+          + "    @Encrypted String s = p;\n"
+          + "    @Encrypted String t = q;\n"
+          + "  }\n"
+          + "}\n";
+
+  @Before
+  public void createDirectory() throws IOException {
+    dir = Files.createTempDirectory("checkerDaemon");
+  }
+
+  @Test
+  public void daemonMatchesCheckerMain() throws IOException {
+    // Without a checker.jar, CheckerMain runs javac from javac.jar on Java 8, which tests lack.
+    Assume.assumeTrue(TestUtilities.IS_AT_LEAST_9_JVM);
+
+    // CheckerMain requires these jars to exist; the classes come from the test classpath instead.
+    File checkerJar = createEmptyJar("checker.jar");
+    createEmptyJar("checker-qual.jar");
+    createEmptyJar("checker-util.jar");
+    Path source = dir.resolve("Use.java");
+    Files.write(source, SOURCE.getBytes(StandardCharsets.UTF_8));
+
+    String classpath = System.getProperty("java.class.path");
+    List<String> args =
+        Arrays.asList(
+            "-processor",
+            SubtypingChecker.class.getName(),
+            "-classpath",
+            classpath,
+            "-processorpath",
+            classpath,
+            "-proc:only",
+            "-Anomsgtext",
+            "-Aquals=org.checkerframework.framework.testchecker.util.Encrypted,org.checkerframework.common.subtyping.qual.Unqualified",
+            source.toString());
+
+    ByteArrayOutputStream execOutput = new ByteArrayOutputStream();
+    List<String> execArgs = new CheckerMain(checkerJar, new ArrayList<>(args)).getExecArguments();
+    int execStatus =
+        ExecUtil.execute(execArgs.toArray(new String[execArgs.size()]), execOutput, execOutput);
+    List<String> expected = diagnostics(execOutput.toString(StandardCharsets.UTF_8.name()));
+    Assert.assertEquals(execOutput.toString(StandardCharsets.UTF_8.name()), 1, expected.size());
+    Assert.assertEquals(1, execStatus);
+
+    StringBuilder request = new StringBuilder();
+    for (String arg : args) {
+      request.append(CheckerDaemon.LINE_PREFIX).append(arg).append('\n');
+    }
+    request.append(CheckerDaemon.RUN_REQUEST).append('\n');
+    StringWriter response = new StringWriter();
+    CheckerDaemon daemon = new CheckerDaemon(checkerJar);
+    for (int i = 0; i < 2; i++) {
+      Assert.assertTrue(
+          daemon.serve(
+              new BufferedReader(new StringReader(request.toString())), new PrintWriter(response)));
+      String[] lines = response.toString().split("\\R");
+      Assert.assertEquals(CheckerDaemon.EXIT_PREFIX + execStatus, lines[lines.length - 1]);
+      Assert.assertEquals(expected, diagnostics(response.toString()));
+      response.getBuffer().setLength(0);
+    }
+  }
+
+  /**
+   * Creates a jar file with no entries in the test directory.
+   *
+   * @param name the name of the jar file
+   * @return the jar file
+   */
+  private File createEmptyJar(String name) throws IOException {
+    File jar = dir.resolve(name).toFile();
+    new JarOutputStream(Files.newOutputStream(jar.toPath())).close();
+    return jar;
+  }
+
+  /**
+   * Returns the lines of compiler output that are diagnostics about a source file, without any
+   * {@link CheckerDaemon#LINE_PREFIX}.
+   *
+   * @param output the output of javac or a response of the daemon
+   * @return the diagnostics in {@code output}, in order
+   */
+  private static List<String> diagnostics(String output) {
+    List<String> result = new ArrayList<>();
+    for (String line : output.split("\\R")) {
+      if (line.startsWith(CheckerDaemon.LINE_PREFIX)) {
+        line = line.substring(CheckerDaemon.LINE_PREFIX.length());
+      }
+      if (line.contains(".java:") && (line.contains(": error:") || line.contains(": warning:"))) {
+        result.add(line);
+      }
+    }
+    return result;
+  }
+}
@@ -0,0 +1,230 @@
+package org.checkerframework.framework.test.junit;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import org.checkerframework.common.subtyping.SubtypingChecker;
+import org.checkerframework.framework.test.CompilationResult;
+import org.checkerframework.framework.test.TestConfiguration;
+import org.checkerframework.framework.test.TestConfigurationBuilder;
+import org.checkerframework.framework.test.TestUtilities;
+import org.checkerframework.framework.test.TypecheckExecutor;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@code -AelementTypeCacheDir}: the cached types of library elements are reused while the
+ * library annotations are unchanged, and are not reused after a library annotation changes, even if
+ * the size and modification time of the file that holds it do not. A class in a classpath directory
+ * is not reused after its class file changes, and a change to the directory does not select a new
+ * cache file.
+ */
+public class ElementTypeCacheDirTest {
+
+  /** The directory that holds the source file and the stub file of a test. */
+  private Path sourceDir;
+
+  /** The cache directory passed to the checker. */
+  private Path cacheDir;
+
+  /** The stub file. */
+  private Path stubFile;
+
+  /** A stub file that annotates {@code File.separator}. */
+  private static final String SEPARATOR_ENCRYPTED =
+      "import org.checkerframework.framework.testchecker.util.Encrypted;\n"
+          + "package java.io;\n"
+          + "class File {\n"
+          + "  static @Encrypted String separator;\n"
+          + "  static String pathSeparator;\n"
+          + "}\n";
+
+  /**
+   * A stub file that annotates {@code File.pathSeparator} instead, and has the same size as {@link
+   * #SEPARATOR_ENCRYPTED}.
+   */
+  private static final String PATH_SEPARATOR_ENCRYPTED =
+      "import org.checkerframework.framework.testchecker.util.Encrypted;\n"
+          + "package java.io;\n"
+          + "class File {\n"
+          + "  static String separator;\n"
+          + "  static @Encrypted String pathSeparator;\n"
+          + "}\n";
+
+  @Before
+  public void createDirectories() throws IOException {
+    sourceDir = Files.createTempDirectory("elementTypeSources");
+    cacheDir = Files.createTempDirectory("elementTypeCache");
+    stubFile = Files.createTempDirectory("elementTypeStubs").resolve("file.astub");
+    Files.write(
+        sourceDir.resolve("UseSeparator.java"),
+        ("import java.io.File;\n"
+                + "import org.checkerframework.framework.testchecker.util.Encrypted;\n"
+                + "class UseSeparator {\n"
+                + "  void m() {\n"
+                + "    @Encrypted String s = File.separator;\n"
+                + "  }\n"
+                + "}\n")
+            .getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void unchangedAnnotationsAreReused() throws IOException {
+    Files.write(stubFile, SEPARATOR_ENCRYPTED.getBytes(StandardCharsets.UTF_8));
+    Assert.assertEquals(Collections.emptyList(), compile());
+    List<Path> cacheFiles = getCacheFiles();
+    Assert.assertEquals(cacheFiles.toString(), 1, cacheFiles.size());
+    Assert.assertEquals(Collections.emptyList(), compile());
+    Assert.assertEquals(cacheFiles, getCacheFiles());
+  }
+
+  @Test
+  public void changedAnnotationIsNotReused() throws IOException {
+    Assert.assertEquals(SEPARATOR_ENCRYPTED.length(), PATH_SEPARATOR_ENCRYPTED.length());
+    Files.write(stubFile, SEPARATOR_ENCRYPTED.getBytes(StandardCharsets.UTF_8));
+    FileTime modified = Files.getLastModifiedTime(stubFile);
+    Assert.assertEquals(Collections.emptyList(), compile());
+
+    // Only the annotated field changes; the size and modification time of the stub file do not.
+    Files.write(stubFile, PATH_SEPARATOR_ENCRYPTED.getBytes(StandardCharsets.UTF_8));
+    Files.setLastModifiedTime(stubFile, modified);
+    List<String> diagnostics = compile();
+    Assert.assertEquals(diagnostics.toString(), 1, diagnostics.size());
+    Assert.assertTrue(diagnostics.get(0), diagnostics.get(0).contains("assignment"));
+    Assert.assertEquals(2, getCacheFiles().size());
+  }
+
+  @Test
+  public void changedClassInClasspathDirectoryIsNotReused() throws IOException {
+    Files.write(stubFile, SEPARATOR_ENCRYPTED.getBytes(StandardCharsets.UTF_8));
+    Path libDir = Files.createTempDirectory("elementTypeLib");
+    Files.write(
+        sourceDir.resolve("UseLib.java"),
+        ("import org.checkerframework.framework.testchecker.util.Encrypted;\n"
+                + "class UseLib {\n"
+                + "  void m() {\n"
+                + "    @Encrypted String s = Lib.field;\n"
+                + "  }\n"
+                + "}\n")
+            .getBytes(StandardCharsets.UTF_8));
+    compileLib(libDir, "@org.checkerframework.framework.testchecker.util.Encrypted String");
+    List<String> classpath = Collections.singletonList(libDir.toString());
+    Assert.assertEquals(Collections.emptyList(), compile("UseLib.java", classpath));
+    List<Path> cacheFiles = getCacheFiles();
+    Assert.assertEquals(cacheFiles.toString(), 1, cacheFiles.size());
+
+    // A new file in the classpath directory does not select a new cache file.
+    Files.write(libDir.resolve("unrelated.txt"), "unrelated".getBytes(StandardCharsets.UTF_8));
+    Assert.assertEquals(Collections.emptyList(), compile("UseLib.java", classpath));
+    Assert.assertEquals(cacheFiles, getCacheFiles());
+
+    Path classFile = libDir.resolve("Lib.class");
+    FileTime modified = Files.getLastModifiedTime(classFile);
+    compileLib(libDir, "String");
+    // Make sure the modification time changes, even on a file system with a coarse resolution.
+    Files.setLastModifiedTime(classFile, FileTime.fromMillis(modified.toMillis() + 10_000));
+    List<String> diagnostics = compile("UseLib.java", classpath);
+    Assert.assertEquals(diagnostics.toString(), 1, diagnostics.size());
+    Assert.assertTrue(diagnostics.get(0), diagnostics.get(0).contains("assignment"));
+    Assert.assertEquals(cacheFiles, getCacheFiles());
+  }
+
+  /**
+   * Compiles, with plain javac, a class {@code Lib} with a static field {@code field} of the given
+   * type into {@code libDir}.
+   *
+   * @param libDir the output directory
+   * @param fieldType the type of the field, including its annotations
+   */
+  private void compileLib(Path libDir, String fieldType) throws IOException {
+    Path libSourceDir = Files.createTempDirectory("elementTypeLibSources");
+    Path libSource = libSourceDir.resolve("Lib.java");
+    Files.write(
+        libSource,
+        ("public class Lib {\n  public static " + fieldType + " field;\n}\n")
+            .getBytes(StandardCharsets.UTF_8));
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    int exitCode =
+        compiler.run(
+            null,
+            null,
+            null,
+            "-classpath",
+            System.getProperty("java.class.path"),
+            "-d",
+            libDir.toString(),
+            libSource.toString());
+    Assert.assertEquals(0, exitCode);
+  }
+
+  /**
+   * Returns the cache files in the cache directory.
+   *
+   * @return the cache files in the cache directory
+   */
+  private List<Path> getCacheFiles() throws IOException {
+    try (Stream<Path> files = Files.list(cacheDir)) {
+      return files
+          .filter(p -> p.toString().endsWith(".cache"))
+          .sorted()
+          .collect(Collectors.toList());
+    }
+  }
+
+  /**
+   * Compiles {@code UseSeparator.java} with the Subtyping Checker, the Encrypted type system, and
+   * the stub file, using the cache directory.
+   *
+   * @return the diagnostics, sorted
+   */
+  private List<String> compile() throws IOException {
+    return compile("UseSeparator.java", Collections.emptyList());
+  }
+
+  /**
+   * Compiles the given source file with the Subtyping Checker, the Encrypted type system, and the
+   * stub file, using the cache directory.
+   *
+   * @param fileName the name of a file in the source directory
+   * @param classpathExtra extra classpath entries
+   * @return the diagnostics, sorted
+   */
+  private List<String> compile(String fileName, List<String> classpathExtra) throws IOException {
+    List<File> files = Collections.singletonList(sourceDir.resolve(fileName).toFile());
+    Path outputDir = Files.createTempDirectory("elementTypeClasses");
+    List<String> options =
+        Arrays.asList(
+            "-Anomsgtext",
+            "-Aquals=org.checkerframework.framework.testchecker.util.Encrypted,org.checkerframework.common.subtyping.qual.Unqualified",
+            "-Astubs=" + stubFile,
+            "-AelementTypeCacheDir=" + cacheDir,
+            "-d",
+            outputDir.toString());
+    TestConfiguration config =
+        TestConfigurationBuilder.buildDefaultConfiguration(
+            sourceDir.toString(),
+            files,
+            classpathExtra,
+            Collections.singletonList(SubtypingChecker.class.getName()),
+            options,
+            TestUtilities.getShouldEmitDebugInfo());
+    CompilationResult result = new TypecheckExecutor().compile(config);
+    Set<String> diagnostics = TestUtilities.diagnosticsToStrings(result.getDiagnostics(), false);
+    List<String> sorted = new ArrayList<>(diagnostics);
+    Collections.sort(sorted);
+    return sorted;
+  }
+}
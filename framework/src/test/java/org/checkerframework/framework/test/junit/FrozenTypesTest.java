@@ -0,0 +1,24 @@
+package org.checkerframework.framework.test.junit;
+
+import java.io.File;
+import java.util.List;
+import org.checkerframework.framework.test.CheckerFrameworkPerDirectoryTest;
+import org.checkerframework.framework.testchecker.frozentypes.FrozenTypesChecker;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Tests that the types returned by {@code AnnotatedTypeFactory#fromElementUnmodifiable} reject side
+ * effects and that {@code AnnotatedTypeFactory#fromElement} returns modifiable copies of them.
+ */
+public class FrozenTypesTest extends CheckerFrameworkPerDirectoryTest {
+
+  /** @param testFiles the files containing test code, which will be type-checked */
+  public FrozenTypesTest(List<File> testFiles) {
+    super(testFiles, FrozenTypesChecker.class, "frozentypes", "-Anomsgtext");
+  }
+
+  @Parameters
+  public static String[] getTestDirs() {
+    return new String[] {"frozentypes", "all-systems"};
+  }
+}
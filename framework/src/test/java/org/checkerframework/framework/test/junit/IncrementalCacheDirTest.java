@@ -0,0 +1,277 @@
+package org.checkerframework.framework.test.junit;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.checkerframework.common.subtyping.SubtypingChecker;
+import org.checkerframework.framework.test.CompilationResult;
+import org.checkerframework.framework.test.TestConfiguration;
+import org.checkerframework.framework.test.TestConfigurationBuilder;
+import org.checkerframework.framework.test.TestUtilities;
+import org.checkerframework.framework.test.TypecheckExecutor;
+import org.checkerframework.framework.testchecker.compound.CompoundChecker;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@code -AincrementalCacheDir}: a method that was checked without diagnostics is skipped
+ * while nothing it depends on changes, and is checked again when a dependency that is not part of
+ * its own source code changes. A method in which dataflow analysis reported a diagnostic is never
+ * skipped. A compound checker warns that it ignores the option.
+ */
+public class IncrementalCacheDirTest {
+
+  /** The directory that holds the source files of a test. */
+  private Path sourceDir;
+
+  /** The cache directory passed to the checker. */
+  private Path cacheDir;
+
+  /** The imports of the Encrypted type system, used by the test sources. */
+  private static final String IMPORTS =
+      "import org.checkerframework.framework.qual.DefaultQualifier;\n"
+          + "import org.checkerframework.framework.qual.TypeUseLocation;\n"
+          + "import org.checkerframework.framework.testchecker.util.Encrypted;\n";
+
+  /** A generic class. */
+  private static final String BOX =
+      IMPORTS + "class Box<T> {\n  T value;\n\n  T get() {\n    return value;\n  }\n}\n";
+
+  /** A method that depends on the type argument of the supertype of {@code EncBox}. */
+  private static final String USE_BOX =
+      IMPORTS
+          + "class UseBox {\n"
+          + "  void m(EncBox b) {\n"
+          + "    @Encrypted String s = b.get();\n"
+          + "  }\n"
+          + "}\n";
+
+  /** A method whose parameter type is defaulted by its enclosing class. */
+  private static final String INNER =
+      "  static class Inner {\n"
+          + "    void m(String p) {\n"
+          + "      @Encrypted String s = p;\n"
+          + "    }\n"
+          + "  }\n"
+          + "}\n";
+
+  /** The start of an Iterable whose {@code iterator} method may have a postcondition. */
+  private static final String MY_ITERABLE =
+      "import java.util.Collections;\n"
+          + "import java.util.Iterator;\n"
+          + "import org.checkerframework.framework.qual.EnsuresQualifier;\n"
+          + "import org.checkerframework.framework.testchecker.util.Encrypted;\n"
+          + "class MyIterable implements Iterable<String> {\n"
+          + "  final String name;\n"
+          + "\n"
+          + "  MyIterable(String name) {\n"
+          + "    this.name = name;\n"
+          + "  }\n"
+          + "\n"
+          + "  @SuppressWarnings(\"contracts.postcondition.not.satisfied\")\n";
+
+  /** The end of an Iterable whose {@code iterator} method may have a postcondition. */
+  private static final String MY_ITERATOR_METHOD =
+      "  public Iterator<String> iterator() {\n"
+          + "    return Collections.emptyIterator();\n"
+          + "  }\n"
+          + "}\n";
+
+  /**
+   * A method that depends on the postcondition of {@code MyIterable.iterator}, which javac calls
+   * implicitly.
+   */
+  private static final String USE_ITERABLE =
+      "import org.checkerframework.framework.testchecker.util.Encrypted;\n"
+          + "class UseIterable {\n"
+          + "  void m(MyIterable it) {\n"
+          + "    for (String s : it) {}\n"
+          + "    @Encrypted String n = it.name;\n"
+          + "  }\n"
+          + "}\n";
+
+  @Before
+  public void createDirectories() throws IOException {
+    sourceDir = Files.createTempDirectory("incrementalSources");
+    cacheDir = Files.createTempDirectory("incrementalCache");
+  }
+
+  @Test
+  public void unchangedMethodIsSkipped() throws IOException {
+    write("Box.java", BOX);
+    write("EncBox.java", IMPORTS + "class EncBox extends Box<@Encrypted String> {}\n");
+    write("UseBox.java", USE_BOX);
+    Assert.assertEquals(Collections.emptyList(), compile());
+    Path cacheFile = getCacheFile();
+    Assert.assertTrue(Files.readAllLines(cacheFile).size() > 1);
+
+    // The cache file is rewritten only if some method was checked again.
+    FileTime old = FileTime.fromMillis(0);
+    Files.setLastModifiedTime(cacheFile, old);
+    Assert.assertEquals(Collections.emptyList(), compile());
+    Assert.assertEquals(old, Files.getLastModifiedTime(cacheFile));
+  }
+
+  @Test
+  public void supertypeChangeIsRechecked() throws IOException {
+    write("Box.java", BOX);
+    write("EncBox.java", IMPORTS + "class EncBox extends Box<@Encrypted String> {}\n");
+    write("UseBox.java", USE_BOX);
+    Assert.assertEquals(Collections.emptyList(), compile());
+
+    // Only the qualifier on the supertype of EncBox changes.
+    write("EncBox.java", IMPORTS + "class EncBox extends Box<String> {}\n");
+    assertReportsIncompatibleAssignment(compile());
+  }
+
+  @Test
+  public void enclosingDefaultChangeIsRechecked() throws IOException {
+    write(
+        "Outer.java",
+        IMPORTS
+            + "@DefaultQualifier(value = Encrypted.class, locations = TypeUseLocation.PARAMETER)\n"
+            + "class Outer {\n"
+            + INNER);
+    Assert.assertEquals(Collections.emptyList(), compile());
+
+    // Only the default on the enclosing class changes.
+    write("Outer.java", IMPORTS + "class Outer {\n" + INNER);
+    assertReportsIncompatibleAssignment(compile());
+  }
+
+  @Test
+  public void implicitlyCalledMethodChangeIsRechecked() throws IOException {
+    write(
+        "MyIterable.java",
+        MY_ITERABLE
+            + "  @EnsuresQualifier(expression = \"this.name\", qualifier = Encrypted.class)\n"
+            + MY_ITERATOR_METHOD);
+    write("UseIterable.java", USE_ITERABLE);
+    Assert.assertEquals(Collections.emptyList(), compile());
+
+    // Only the postcondition of the iterator method, which the enhanced for loop calls, changes.
+    write("MyIterable.java", MY_ITERABLE + MY_ITERATOR_METHOD);
+    assertReportsIncompatibleAssignment(compile());
+  }
+
+  @Test
+  public void flowAnalysisDiagnosticIsNotLost() throws IOException {
+    write(
+        "Callee.java",
+        "import org.checkerframework.framework.qual.EnsuresQualifier;\n"
+            + "import org.checkerframework.framework.testchecker.util.Encrypted;\n"
+            + "class Callee {\n"
+            + "  @EnsuresQualifier(expression = \"noSuchField\", qualifier = Encrypted.class)\n"
+            + "  void ensure() {}\n"
+            + "}\n");
+    // The only error in this method is reported by the dataflow analysis, at the call.
+    write("Caller.java", "class Caller {\n  void m(Callee c) {\n    c.ensure();\n  }\n}\n");
+    List<String> diagnostics = compile();
+    Assert.assertTrue(
+        diagnostics.toString(),
+        diagnostics.stream().anyMatch(d -> d.contains("flowexpr.parse.error.postcondition")));
+    Assert.assertEquals(diagnostics, compile());
+  }
+
+  @Test
+  public void compoundCheckerWarns() throws IOException {
+    write("Empty.java", "class Empty {}\n");
+    List<String> diagnostics =
+        compile(CompoundChecker.class.getName(), Collections.singletonList("-Anomsgtext"));
+    Assert.assertEquals(
+        diagnostics.toString(),
+        1,
+        diagnostics.stream().filter(d -> d.contains("-AincrementalCacheDir is ignored")).count());
+  }
+
+  /**
+   * Asserts that the given diagnostics are exactly one incompatible assignment.
+   *
+   * @param diagnostics diagnostics
+   */
+  private static void assertReportsIncompatibleAssignment(List<String> diagnostics) {
+    Assert.assertEquals(diagnostics.toString(), 1, diagnostics.size());
+    Assert.assertTrue(diagnostics.get(0), diagnostics.get(0).contains("assignment"));
+  }
+
+  /**
+   * Writes a source file to the source directory.
+   *
+   * @param fileName the name of the file
+   * @param contents the contents of the file
+   */
+  private void write(String fileName, String contents) throws IOException {
+    Files.write(sourceDir.resolve(fileName), contents.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Returns the cache file of the checker.
+   *
+   * @return the only file in the cache directory
+   */
+  private Path getCacheFile() throws IOException {
+    try (Stream<Path> files = Files.list(cacheDir)) {
+      List<Path> cacheFiles =
+          files.filter(p -> p.toString().endsWith(".methods")).collect(Collectors.toList());
+      Assert.assertEquals(cacheFiles.toString(), 1, cacheFiles.size());
+      return cacheFiles.get(0);
+    }
+  }
+
+  /**
+   * Compiles all the files in the source directory with the Subtyping Checker and the Encrypted
+   * type system, using the cache directory.
+   *
+   * @return the diagnostics, sorted
+   */
+  private List<String> compile() throws IOException {
+    return compile(
+        SubtypingChecker.class.getName(),
+        Arrays.asList(
+            "-Anomsgtext",
+            "-Aquals=org.checkerframework.framework.testchecker.util.Encrypted,org.checkerframework.common.subtyping.qual.Unqualified"));
+  }
+
+  /**
+   * Compiles all the files in the source directory with the given checker, using the cache
+   * directory.
+   *
+   * @param checker the fully-qualified name of the checker
+   * @param checkerOptions options other than the cache and output directories
+   * @return the diagnostics, sorted
+   */
+  private List<String> compile(String checker, List<String> checkerOptions) throws IOException {
+    List<File> files;
+    try (Stream<Path> paths = Files.list(sourceDir)) {
+      files = paths.map(Path::toFile).sorted().collect(Collectors.toList());
+    }
+    Path outputDir = Files.createTempDirectory("incrementalClasses");
+    List<String> options = new ArrayList<>(checkerOptions);
+    options.addAll(
+        Arrays.asList("-AincrementalCacheDir=" + cacheDir, "-d", outputDir.toString()));
+    TestConfiguration config =
+        TestConfigurationBuilder.buildDefaultConfiguration(
+            sourceDir.toString(),
+            files,
+            Collections.emptyList(),
+            Collections.singletonList(checker),
+            options,
+            TestUtilities.getShouldEmitDebugInfo());
+    CompilationResult result = new TypecheckExecutor().compile(config);
+    Set<String> diagnostics = TestUtilities.diagnosticsToStrings(result.getDiagnostics(), false);
+    List<String> sorted = new ArrayList<>(diagnostics);
+    Collections.sort(sorted);
+    return sorted;
+  }
+}
@@ -0,0 +1,276 @@
+package org.checkerframework.framework.test.junit;
+
+import com.sun.tools.javac.main.JavaCompiler;
+import com.sun.tools.javac.main.Option;
+import com.sun.tools.javac.processing.JavacProcessingEnvironment;
+import com.sun.tools.javac.util.Context;
+import com.sun.tools.javac.util.Options;
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+import org.checkerframework.framework.testchecker.h1h2checker.quals.H1Bot;
+import org.checkerframework.framework.testchecker.h1h2checker.quals.H1Invalid;
+import org.checkerframework.framework.testchecker.h1h2checker.quals.H1Poly;
+import org.checkerframework.framework.testchecker.h1h2checker.quals.H1S1;
+import org.checkerframework.framework.testchecker.h1h2checker.quals.H1S2;
+import org.checkerframework.framework.testchecker.h1h2checker.quals.H1Top;
+import org.checkerframework.framework.testchecker.h1h2checker.quals.H2Bot;
+import org.checkerframework.framework.testchecker.h1h2checker.quals.H2Poly;
+import org.checkerframework.framework.testchecker.h1h2checker.quals.H2S1;
+import org.checkerframework.framework.testchecker.h1h2checker.quals.H2S2;
+import org.checkerframework.framework.testchecker.h1h2checker.quals.H2Top;
+import org.checkerframework.framework.testchecker.lubglb.quals.A;
+import org.checkerframework.framework.testchecker.lubglb.quals.B;
+import org.checkerframework.framework.testchecker.lubglb.quals.C;
+import org.checkerframework.framework.testchecker.lubglb.quals.D;
+import org.checkerframework.framework.testchecker.lubglb.quals.E;
+import org.checkerframework.framework.testchecker.lubglb.quals.F;
+import org.checkerframework.framework.testchecker.lubglb.quals.Poly;
+import org.checkerframework.framework.type.NoElementQualifierHierarchy;
+import org.checkerframework.framework.type.QualifierHierarchy;
+import org.checkerframework.framework.util.DefaultQualifierKindHierarchy;
+import org.checkerframework.framework.util.QualifierKind;
+import org.checkerframework.framework.util.QualifierKindHierarchy;
+import org.checkerframework.javacutil.AnnotationBuilder;
+import org.checkerframework.javacutil.AnnotationUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests that the tables of {@link NoElementQualifierHierarchy} give the same results as the
+ * set-based {@link DefaultQualifierKindHierarchy} from which they are computed, for three
+ * hierarchies at once, including polymorphic qualifiers and qualifiers with several direct
+ * supertypes.
+ */
+public class NoElementQualifierHierarchyTest {
+
+  /** The qualifiers of the three hierarchies, whose tops are H1Top, H2Top, and A. */
+  private static final List<Class<? extends Annotation>> QUALIFIERS =
+      Arrays.asList(
+          H1Top.class,
+          H1S1.class,
+          H1S2.class,
+          H1Invalid.class,
+          H1Bot.class,
+          H1Poly.class,
+          H2Top.class,
+          H2S1.class,
+          H2S2.class,
+          H2Bot.class,
+          H2Poly.class,
+          A.class,
+          B.class,
+          C.class,
+          D.class,
+          E.class,
+          F.class,
+          Poly.class);
+
+  /** The hierarchy under test. */
+  private final QualifierHierarchy hierarchy;
+
+  /** The set-based hierarchy of qualifier kinds that is the reference. */
+  private final QualifierKindHierarchy reference;
+
+  /** An annotation mirror for each qualifier. */
+  private final List<AnnotationMirror> annos = new ArrayList<>();
+
+  public NoElementQualifierHierarchyTest() {
+    Context context = new Context();
+    // Set source and target to 8
+    Options options = Options.instance(context);
+    options.put(Option.SOURCE, "8");
+    options.put(Option.TARGET, "8");
+
+    ProcessingEnvironment env = JavacProcessingEnvironment.instance(context);
+    JavaCompiler javac = JavaCompiler.instance(context);
+    javac.initModules(com.sun.tools.javac.util.List.nil());
+    javac.enterDone();
+
+    hierarchy = new NoElementQualifierHierarchy(QUALIFIERS, env.getElementUtils());
+    reference = new DefaultQualifierKindHierarchy(QUALIFIERS);
+    for (Class<? extends Annotation> qual : QUALIFIERS) {
+      annos.add(AnnotationBuilder.fromClass(env.getElementUtils(), qual));
+    }
+  }
+
+  /**
+   * Returns the reference qualifier kind of an annotation.
+   *
+   * @param anno a qualifier
+   * @return the qualifier kind of {@code anno}
+   */
+  private QualifierKind kind(AnnotationMirror anno) {
+    QualifierKind kind = reference.getQualifierKind(AnnotationUtils.annotationName(anno));
+    Assert.assertNotNull(kind);
+    return kind;
+  }
+
+  /**
+   * Returns the name of the qualifier of a qualifier kind.
+   *
+   * @param kind a qualifier kind, or null
+   * @return the name of the qualifier, or null if {@code kind} is null
+   */
+  private static String name(QualifierKind kind) {
+    return kind == null ? null : kind.getName();
+  }
+
+  /**
+   * Returns the name of a qualifier.
+   *
+   * @param anno a qualifier, or null
+   * @return the name of {@code anno}, or null if {@code anno} is null
+   */
+  private static String name(AnnotationMirror anno) {
+    return anno == null ? null : AnnotationUtils.annotationName(anno);
+  }
+
+  @Test
+  public void topsAndBottoms() {
+    Assert.assertEquals(3, hierarchy.getTopAnnotations().size());
+    Assert.assertEquals(3, hierarchy.getBottomAnnotations().size());
+  }
+
+  @Test
+  public void pairsOfQualifiers() {
+    for (AnnotationMirror a1 : annos) {
+      for (AnnotationMirror a2 : annos) {
+        QualifierKind k1 = kind(a1);
+        QualifierKind k2 = kind(a2);
+        String pair = name(a1) + ", " + name(a2);
+        Assert.assertEquals(pair, k1.isSubtypeOf(k2), hierarchy.isSubtype(a1, a2));
+        Assert.assertEquals(
+            pair,
+            name(reference.leastUpperBound(k1, k2)),
+            name(hierarchy.leastUpperBound(a1, a2)));
+        Assert.assertEquals(
+            pair,
+            name(reference.greatestLowerBound(k1, k2)),
+            name(hierarchy.greatestLowerBound(a1, a2)));
+      }
+    }
+  }
+
+  @Test
+  public void setsOfQualifiers() {
+    List<List<AnnotationMirror>> sets = new ArrayList<>();
+    addSets(sets, new ArrayList<>(hierarchy.getTopAnnotations()), 0, new ArrayList<>());
+    // One qualifier from each hierarchy, in every combination.
+    Assert.assertEquals(6 * 5 * 7, sets.size());
+
+    for (List<AnnotationMirror> set1 : sets) {
+      for (List<AnnotationMirror> set2 : sets) {
+        String pair = set1 + ", " + set2;
+        Assert.assertEquals(pair, isSubtype(set1, set2), hierarchy.isSubtype(set1, set2));
+        Assert.assertEquals(
+            pair, combine(set1, set2, true), names(hierarchy.leastUpperBounds(set1, set2)));
+        Assert.assertEquals(
+            pair, combine(set1, set2, false), names(hierarchy.greatestLowerBounds(set1, set2)));
+      }
+    }
+  }
+
+  /**
+   * Adds to {@code sets} every set that extends {@code prefix} with one qualifier from each of the
+   * hierarchies of {@code tops}, starting at index {@code i}.
+   *
+   * @param sets where to add the sets
+   * @param tops the tops of the hierarchies
+   * @param i the index of the next hierarchy
+   * @param prefix one qualifier from each of the hierarchies before {@code i}
+   */
+  private void addSets(
+      List<List<AnnotationMirror>> sets,
+      List<AnnotationMirror> tops,
+      int i,
+      List<AnnotationMirror> prefix) {
+    if (i == tops.size()) {
+      sets.add(new ArrayList<>(prefix));
+      return;
+    }
+    for (AnnotationMirror anno : annos) {
+      if (kind(anno).getTop() == kind(tops.get(i))) {
+        prefix.add(anno);
+        addSets(sets, tops, i + 1, prefix);
+        prefix.remove(prefix.size() - 1);
+      }
+    }
+  }
+
+  /**
+   * Returns the qualifier of {@code set} in the same hierarchy as {@code kind}.
+   *
+   * @param set one qualifier per hierarchy
+   * @param kind a qualifier kind
+   * @return the qualifier kind of the element of {@code set} in the hierarchy of {@code kind}
+   */
+  private QualifierKind partner(List<AnnotationMirror> set, QualifierKind kind) {
+    for (AnnotationMirror anno : set) {
+      if (kind(anno).isInSameHierarchyAs(kind)) {
+        return kind(anno);
+      }
+    }
+    throw new AssertionError("no qualifier in the hierarchy of " + kind + " in " + set);
+  }
+
+  /**
+   * The reference implementation of {@link QualifierHierarchy#isSubtype(java.util.Collection,
+   * java.util.Collection)}.
+   *
+   * @param subs one qualifier per hierarchy
+   * @param supers one qualifier per hierarchy
+   * @return true if each qualifier of {@code subs} is a subtype of the one of {@code supers} in the
+   *     same hierarchy
+   */
+  private boolean isSubtype(List<AnnotationMirror> subs, List<AnnotationMirror> supers) {
+    for (AnnotationMirror sub : subs) {
+      if (!kind(sub).isSubtypeOf(partner(supers, kind(sub)))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * The reference implementation of {@link QualifierHierarchy#leastUpperBounds} and {@link
+   * QualifierHierarchy#greatestLowerBounds}.
+   *
+   * @param set1 one qualifier per hierarchy
+   * @param set2 one qualifier per hierarchy
+   * @param lub true for least upper bounds, false for greatest lower bounds
+   * @return the names of the bounds of the qualifiers of each hierarchy, sorted
+   */
+  private List<String> combine(
+      List<AnnotationMirror> set1, List<AnnotationMirror> set2, boolean lub) {
+    List<String> result = new ArrayList<>();
+    for (AnnotationMirror a1 : set1) {
+      QualifierKind k1 = kind(a1);
+      QualifierKind k2 = partner(set2, k1);
+      result.add(
+          name(lub ? reference.leastUpperBound(k1, k2) : reference.greatestLowerBound(k1, k2)));
+    }
+    Collections.sort(result);
+    return result;
+  }
+
+  /**
+   * Returns the names of the given qualifiers, sorted.
+   *
+   * @param set qualifiers
+   * @return the names of the qualifiers in {@code set}, sorted
+   */
+  private static List<String> names(Set<? extends AnnotationMirror> set) {
+    List<String> result = new ArrayList<>();
+    for (AnnotationMirror anno : set) {
+      result.add(name(anno));
+    }
+    Collections.sort(result);
+    return result;
+  }
+}
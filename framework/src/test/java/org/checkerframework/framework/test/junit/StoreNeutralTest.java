@@ -0,0 +1,24 @@
+package org.checkerframework.framework.test.junit;
+
+import java.io.File;
+import java.util.List;
+import org.checkerframework.framework.test.CheckerFrameworkPerDirectoryTest;
+import org.checkerframework.framework.testchecker.storeneutral.StoreNeutralChecker;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Tests that the forward analysis visits the nodes whose transfer function a checker overrides,
+ * even if {@link org.checkerframework.framework.flow.CFTransfer} is store-neutral for them.
+ */
+public class StoreNeutralTest extends CheckerFrameworkPerDirectoryTest {
+
+  /** @param testFiles the files containing test code, which will be type-checked */
+  public StoreNeutralTest(List<File> testFiles) {
+    super(testFiles, StoreNeutralChecker.class, "storeneutral", "-Anomsgtext");
+  }
+
+  @Parameters
+  public static String[] getTestDirs() {
+    return new String[] {"storeneutral", "all-systems"};
+  }
+}
@@ -0,0 +1,41 @@
+package org.checkerframework.framework.test.junit;
+
+import java.io.File;
+import java.util.List;
+import java.util.Set;
+import org.checkerframework.framework.test.CheckerFrameworkPerDirectoryTest;
+import org.checkerframework.framework.testchecker.util.FlowTestChecker;
+import org.junit.Assert;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Tests that {@code -AstoreSnapshots} does not change the diagnostics: they are the same as without
+ * the option, both when the stores of every node are recorded and when the limit on the number of
+ * stores is reached, so that some stores are computed by re-running transfer functions. Also tests
+ * that the type factory does look stores up in the snapshots.
+ */
+public class StoreSnapshotsTest extends CheckerFrameworkPerDirectoryTest {
+
+  /** @param testFiles the files containing test code, which will be type-checked */
+  public StoreSnapshotsTest(List<File> testFiles) {
+    super(testFiles, FlowTestChecker.class, "flow", "-Anomsgtext");
+  }
+
+  @Parameters
+  public static String[] getTestDirs() {
+    return new String[] {"flow", "all-systems"};
+  }
+
+  @Override
+  public void run() {
+    FlowTestChecker checker = new FlowTestChecker();
+    Set<String> expected = compileWithOptions(checker);
+    Assert.assertEquals(0, checker.getTypeFactory().getStoreSnapshotHitCount());
+
+    checker = new FlowTestChecker();
+    Assert.assertEquals(expected, compileWithOptions(checker, "-AstoreSnapshots"));
+    Assert.assertTrue(checker.getTypeFactory().getStoreSnapshotHitCount() > 0);
+
+    Assert.assertEquals(expected, compileWithOptions(new FlowTestChecker(), "-AstoreSnapshots=20"));
+  }
+}
@@ -0,0 +1,50 @@
+package org.checkerframework.framework.test.junit;
+
+import java.io.File;
+import java.util.List;
+import java.util.Set;
+import org.checkerframework.common.value.ValueChecker;
+import org.checkerframework.framework.test.CheckerFrameworkPerDirectoryTest;
+import org.checkerframework.framework.type.DefaultTypeHierarchy;
+import org.junit.Assert;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Tests that {@code -AsubtypeCacheSize} does not change the diagnostics: they are the same as
+ * without the option, both with a memo table large enough for every query and with one so small
+ * that most results are evicted and computed again. The Value Checker's qualifiers have element
+ * values, some of which print the same, so the test also checks that queries about different
+ * qualifiers are not confused. Also tests that results are found in the memo table, and that the
+ * diagnostics without the option are the expected ones.
+ */
+public class SubtypeQueryCacheTest extends CheckerFrameworkPerDirectoryTest {
+
+  /** @param testFiles the files containing test code, which will be type-checked */
+  public SubtypeQueryCacheTest(List<File> testFiles) {
+    super(
+        testFiles,
+        ValueChecker.class,
+        "value-element-values",
+        "-Anomsgtext",
+        "-Astubs=tests/value-element-values/separators.astub");
+  }
+
+  @Parameters
+  public static String[] getTestDirs() {
+    return new String[] {"value-element-values", "all-systems"};
+  }
+
+  @Override
+  public void run() {
+    super.run();
+    Set<String> expected = compileWithOptions(new ValueChecker());
+
+    ValueChecker checker = new ValueChecker();
+    Assert.assertEquals(expected, compileWithOptions(checker, "-AsubtypeCacheSize=100000"));
+    DefaultTypeHierarchy typeHierarchy =
+        (DefaultTypeHierarchy) checker.getTypeFactory().getTypeHierarchy();
+    Assert.assertTrue(typeHierarchy.getSubtypeQueryCache().getHitCount() > 0);
+
+    Assert.assertEquals(expected, compileWithOptions(new ValueChecker(), "-AsubtypeCacheSize=2"));
+  }
+}
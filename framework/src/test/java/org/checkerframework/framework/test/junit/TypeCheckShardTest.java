@@ -0,0 +1,120 @@
+package org.checkerframework.framework.test.junit;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+import org.checkerframework.framework.test.CheckerFrameworkPerDirectoryTest;
+import org.checkerframework.framework.test.CompilationResult;
+import org.checkerframework.framework.test.TestConfiguration;
+import org.checkerframework.framework.test.TestConfigurationBuilder;
+import org.checkerframework.framework.test.TestUtilities;
+import org.checkerframework.framework.test.TypecheckExecutor;
+import org.junit.Assert;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Tests that the compilations for the shards of {@code -AtypeCheckShard} together issue every
+ * diagnostic of an unsharded compilation, each checker diagnostic exactly once, and that only the
+ * compilation for shard 0 writes class files.
+ */
+public class TypeCheckShardTest extends CheckerFrameworkPerDirectoryTest {
+
+  /** The number of shards. */
+  private static final int SHARDS = 3;
+
+  /** @param testFiles the files containing test code, which will be type-checked */
+  public TypeCheckShardTest(List<File> testFiles) {
+    super(
+        testFiles,
+        org.checkerframework.common.subtyping.SubtypingChecker.class,
+        "subtyping",
+        "-Anomsgtext",
+        "-Aquals=org.checkerframework.framework.testchecker.util.Encrypted,org.checkerframework.framework.testchecker.util.PolyEncrypted,org.checkerframework.common.subtyping.qual.Unqualified");
+  }
+
+  @Parameters
+  public static String[] getTestDirs() {
+    return new String[] {"subtyping"};
+  }
+
+  @Override
+  public void run() {
+    Set<String> unsharded = compile(new ArrayList<>(checkerOptions), null);
+    Assert.assertFalse("the test files should produce diagnostics", unsharded.isEmpty());
+
+    List<Set<String>> shards = new ArrayList<>();
+    for (int i = 0; i < SHARDS; i++) {
+      Path outputDir;
+      try {
+        outputDir = Files.createTempDirectory("shard" + i);
+      } catch (IOException e) {
+        throw new Error(e);
+      }
+      List<String> options = new ArrayList<>(checkerOptions);
+      options.add("-AtypeCheckShard=" + i + "/" + SHARDS);
+      shards.add(compile(options, outputDir));
+      Assert.assertEquals(
+          "only shard 0 should write class files", i == 0, containsClassFile(outputDir));
+    }
+
+    Set<String> union = new HashSet<>();
+    for (Set<String> shard : shards) {
+      union.addAll(shard);
+    }
+    Assert.assertEquals(unsharded, union);
+    for (String diagnostic : unsharded) {
+      int count = 0;
+      for (Set<String> shard : shards) {
+        if (shard.contains(diagnostic)) {
+          count++;
+        }
+      }
+      // javac's own diagnostics are issued by every shard, the checker's by exactly one.
+      Assert.assertTrue(diagnostic, count == 1 || count == SHARDS);
+    }
+  }
+
+  /**
+   * Compiles the test files and returns the diagnostics.
+   *
+   * @param options the options to the compiler
+   * @param outputDir the directory for class files, or null for the default
+   * @return the diagnostics, including the names of the files
+   */
+  private Set<String> compile(List<String> options, Path outputDir) {
+    if (outputDir != null) {
+      options.addAll(Arrays.asList("-d", outputDir.toString()));
+    }
+    TestConfiguration config =
+        TestConfigurationBuilder.buildDefaultConfiguration(
+            testDir,
+            testFiles,
+            classpathExtra,
+            checkerNames,
+            options,
+            TestUtilities.getShouldEmitDebugInfo());
+    CompilationResult result = new TypecheckExecutor().compile(config);
+    return TestUtilities.diagnosticsToStrings(result.getDiagnostics(), false);
+  }
+
+  /**
+   * Returns true if a directory contains a class file.
+   *
+   * @param dir a directory
+   * @return true if {@code dir} contains a class file
+   */
+  private static boolean containsClassFile(Path dir) {
+    try (Stream<Path> files = Files.walk(dir)) {
+      return files.anyMatch(p -> p.toString().endsWith(".class"));
+    } catch (IOException e) {
+      throw new Error(e);
+    }
+  }
+}
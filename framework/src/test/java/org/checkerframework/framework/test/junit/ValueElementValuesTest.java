@@ -0,0 +1,29 @@
+package org.checkerframework.framework.test.junit;
+
+import java.io.File;
+import java.util.List;
+import org.checkerframework.common.value.ValueChecker;
+import org.checkerframework.framework.test.CheckerFrameworkPerDirectoryTest;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Tests that the types of library fields whose qualifiers print the same, but have different
+ * element values, are not interned as one type.
+ */
+public class ValueElementValuesTest extends CheckerFrameworkPerDirectoryTest {
+
+  /** @param testFiles the files containing test code, which will be type-checked */
+  public ValueElementValuesTest(List<File> testFiles) {
+    super(
+        testFiles,
+        ValueChecker.class,
+        "value-element-values",
+        "-Anomsgtext",
+        "-Astubs=tests/value-element-values/separators.astub");
+  }
+
+  @Parameters
+  public static String[] getTestDirs() {
+    return new String[] {"value-element-values"};
+  }
+}
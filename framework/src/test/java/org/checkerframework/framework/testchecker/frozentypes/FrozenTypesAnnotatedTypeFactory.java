@@ -0,0 +1,30 @@
+package org.checkerframework.framework.testchecker.frozentypes;
+
+import java.lang.annotation.Annotation;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import org.checkerframework.common.basetype.BaseAnnotatedTypeFactory;
+import org.checkerframework.common.basetype.BaseTypeChecker;
+import org.checkerframework.common.subtyping.qual.Unqualified;
+import org.checkerframework.framework.testchecker.util.Encrypted;
+
+/** The type factory of the {@link FrozenTypesChecker}, whose qualifiers are Encrypted types. */
+public class FrozenTypesAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
+
+  /**
+   * Creates a FrozenTypesAnnotatedTypeFactory.
+   *
+   * @param checker the checker
+   */
+  public FrozenTypesAnnotatedTypeFactory(BaseTypeChecker checker) {
+    super(checker);
+    this.postInit();
+  }
+
+  @Override
+  protected Set<Class<? extends Annotation>> createSupportedTypeQualifiers() {
+    return new HashSet<Class<? extends Annotation>>(
+        Arrays.asList(Encrypted.class, Unqualified.class));
+  }
+}
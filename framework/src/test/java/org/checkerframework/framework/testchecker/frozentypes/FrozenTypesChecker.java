@@ -0,0 +1,13 @@
+package org.checkerframework.framework.testchecker.frozentypes;
+
+import org.checkerframework.common.basetype.BaseTypeChecker;
+
+/**
+ * A checker for testing {@link
+ * org.checkerframework.framework.type.AnnotatedTypeFactory#fromElementUnmodifiable}. For every
+ * method, constructor, and field that the code uses, {@link FrozenTypesVisitor} checks that the
+ * shared type of the element rejects side effects and that {@link
+ * org.checkerframework.framework.type.AnnotatedTypeFactory#fromElement} returns a modifiable copy
+ * of it.
+ */
+public class FrozenTypesChecker extends BaseTypeChecker {}
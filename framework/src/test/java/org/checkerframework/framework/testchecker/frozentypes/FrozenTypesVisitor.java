@@ -0,0 +1,141 @@
+package org.checkerframework.framework.testchecker.frozentypes;
+
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.MemberSelectTree;
+import com.sun.source.tree.MethodInvocationTree;
+import com.sun.source.tree.NewClassTree;
+import com.sun.source.tree.Tree;
+import java.util.ArrayList;
+import java.util.List;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.type.TypeKind;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.checkerframework.common.basetype.BaseTypeChecker;
+import org.checkerframework.common.basetype.BaseTypeVisitor;
+import org.checkerframework.framework.testchecker.util.Encrypted;
+import org.checkerframework.framework.type.AnnotatedTypeMirror;
+import org.checkerframework.framework.type.visitor.SimpleAnnotatedTypeScanner;
+import org.checkerframework.javacutil.AnnotationBuilder;
+import org.checkerframework.javacutil.BugInCF;
+import org.checkerframework.javacutil.TreeUtils;
+
+/**
+ * Checks the types of the elements that the code uses. It reports an error, with no corresponding
+ * text in a messages.properties file, if:
+ *
+ * <ul>
+ *   <li>{@code frozentypes.not.frozen}: a part of the type returned by {@code
+ *       fromElementUnmodifiable} is not frozen,
+ *   <li>{@code frozentypes.mutated}: a part of that type accepts a side effect,
+ *   <li>{@code frozentypes.copy.frozen}: a part of the type returned by {@code fromElement} is
+ *       frozen, or
+ *   <li>{@code frozentypes.shared.changed}: side-effecting the type returned by {@code
+ *       fromElement} changes the shared type.
+ * </ul>
+ */
+public class FrozenTypesVisitor extends BaseTypeVisitor<FrozenTypesAnnotatedTypeFactory> {
+
+  /** The @{@link Encrypted} annotation. */
+  private final AnnotationMirror ENCRYPTED;
+
+  /**
+   * Creates a FrozenTypesVisitor.
+   *
+   * @param checker the checker
+   */
+  public FrozenTypesVisitor(BaseTypeChecker checker) {
+    super(checker);
+    ENCRYPTED = AnnotationBuilder.fromClass(elements, Encrypted.class);
+  }
+
+  @Override
+  public Void visitMethodInvocation(MethodInvocationTree node, Void p) {
+    checkElement(TreeUtils.elementFromUse(node), node);
+    return super.visitMethodInvocation(node, p);
+  }
+
+  @Override
+  public Void visitNewClass(NewClassTree node, Void p) {
+    checkElement(TreeUtils.elementFromUse(node), node);
+    return super.visitNewClass(node, p);
+  }
+
+  @Override
+  public Void visitIdentifier(IdentifierTree node, Void p) {
+    checkVariable(TreeUtils.elementFromUse(node), node);
+    return super.visitIdentifier(node, p);
+  }
+
+  @Override
+  public Void visitMemberSelect(MemberSelectTree node, Void p) {
+    checkVariable(TreeUtils.elementFromUse(node), node);
+    return super.visitMemberSelect(node, p);
+  }
+
+  /**
+   * Checks the type of {@code elt} if it is a field.
+   *
+   * @param elt the element that {@code tree} refers to, or null
+   * @param tree the use of {@code elt}
+   */
+  private void checkVariable(@Nullable Element elt, Tree tree) {
+    if (elt != null && elt.getKind().isField()) {
+      checkElement(elt, tree);
+    }
+  }
+
+  /**
+   * Checks that the shared type of {@code elt} is frozen and that a copy of it is not.
+   *
+   * @param elt an element
+   * @param tree the use of {@code elt}, where errors are reported
+   */
+  private void checkElement(Element elt, Tree tree) {
+    // The first call may compute and cache the type; both calls must return a frozen type.
+    atypeFactory.fromElementUnmodifiable(elt);
+    AnnotatedTypeMirror shared = atypeFactory.fromElementUnmodifiable(elt);
+    String sharedString = shared.toString(true);
+    for (AnnotatedTypeMirror part : getParts(shared)) {
+      if (!part.isFrozen()) {
+        checker.reportError(tree, "frozentypes.not.frozen", elt, part);
+      }
+      try {
+        part.clearAnnotations();
+        checker.reportError(tree, "frozentypes.mutated", elt, part);
+      } catch (BugInCF expected) {
+        // A frozen type rejects side effects.
+      }
+    }
+
+    AnnotatedTypeMirror copy = atypeFactory.fromElement(elt);
+    for (AnnotatedTypeMirror part : getParts(copy)) {
+      if (part.isFrozen()) {
+        checker.reportError(tree, "frozentypes.copy.frozen", elt, part);
+      }
+      if (part.getKind() != TypeKind.EXECUTABLE) {
+        part.replaceAnnotation(ENCRYPTED);
+      }
+    }
+    if (!sharedString.equals(atypeFactory.fromElementUnmodifiable(elt).toString(true))) {
+      checker.reportError(tree, "frozentypes.shared.changed", elt, sharedString);
+    }
+  }
+
+  /**
+   * Returns {@code type} and every type it contains.
+   *
+   * @param type a type
+   * @return {@code type} and every type it contains
+   */
+  private static List<AnnotatedTypeMirror> getParts(AnnotatedTypeMirror type) {
+    List<AnnotatedTypeMirror> parts = new ArrayList<>();
+    new SimpleAnnotatedTypeScanner<Void, Void>(
+            (t, p) -> {
+              parts.add(t);
+              return null;
+            })
+        .visit(type);
+    return parts;
+  }
+}
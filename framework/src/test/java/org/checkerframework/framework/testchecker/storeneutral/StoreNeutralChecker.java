@@ -0,0 +1,9 @@
+package org.checkerframework.framework.testchecker.storeneutral;
+
+import org.checkerframework.common.basetype.BaseTypeChecker;
+
+/**
+ * A checker whose transfer function overrides the transfer function for string literals, for which
+ * {@link org.checkerframework.framework.flow.CFTransfer} is store-neutral.
+ */
+public class StoreNeutralChecker extends BaseTypeChecker {}
@@ -0,0 +1,45 @@
+package org.checkerframework.framework.testchecker.storeneutral;
+
+import javax.lang.model.element.AnnotationMirror;
+import org.checkerframework.dataflow.analysis.TransferInput;
+import org.checkerframework.dataflow.analysis.TransferResult;
+import org.checkerframework.dataflow.cfg.node.Node;
+import org.checkerframework.dataflow.cfg.node.StringLiteralNode;
+import org.checkerframework.framework.flow.CFAbstractAnalysis;
+import org.checkerframework.framework.flow.CFStore;
+import org.checkerframework.framework.flow.CFTransfer;
+import org.checkerframework.framework.flow.CFValue;
+import org.checkerframework.framework.testchecker.storeneutral.qual.FromStringLiteral;
+import org.checkerframework.javacutil.AnnotationBuilder;
+
+/** Gives every string literal the type {@code @FromStringLiteral}. */
+public class StoreNeutralTransfer extends CFTransfer {
+
+  /** The {@code @FromStringLiteral} annotation. */
+  private final AnnotationMirror FROM_STRING_LITERAL;
+
+  /**
+   * Creates a new StoreNeutralTransfer.
+   *
+   * @param analysis the analysis
+   */
+  public StoreNeutralTransfer(CFAbstractAnalysis<CFValue, CFStore, CFTransfer> analysis) {
+    super(analysis);
+    FROM_STRING_LITERAL =
+        AnnotationBuilder.fromClass(
+            analysis.getTypeFactory().getElementUtils(), FromStringLiteral.class);
+  }
+
+  @Override
+  public TransferResult<CFValue, CFStore> visitStringLiteral(
+      StringLiteralNode n, TransferInput<CFValue, CFStore> in) {
+    TransferResult<CFValue, CFStore> result = super.visitStringLiteral(n, in);
+    result.setResultValue(analysis.createSingleAnnotationValue(FROM_STRING_LITERAL, n.getType()));
+    return result;
+  }
+
+  @Override
+  public boolean isStoreNeutral(Node node) {
+    return !(node instanceof StringLiteralNode) && super.isStoreNeutral(node);
+  }
+}
@@ -0,0 +1,9 @@
+package org.checkerframework.framework.testchecker.storeneutral.qual;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Target;
+import org.checkerframework.framework.qual.SubtypeOf;
+
+@SubtypeOf({StoreNeutralTop.class})
+@Target({ElementType.TYPE_USE, ElementType.TYPE_PARAMETER})
+public @interface FromStringLiteral {}
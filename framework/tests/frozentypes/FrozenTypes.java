@@ -0,0 +1,43 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.checkerframework.framework.testchecker.util.Encrypted;
+
+// The tests are performed by the FrozenTypesVisitor, on the types of the methods, constructors, and
+// fields used here. None of them should issue an error.
+
+class FrozenTypesBox<T extends Comparable<T>> {
+  T value;
+
+  static @Encrypted String[] secrets;
+
+  FrozenTypesBox(T value) {
+    this.value = value;
+  }
+
+  <U extends T> T max(U other) {
+    return value.compareTo(other) < 0 ? other : value;
+  }
+
+  static <K, V extends List<? super K>> V lookup(Map<K, V> map, K key) {
+    return map.get(key);
+  }
+}
+
+class FrozenTypes {
+  int count;
+
+  void use(FrozenTypesBox<String> box, Map<String, List<Object>> map) {
+    String s = box.max("x");
+    s = box.value;
+    @Encrypted String[] secrets = FrozenTypesBox.secrets;
+    List<Object> list = FrozenTypesBox.lookup(map, s);
+    list = new ArrayList<>(list);
+    list.add(s.length());
+    this.count = count + s.hashCode();
+    new FrozenTypesBox<>(s.trim().toLowerCase());
+    // Use the same elements again, after their types have been cached.
+    s = box.max(box.value);
+    count = FrozenTypesBox.lookup(map, s).size();
+  }
+}
@@ -0,0 +1,18 @@
+import org.checkerframework.framework.testchecker.storeneutral.qual.FromStringLiteral;
+
+// Test case for a transfer function that overrides the transfer function for a kind of node for
+// which CFTransfer is store-neutral. The analysis must visit string literals.
+public class StringLiteralTransfer {
+
+  void take(@FromStringLiteral String s) {}
+
+  void literals(String p) {
+    @FromStringLiteral String s = "hello";
+    take("world");
+    take(s);
+    // :: error: (argument.type.incompatible)
+    take(p);
+    // :: error: (assignment.type.incompatible)
+    @FromStringLiteral Object o = 1;
+  }
+}
@@ -0,0 +1,26 @@
+import java.io.File;
+import org.checkerframework.common.value.qual.StringVal;
+
+// Test case for types of library fields whose qualifiers print the same but are different.
+// The types of the two fields must not be interned as one type.
+public class ElementValuesThatPrintTheSame {
+
+  void separator() {
+    @StringVal("a\", \"b") String ok = File.separator;
+    // :: error: (assignment.type.incompatible)
+    @StringVal({"a", "b"}) String bad = File.separator;
+  }
+
+  void pathSeparator() {
+    @StringVal({"a", "b"}) String ok = File.pathSeparator;
+    // :: error: (assignment.type.incompatible)
+    @StringVal("a\", \"b") String bad = File.pathSeparator;
+  }
+
+  void both() {
+    // :: error: (assignment.type.incompatible)
+    @StringVal("a\", \"b") String bad = File.pathSeparator;
+    // :: error: (assignment.type.incompatible)
+    @StringVal({"a", "b"}) String bad2 = File.separator;
+  }
+}
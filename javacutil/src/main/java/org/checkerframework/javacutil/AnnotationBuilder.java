@@ -10,6 +10,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.WeakHashMap;
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.AnnotationValue;
@@ -56,6 +57,22 @@ import org.plumelib.util.StringsPlume;
  */
 public class AnnotationBuilder {
 
+  /**
+   * The canonical annotation mirrors of each compilation, so that equal annotations built by this
+   * class are usually the same object and comparisons of them take the identity fast path of
+   * {@link AnnotationUtils#areSame} and {@link AnnotationUtils#compareAnnotationMirrors}. Maps the
+   * element utilities of a compilation, which are unique to it, to a map from the structure of an
+   * annotation (see {@link #internKey(AnnotationMirror)}) to the canonical mirror. The keys are
+   * weak so that the mirrors of a compilation can be collected once the compilation is over, and
+   * each table is bounded so that a compilation that builds many distinct annotations, such as the
+   * Value Checker's, does not retain all of them.
+   */
+  private static final Map<Elements, Map<List<Object>, AnnotationMirror>> internTables =
+      Collections.synchronizedMap(new WeakHashMap<>());
+
+  /** The maximum number of canonical annotation mirrors kept for each compilation. */
+  private static final int INTERN_TABLE_SIZE = 10_000;
+
   /** The element utilities to use. */
   private final Elements elements;
   /** The type utilities to use. */
@@ -250,8 +267,92 @@ public class AnnotationBuilder {
       elementValues.put(annoElement, elementValue);
     }
 
-    AnnotationMirror result = new CheckerFrameworkAnnotationMirror(annoType, elementValues);
-    return result;
+    return intern(elements, new CheckerFrameworkAnnotationMirror(annoType, elementValues));
+  }
+
+  /**
+   * Returns the canonical instance of {@code anno} in the compilation whose element utilities are
+   * {@code elements}: a previously-built mirror with the same structure, or {@code anno} itself.
+   * Annotations with the same structure have the same name and equal element values of the same
+   * classes, so they are interchangeable. (The converse does not hold, for example for the values
+   * {@code 33} and {@code 33L}, and a canonical mirror may be evicted from the bounded table, so
+   * two mirrors that are the same according to {@link AnnotationUtils#areSame} are not always the
+   * same object.)
+   *
+   * @param elements the element utilities of the compilation
+   * @param anno a newly-built annotation mirror, which must not be modified
+   * @return the canonical instance of {@code anno}
+   */
+  private static AnnotationMirror intern(Elements elements, CheckerFrameworkAnnotationMirror anno) {
+    Map<List<Object>, AnnotationMirror> internTable;
+    synchronized (internTables) {
+      internTable = internTables.get(elements);
+      if (internTable == null) {
+        internTable = new WeightedCache<>("annotationMirrors", INTERN_TABLE_SIZE);
+        internTables.put(elements, internTable);
+      }
+    }
+    List<Object> key = internKey(anno);
+    synchronized (internTable) {
+      AnnotationMirror canonical = internTable.get(key);
+      if (canonical != null) {
+        return canonical;
+      }
+      internTable.put(key, anno);
+      return anno;
+    }
+  }
+
+  /**
+   * Returns the structure of an annotation: its name, followed by the name and {@link
+   * #internKey(AnnotationValue) structure} of each of its element values. Unlike the string
+   * representation of an annotation, the structure distinguishes all different element values,
+   * including strings that contain quotes and numbers of different types that print the same. So
+   * the structure can also serve as a key for anything else that depends only on the name and
+   * element values of an annotation.
+   *
+   * @param anno an annotation
+   * @return the structure of {@code anno}, which is compared with {@link Object#equals}
+   */
+  public static List<Object> internKey(AnnotationMirror anno) {
+    Map<? extends ExecutableElement, ? extends AnnotationValue> elementValues =
+        anno.getElementValues();
+    List<Object> key = new ArrayList<>(1 + 2 * elementValues.size());
+    key.add(AnnotationUtils.annotationName(anno));
+    for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry :
+        elementValues.entrySet()) {
+      key.add(entry.getKey().getSimpleName().toString());
+      key.add(internKey(entry.getValue()));
+    }
+    return key;
+  }
+
+  /**
+   * Returns the structure of an element value: the value itself if it is a boxed primitive, a
+   * string, or an enum constant, whose {@code equals} methods distinguish different values; a list
+   * of the structures of the elements of an array; the {@link #internKey(AnnotationMirror)
+   * structure} of an annotation; and the kind and string representation of a class literal.
+   *
+   * @param value an element value
+   * @return the structure of {@code value}, which is compared with {@link Object#equals}
+   */
+  private static Object internKey(AnnotationValue value) {
+    Object v = value.getValue();
+    if (v instanceof List) {
+      List<?> values = (List<?>) v;
+      List<Object> key = new ArrayList<>(values.size());
+      for (Object elt : values) {
+        key.add(elt instanceof AnnotationValue ? internKey((AnnotationValue) elt) : elt);
+      }
+      return key;
+    } else if (v instanceof AnnotationMirror) {
+      return internKey((AnnotationMirror) v);
+    } else if (v instanceof TypeMirror) {
+      // Distinct type mirrors can represent the same type, so compare the types by name.
+      return Arrays.asList(TypeKind.class, ((TypeMirror) v).getKind(), v.toString());
+    } else {
+      return v;
+    }
   }
 
   /** Whether or not {@link #build()} has been called. */
@@ -263,10 +364,16 @@ public class AnnotationBuilder {
     }
   }
 
+  /**
+   * Returns the annotation that has been built. The result may be the same object as an annotation
+   * built earlier in the same compilation, if the two are equal.
+   *
+   * @return the annotation that has been built
+   */
   public AnnotationMirror build() {
     assertNotBuilt();
     wasBuilt = true;
-    return new CheckerFrameworkAnnotationMirror(annotationType, elementValues);
+    return intern(elements, new CheckerFrameworkAnnotationMirror(annotationType, elementValues));
   }
 
   /**
@@ -293,6 +400,7 @@ public class AnnotationBuilder {
    */
   public void copyElementValuesFromAnnotation(
       AnnotationMirror valueHolder, Set<String> ignorableElements) {
+    assertNotBuilt();
     for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> eltValToCopy :
         valueHolder.getElementValues().entrySet()) {
       Name eltNameToCopy = eltValToCopy.getKey().getSimpleName();
@@ -314,7 +422,7 @@ public class AnnotationBuilder {
    */
   public void copyRenameElementValuesFromAnnotation(
       AnnotationMirror valueHolder, Map<String, String> elementNameRenaming) {
-
+    assertNotBuilt();
     for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> eltValToCopy :
         valueHolder.getElementValues().entrySet()) {
 
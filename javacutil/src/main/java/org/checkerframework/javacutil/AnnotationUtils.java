@@ -193,6 +193,20 @@ public class AnnotationUtils {
       return areSame(c1.iterator().next(), c2.iterator().next());
     }
 
+    // Fast path: the collections contain the same objects in the same order, as is common for
+    // annotation sets, which are sorted, whose elements were built by AnnotationBuilder.
+    Iterator<? extends AnnotationMirror> identityIter1 = c1.iterator();
+    Iterator<? extends AnnotationMirror> identityIter2 = c2.iterator();
+    boolean identical = true;
+    while (identical && identityIter1.hasNext()) {
+      @SuppressWarnings("interning:not.interned") // optimization via equality test
+      boolean same = identityIter1.next() == identityIter2.next();
+      identical = same;
+    }
+    if (identical) {
+      return true;
+    }
+
     // while loop depends on SortedSet implementation.
     NavigableSet<AnnotationMirror> s1 = createAnnotationSet();
     NavigableSet<AnnotationMirror> s2 = createAnnotationSet();
@@ -349,7 +363,12 @@ public class AnnotationUtils {
    * @param a2 the second annotation
    * @return an ordering over AnnotationMirrors based on their name and values
    */
+  @CompareToMethod
   public static int compareAnnotationMirrors(AnnotationMirror a1, AnnotationMirror a2) {
+    if (a1 == a2) {
+      // AnnotationBuilder interns the mirrors it creates, so this is the common case.
+      return 0;
+    }
     if (!AnnotationUtils.areSameByName(a1, a2)) {
       return annotationName(a1).compareTo(annotationName(a2));
     }
@@ -0,0 +1,975 @@
+package org.checkerframework.javacutil;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiFunction;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A hash map whose mappings are stored in an immutable hash array mapped trie (HAMT). Modifying the
+ * map replaces its trie by a new one that shares every unchanged node with the old one. Therefore
+ * {@link #copy} takes constant time, and a map and its copies share the parts they have in common.
+ *
+ * <p>The shape of the trie depends only on the set of keys, so two maps with the same keys have the
+ * same shape. {@link #equals}, {@link #containsAllMappings}, and {@link #setToIntersection} use this
+ * to skip subtrees that two maps share without examining their entries.
+ *
+ * <p>Keys must not be null; values may be null. Iterators traverse a snapshot of the map, so the
+ * map may be modified during iteration; {@link Iterator#remove} and {@link Map.Entry#setValue}
+ * write through to the map. This class is not synchronized.
+ *
+ * @param <K> the type of keys
+ * @param <V> the type of values
+ */
+public class PersistentHashMap<K, V> extends AbstractMap<K, V> {
+
+  /** The number of hash bits consumed at each level of the trie. */
+  private static final int BITS_PER_LEVEL = 5;
+
+  /** The largest shift at which a node is indexed by hash bits; deeper nodes are collisions. */
+  private static final int MAX_SHIFT = 30;
+
+  /** Returned by {@link Node#find} when a key is absent, since values may be null. */
+  private static final Object NOT_FOUND = new Object();
+
+  /** The root of the trie, or null if this map is empty. */
+  private @Nullable Node root;
+
+  /** Creates an empty map. */
+  public PersistentHashMap() {
+    this.root = null;
+  }
+
+  /**
+   * Creates a map with the given trie.
+   *
+   * @param root the root of the trie, or null for an empty map
+   */
+  private PersistentHashMap(@Nullable Node root) {
+    this.root = root;
+  }
+
+  /**
+   * Returns a copy of this map, in constant time. Later changes to either map do not affect the
+   * other.
+   *
+   * @return a copy of this map
+   */
+  public PersistentHashMap<K, V> copy() {
+    return new PersistentHashMap<>(root);
+  }
+
+  @Override
+  public int size() {
+    return root == null ? 0 : root.size;
+  }
+
+  @Override
+  public boolean containsKey(@Nullable Object key) {
+    return key != null && root != null && root.find(key, hash(key), 0) != NOT_FOUND;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked") // only values of type V are stored
+  public @Nullable V get(@Nullable Object key) {
+    if (key == null || root == null) {
+      return null;
+    }
+    @Nullable Object result = root.find(key, hash(key), 0);
+    return result == NOT_FOUND ? null : (V) result;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked") // only values of type V are stored
+  public @Nullable V put(K key, V value) {
+    Objects.requireNonNull(key, "PersistentHashMap does not permit null keys");
+    Change change = new Change();
+    int hash = hash(key);
+    if (root == null) {
+      root = BitmapNode.single(key, hash, value, 0);
+    } else {
+      root = root.put(key, hash, value, 0, change);
+    }
+    return (V) change.oldValue;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked") // only values of type V are stored
+  public @Nullable V remove(@Nullable Object key) {
+    if (key == null || root == null) {
+      return null;
+    }
+    Change change = new Change();
+    root = root.remove(key, hash(key), 0, change);
+    return (V) change.oldValue;
+  }
+
+  @Override
+  public void clear() {
+    root = null;
+  }
+
+  @Override
+  public Set<Map.Entry<K, V>> entrySet() {
+    return new AbstractSet<Map.Entry<K, V>>() {
+      @Override
+      public Iterator<Map.Entry<K, V>> iterator() {
+        return new EntryIterator(root);
+      }
+
+      @Override
+      public int size() {
+        return PersistentHashMap.this.size();
+      }
+    };
+  }
+
+  /**
+   * Returns true if this map contains every mapping of {@code other}, comparing values with {@link
+   * Object#equals}. Subtrees that the two maps share are not examined.
+   *
+   * @param other a map
+   * @return true if every mapping of {@code other} is also a mapping of this map
+   */
+  public boolean containsAllMappings(PersistentHashMap<K, V> other) {
+    if (other.root == null) {
+      return true;
+    }
+    return root != null && containsAll(root, other.root, 0);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked") // the key and value types are not needed for comparison
+  public boolean equals(@Nullable Object o) {
+    if (o instanceof PersistentHashMap) {
+      PersistentHashMap<K, V> other = (PersistentHashMap<K, V>) o;
+      return size() == other.size() && containsAllMappings(other);
+    }
+    return super.equals(o);
+  }
+
+  @Override
+  public int hashCode() {
+    return super.hashCode();
+  }
+
+  /**
+   * Replaces the contents of this map by the mappings for the keys that are in both {@code a} and
+   * {@code b}. The value for such a key {@code k} is {@code merge.apply(a.get(k), b.get(k))}; the
+   * key is omitted if that value is null.
+   *
+   * <p>If {@code mergeIsIdempotent} is true, {@code merge.apply(v, v)} is assumed to equal {@code
+   * v}. Then the subtrees shared by {@code a} and {@code b} are reused as they are, without calling
+   * {@code merge}, and this map shares them as well.
+   *
+   * @param a a map
+   * @param b a map
+   * @param merge computes the value for a key from its values in {@code a} and {@code b}, or
+   *     returns null to omit the key
+   * @param mergeIsIdempotent true if merging a value with itself yields an equal value
+   */
+  @SuppressWarnings("unchecked") // only values of type V are stored
+  public void setToIntersection(
+      PersistentHashMap<K, V> a,
+      PersistentHashMap<K, V> b,
+      BiFunction<? super V, ? super V, ? extends @Nullable V> merge,
+      boolean mergeIsIdempotent) {
+    if (a.root == null || b.root == null) {
+      root = null;
+      return;
+    }
+    root =
+        intersect(
+            a.root,
+            b.root,
+            0,
+            (BiFunction<@Nullable Object, @Nullable Object, @Nullable Object>) merge,
+            mergeIsIdempotent);
+  }
+
+  /**
+   * Returns the hash code that determines the position of a key in the trie.
+   *
+   * @param key a key
+   * @return the hash code of {@code key}, with its high bits mixed into its low bits
+   */
+  private static int hash(Object key) {
+    int h = key.hashCode();
+    return h ^ (h >>> 16);
+  }
+
+  /**
+   * Returns the bit that represents {@code hash} in a node at depth {@code shift}.
+   *
+   * @param hash a hash code
+   * @param shift the number of hash bits consumed by the ancestors of the node
+   * @return a word with exactly one bit set
+   */
+  private static int bitpos(int hash, int shift) {
+    return 1 << ((hash >>> shift) & 31);
+  }
+
+  /**
+   * Returns the position of the element for {@code bit} in an array of elements whose bits are set
+   * in {@code bitmap}.
+   *
+   * @param bitmap a bitmap
+   * @param bit a word with exactly one bit set
+   * @return the number of bits in {@code bitmap} that are lower than {@code bit}
+   */
+  private static int index(int bitmap, int bit) {
+    return Integer.bitCount(bitmap & (bit - 1));
+  }
+
+  /** Records the effect of a {@code put} or {@code remove} on a trie. */
+  private static class Change {
+    /** The value that was replaced or removed, or null if there was none. */
+    @Nullable Object oldValue = null;
+  }
+
+  /** A node of the trie. Nodes are immutable. */
+  private abstract static class Node {
+
+    /** The number of mappings in the subtree rooted at this node. */
+    final int size;
+
+    /**
+     * Creates a node.
+     *
+     * @param size the number of mappings in the subtree rooted at this node
+     */
+    Node(int size) {
+      this.size = size;
+    }
+
+    /**
+     * Returns the value for {@code key}, or {@link #NOT_FOUND}.
+     *
+     * @param key a key
+     * @param hash the hash of {@code key}
+     * @param shift the depth of this node, in bits
+     * @return the value for {@code key}, or {@link #NOT_FOUND}
+     */
+    abstract @Nullable Object find(Object key, int hash, int shift);
+
+    /**
+     * Returns a node that is like this one, but maps {@code key} to {@code value}.
+     *
+     * @param key a key
+     * @param hash the hash of {@code key}
+     * @param value the value
+     * @param shift the depth of this node, in bits
+     * @param change records the previous value of {@code key}
+     * @return this node if it already maps {@code key} to {@code value}, otherwise a new node
+     */
+    abstract Node put(Object key, int hash, @Nullable Object value, int shift, Change change);
+
+    /**
+     * Returns a node that is like this one, but without a mapping for {@code key}.
+     *
+     * @param key a key
+     * @param hash the hash of {@code key}
+     * @param shift the depth of this node, in bits
+     * @param change records the removed value
+     * @return this node if it has no mapping for {@code key}, null if the result is empty, and
+     *     otherwise a new node
+     */
+    abstract @Nullable Node remove(Object key, int hash, int shift, Change change);
+
+    /**
+     * Returns the number of mappings stored directly in this node.
+     *
+     * @return the number of mappings stored directly in this node
+     */
+    abstract int entryCount();
+
+    /**
+     * Returns the key of the i-th mapping stored directly in this node.
+     *
+     * @param i an index less than {@link #entryCount}
+     * @return the key of the i-th mapping
+     */
+    abstract Object keyAt(int i);
+
+    /**
+     * Returns the value of the i-th mapping stored directly in this node.
+     *
+     * @param i an index less than {@link #entryCount}
+     * @return the value of the i-th mapping
+     */
+    abstract @Nullable Object valueAt(int i);
+
+    /**
+     * Returns the number of children of this node.
+     *
+     * @return the number of children of this node
+     */
+    abstract int nodeCount();
+
+    /**
+     * Returns the i-th child of this node.
+     *
+     * @param i an index less than {@link #nodeCount}
+     * @return the i-th child
+     */
+    abstract Node nodeAt(int i);
+  }
+
+  /**
+   * An interior node. Each of the 32 possible values of the node's 5 hash bits is either unused, or
+   * holds one mapping directly, or holds a child with two or more mappings.
+   */
+  private static final class BitmapNode extends Node {
+
+    /** The bits whose mappings are stored directly in this node. */
+    final int dataMap;
+
+    /** The bits whose mappings are stored in children. */
+    final int nodeMap;
+
+    /** The directly stored mappings, as alternating keys and values, in bit order. */
+    final @Nullable Object[] kvs;
+
+    /** The children, in bit order. */
+    final Node[] nodes;
+
+    /**
+     * Creates a node.
+     *
+     * @param dataMap the bits whose mappings are stored directly
+     * @param nodeMap the bits whose mappings are stored in children
+     * @param kvs the directly stored mappings, as alternating keys and values
+     * @param nodes the children
+     */
+    BitmapNode(int dataMap, int nodeMap, @Nullable Object[] kvs, Node[] nodes) {
+      super(kvs.length / 2 + totalSize(nodes));
+      this.dataMap = dataMap;
+      this.nodeMap = nodeMap;
+      this.kvs = kvs;
+      this.nodes = nodes;
+    }
+
+    /**
+     * Returns the number of mappings in the given nodes.
+     *
+     * @param nodes nodes
+     * @return the sum of the sizes of {@code nodes}
+     */
+    private static int totalSize(Node[] nodes) {
+      int result = 0;
+      for (Node n : nodes) {
+        result += n.size;
+      }
+      return result;
+    }
+
+    /**
+     * Creates a node with one mapping.
+     *
+     * @param key the key
+     * @param hash the hash of {@code key}
+     * @param value the value
+     * @param shift the depth of the node, in bits
+     * @return a node that contains only the given mapping
+     */
+    static BitmapNode single(Object key, int hash, @Nullable Object value, int shift) {
+      return new BitmapNode(bitpos(hash, shift), 0, new Object[] {key, value}, new Node[0]);
+    }
+
+    @Override
+    @Nullable Object find(Object key, int hash, int shift) {
+      int bit = bitpos(hash, shift);
+      if ((dataMap & bit) != 0) {
+        int i = index(dataMap, bit);
+        return key.equals(kvs[2 * i]) ? kvs[2 * i + 1] : NOT_FOUND;
+      }
+      if ((nodeMap & bit) != 0) {
+        return nodes[index(nodeMap, bit)].find(key, hash, shift + BITS_PER_LEVEL);
+      }
+      return NOT_FOUND;
+    }
+
+    @Override
+    Node put(Object key, int hash, @Nullable Object value, int shift, Change change) {
+      int bit = bitpos(hash, shift);
+      if ((dataMap & bit) != 0) {
+        int i = index(dataMap, bit);
+        Object existingKey = kvs[2 * i];
+        assert existingKey != null : "@AssumeAssertion(nullness): keys are non-null";
+        @Nullable Object existingValue = kvs[2 * i + 1];
+        if (key.equals(existingKey)) {
+          change.oldValue = existingValue;
+          if (value == existingValue) {
+            return this;
+          }
+          Object[] newKvs = kvs.clone();
+          newKvs[2 * i + 1] = value;
+          return new BitmapNode(dataMap, nodeMap, newKvs, nodes);
+        }
+        // Push the existing mapping down into a new child together with the new one.
+        Node child =
+            merge(
+                existingKey,
+                hash(existingKey),
+                existingValue,
+                key,
+                hash,
+                value,
+                shift + BITS_PER_LEVEL);
+        return new BitmapNode(
+            dataMap ^ bit,
+            nodeMap | bit,
+            removePair(kvs, i),
+            insert(nodes, index(nodeMap, bit), child));
+      }
+      if ((nodeMap & bit) != 0) {
+        int j = index(nodeMap, bit);
+        Node child = nodes[j];
+        Node newChild = child.put(key, hash, value, shift + BITS_PER_LEVEL, change);
+        if (newChild == child) {
+          return this;
+        }
+        Node[] newNodes = nodes.clone();
+        newNodes[j] = newChild;
+        return new BitmapNode(dataMap, nodeMap, kvs, newNodes);
+      }
+      return new BitmapNode(
+          dataMap | bit, nodeMap, insertPair(kvs, index(dataMap, bit), key, value), nodes);
+    }
+
+    @Override
+    @Nullable Node remove(Object key, int hash, int shift, Change change) {
+      int bit = bitpos(hash, shift);
+      if ((dataMap & bit) != 0) {
+        int i = index(dataMap, bit);
+        if (!key.equals(kvs[2 * i])) {
+          return this;
+        }
+        change.oldValue = kvs[2 * i + 1];
+        if (size == 1) {
+          return null;
+        }
+        return new BitmapNode(dataMap ^ bit, nodeMap, removePair(kvs, i), nodes);
+      }
+      if ((nodeMap & bit) != 0) {
+        int j = index(nodeMap, bit);
+        Node child = nodes[j];
+        Node newChild = child.remove(key, hash, shift + BITS_PER_LEVEL, change);
+        if (newChild == child) {
+          return this;
+        }
+        // A child has at least two mappings, so newChild is not null.
+        assert newChild != null : "@AssumeAssertion(nullness): children have two or more mappings";
+        if (newChild.size == 1) {
+          // Keep the trie canonical: a single mapping is stored in its parent.
+          return new BitmapNode(
+              dataMap | bit,
+              nodeMap ^ bit,
+              insertPair(kvs, index(dataMap, bit), newChild.keyAt(0), newChild.valueAt(0)),
+              removeNode(nodes, j));
+        }
+        Node[] newNodes = nodes.clone();
+        newNodes[j] = newChild;
+        return new BitmapNode(dataMap, nodeMap, kvs, newNodes);
+      }
+      return this;
+    }
+
+    @Override
+    int entryCount() {
+      return kvs.length / 2;
+    }
+
+    @Override
+    @SuppressWarnings("nullness:return") // keys are non-null
+    Object keyAt(int i) {
+      return kvs[2 * i];
+    }
+
+    @Override
+    @Nullable Object valueAt(int i) {
+      return kvs[2 * i + 1];
+    }
+
+    @Override
+    int nodeCount() {
+      return nodes.length;
+    }
+
+    @Override
+    Node nodeAt(int i) {
+      return nodes[i];
+    }
+  }
+
+  /** A leaf that holds two or more mappings whose keys have the same hash. */
+  private static final class CollisionNode extends Node {
+
+    /** The mappings, as alternating keys and values. */
+    final @Nullable Object[] kvs;
+
+    /**
+     * Creates a collision node.
+     *
+     * @param kvs the mappings, as alternating keys and values
+     */
+    CollisionNode(@Nullable Object[] kvs) {
+      super(kvs.length / 2);
+      this.kvs = kvs;
+    }
+
+    /**
+     * Returns the index of the mapping for {@code key}, or -1.
+     *
+     * @param key a key
+     * @return the index of the mapping for {@code key}, or -1 if there is none
+     */
+    private int indexOf(Object key) {
+      for (int i = 0; i < size; i++) {
+        if (key.equals(kvs[2 * i])) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    @Override
+    @Nullable Object find(Object key, int hash, int shift) {
+      int i = indexOf(key);
+      return i == -1 ? NOT_FOUND : kvs[2 * i + 1];
+    }
+
+    @Override
+    Node put(Object key, int hash, @Nullable Object value, int shift, Change change) {
+      int i = indexOf(key);
+      if (i == -1) {
+        return new CollisionNode(insertPair(kvs, size, key, value));
+      }
+      change.oldValue = kvs[2 * i + 1];
+      if (value == kvs[2 * i + 1]) {
+        return this;
+      }
+      Object[] newKvs = kvs.clone();
+      newKvs[2 * i + 1] = value;
+      return new CollisionNode(newKvs);
+    }
+
+    @Override
+    @Nullable Node remove(Object key, int hash, int shift, Change change) {
+      int i = indexOf(key);
+      if (i == -1) {
+        return this;
+      }
+      change.oldValue = kvs[2 * i + 1];
+      // A collision node has two or more mappings, so at least one remains.  If exactly one
+      // remains, the parent moves it into itself.
+      return new CollisionNode(removePair(kvs, i));
+    }
+
+    @Override
+    int entryCount() {
+      return size;
+    }
+
+    @Override
+    @SuppressWarnings("nullness:return") // keys are non-null
+    Object keyAt(int i) {
+      return kvs[2 * i];
+    }
+
+    @Override
+    @Nullable Object valueAt(int i) {
+      return kvs[2 * i + 1];
+    }
+
+    @Override
+    int nodeCount() {
+      return 0;
+    }
+
+    @Override
+    Node nodeAt(int i) {
+      throw new IndexOutOfBoundsException("CollisionNode has no children");
+    }
+  }
+
+  /**
+   * Returns a node at depth {@code shift} that holds two mappings with different keys.
+   *
+   * @param key1 the first key
+   * @param hash1 the hash of {@code key1}
+   * @param value1 the first value
+   * @param key2 the second key
+   * @param hash2 the hash of {@code key2}
+   * @param value2 the second value
+   * @param shift the depth of the node, in bits
+   * @return a node that contains exactly the two mappings
+   */
+  private static Node merge(
+      Object key1,
+      int hash1,
+      @Nullable Object value1,
+      Object key2,
+      int hash2,
+      @Nullable Object value2,
+      int shift) {
+    if (shift > MAX_SHIFT) {
+      return new CollisionNode(new Object[] {key1, value1, key2, value2});
+    }
+    int bit1 = bitpos(hash1, shift);
+    int bit2 = bitpos(hash2, shift);
+    if (bit1 == bit2) {
+      Node child = merge(key1, hash1, value1, key2, hash2, value2, shift + BITS_PER_LEVEL);
+      return new BitmapNode(0, bit1, new Object[0], new Node[] {child});
+    }
+    Object[] kvs =
+        Integer.compareUnsigned(bit1, bit2) < 0
+            ? new Object[] {key1, value1, key2, value2}
+            : new Object[] {key2, value2, key1, value1};
+    return new BitmapNode(bit1 | bit2, 0, kvs, new Node[0]);
+  }
+
+  /**
+   * Returns true if node {@code a} contains every mapping of node {@code b}.
+   *
+   * @param a a node
+   * @param b a node at the same depth as {@code a}
+   * @param shift the depth of the nodes, in bits
+   * @return true if every mapping in {@code b} is also in {@code a}
+   */
+  private static boolean containsAll(Node a, Node b, int shift) {
+    if (a == b) {
+      return true;
+    }
+    if (b.size > a.size) {
+      return false;
+    }
+    if (b instanceof CollisionNode) {
+      for (int i = 0; i < b.entryCount(); i++) {
+        Object key = b.keyAt(i);
+        @Nullable Object aValue = a.find(key, hash(key), shift);
+        if (aValue == NOT_FOUND || !Objects.equals(aValue, b.valueAt(i))) {
+          return false;
+        }
+      }
+      return true;
+    }
+    BitmapNode bb = (BitmapNode) b;
+    BitmapNode ab = (BitmapNode) a;
+    for (int i = 0; i < bb.entryCount(); i++) {
+      Object key = bb.keyAt(i);
+      @Nullable Object aValue = ab.find(key, hash(key), shift);
+      if (aValue == NOT_FOUND || !Objects.equals(aValue, bb.valueAt(i))) {
+        return false;
+      }
+    }
+    if ((bb.nodeMap & ~ab.nodeMap) != 0) {
+      // A child of b has two or more mappings where a has at most one.
+      return false;
+    }
+    for (int j = 0; j < bb.nodes.length; j++) {
+      int bit = nthBit(bb.nodeMap, j);
+      if (!containsAll(ab.nodes[index(ab.nodeMap, bit)], bb.nodes[j], shift + BITS_PER_LEVEL)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns a node that holds the mappings for the keys in both {@code a} and {@code b}, with merged
+   * values.
+   *
+   * @param a a node
+   * @param b a node at the same depth as {@code a}
+   * @param shift the depth of the nodes, in bits
+   * @param merge merges the values of a key in {@code a} and {@code b}; null means to omit the key
+   * @param mergeIsIdempotent true if merging a value with itself yields an equal value
+   * @return the intersection, or null if it is empty
+   */
+  private static @Nullable Node intersect(
+      Node a,
+      Node b,
+      int shift,
+      BiFunction<@Nullable Object, @Nullable Object, @Nullable Object> merge,
+      boolean mergeIsIdempotent) {
+    if (a == b && mergeIsIdempotent) {
+      return a;
+    }
+    if (a instanceof CollisionNode) {
+      // Nodes at the same depth have the same kind.
+      @Nullable Object[] kvs = new Object[2 * a.size];
+      int count = 0;
+      for (int i = 0; i < a.entryCount(); i++) {
+        Object key = a.keyAt(i);
+        @Nullable Object bValue = b.find(key, hash(key), shift);
+        if (bValue != NOT_FOUND) {
+          @Nullable Object merged = merge.apply(a.valueAt(i), bValue);
+          if (merged != null) {
+            kvs[2 * count] = key;
+            kvs[2 * count + 1] = merged;
+            count++;
+          }
+        }
+      }
+      if (count == 0) {
+        return null;
+      }
+      return new CollisionNode(count == a.size ? kvs : Arrays.copyOf(kvs, 2 * count));
+    }
+
+    BitmapNode ab = (BitmapNode) a;
+    BitmapNode bb = (BitmapNode) b;
+    int common = (ab.dataMap | ab.nodeMap) & (bb.dataMap | bb.nodeMap);
+    int dataMap = 0;
+    int nodeMap = 0;
+    @Nullable Object[] kvs = new Object[2 * Integer.bitCount(common)];
+    Node[] nodes = new Node[Integer.bitCount(common)];
+    int kvCount = 0;
+    int nodeCount = 0;
+    // Whether the result has the same mappings as a, so that a can be returned.
+    boolean sameAsA = common == (ab.dataMap | ab.nodeMap);
+    for (int bits = common; bits != 0; bits &= bits - 1) {
+      int bit = bits & -bits;
+      if ((ab.nodeMap & bit) != 0 && (bb.nodeMap & bit) != 0) {
+        Node aChild = ab.nodes[index(ab.nodeMap, bit)];
+        Node child =
+            intersect(
+                aChild,
+                bb.nodes[index(bb.nodeMap, bit)],
+                shift + BITS_PER_LEVEL,
+                merge,
+                mergeIsIdempotent);
+        sameAsA &= child == aChild;
+        if (child == null) {
+          continue;
+        }
+        if (child.size == 1) {
+          dataMap |= bit;
+          kvs[2 * kvCount] = child.keyAt(0);
+          kvs[2 * kvCount + 1] = child.valueAt(0);
+          kvCount++;
+        } else {
+          nodeMap |= bit;
+          nodes[nodeCount++] = child;
+        }
+        continue;
+      }
+      // At least one of a and b holds a single mapping for this bit.
+      Object key;
+      @Nullable Object aValue;
+      @Nullable Object bValue;
+      if ((ab.dataMap & bit) != 0) {
+        int i = index(ab.dataMap, bit);
+        key = ab.keyAt(i);
+        aValue = ab.valueAt(i);
+        bValue = bb.find(key, hash(key), shift);
+      } else {
+        int i = index(bb.dataMap, bit);
+        key = bb.keyAt(i);
+        bValue = bb.valueAt(i);
+        aValue = ab.find(key, hash(key), shift);
+        // a holds a child here, which the result cannot equal.
+        sameAsA = false;
+      }
+      if (aValue == NOT_FOUND || bValue == NOT_FOUND) {
+        sameAsA = false;
+        continue;
+      }
+      @Nullable Object merged = merge.apply(aValue, bValue);
+      if (merged == null) {
+        sameAsA = false;
+        continue;
+      }
+      sameAsA &= merged == aValue;
+      dataMap |= bit;
+      kvs[2 * kvCount] = key;
+      kvs[2 * kvCount + 1] = merged;
+      kvCount++;
+    }
+    if (sameAsA) {
+      return a;
+    }
+    if (kvCount == 0 && nodeCount == 0) {
+      return null;
+    }
+    return new BitmapNode(
+        dataMap,
+        nodeMap,
+        Arrays.copyOf(kvs, 2 * kvCount),
+        Arrays.copyOf(nodes, nodeCount));
+  }
+
+  /**
+   * Returns the n-th lowest set bit of {@code bitmap}.
+   *
+   * @param bitmap a bitmap with more than n bits set
+   * @param n an index
+   * @return a word whose only set bit is the n-th lowest set bit of {@code bitmap}
+   */
+  private static int nthBit(int bitmap, int n) {
+    for (int i = 0; i < n; i++) {
+      bitmap &= bitmap - 1;
+    }
+    return bitmap & -bitmap;
+  }
+
+  /**
+   * Returns a copy of an array of alternating keys and values with a mapping inserted.
+   *
+   * @param kvs alternating keys and values
+   * @param i the position of the new mapping
+   * @param key the new key
+   * @param value the new value
+   * @return a copy of {@code kvs} with the mapping inserted at position {@code i}
+   */
+  private static @Nullable Object[] insertPair(
+      @Nullable Object[] kvs, int i, Object key, @Nullable Object value) {
+    @Nullable Object[] result = new Object[kvs.length + 2];
+    System.arraycopy(kvs, 0, result, 0, 2 * i);
+    result[2 * i] = key;
+    result[2 * i + 1] = value;
+    System.arraycopy(kvs, 2 * i, result, 2 * i + 2, kvs.length - 2 * i);
+    return result;
+  }
+
+  /**
+   * Returns a copy of an array of alternating keys and values with a mapping removed.
+   *
+   * @param kvs alternating keys and values
+   * @param i the position of the mapping to remove
+   * @return a copy of {@code kvs} without the mapping at position {@code i}
+   */
+  private static @Nullable Object[] removePair(@Nullable Object[] kvs, int i) {
+    @Nullable Object[] result = new Object[kvs.length - 2];
+    System.arraycopy(kvs, 0, result, 0, 2 * i);
+    System.arraycopy(kvs, 2 * i + 2, result, 2 * i, kvs.length - 2 * i - 2);
+    return result;
+  }
+
+  /**
+   * Returns a copy of an array of nodes with a node inserted.
+   *
+   * @param nodes nodes
+   * @param j the position of the new node
+   * @param node the new node
+   * @return a copy of {@code nodes} with {@code node} inserted at position {@code j}
+   */
+  private static Node[] insert(Node[] nodes, int j, Node node) {
+    Node[] result = new Node[nodes.length + 1];
+    System.arraycopy(nodes, 0, result, 0, j);
+    result[j] = node;
+    System.arraycopy(nodes, j, result, j + 1, nodes.length - j);
+    return result;
+  }
+
+  /**
+   * Returns a copy of an array of nodes with a node removed.
+   *
+   * @param nodes nodes
+   * @param j the position of the node to remove
+   * @return a copy of {@code nodes} without the node at position {@code j}
+   */
+  private static Node[] removeNode(Node[] nodes, int j) {
+    Node[] result = new Node[nodes.length - 1];
+    System.arraycopy(nodes, 0, result, 0, j);
+    System.arraycopy(nodes, j + 1, result, j, nodes.length - j - 1);
+    return result;
+  }
+
+  /** Iterates over the mappings of a trie. */
+  private class EntryIterator implements Iterator<Map.Entry<K, V>> {
+
+    /** Nodes whose mappings have not been visited yet. */
+    private final ArrayDeque<Node> pending = new ArrayDeque<>();
+
+    /** The node whose directly stored mappings are being visited, or null. */
+    private @Nullable Node current = null;
+
+    /** The index of the next mapping of {@link #current} to return. */
+    private int nextIndex = 0;
+
+    /** The key of the mapping most recently returned by {@link #next}, or null. */
+    private @Nullable K lastKey = null;
+
+    /**
+     * Creates an iterator over the mappings of a trie.
+     *
+     * @param root the root of the trie, or null if it is empty
+     */
+    EntryIterator(@Nullable Node root) {
+      if (root != null) {
+        pending.push(root);
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (current == null || nextIndex >= current.entryCount()) {
+        Node node = pending.poll();
+        if (node == null) {
+          return false;
+        }
+        for (int i = 0; i < node.nodeCount(); i++) {
+          pending.push(node.nodeAt(i));
+        }
+        current = node;
+        nextIndex = 0;
+      }
+      return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked") // only keys of type K and values of type V are stored
+    public Map.Entry<K, V> next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      assert current != null : "@AssumeAssertion(nullness): hasNext() sets current";
+      K key = (K) current.keyAt(nextIndex);
+      V value = (V) current.valueAt(nextIndex);
+      nextIndex++;
+      lastKey = key;
+      return new Entry(key, value);
+    }
+
+    @Override
+    public void remove() {
+      if (lastKey == null) {
+        throw new IllegalStateException();
+      }
+      PersistentHashMap.this.remove(lastKey);
+      lastKey = null;
+    }
+  }
+
+  /** A mapping returned by an iterator; {@link #setValue} writes through to the map. */
+  private class Entry extends AbstractMap.SimpleEntry<K, V> {
+
+    /** The serial version UID. */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Creates a mapping.
+     *
+     * @param key the key
+     * @param value the value
+     */
+    Entry(K key, V value) {
+      super(key, value);
+    }
+
+    @Override
+    public V setValue(V value) {
+      PersistentHashMap.this.put(getKey(), value);
+      return super.setValue(value);
+    }
+  }
+}
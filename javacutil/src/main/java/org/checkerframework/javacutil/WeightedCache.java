@@ -0,0 +1,559 @@
+package org.checkerframework.javacutil;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.ToIntFunction;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A cache that is bounded both by number of entries and by the total weight of its values, and
+ * that uses a W-TinyLFU-style admission policy to decide which entries to keep.
+ *
+ * <p>New entries are first placed in a "window" segment, which holds a fifth of the cache and is
+ * evicted in least-recently-used order. When the window overflows, its eldest entry becomes a
+ * candidate for admission into the "main" segment. The candidate is admitted unless it has been
+ * requested less often (according to an approximate frequency sketch) than the entry the main
+ * segment would evict to make room for it, or, if several entries must be evicted to make room,
+ * than any of them. This keeps frequently-used entries resident even when a burst of one-off
+ * entries passes through the cache, and the weight bound keeps a few very large values from
+ * exhausting the heap.
+ *
+ * <p>The main segment is itself split into a "probation" segment, which admitted entries enter,
+ * and a "protected" segment, which holds most of the main segment. An entry that is found in the
+ * probation segment moves to the protected segment, and the protected segment demotes its
+ * least-recently-used entries to the probation segment when it overflows. The main segment evicts
+ * from the probation segment first, so an entry that has been used since it was admitted outlives
+ * entries that have not.
+ *
+ * <p>Keys are compared using {@link Object#equals}. Values may be null. All methods are
+ * synchronized, so a single cache may be shared between threads. A cache is a {@link Map}, so it
+ * can replace a map that is used as a cache; its {@link #entrySet()} is an unmodifiable snapshot.
+ *
+ * <p>The cache keeps hit, miss, and eviction counts; see {@link #getStatistics()}.
+ *
+ * @param <K> the type of keys
+ * @param <V> the type of values
+ */
+public class WeightedCache<K, V> extends AbstractMap<K, V> {
+
+  /** The percentage of the maximum weight and size allotted to the window segment. */
+  private static final int WINDOW_PERCENT = 20;
+
+  /** The percentage of the weight and size of the main segment allotted to its protected part. */
+  private static final int PROTECTED_PERCENT = 80;
+
+  /** A human-readable name for this cache, used in statistics output. */
+  private final String name;
+
+  /** The maximum number of entries in the cache. */
+  private final int maxSize;
+
+  /** The maximum total weight of the entries in the cache. */
+  private final long maxWeight;
+
+  /** The maximum number of entries in the window segment. */
+  private final int maxWindowSize;
+
+  /** The maximum total weight of the entries in the window segment. */
+  private final long maxWindowWeight;
+
+  /** The maximum number of entries in the protected segment. */
+  private final int maxProtectedSize;
+
+  /** The maximum total weight of the entries in the protected segment. */
+  private final long maxProtectedWeight;
+
+  /** Computes the weight of a value. */
+  private final ToIntFunction<? super V> weigher;
+
+  /** The window segment, in access order. */
+  private final LinkedHashMap<K, Entry<V>> window = new LinkedHashMap<>(16, .75F, true);
+
+  /** The probation part of the main segment, in access order. */
+  private final LinkedHashMap<K, Entry<V>> probation = new LinkedHashMap<>(16, .75F, true);
+
+  /** The protected part of the main segment, in access order. */
+  private final LinkedHashMap<K, Entry<V>> protectedEntries = new LinkedHashMap<>(16, .75F, true);
+
+  /** The total weight of the entries in {@link #window}. */
+  private long windowWeight = 0;
+
+  /** The total weight of the entries in {@link #probation}. */
+  private long probationWeight = 0;
+
+  /** The total weight of the entries in {@link #protectedEntries}. */
+  private long protectedWeight = 0;
+
+  /** Approximate access frequencies of keys, used by the admission policy. */
+  private final FrequencySketch sketch;
+
+  /** The number of lookups that found an entry. */
+  private long hitCount = 0;
+
+  /** The number of lookups that did not find an entry. */
+  private long missCount = 0;
+
+  /** The number of entries evicted or rejected by the admission policy. */
+  private long evictionCount = 0;
+
+  /**
+   * A cached value together with its weight.
+   *
+   * @param <V> the type of the value
+   */
+  private static class Entry<V> {
+    /** The cached value. */
+    final @Nullable V value;
+
+    /** The weight of {@link #value}. */
+    final int weight;
+
+    /**
+     * Creates a new entry.
+     *
+     * @param value the cached value
+     * @param weight the weight of {@code value}
+     */
+    Entry(@Nullable V value, int weight) {
+      this.value = value;
+      this.weight = weight;
+    }
+  }
+
+  /**
+   * Creates a new cache.
+   *
+   * @param name a human-readable name for this cache, used in statistics output
+   * @param maxSize the maximum number of entries in the cache
+   * @param maxWeight the maximum total weight of the entries in the cache
+   * @param weigher computes the weight of a value; must return a positive number
+   */
+  public WeightedCache(String name, int maxSize, long maxWeight, ToIntFunction<? super V> weigher) {
+    if (maxSize <= 0 || maxWeight <= 0) {
+      throw new BugInCF(
+          "WeightedCache %s: maxSize (%d) and maxWeight (%d) must be positive",
+          name, maxSize, maxWeight);
+    }
+    this.name = name;
+    this.maxSize = maxSize;
+    this.maxWeight = maxWeight;
+    this.maxWindowSize = Math.max(1, maxSize * WINDOW_PERCENT / 100);
+    this.maxWindowWeight = Math.max(1, maxWeight * WINDOW_PERCENT / 100);
+    this.maxProtectedSize = (maxSize - maxWindowSize) * PROTECTED_PERCENT / 100;
+    this.maxProtectedWeight = (maxWeight - maxWindowWeight) * PROTECTED_PERCENT / 100;
+    this.weigher = weigher;
+    this.sketch = new FrequencySketch(maxSize);
+  }
+
+  /**
+   * Creates a new cache in which every value has weight 1, so it is bounded only by number of
+   * entries.
+   *
+   * @param name a human-readable name for this cache, used in statistics output
+   * @param maxSize the maximum number of entries in the cache
+   */
+  public WeightedCache(String name, int maxSize) {
+    this(name, maxSize, maxSize, v -> 1);
+  }
+
+  /**
+   * Returns the value associated with {@code key}, or null if there is none. Records a hit or a
+   * miss. Use {@link #containsKey} to distinguish a null value from a missing entry.
+   *
+   * @param key the key to look up
+   * @return the value associated with {@code key}, or null
+   */
+  @Override
+  public synchronized @Nullable V get(Object key) {
+    sketch.increment(key);
+    Entry<V> entry = window.get(key);
+    if (entry == null) {
+      entry = protectedEntries.get(key);
+    }
+    if (entry == null) {
+      entry = probation.remove(key);
+      if (entry != null) {
+        probationWeight -= entry.weight;
+        @SuppressWarnings("unchecked") // The key is equal to a key of type K.
+        K k = (K) key;
+        protect(k, entry);
+      }
+    }
+    if (entry == null) {
+      missCount++;
+      return null;
+    }
+    hitCount++;
+    return entry.value;
+  }
+
+  /**
+   * Returns the value associated with {@code key}, or null if there is none. Unlike {@link #get},
+   * does not record a hit or a miss, and does not count as a use of the key for the admission
+   * policy. For a client that has already looked up the key with {@link #get}.
+   *
+   * @param key the key to look up
+   * @return the value associated with {@code key}, or null
+   */
+  public synchronized @Nullable V peek(Object key) {
+    Entry<V> entry = window.get(key);
+    if (entry == null) {
+      entry = protectedEntries.get(key);
+    }
+    if (entry == null) {
+      entry = probation.get(key);
+    }
+    return entry == null ? null : entry.value;
+  }
+
+  /**
+   * Moves an entry that was found in the probation segment to the protected segment. Demotes the
+   * least-recently-used entries of the protected segment to the probation segment as necessary to
+   * keep the protected segment within its bounds.
+   *
+   * @param key the key of the entry
+   * @param entry the entry, which has been removed from the probation segment
+   */
+  private void protect(K key, Entry<V> entry) {
+    protectedEntries.put(key, entry);
+    protectedWeight += entry.weight;
+    while (protectedEntries.size() > maxProtectedSize || protectedWeight > maxProtectedWeight) {
+      Map.Entry<K, Entry<V>> demoted = removeEldest(protectedEntries);
+      protectedWeight -= demoted.getValue().weight;
+      probation.put(demoted.getKey(), demoted.getValue());
+      probationWeight += demoted.getValue().weight;
+    }
+  }
+
+  /**
+   * Returns true if this cache contains an entry for {@code key}. Does not record a hit or a miss
+   * and does not affect eviction order.
+   *
+   * @param key the key to look up
+   * @return true if this cache contains an entry for {@code key}
+   */
+  @Override
+  public synchronized boolean containsKey(Object key) {
+    return window.containsKey(key)
+        || probation.containsKey(key)
+        || protectedEntries.containsKey(key);
+  }
+
+  /**
+   * Associates {@code value} with {@code key}. The entry might be evicted immediately, for example
+   * if its weight exceeds the maximum weight of the cache.
+   *
+   * @param key the key
+   * @param value the value
+   * @return the value previously associated with {@code key}, or null if there was none
+   */
+  @Override
+  public synchronized @Nullable V put(K key, @Nullable V value) {
+    V old = remove(key);
+    int weight = value == null ? 1 : weigher.applyAsInt(value);
+    if (weight > maxWeight) {
+      evictionCount++;
+      return old;
+    }
+    window.put(key, new Entry<>(value, weight));
+    windowWeight += weight;
+    while (window.size() > maxWindowSize || windowWeight > maxWindowWeight) {
+      Map.Entry<K, Entry<V>> candidate = removeEldest(window);
+      windowWeight -= candidate.getValue().weight;
+      admit(candidate.getKey(), candidate.getValue());
+    }
+    return old;
+  }
+
+  /**
+   * Removes the entry for {@code key}, if any.
+   *
+   * @param key the key
+   * @return the value previously associated with {@code key}, or null if there was none
+   */
+  @Override
+  public synchronized @Nullable V remove(Object key) {
+    Entry<V> old = window.remove(key);
+    if (old != null) {
+      windowWeight -= old.weight;
+      return old.value;
+    }
+    old = probation.remove(key);
+    if (old != null) {
+      probationWeight -= old.weight;
+      return old.value;
+    }
+    old = protectedEntries.remove(key);
+    if (old != null) {
+      protectedWeight -= old.weight;
+      return old.value;
+    }
+    return null;
+  }
+
+  /** Removes all entries from the cache. Does not reset the statistics. */
+  @Override
+  public synchronized void clear() {
+    window.clear();
+    probation.clear();
+    protectedEntries.clear();
+    windowWeight = 0;
+    probationWeight = 0;
+    protectedWeight = 0;
+  }
+
+  /**
+   * Returns the number of entries in the cache.
+   *
+   * @return the number of entries in the cache
+   */
+  @Override
+  public synchronized int size() {
+    return window.size() + probation.size() + protectedEntries.size();
+  }
+
+  /**
+   * Returns the total weight of the entries in the cache.
+   *
+   * @return the total weight of the entries in the cache
+   */
+  public synchronized long weight() {
+    return windowWeight + probationWeight + protectedWeight;
+  }
+
+  /**
+   * Returns an unmodifiable snapshot of the entries of this cache. Does not record hits or misses
+   * and does not affect eviction order.
+   *
+   * @return an unmodifiable snapshot of the entries of this cache
+   */
+  @Override
+  public synchronized Set<Map.Entry<K, V>> entrySet() {
+    Set<Map.Entry<K, V>> snapshot = new LinkedHashSet<>();
+    for (Map.Entry<K, Entry<V>> e : window.entrySet()) {
+      snapshot.add(new SimpleImmutableEntry<>(e.getKey(), e.getValue().value));
+    }
+    for (Map.Entry<K, Entry<V>> e : probation.entrySet()) {
+      snapshot.add(new SimpleImmutableEntry<>(e.getKey(), e.getValue().value));
+    }
+    for (Map.Entry<K, Entry<V>> e : protectedEntries.entrySet()) {
+      snapshot.add(new SimpleImmutableEntry<>(e.getKey(), e.getValue().value));
+    }
+    return Collections.unmodifiableSet(snapshot);
+  }
+
+  /**
+   * Moves an entry evicted from the window into the probation segment if the admission policy
+   * allows it. Evicts entries from the main segment as necessary to make room, least-recently-used
+   * first and from the probation segment before the protected segment, but only if the candidate is
+   * at least as popular as every entry that would be evicted; otherwise, the candidate is rejected
+   * and the main segment is unchanged.
+   *
+   * @param key the key of the candidate entry
+   * @param candidate the candidate entry
+   */
+  private void admit(K key, Entry<V> candidate) {
+    int mainMaxSize = maxSize - maxWindowSize;
+    long mainMaxWeight = maxWeight - maxWindowWeight;
+    if (candidate.weight > mainMaxWeight || mainMaxSize <= 0) {
+      evictionCount++;
+      return;
+    }
+    int mainSize = probation.size() + protectedEntries.size();
+    long mainWeight = probationWeight + protectedWeight;
+    int candidateFrequency = sketch.frequency(key);
+    // Find all the victims before evicting any, so that a rejected candidate evicts nothing.
+    int victims = 0;
+    long victimsWeight = 0;
+    Iterator<Map.Entry<K, Entry<V>>> itor = probation.entrySet().iterator();
+    while (mainSize - victims + 1 > mainMaxSize
+        || mainWeight - victimsWeight + candidate.weight > mainMaxWeight) {
+      if (!itor.hasNext()) {
+        itor = protectedEntries.entrySet().iterator();
+      }
+      Map.Entry<K, Entry<V>> victim = itor.next();
+      if (sketch.frequency(victim.getKey()) > candidateFrequency) {
+        // The candidate is less popular than an entry it would displace.
+        evictionCount++;
+        return;
+      }
+      victims++;
+      victimsWeight += victim.getValue().weight;
+    }
+    for (int i = 0; i < victims; i++) {
+      if (!probation.isEmpty()) {
+        probationWeight -= removeEldest(probation).getValue().weight;
+      } else {
+        protectedWeight -= removeEldest(protectedEntries).getValue().weight;
+      }
+    }
+    evictionCount += victims;
+    probation.put(key, candidate);
+    probationWeight += candidate.weight;
+  }
+
+  /**
+   * Removes and returns the least-recently-used entry of {@code segment}, which must be non-empty.
+   *
+   * @param segment a segment of the cache
+   * @return the removed entry
+   */
+  private Map.Entry<K, Entry<V>> removeEldest(LinkedHashMap<K, Entry<V>> segment) {
+    Iterator<Map.Entry<K, Entry<V>>> itor = segment.entrySet().iterator();
+    Map.Entry<K, Entry<V>> eldest = itor.next();
+    itor.remove();
+    return eldest;
+  }
+
+  /**
+   * Returns a one-line summary of the hit, miss, and eviction counts of this cache.
+   *
+   * @return a one-line summary of the statistics of this cache
+   */
+  public synchronized String getStatistics() {
+    long lookups = hitCount + missCount;
+    return String.format(
+        "%s: %d hits, %d misses (hit rate %.1f%%), %d evictions, %d entries, weight %d/%d",
+        name,
+        hitCount,
+        missCount,
+        lookups == 0 ? 0.0 : 100.0 * hitCount / lookups,
+        evictionCount,
+        size(),
+        weight(),
+        maxWeight);
+  }
+
+  /**
+   * Returns the number of lookups that found an entry.
+   *
+   * @return the number of lookups that found an entry
+   */
+  public synchronized long getHitCount() {
+    return hitCount;
+  }
+
+  /**
+   * Returns the number of lookups that did not find an entry.
+   *
+   * @return the number of lookups that did not find an entry
+   */
+  public synchronized long getMissCount() {
+    return missCount;
+  }
+
+  /**
+   * Returns the number of entries that were evicted or not admitted.
+   *
+   * @return the number of entries that were evicted or not admitted
+   */
+  public synchronized long getEvictionCount() {
+    return evictionCount;
+  }
+
+  @Override
+  public String toString() {
+    return getStatistics();
+  }
+
+  /**
+   * A count-min sketch with 4-bit saturating counters that estimates how often each key has been
+   * requested. Counts are periodically halved so that the sketch favors recent popularity.
+   */
+  private static class FrequencySketch {
+
+    /** The number of hash functions, which is also the number of counters per key. */
+    private static final int DEPTH = 4;
+
+    /** The maximum value of a counter. */
+    private static final int MAX_COUNT = 15;
+
+    /** Seeds for the hash functions. */
+    private static final int[] SEEDS = {0x97cb3127, 0xb1a83a91, 0x6d35e3b5, 0xc2b2ae35};
+
+    /** The maximum number of counters. */
+    private static final int MAX_TABLE_LENGTH = 1 << 22;
+
+    /** The counters, one per byte (only the low four bits are used). */
+    private final byte[] table;
+
+    /** {@code table.length - 1}; the table length is a power of two. */
+    private final int mask;
+
+    /** The number of increments after which all counters are halved. */
+    private final int sampleSize;
+
+    /** The number of increments since the counters were last halved. */
+    private int additions = 0;
+
+    /**
+     * Creates a sketch sized for a cache with {@code maxSize} entries.
+     *
+     * @param maxSize the maximum number of entries in the cache
+     */
+    FrequencySketch(int maxSize) {
+      // 16 counters per entry, so that a key rarely shares all of its counters with popular keys.
+      int counters = (int) Math.min(MAX_TABLE_LENGTH, Math.max(16L, 16L * maxSize));
+      int length = Integer.highestOneBit(counters - 1) << 1;
+      this.table = new byte[length];
+      this.mask = length - 1;
+      this.sampleSize = 10 * Math.max(16, maxSize);
+    }
+
+    /**
+     * Returns the index of the counter for {@code key} in row {@code i}.
+     *
+     * @param hash the spread hash code of the key
+     * @param i the row
+     * @return the index of the counter in {@link #table}
+     */
+    private int index(int hash, int i) {
+      int h = (hash ^ SEEDS[i]) * 0x9e3779b9;
+      h ^= h >>> 16;
+      return h & mask;
+    }
+
+    /**
+     * Records a request for {@code key}.
+     *
+     * @param key the requested key
+     */
+    void increment(Object key) {
+      int hash = key.hashCode();
+      boolean added = false;
+      for (int i = 0; i < DEPTH; i++) {
+        int index = index(hash, i);
+        if (table[index] < MAX_COUNT) {
+          table[index]++;
+          added = true;
+        }
+      }
+      if (added && ++additions >= sampleSize) {
+        for (int i = 0; i < table.length; i++) {
+          table[i] = (byte) (table[i] >>> 1);
+        }
+        additions /= 2;
+      }
+    }
+
+    /**
+     * Returns the estimated number of requests for {@code key}.
+     *
+     * @param key a key
+     * @return the estimated number of requests for {@code key}
+     */
+    int frequency(Object key) {
+      int hash = key.hashCode();
+      int result = MAX_COUNT;
+      for (int i = 0; i < DEPTH; i++) {
+        result = Math.min(result, table[index(hash, i)]);
+      }
+      return result;
+    }
+  }
+}
@@ -0,0 +1,305 @@
+package org.checkerframework.javacutil;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.function.BiFunction;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PersistentHashMapTest {
+
+  /** A key whose hash code is chosen by the test, so that distinct keys can collide. */
+  private static final class Key {
+
+    /** The identity of the key. */
+    final int id;
+
+    /** The hash code of the key. */
+    final int hash;
+
+    /**
+     * Creates a key.
+     *
+     * @param id the identity of the key
+     * @param hash the hash code of the key
+     */
+    Key(int id, int hash) {
+      this.id = id;
+      this.hash = hash;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object o) {
+      return o instanceof Key && ((Key) o).id == id;
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public String toString() {
+      return "Key(" + id + ", " + hash + ")";
+    }
+  }
+
+  /**
+   * Returns a key whose hash code has only a few distinct values, so that many keys collide in
+   * whole or in their low bits.
+   *
+   * @param id the identity of the key
+   * @return a key
+   */
+  private static Key collidingKey(int id) {
+    return new Key(id, (id % 7) << 20);
+  }
+
+  /**
+   * Asserts that a persistent map has exactly the mappings of a reference map.
+   *
+   * @param expected the reference map
+   * @param actual the persistent map
+   */
+  private static void assertSameMappings(
+      Map<Key, Integer> expected, PersistentHashMap<Key, Integer> actual) {
+    Assert.assertEquals(expected.size(), actual.size());
+    Assert.assertEquals(expected, new HashMap<>(actual));
+    for (Map.Entry<Key, Integer> e : expected.entrySet()) {
+      Assert.assertTrue(actual.containsKey(e.getKey()));
+      Assert.assertEquals(e.getValue(), actual.get(e.getKey()));
+    }
+    Assert.assertEquals(expected.hashCode(), actual.hashCode());
+  }
+
+  @Test
+  public void putGetRemove() {
+    PersistentHashMap<String, Integer> map = new PersistentHashMap<>();
+    Assert.assertTrue(map.isEmpty());
+    Assert.assertNull(map.put("a", 1));
+    Assert.assertNull(map.put("b", null));
+    Assert.assertEquals(Integer.valueOf(1), map.put("a", 2));
+    Assert.assertEquals(2, map.size());
+    Assert.assertEquals(Integer.valueOf(2), map.get("a"));
+    Assert.assertTrue(map.containsKey("b"));
+    Assert.assertNull(map.get("b"));
+    Assert.assertFalse(map.containsKey("c"));
+    Assert.assertFalse(map.containsKey(null));
+    Assert.assertEquals(Integer.valueOf(2), map.remove("a"));
+    Assert.assertNull(map.remove("a"));
+    Assert.assertEquals(1, map.size());
+    map.clear();
+    Assert.assertTrue(map.isEmpty());
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void nullKey() {
+    new PersistentHashMap<String, Integer>().put(null, 1);
+  }
+
+  @Test
+  public void copiesAreIndependent() {
+    PersistentHashMap<Key, Integer> map = new PersistentHashMap<>();
+    for (int i = 0; i < 100; i++) {
+      map.put(collidingKey(i), i);
+    }
+    PersistentHashMap<Key, Integer> copy = map.copy();
+    copy.put(collidingKey(1000), 1000);
+    copy.remove(collidingKey(3));
+    copy.put(collidingKey(4), -4);
+    Assert.assertEquals(100, map.size());
+    Assert.assertEquals(Integer.valueOf(3), map.get(collidingKey(3)));
+    Assert.assertEquals(Integer.valueOf(4), map.get(collidingKey(4)));
+    Assert.assertFalse(map.containsKey(collidingKey(1000)));
+    Assert.assertEquals(100, copy.size());
+    Assert.assertEquals(Integer.valueOf(-4), copy.get(collidingKey(4)));
+  }
+
+  @Test
+  public void fullHashCollisions() {
+    PersistentHashMap<Key, Integer> map = new PersistentHashMap<>();
+    Map<Key, Integer> expected = new HashMap<>();
+    for (int i = 0; i < 5; i++) {
+      map.put(new Key(i, 42), i);
+      expected.put(new Key(i, 42), i);
+    }
+    map.put(new Key(100, 43), 100);
+    expected.put(new Key(100, 43), 100);
+    assertSameMappings(expected, map);
+    // Remove the colliding keys one by one, down to a single mapping and then none.
+    for (int i = 0; i < 5; i++) {
+      Assert.assertEquals(Integer.valueOf(i), map.remove(new Key(i, 42)));
+      expected.remove(new Key(i, 42));
+      assertSameMappings(expected, map);
+    }
+    Assert.assertEquals(Integer.valueOf(100), map.remove(new Key(100, 43)));
+    Assert.assertTrue(map.isEmpty());
+  }
+
+  @Test
+  public void randomOperations() {
+    Random random = new Random(0);
+    PersistentHashMap<Key, Integer> map = new PersistentHashMap<>();
+    Map<Key, Integer> expected = new HashMap<>();
+    for (int step = 0; step < 20000; step++) {
+      Key key = collidingKey(random.nextInt(300));
+      if (random.nextInt(3) == 0) {
+        Assert.assertEquals(expected.remove(key), map.remove(key));
+      } else {
+        int value = random.nextInt(10);
+        Assert.assertEquals(expected.put(key, value), map.put(key, value));
+      }
+      if (step % 1000 == 0) {
+        assertSameMappings(expected, map);
+      }
+    }
+    assertSameMappings(expected, map);
+  }
+
+  @Test
+  public void iteratorRemoveAndSetValue() {
+    PersistentHashMap<Key, Integer> map = new PersistentHashMap<>();
+    for (int i = 0; i < 50; i++) {
+      map.put(collidingKey(i), i);
+    }
+    for (Iterator<Map.Entry<Key, Integer>> it = map.entrySet().iterator(); it.hasNext(); ) {
+      Map.Entry<Key, Integer> e = it.next();
+      if (e.getValue() % 2 == 0) {
+        it.remove();
+      } else {
+        e.setValue(-e.getValue());
+      }
+    }
+    Assert.assertEquals(25, map.size());
+    for (int i = 0; i < 50; i++) {
+      Assert.assertEquals(i % 2 == 0 ? null : Integer.valueOf(-i), map.get(collidingKey(i)));
+    }
+  }
+
+  /**
+   * Returns a reference implementation of {@link PersistentHashMap#setToIntersection}.
+   *
+   * @param a a map
+   * @param b a map
+   * @param merge merges the values of a key; null means to omit the key
+   * @return the intersection of {@code a} and {@code b} with merged values
+   */
+  private static Map<Key, Integer> intersection(
+      Map<Key, Integer> a,
+      Map<Key, Integer> b,
+      BiFunction<Integer, Integer, @Nullable Integer> merge) {
+    Map<Key, Integer> result = new HashMap<>();
+    for (Map.Entry<Key, Integer> e : a.entrySet()) {
+      if (b.containsKey(e.getKey())) {
+        Integer merged = merge.apply(e.getValue(), b.get(e.getKey()));
+        if (merged != null) {
+          result.put(e.getKey(), merged);
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns a reference implementation of {@link PersistentHashMap#containsAllMappings}.
+   *
+   * @param a a map
+   * @param b a map
+   * @return true if {@code a} contains every mapping of {@code b}
+   */
+  private static boolean containsAll(Map<Key, Integer> a, Map<Key, Integer> b) {
+    for (Map.Entry<Key, Integer> e : b.entrySet()) {
+      if (!a.containsKey(e.getKey()) || !Objects.equals(a.get(e.getKey()), e.getValue())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns a map that shares most of its trie with {@code base}, as the stores of a dataflow
+   * analysis do: a copy of {@code base} with a few random changes.
+   *
+   * @param base a map
+   * @param random a source of randomness
+   * @return a modified copy of {@code base}
+   */
+  private static PersistentHashMap<Key, Integer> mutate(
+      PersistentHashMap<Key, Integer> base, Random random) {
+    PersistentHashMap<Key, Integer> result = base.copy();
+    int changes = random.nextInt(8);
+    for (int i = 0; i < changes; i++) {
+      Key key = collidingKey(random.nextInt(120));
+      if (random.nextBoolean()) {
+        result.remove(key);
+      } else {
+        result.put(key, random.nextInt(4));
+      }
+    }
+    return result;
+  }
+
+  // The next two tests exercise the operations that CFAbstractStore#upperBoundOfMaps and
+  // CFAbstractStore#mapSupersetOf use to join and compare stores.
+
+  @Test
+  public void setToIntersection() {
+    Random random = new Random(1);
+    // An idempotent merge, like a least upper bound, and one that is not, like widening.
+    BiFunction<Integer, Integer, @Nullable Integer> max = Math::max;
+    BiFunction<Integer, Integer, @Nullable Integer> sumOrOmit = (x, y) -> x + y > 4 ? null : x + y;
+    for (int round = 0; round < 500; round++) {
+      PersistentHashMap<Key, Integer> base = new PersistentHashMap<>();
+      for (int i = 0; i < 60; i++) {
+        base.put(collidingKey(random.nextInt(120)), random.nextInt(4));
+      }
+      PersistentHashMap<Key, Integer> a = mutate(base, random);
+      PersistentHashMap<Key, Integer> b = mutate(base, random);
+      Map<Key, Integer> aCopy = new HashMap<>(a);
+      Map<Key, Integer> bCopy = new HashMap<>(b);
+
+      PersistentHashMap<Key, Integer> result = new PersistentHashMap<>();
+      result.setToIntersection(a, b, max, true);
+      assertSameMappings(intersection(aCopy, bCopy, max), result);
+      result.setToIntersection(a, b, sumOrOmit, false);
+      assertSameMappings(intersection(aCopy, bCopy, sumOrOmit), result);
+      result.setToIntersection(a, new PersistentHashMap<>(), max, true);
+      Assert.assertTrue(result.isEmpty());
+
+      // The arguments are unchanged.
+      assertSameMappings(aCopy, a);
+      assertSameMappings(bCopy, b);
+    }
+  }
+
+  @Test
+  public void containsAllMappingsAndEquals() {
+    Random random = new Random(2);
+    for (int round = 0; round < 500; round++) {
+      PersistentHashMap<Key, Integer> base = new PersistentHashMap<>();
+      for (int i = 0; i < 60; i++) {
+        base.put(collidingKey(random.nextInt(120)), random.nextInt(4));
+      }
+      PersistentHashMap<Key, Integer> a = mutate(base, random);
+      PersistentHashMap<Key, Integer> b = mutate(base, random);
+      Map<Key, Integer> aCopy = new HashMap<>(a);
+      Map<Key, Integer> bCopy = new HashMap<>(b);
+      Assert.assertEquals(containsAll(aCopy, bCopy), a.containsAllMappings(b));
+      Assert.assertEquals(containsAll(bCopy, aCopy), b.containsAllMappings(a));
+      Assert.assertEquals(aCopy.equals(bCopy), a.equals(b));
+      Assert.assertTrue(a.containsAllMappings(a.copy()));
+      Assert.assertTrue(a.containsAllMappings(new PersistentHashMap<>()));
+
+      // A map built independently, in a different order, has the same mappings.
+      PersistentHashMap<Key, Integer> rebuilt = new PersistentHashMap<>();
+      aCopy.forEach(rebuilt::put);
+      Assert.assertEquals(a, rebuilt);
+      Assert.assertTrue(rebuilt.containsAllMappings(a));
+      Assert.assertEquals(a.hashCode(), rebuilt.hashCode());
+    }
+  }
+}
@@ -0,0 +1,211 @@
+package org.checkerframework.javacutil;
+
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class WeightedCacheTest {
+
+  /**
+   * Returns a cache whose window holds at most 2 entries of total weight 20, so every entry heavier
+   * than 20 is immediately a candidate for the main segment, which holds at most 8 entries of total
+   * weight 80. The protected part of the main segment holds at most 6 entries of total weight 64.
+   * The weight of a value is the value itself.
+   *
+   * @return a new cache
+   */
+  private static WeightedCache<String, Integer> newCache() {
+    return new WeightedCache<>("test", 10, 100, v -> v);
+  }
+
+  /**
+   * Looks up {@code key} in {@code cache} {@code n} times, to raise its frequency.
+   *
+   * @param cache a cache
+   * @param key a key
+   * @param n the number of lookups
+   */
+  private static void request(WeightedCache<String, Integer> cache, String key, int n) {
+    for (int i = 0; i < n; i++) {
+      cache.get(key);
+    }
+  }
+
+  @Test
+  public void getAndPut() {
+    WeightedCache<String, Integer> cache = newCache();
+    Assert.assertNull(cache.put("a", 5));
+    Assert.assertEquals(Integer.valueOf(5), cache.get("a"));
+    Assert.assertEquals(Integer.valueOf(5), cache.put("a", 7));
+    Assert.assertEquals(Integer.valueOf(7), cache.get("a"));
+    Assert.assertEquals(1, cache.size());
+    Assert.assertEquals(7, cache.weight());
+    Assert.assertEquals(2, cache.getHitCount());
+    Assert.assertNull(cache.get("b"));
+    Assert.assertEquals(1, cache.getMissCount());
+  }
+
+  @Test
+  public void peekIsNotCounted() {
+    WeightedCache<String, Integer> cache = newCache();
+    cache.put("a", 5);
+    Assert.assertEquals(Integer.valueOf(5), cache.peek("a"));
+    Assert.assertNull(cache.peek("b"));
+    Assert.assertEquals(0, cache.getHitCount());
+    Assert.assertEquals(0, cache.getMissCount());
+  }
+
+  @Test
+  public void nullValues() {
+    WeightedCache<String, Integer> cache = newCache();
+    cache.put("a", null);
+    Assert.assertNull(cache.get("a"));
+    Assert.assertTrue(cache.containsKey("a"));
+    Assert.assertFalse(cache.containsKey("b"));
+  }
+
+  @Test
+  public void removeAndClear() {
+    WeightedCache<String, Integer> cache = newCache();
+    cache.put("a", 5);
+    cache.put("b", 6);
+    Assert.assertEquals(Integer.valueOf(5), cache.remove("a"));
+    Assert.assertNull(cache.remove("a"));
+    Assert.assertEquals(1, cache.size());
+    Assert.assertEquals(6, cache.weight());
+    cache.clear();
+    Assert.assertEquals(0, cache.size());
+    Assert.assertEquals(0, cache.weight());
+  }
+
+  @Test
+  public void mapView() {
+    Map<String, Integer> cache = newCache();
+    cache.put("a", 5);
+    cache.put("b", 6);
+    Assert.assertEquals(2, cache.entrySet().size());
+    Assert.assertEquals(11, cache.values().stream().mapToInt(Integer::intValue).sum());
+    Assert.assertThrows(UnsupportedOperationException.class, () -> cache.entrySet().clear());
+  }
+
+  @Test
+  public void tooHeavy() {
+    WeightedCache<String, Integer> cache = newCache();
+    cache.put("a", 101);
+    Assert.assertFalse(cache.containsKey("a"));
+    Assert.assertEquals(0, cache.weight());
+    Assert.assertEquals(1, cache.getEvictionCount());
+  }
+
+  @Test
+  public void boundedBySize() {
+    WeightedCache<String, Integer> cache = new WeightedCache<>("test", 10);
+    for (int i = 0; i < 100; i++) {
+      cache.put("k" + i, i);
+      Assert.assertTrue(cache.size() <= 10);
+    }
+    Assert.assertEquals(10, cache.size());
+  }
+
+  @Test
+  public void boundedByWeight() {
+    WeightedCache<String, Integer> cache = newCache();
+    for (int i = 0; i < 100; i++) {
+      cache.put("k" + i, 1 + i % 30);
+      Assert.assertTrue(cache.weight() <= 100);
+    }
+  }
+
+  @Test
+  public void frequentEntriesStay() {
+    WeightedCache<String, Integer> cache = new WeightedCache<>("test", 10);
+    // The window holds 2 entries, so the main segment holds 8.
+    for (int i = 0; i < 8; i++) {
+      cache.put("hot" + i, i);
+      request(cache, "hot" + i, 5);
+    }
+    // A burst of one-off entries does not displace the frequently-used ones.
+    for (int i = 0; i < 100; i++) {
+      cache.put("cold" + i, i);
+    }
+    for (int i = 0; i < 8; i++) {
+      Assert.assertTrue("hot" + i, cache.containsKey("hot" + i));
+    }
+  }
+
+  @Test
+  public void rejectedCandidateEvictsNothing() {
+    WeightedCache<String, Integer> cache = newCache();
+    cache.put("a", 40);
+    cache.put("b", 39);
+    request(cache, "b", 5);
+    // Making room for c requires evicting both a and b; a is less popular than c, but b is not.
+    request(cache, "c", 3);
+    cache.put("c", 60);
+    Assert.assertFalse(cache.containsKey("c"));
+    Assert.assertTrue(cache.containsKey("a"));
+    Assert.assertTrue(cache.containsKey("b"));
+    Assert.assertEquals(79, cache.weight());
+    Assert.assertEquals(1, cache.getEvictionCount());
+  }
+
+  @Test
+  public void admittedCandidateEvictsAllVictims() {
+    WeightedCache<String, Integer> cache = newCache();
+    cache.put("a", 40);
+    cache.put("b", 39);
+    request(cache, "b", 5);
+    request(cache, "c", 10);
+    cache.put("c", 60);
+    Assert.assertTrue(cache.containsKey("c"));
+    Assert.assertFalse(cache.containsKey("a"));
+    Assert.assertFalse(cache.containsKey("b"));
+    Assert.assertEquals(60, cache.weight());
+    Assert.assertEquals(2, cache.getEvictionCount());
+  }
+
+  @Test
+  public void onlyNecessaryVictimsAreEvicted() {
+    WeightedCache<String, Integer> cache = newCache();
+    cache.put("a", 40);
+    cache.put("b", 30);
+    request(cache, "b", 5);
+    request(cache, "c", 10);
+    // Evicting a, which has not been used since it was admitted, is enough to make room for c.
+    cache.put("c", 40);
+    Assert.assertTrue(cache.containsKey("c"));
+    Assert.assertFalse(cache.containsKey("a"));
+    Assert.assertTrue(cache.containsKey("b"));
+    Assert.assertEquals(70, cache.weight());
+  }
+
+  @Test
+  public void tiesGoToTheCandidate() {
+    WeightedCache<String, Integer> cache = newCache();
+    cache.put("a", 40);
+    request(cache, "a", 2);
+    request(cache, "b", 2);
+    cache.put("b", 50);
+    Assert.assertTrue(cache.containsKey("b"));
+    Assert.assertFalse(cache.containsKey("a"));
+  }
+
+  @Test
+  public void usedEntriesAreProtected() {
+    WeightedCache<String, Integer> cache = newCache();
+    cache.put("a", 40);
+    // a moves to the protected segment, so b is evicted before a even though a is older.
+    cache.get("a");
+    cache.put("b", 39);
+    request(cache, "c", 1);
+    cache.put("c", 40);
+    Assert.assertTrue(cache.containsKey("a"));
+    Assert.assertFalse(cache.containsKey("b"));
+    Assert.assertTrue(cache.containsKey("c"));
+  }
+
+  @Test(expected = BugInCF.class)
+  public void nonPositiveSize() {
+    new WeightedCache<String, Integer>("test", 0);
+  }
+}